@@ -0,0 +1,33 @@
+package com.ratewise.datasource;
+
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+/**
+ * Flags a read-only transaction while it is being begun.
+ *
+ * TransactionSynchronizationManager only reports the read-only flag once the transaction has
+ * begun, but the physical connection can be taken during begin (JPA asks for it, and the JDBC
+ * observation reads its metadata straight away), so ReplicaRoutingDataSource checks this too.
+ * Registered on the transaction manager by Boot as a TransactionExecutionListener bean.
+ */
+public class ReadOnlyTransactionListener implements TransactionExecutionListener {
+
+    private static final ThreadLocal<Boolean> BEGINNING_READ_ONLY = new ThreadLocal<>();
+
+    static boolean isBeginningReadOnly() {
+        return Boolean.TRUE.equals(BEGINNING_READ_ONLY.get());
+    }
+
+    @Override
+    public void beforeBegin(TransactionExecution transaction) {
+        if (transaction.isReadOnly()) {
+            BEGINNING_READ_ONLY.set(Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        BEGINNING_READ_ONLY.remove();
+    }
+}
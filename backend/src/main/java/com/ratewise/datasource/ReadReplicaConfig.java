@@ -0,0 +1,175 @@
+package com.ratewise.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read-replica routing, switched on by datasource.read-replicas.urls (comma-separated JDBC URLs).
+ *
+ * Replaces Boot's single pool with one Hikari pool for the primary (spring.datasource.*) and one
+ * per replica, behind a single DataSource bean:
+ * LazyConnectionDataSourceProxy -> ReplicaRoutingDataSource -> primary | replica-N.
+ * Code opts in to replicas with @Transactional(readOnly = true); everything else, including
+ * schema init, JPA and all writes, stays on the primary.
+ *
+ * After any successful non-GET API call a user is pinned to the primary for
+ * datasource.read-replicas.read-your-writes-ms, so an admin who just edited a tariff reads it back.
+ * Calls matching datasource.read-replicas.read-only-paths (the calculator) never pin.
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.read-replicas.urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Bean
+    @ConfigurationProperties(prefix = "datasource.read-replicas")
+    public ReadReplicaProperties readReplicaProperties() {
+        return new ReadReplicaProperties();
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(ReadReplicaProperties properties) {
+        return new ReadYourWritesTracker(properties.getReadYourWritesMs());
+    }
+
+    @Bean
+    public ReadOnlyTransactionListener readOnlyTransactionListener() {
+        return new ReadOnlyTransactionListener();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties primaryProperties, ReadReplicaProperties properties,
+                                 ReadYourWritesTracker readYourWritesTracker, Environment environment) {
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        applyHikariSettings(primary, environment, "ratewise-primary");
+
+        List<ReplicaNode> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.getUrls().size(); i++) {
+            String name = "replica-" + (i + 1);
+            HikariDataSource replica = new HikariDataSource();
+            applyHikariSettings(replica, environment, "ratewise-" + name);
+            replica.setJdbcUrl(properties.getUrls().get(i).trim());
+            replica.setUsername(properties.getUsername() != null ? properties.getUsername() : primaryProperties.determineUsername());
+            replica.setPassword(properties.getPassword() != null ? properties.getPassword() : primaryProperties.determinePassword());
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(properties.getConnectionTimeoutMs());
+            replica.setInitializationFailTimeout(-1); // a replica that is down must not stop startup
+            replicas.add(new ReplicaNode(name, replica));
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, readYourWritesTracker, properties.getMaxLagMs());
+        routingDataSource.checkReplicas();
+        return new ClosingLazyConnectionDataSourceProxy(routingDataSource, primary, replicas);
+    }
+
+    // Same spring.datasource.hikari.* settings (pool size, timeouts, PgJDBC properties) for every pool
+    private static void applyHikariSettings(HikariDataSource pool, Environment environment, String poolName) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(poolName);
+        // Boot only binds pool metrics for DataSource beans; these pools are not beans
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(Metrics.globalRegistry));
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.read-replicas.health-check-ms:5000}",
+               initialDelayString = "${datasource.read-replicas.health-check-ms:5000}")
+    public void checkReplicas() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicas();
+        }
+    }
+
+    @Bean
+    public MeterBinder readReplicaMetrics() {
+        return registry -> {
+            FunctionCounter.builder("ratewise.datasource.reads", routingDataSource, ReplicaRoutingDataSource::getReplicaReadCount)
+                    .description("Read-only transactions by the pool that served them")
+                    .tag("target", "replica")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.datasource.reads", routingDataSource, ReplicaRoutingDataSource::getPrimaryReadCount)
+                    .tag("target", "primary")
+                    .register(registry);
+            for (ReplicaNode replica : routingDataSource.getReplicas()) {
+                Gauge.builder("ratewise.datasource.replica.lag", replica, ReplicaNode::getLagMillis)
+                        .description("Replay lag at the last health check in ms, -1 when unreachable")
+                        .tag("replica", replica.getName())
+                        .register(registry);
+            }
+        };
+    }
+
+    // Pins the caller to the primary after any successful API call that may have written
+    @Bean
+    public WebMvcConfigurer readYourWritesInterceptor(ReadYourWritesTracker readYourWritesTracker,
+                                                      ReadReplicaProperties properties) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                                Object handler, Exception ex) {
+                        if (SAFE_METHODS.contains(request.getMethod()) || ex != null || response.getStatus() >= 400) return;
+                        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+                        if (authentication != null && authentication.isAuthenticated()
+                                && !(authentication instanceof AnonymousAuthenticationToken)) {
+                            readYourWritesTracker.markWrite(authentication.getName());
+                        }
+                    }
+                }).addPathPatterns("/api/**").excludePathPatterns(properties.getReadOnlyPaths());
+            }
+        };
+    }
+
+    /**
+     * Closes the underlying pools on shutdown (they are not beans, so Spring would not).
+     */
+    static class ClosingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+        private final HikariDataSource primary;
+        private final List<ReplicaNode> replicas;
+
+        ClosingLazyConnectionDataSourceProxy(DataSource target, HikariDataSource primary, List<ReplicaNode> replicas) {
+            super(target);
+            this.primary = primary;
+            this.replicas = replicas;
+        }
+
+        @Override
+        public void close() {
+            replicas.forEach(replica -> ((HikariDataSource) replica.getDataSource()).close());
+            primary.close();
+        }
+    }
+}
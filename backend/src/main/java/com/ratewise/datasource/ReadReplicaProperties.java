@@ -0,0 +1,38 @@
+package com.ratewise.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * datasource.read-replicas.* settings. Routing is only switched on when {@code urls} is set.
+ *
+ * Replicas share the primary's pool settings (spring.datasource.hikari.*) and, unless given,
+ * its username and password. A replica is used while it answers the health check and its
+ * replay lag is at most {@code maxLagMs}; otherwise reads fall back to the primary.
+ */
+@Getter
+@Setter
+public class ReadReplicaProperties {
+
+    private List<String> urls = new ArrayList<>();
+
+    private String username;
+
+    private String password;
+
+    private long maxLagMs = 5_000;
+
+    private long healthCheckMs = 5_000;
+
+    // Kept short so a dead replica cannot stall the health check or startup
+    private long connectionTimeoutMs = 2_000;
+
+    // How long a user's reads stay on the primary after they changed something
+    private long readYourWritesMs = 10_000;
+
+    // POST endpoints that only read (Ant-style patterns); calling them does not pin the caller
+    private List<String> readOnlyPaths = new ArrayList<>(List.of("/api/v1/calculator/**"));
+}
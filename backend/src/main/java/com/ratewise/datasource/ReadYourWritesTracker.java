@@ -0,0 +1,35 @@
+package com.ratewise.datasource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers who wrote recently, so their next reads go to the primary and they see their own
+ * change even if the replicas have not replayed it yet. Keyed by principal name.
+ */
+public class ReadYourWritesTracker {
+
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final long windowMillis;
+    private final Map<String, Long> pinnedUntil = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void markWrite(String principal) {
+        if (principal == null || windowMillis <= 0) return;
+        long now = System.currentTimeMillis();
+        pinnedUntil.put(principal, now + windowMillis);
+        if (pinnedUntil.size() > SWEEP_THRESHOLD) {
+            pinnedUntil.values().removeIf(until -> until < now);
+        }
+    }
+
+    public boolean isPinned(String principal) {
+        if (principal == null) return false;
+        Long until = pinnedUntil.get(principal);
+        return until != null && until >= System.currentTimeMillis();
+    }
+}
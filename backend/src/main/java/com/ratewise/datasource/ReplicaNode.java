@@ -0,0 +1,42 @@
+package com.ratewise.datasource;
+
+import javax.sql.DataSource;
+
+/**
+ * One read replica and its last health check result. Starts unhealthy until checked.
+ */
+public class ReplicaNode {
+
+    private final String name;
+    private final DataSource dataSource;
+
+    private volatile boolean healthy;
+    private volatile long lagMillis = -1;
+
+    public ReplicaNode(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    // -1 when the last check failed
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    void update(boolean healthy, long lagMillis) {
+        this.healthy = healthy;
+        this.lagMillis = lagMillis;
+    }
+}
@@ -0,0 +1,160 @@
+package com.ratewise.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to the primary.
+ *
+ * The key is looked up when a physical connection is taken, so this must sit behind a
+ * LazyConnectionDataSourceProxy: the transaction's read-only flag is only known by then.
+ * (The JDBC observation asks a new connection for its metadata while the transaction is still
+ * beginning; {@link ReadOnlyTransactionListener} covers that window.)
+ * A read-only transaction still goes to the primary when:
+ * - no replica is healthy and within the lag limit, or
+ * - the current user wrote something within the read-your-writes window.
+ * Replicas are used round-robin.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    // 0 when in sync (or not a standby at all), else the age of the last replayed transaction
+    static final String LAG_SQL = """
+        SELECT CASE
+            WHEN NOT pg_is_in_recovery() THEN 0
+            WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+            ELSE COALESCE(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) * 1000, 0)
+        END::bigint
+    """;
+
+    private final List<ReplicaNode> replicas;
+    private final ReadYourWritesTracker readYourWrites;
+    private final long maxLagMillis;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong replicaReads = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<ReplicaNode> replicas,
+                                    ReadYourWritesTracker readYourWrites, long maxLagMillis) {
+        this.replicas = List.copyOf(replicas);
+        this.readYourWrites = readYourWrites;
+        this.maxLagMillis = maxLagMillis;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach(replica -> targets.put(replica.getName(), replica.getDataSource()));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target(route(true)).getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target(route(true)).getConnection(username, password);
+    }
+
+    // Also called by unwrap()/isWrapperFor(), which the JDBC observation does per statement: not counted
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return route(false);
+    }
+
+    private Object route(boolean count) {
+        if (!isReadOnly()) {
+            return PRIMARY;
+        }
+        if (readYourWrites.isPinned(currentPrincipal())) {
+            if (count) primaryReads.incrementAndGet();
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            ReplicaNode replica = replicas.get((start + i) % size);
+            if (replica.isHealthy()) {
+                if (count) replicaReads.incrementAndGet();
+                return replica.getName();
+            }
+        }
+        if (count) primaryReads.incrementAndGet();
+        return PRIMARY;
+    }
+
+    private static boolean isReadOnly() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadOnlyTransactionListener.isBeginningReadOnly();
+    }
+
+    private DataSource target(Object key) {
+        return getResolvedDataSources().get(key);
+    }
+
+    private static String currentPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    /**
+     * Probe every replica's replay lag; run on a schedule.
+     */
+    public void checkReplicas() {
+        for (ReplicaNode replica : replicas) {
+            Long lag;
+            try {
+                lag = new JdbcTemplate(replica.getDataSource()).queryForObject(LAG_SQL, Long.class);
+            } catch (Exception e) {
+                lag = null;
+                log.debug("Replica {} health check failed: {}", replica.getName(), e.getMessage());
+            }
+            updateHealth(replica, lag);
+        }
+    }
+
+    // null lag = the check failed
+    void updateHealth(ReplicaNode replica, Long lagMillis) {
+        boolean healthy = lagMillis != null && lagMillis <= maxLagMillis;
+        if (healthy != replica.isHealthy()) {
+            log.info("Replica {} is now {} (lag {} ms)", replica.getName(), healthy ? "in use" : "skipped", lagMillis);
+        }
+        replica.update(healthy, lagMillis == null ? -1 : lagMillis);
+    }
+
+    public List<ReplicaNode> getReplicas() {
+        return replicas;
+    }
+
+    // Read-only transactions served by the primary (fallback or read-your-writes)
+    public long getPrimaryReadCount() {
+        return primaryReads.get();
+    }
+
+    public long getReplicaReadCount() {
+        return replicaReads.get();
+    }
+}
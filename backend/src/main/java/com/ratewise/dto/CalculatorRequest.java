@@ -7,6 +7,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * - effectiveDate: optional ISO date string (yyyy-MM-dd or full ISO). When provided the calculator
  *   evaluates tariffs that are applicable on that exact date. If multiple tariffs apply,
  *   the service should pick the lowest tariff rate.
+ * - asOf: optional ISO-8601 timestamp with offset. When provided the tariff rates are the ones the
+ *   database held at that time, i.e. the quote a calculation then would have returned.
  *
  * Field mapping:
  * - frontend sends "goods_value" -> goodsValue
@@ -22,5 +24,14 @@ public record CalculatorRequest(
     Integer quantity,
     Double freight,
     Double insurance,
-    @JsonProperty("effectiveDate") String effectiveDate
-) {}
\ No newline at end of file
+    @JsonProperty("effectiveDate") String effectiveDate,
+    @JsonProperty("asOf") String asOf
+) {
+
+    public CalculatorRequest(String exporter, String importer, String hsCode, String productDescription,
+                             String agreement, Double goodsValue, Integer quantity, Double freight,
+                             Double insurance, String effectiveDate) {
+        this(exporter, importer, hsCode, productDescription, agreement, goodsValue, quantity, freight,
+             insurance, effectiveDate, null);
+    }
+}
\ No newline at end of file
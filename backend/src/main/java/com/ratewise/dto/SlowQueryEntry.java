@@ -0,0 +1,20 @@
+package com.ratewise.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One slow statement captured by the SQL monitor, as returned by GET /api/v1/admin/slow-queries.
+ * - sql: normalized text, literals replaced by "?" (parameter values are never kept)
+ * - plan: EXPLAIN (ANALYZE, BUFFERS) output lines, empty when not captured
+ * - planStatus: captured, skipped (not a plain SELECT or explain disabled), cooldown,
+ *   dropped (explain worker busy), or failed: reason
+ */
+public record SlowQueryEntry(
+    String fingerprint,
+    String sql,
+    long elapsedMs,
+    Instant capturedAt,
+    String planStatus,
+    List<String> plan
+) {}
@@ -0,0 +1,41 @@
+package com.ratewise.events;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The broker stand-in until a real one is configured: keeps the last
+ * tariff-outbox.in-memory-capacity changes, for tests and to inspect what would have been sent.
+ */
+@Component
+public class InMemoryTariffChangeBroker implements TariffChangeBroker {
+
+    private final int capacity;
+    private final Deque<TariffChange> recent = new ArrayDeque<>();
+
+    public InMemoryTariffChangeBroker(TariffOutboxProperties properties) {
+        this.capacity = properties.getInMemoryCapacity();
+    }
+
+    @Override
+    public synchronized void publish(List<TariffChange> changes) {
+        for (TariffChange change : changes) {
+            recent.addLast(change);
+            while (recent.size() > capacity) {
+                recent.removeFirst();
+            }
+        }
+    }
+
+    /** Oldest first. */
+    public synchronized List<TariffChange> recent() {
+        return List.copyOf(recent);
+    }
+
+    public synchronized void clear() {
+        recent.clear();
+    }
+}
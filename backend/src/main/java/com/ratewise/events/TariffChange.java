@@ -0,0 +1,23 @@
+package com.ratewise.events;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One tariff_rates change made through TariffAdminService, as recorded in tariff_outbox.
+ *
+ * op is created, updated or deleted; before is null for a create and after for a delete. The
+ * change moved data_version from versionBefore to versionAfter with no other write in between.
+ */
+public record TariffChange(
+        long id, int tariffId, String op,
+        long versionBefore, long versionAfter,
+        Lane before, Lane after,
+        String actor, LocalDateTime createdAt
+) {
+
+    /** A tariff row by codes: its lane, HS code, agreement, rate and validity (validTo null = open). */
+    public record Lane(String exporterCode, String importerCode, String hsCode, String agreementCode,
+                       BigDecimal ratePercent, LocalDate validFrom, LocalDate validTo) {}
+}
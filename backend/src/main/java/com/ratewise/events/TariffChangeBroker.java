@@ -0,0 +1,18 @@
+package com.ratewise.events;
+
+import java.util.List;
+
+/**
+ * Where {@link TariffOutboxRelay} hands tariff changes off to, e.g. a message broker for other
+ * services. Every bean of this type gets every change.
+ *
+ * Delivery is at least once: a batch is retried when any broker throws, so a broker can see the
+ * same change (same {@link TariffChange#id()}) more than once and should publish idempotently.
+ */
+public interface TariffChangeBroker {
+
+    /**
+     * Publish the changes, in outbox order. Throw to have the whole batch retried.
+     */
+    void publish(List<TariffChange> changes);
+}
@@ -0,0 +1,107 @@
+package com.ratewise.events;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * LISTENs on the tariff_changes channel (filled by the trg_tariff_change_notify trigger, see
+ * db/schema.sql) and hands each payload to {@link TariffEventBroadcaster}. Every write is
+ * covered, from TariffAdminService on any instance or straight SQL, and only once committed.
+ *
+ * Uses one dedicated connection to the primary (spring.datasource.*), outside the pool since
+ * it is held for good, and NOTIFY is not delivered on read replicas. While it is down changes
+ * are missed, so after a reconnect subscribers are sent a resync.
+ */
+@Slf4j
+@Component
+public class TariffChangeListener {
+
+    static final String CHANNEL = "tariff_changes";
+    private static final int POLL_MS = 1_000;
+
+    private final TariffEventProperties properties;
+    private final DataSourceProperties dataSourceProperties;
+    private final TariffEventBroadcaster broadcaster;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread thread;
+
+    public TariffChangeListener(TariffEventProperties properties, DataSourceProperties dataSourceProperties,
+                                TariffEventBroadcaster broadcaster) {
+        this.properties = properties;
+        this.dataSourceProperties = dataSourceProperties;
+        this.broadcaster = broadcaster;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!properties.isEnabled() || running) return;
+        running = true;
+        thread = new Thread(this::run, "tariff-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        boolean first = true;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                connected = true;
+                if (!first) {
+                    log.info("Tariff change listener reconnected; asking dashboards to resync");
+                    broadcaster.resync();
+                }
+                first = false;
+
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_MS);
+                    if (notifications == null) continue;
+                    for (PGNotification notification : notifications) {
+                        broadcaster.publish(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) return;
+                log.warn("Tariff change listener lost its connection, retrying in {} ms: {}",
+                        properties.getReconnectMs(), e.getMessage());
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(properties.getReconnectMs());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /** Whether the LISTEN connection is up, i.e. changes are being relayed. */
+    public boolean isConnected() {
+        return connected;
+    }
+}
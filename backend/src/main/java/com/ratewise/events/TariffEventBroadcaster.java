@@ -0,0 +1,246 @@
+package com.ratewise.events;
+
+import com.ratewise.security.exception.EventStreamBusyException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relays tariff change events (see TariffChangeListener) to the dashboards subscribed to
+ * GET /api/v1/tariffs/events as server-sent events:
+ * - event "tariff", data {op: created|updated|deleted, id, lane codes, rate, validity}
+ * - event "resync", when the client's state can no longer be patched and it should reload
+ *
+ * Event ids are "epoch-sequence" for this instance. The last tariff-events.replay-events are
+ * kept, so an EventSource reconnecting with Last-Event-ID gets what it missed; an id this
+ * instance cannot continue from (too old, or issued by another instance or before a restart)
+ * gets a resync instead.
+ *
+ * Each subscriber is written to on its own virtual thread from a bounded queue, so a slow
+ * client cannot hold up the others; one that falls tariff-events.max-pending-per-subscriber
+ * behind is closed and catches up through its reconnect.
+ */
+@Slf4j
+@Component
+public class TariffEventBroadcaster {
+
+    static final String TARIFF_EVENT = "tariff";
+    static final String RESYNC_EVENT = "resync";
+    static final String RESYNC_DATA = "{\"op\":\"resync\"}";
+
+    record Event(long sequence, String name, String data) {}
+
+    private final TariffEventProperties properties;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("tariff-events-", 0).factory());
+
+    // Guarded by itself; the sequence is assigned under the same lock so the buffer stays in order
+    private final Deque<Event> recent = new ArrayDeque<>();
+    private long sequence;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong droppedSubscriberCount = new AtomicLong();
+
+    public TariffEventBroadcaster(TariffEventProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * A new subscription, first sent whatever it missed since {@code lastEventId} (the
+     * Last-Event-ID header of a reconnecting EventSource, or null).
+     *
+     * @throws EventStreamBusyException when tariff-events.max-subscribers are connected
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= properties.getMaxSubscribers()) {
+            throw new EventStreamBusyException("Too many live dashboards connected, please retry shortly");
+        }
+        SseEmitter emitter = new SseEmitter(properties.getEmitterTimeoutMs());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // commits the response, so the client sees the stream open before the first change
+        subscriber.opened();
+        synchronized (recent) {
+            // under the lock, so nothing published between the replay and joining is lost or doubled
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                List<Event> missed = since(lastEventId);
+                if (missed == null) {
+                    subscriber.offer(new Event(sequence, RESYNC_EVENT, RESYNC_DATA));
+                } else {
+                    missed.forEach(subscriber::offer);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    /**
+     * Send one tariff_changes payload to every subscriber.
+     */
+    public void publish(String payload) {
+        String name = RESYNC_DATA.equals(payload) ? RESYNC_EVENT : TARIFF_EVENT;
+        synchronized (recent) {
+            Event event = new Event(++sequence, name, payload);
+            recent.addLast(event);
+            while (recent.size() > properties.getReplayEvents()) {
+                recent.removeFirst();
+            }
+            subscribers.forEach(subscriber -> subscriber.offer(event));
+        }
+        publishedCount.incrementAndGet();
+    }
+
+    /**
+     * Tell every subscriber to reload, e.g. after changes may have been missed while the
+     * listener was disconnected.
+     */
+    public void resync() {
+        publish(RESYNC_DATA);
+    }
+
+    /**
+     * The events after {@code lastEventId}, or null when it cannot be continued from here.
+     */
+    List<Event> since(String lastEventId) {
+        synchronized (recent) {
+            int dash = lastEventId.lastIndexOf('-');
+            if (dash < 0 || !lastEventId.substring(0, dash).equals(epoch)) return null;
+            long last;
+            try {
+                last = Long.parseLong(lastEventId.substring(dash + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (last > sequence) return null;
+            long oldest = recent.isEmpty() ? sequence + 1 : recent.peekFirst().sequence();
+            if (last < oldest - 1) return null; // fell out of the buffer
+            List<Event> missed = new ArrayList<>();
+            for (Event event : recent) {
+                if (event.sequence() > last) missed.add(event);
+            }
+            return missed;
+        }
+    }
+
+    String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    // Keeps idle connections open through proxies, and finds clients that went away
+    @Scheduled(fixedDelayString = "${tariff-events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach(Subscriber::heartbeat);
+    }
+
+    // On ContextClosedEvent, before the graceful web server shutdown would wait on the open streams
+    @EventListener(ContextClosedEvent.class)
+    public void closeSubscriptions() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closeSubscriptions();
+        senders.shutdownNow();
+    }
+
+    // Metrics
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /** Subscribers closed because they fell too far behind. */
+    public long getDroppedSubscriberCount() {
+        return droppedSubscriberCount.get();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Deque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        private boolean sending;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Event event) {
+            enqueue(SseEmitter.event().id(eventId(event.sequence())).name(event.name()).data(event.data()));
+        }
+
+        void opened() {
+            enqueue(SseEmitter.event().comment("connected"));
+        }
+
+        void heartbeat() {
+            enqueue(SseEmitter.event().comment("heartbeat"));
+        }
+
+        private void enqueue(SseEmitter.SseEventBuilder event) {
+            synchronized (this) {
+                if (pending.size() >= properties.getMaxPendingPerSubscriber()) {
+                    pending.clear();
+                    droppedSubscriberCount.incrementAndGet();
+                    subscribers.remove(this);
+                    emitter.complete();
+                    return;
+                }
+                pending.addLast(event);
+                if (sending) return;
+                sending = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder next;
+                synchronized (this) {
+                    next = pending.pollFirst();
+                    if (next == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(next);
+                } catch (IOException | IllegalStateException e) {
+                    // client gone (the container completes the emitter) or emitter already completed
+                    log.debug("Dropping tariff event subscriber: {}", e.getMessage());
+                    synchronized (this) {
+                        pending.clear();
+                        sending = false;
+                    }
+                    subscribers.remove(this);
+                    return;
+                }
+            }
+        }
+    }
+}
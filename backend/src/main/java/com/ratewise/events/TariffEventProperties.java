@@ -0,0 +1,36 @@
+package com.ratewise.events;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * tariff-events.* settings.
+ *
+ * Each instance LISTENs on the tariff_changes channel with its own connection to the primary
+ * (outside the pool), re-opened {@code reconnectMs} after it drops. Dashboards stay subscribed
+ * for {@code emitterTimeoutMs} before their EventSource reconnects; the last {@code replayEvents}
+ * events are kept so a reconnect with Last-Event-ID catches up instead of reloading.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "tariff-events")
+public class TariffEventProperties {
+
+    private boolean enabled = true;
+
+    private long reconnectMs = 5_000;
+
+    private long emitterTimeoutMs = 30 * 60_000;
+
+    private long heartbeatMs = 15_000;
+
+    private int maxSubscribers = 500;
+
+    private int replayEvents = 1_000;
+
+    /** Events queued for one subscriber before it is dropped as too slow (it then reconnects). */
+    private int maxPendingPerSubscriber = 1_000;
+}
@@ -0,0 +1,162 @@
+package com.ratewise.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tariff_outbox table (see db/schema.sql): TariffAdminService records each change in it as
+ * part of the change's own transaction, {@link TariffOutboxRelay} publishes them from it, and
+ * caches read it to find out which lanes a data_version change touched.
+ */
+@Component
+public class TariffOutbox {
+
+    private static final String LANE_SQL = """
+            SELECT json_build_object(
+                       'exporter_code',  (SELECT country_code FROM countries WHERE id = tr.exporter_id),
+                       'importer_code',  (SELECT country_code FROM countries WHERE id = tr.importer_id),
+                       'hs_code',        (SELECT hs_code FROM hs_codes WHERE id = tr.hs_code_id),
+                       'agreement_code', (SELECT agreement_code FROM agreements WHERE id = tr.agreement_id),
+                       'rate_percent',   tr.rate_percent,
+                       'valid_from',     tr.valid_from,
+                       'valid_to',       tr.valid_to)::text
+            FROM tariff_rates tr
+            WHERE tr.id = ?
+            """;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO tariff_outbox (tariff_id, op, version_before, version_after, before_row, after_row, actor)
+            VALUES (?, ?, ?, ?, CAST(? AS jsonb), CAST(? AS jsonb), ?)
+            """;
+
+    private static final String COLUMNS =
+            "id, tariff_id, op, version_before, version_after, before_row::text, after_row::text, actor, created_at";
+
+    private static final String BETWEEN_SQL = "SELECT " + COLUMNS + """
+             FROM tariff_outbox
+            WHERE version_before >= ? AND version_after <= ?
+            ORDER BY version_before, id
+            """;
+
+    // SKIP LOCKED: a row another instance's relay is publishing is left to it
+    private static final String CLAIM_SQL = "SELECT " + COLUMNS + """
+             FROM tariff_outbox
+            WHERE published_at IS NULL
+            ORDER BY id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final RowMapper<TariffChange> changeMapper;
+
+    public TariffOutbox(JdbcTemplate jdbc, ObjectMapper objectMapper) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.changeMapper = (rs, rowNum) -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            return new TariffChange(
+                    rs.getLong("id"),
+                    rs.getInt("tariff_id"),
+                    rs.getString("op"),
+                    rs.getLong("version_before"),
+                    rs.getLong("version_after"),
+                    lane(rs.getString("before_row")),
+                    lane(rs.getString("after_row")),
+                    rs.getString("actor"),
+                    createdAt == null ? null : createdAt.toLocalDateTime());
+        };
+    }
+
+    /**
+     * The tariff row as outbox JSON, or null when there is none; read inside the change's
+     * transaction, before and after it.
+     */
+    public String laneJson(int tariffId) {
+        List<String> rows = jdbc.queryForList(LANE_SQL, String.class, tariffId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Record a change. Must run in the transaction that made it.
+     */
+    public void record(int tariffId, String op, long versionBefore, long versionAfter,
+                       String beforeJson, String afterJson, String actor) {
+        jdbc.update(INSERT_SQL, tariffId, op, versionBefore, versionAfter, beforeJson, afterJson, actor);
+    }
+
+    /**
+     * The changes that took data_version from {@code fromVersion} to {@code toVersion}, oldest
+     * first, or null when they do not account for all of it: some write in between was not made
+     * through TariffAdminService (straight SQL, tax rules or reference data), or its rows have
+     * been purged.
+     */
+    public List<TariffChange> changesBetween(long fromVersion, long toVersion) {
+        List<TariffChange> changes = jdbc.query(BETWEEN_SQL, changeMapper, fromVersion, toVersion);
+        long version = fromVersion;
+        for (TariffChange change : changes) {
+            if (change.versionBefore() != version) return null;
+            version = change.versionAfter();
+        }
+        return version == toVersion ? changes : null;
+    }
+
+    /**
+     * Lock and return up to {@code limit} unpublished changes, oldest first. The locks are held
+     * until the calling transaction ends, which must also {@link #markPublished} them.
+     */
+    public List<TariffChange> claimUnpublished(int limit) {
+        return jdbc.query(CLAIM_SQL, changeMapper, limit);
+    }
+
+    public void markPublished(List<TariffChange> changes) {
+        if (changes.isEmpty()) return;
+        List<Object[]> ids = new ArrayList<>(changes.size());
+        changes.forEach(change -> ids.add(new Object[]{change.id()}));
+        jdbc.batchUpdate("UPDATE tariff_outbox SET published_at = now() WHERE id = ?", ids);
+    }
+
+    /**
+     * Delete published changes older than {@code retentionDays}.
+     *
+     * @return how many were deleted
+     */
+    public int purgePublished(int retentionDays) {
+        return jdbc.update("""
+                DELETE FROM tariff_outbox
+                WHERE published_at IS NOT NULL
+                  AND created_at < now() - make_interval(days => ?)
+                """, retentionDays);
+    }
+
+    private TariffChange.Lane lane(String json) {
+        if (json == null) return null;
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            return new TariffChange.Lane(
+                    text(node, "exporter_code"),
+                    text(node, "importer_code"),
+                    text(node, "hs_code"),
+                    text(node, "agreement_code"),
+                    node.hasNonNull("rate_percent") ? node.get("rate_percent").decimalValue() : null,
+                    node.hasNonNull("valid_from") ? LocalDate.parse(node.get("valid_from").asText()) : null,
+                    node.hasNonNull("valid_to") ? LocalDate.parse(node.get("valid_to").asText()) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable tariff_outbox row: " + json, e);
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+}
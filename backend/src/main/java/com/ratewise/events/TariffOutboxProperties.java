@@ -0,0 +1,31 @@
+package com.ratewise.events;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * tariff-outbox.* settings.
+ *
+ * Every {@code relayMs} up to {@code batchSize} unpublished outbox rows are handed to the brokers,
+ * batch after batch until none are left. Published rows are kept {@code retentionDays}, which
+ * is as far back as caches can invalidate lane by lane.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "tariff-outbox")
+public class TariffOutboxProperties {
+
+    private boolean relayEnabled = true;
+
+    private long relayMs = 1_000;
+
+    private int batchSize = 100;
+
+    private int retentionDays = 30;
+
+    /** Changes kept by {@link InMemoryTariffChangeBroker}. */
+    private int inMemoryCapacity = 1_000;
+}
@@ -0,0 +1,99 @@
+package com.ratewise.events;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the tariff_outbox: every tariff-outbox.relay-ms the unpublished changes are claimed
+ * in batches, handed to every {@link TariffChangeBroker} and then as {@link TariffChange}
+ * application events to in-process listeners, and marked published in the same transaction.
+ *
+ * A change is published only once its write has committed, and at least once: when a broker or
+ * listener throws, the batch rolls back and is retried on the next run. Instances share the work,
+ * each claiming rows the others have not locked, so order is only kept within one batch.
+ */
+@Slf4j
+@Component
+public class TariffOutboxRelay {
+
+    private final TariffOutboxProperties properties;
+    private final TariffOutbox outbox;
+    private final List<TariffChangeBroker> brokers;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate transaction;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    public TariffOutboxRelay(TariffOutboxProperties properties, TariffOutbox outbox, List<TariffChangeBroker> brokers,
+                             ApplicationEventPublisher events, PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.outbox = outbox;
+        this.brokers = brokers;
+        this.events = events;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${tariff-outbox.relay-ms:1000}")
+    public void relay() {
+        if (!properties.isRelayEnabled()) return;
+        try {
+            // a full batch means there may be more
+            while (relayBatch() == properties.getBatchSize()) {
+                // next batch
+            }
+        } catch (RuntimeException e) {
+            failureCount.incrementAndGet();
+            log.warn("Tariff outbox relay failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publish one batch.
+     *
+     * @return how many changes were published
+     */
+    int relayBatch() {
+        Integer published = transaction.execute(status -> {
+            List<TariffChange> changes = outbox.claimUnpublished(properties.getBatchSize());
+            if (changes.isEmpty()) return 0;
+            brokers.forEach(broker -> broker.publish(changes));
+            changes.forEach(events::publishEvent);
+            outbox.markPublished(changes);
+            return changes.size();
+        });
+        int count = published == null ? 0 : published;
+        publishedCount.addAndGet(count);
+        return count;
+    }
+
+    @Scheduled(cron = "${tariff-outbox.purge-cron:0 30 3 * * *}")
+    public void purge() {
+        try {
+            int purged = outbox.purgePublished(properties.getRetentionDays());
+            if (purged > 0) {
+                log.info("Purged {} published tariff outbox rows", purged);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Tariff outbox purge failed: {}", e.getMessage());
+        }
+    }
+
+    // Metrics
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /** Relay runs that failed and left their batch for the next run. */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ratewise.export;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs {@code StreamingResponseBody} (and any other Callable-style MVC async result) on the
+ * export pool instead of Boot's shared applicationTaskExecutor, whose queue is unbounded, and
+ * replaces the container's 30 s async timeout with export-streams.timeout-ms so large listings
+ * are not cut off halfway. Async results that carry their own timeout, such as the async
+ * calculator's, keep it.
+ */
+@Configuration
+public class ExportStreamConfig {
+
+    @Bean
+    public WebMvcConfigurer exportAsyncSupport(ExportStreams exportStreams, ExportStreamProperties properties) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(exportStreams.taskExecutor());
+                configurer.setDefaultTimeout(properties.getTimeoutMs());
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package com.ratewise.export;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * export-streams.* settings, for the NDJSON exports (/tariffs/list/stream, /admin/users/stream).
+ *
+ * Each running export holds a pooled database connection until its client has read the last
+ * row, so at most {@code maxConcurrent} run at once, well below
+ * spring.datasource.hikari.maximum-pool-size; more are answered 503. An export still running
+ * after {@code timeoutMs} is cut off.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "export-streams")
+public class ExportStreamProperties {
+
+    private int maxConcurrent = 4;
+
+    private long timeoutMs = 10 * 60_000;
+}
@@ -0,0 +1,148 @@
+package com.ratewise.export;
+
+import com.ratewise.security.exception.ExportBusyException;
+import io.micrometer.context.ContextSnapshotFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission and threads for the NDJSON exports. A {@link StreamingResponseBody} holds its
+ * database connection (a read-only transaction over a server-side cursor) for as long as the
+ * client takes to read, so a slow client pins a connection.
+ *
+ * {@link #open} takes one of export-streams.max-concurrent permits, or fails straight away with
+ * {@link ExportBusyException} (HTTP 503), before anything touches the database. The bodies run on
+ * this class's executor, one thread per permit, which ExportStreamConfig installs as Spring MVC's
+ * async executor together with export-streams.timeout-ms. As with the other pools, tasks carry
+ * the caller's context so the export stays in the request's trace.
+ */
+@Component
+public class ExportStreams {
+
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final ThreadPoolExecutor executor;
+    private final TaskExecutorAdapter taskExecutor;
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public ExportStreams(ExportStreamProperties properties) {
+        if (properties.getMaxConcurrent() < 1) {
+            throw new IllegalStateException("export-streams.max-concurrent must be positive");
+        }
+        this.maxConcurrent = properties.getMaxConcurrent();
+        this.permits = new Semaphore(maxConcurrent);
+
+        // The permits bound the queue: a task only waits there while a finished export's thread winds down
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        this.taskExecutor = new TaskExecutorAdapter(executor);
+        this.taskExecutor.setTaskDecorator(runnable -> CONTEXT_SNAPSHOTS.captureAll().wrap(runnable));
+    }
+
+    /**
+     * Admit an export from a controller: the returned body runs {@code body} and then frees the
+     * permit. If the request completes without it running (timed out while queued, client gone),
+     * the permit is freed then instead.
+     *
+     * @throws ExportBusyException when export-streams.max-concurrent exports are running
+     */
+    public StreamingResponseBody open(StreamingResponseBody body) {
+        Permit permit = acquire();
+        // Outside a request (a test calling the controller directly) only the body frees the permit
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes request) {
+            WebAsyncUtils.getAsyncManager(request.getRequest()).registerCallableInterceptor(Permit.class.getName(), permit);
+        }
+        return permit.wrap(body);
+    }
+
+    Permit acquire() {
+        if (!permits.tryAcquire()) {
+            rejectedCount.incrementAndGet();
+            throw new ExportBusyException("Too many exports running, please retry shortly");
+        }
+        return new Permit();
+    }
+
+    /** Spring MVC's async executor, see ExportStreamConfig. */
+    AsyncTaskExecutor taskExecutor() {
+        return taskExecutor;
+    }
+
+    /** One admitted export; frees its permit exactly once, when the body ends or the request completes unstarted. */
+    final class Permit implements CallableProcessingInterceptor {
+
+        private static final int ADMITTED = 0;
+        private static final int RUNNING = 1;
+        private static final int RELEASED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(ADMITTED);
+
+        StreamingResponseBody wrap(StreamingResponseBody body) {
+            return out -> {
+                if (!state.compareAndSet(ADMITTED, RUNNING)) {
+                    return; // the request already completed, nobody is reading
+                }
+                try {
+                    body.writeTo(out);
+                } finally {
+                    state.set(RELEASED);
+                    permits.release();
+                }
+            };
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+            if (state.compareAndSet(ADMITTED, RELEASED)) {
+                permits.release();
+            }
+        }
+    }
+
+    // Metrics
+
+    public int getActiveCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,250 @@
+package com.ratewise.metrics;
+
+import com.ratewise.events.TariffChangeListener;
+import com.ratewise.events.TariffEventBroadcaster;
+import com.ratewise.events.TariffOutboxRelay;
+import com.ratewise.export.ExportStreams;
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.services.AsyncCalculatorService;
+import com.ratewise.services.CalculationLog;
+import com.ratewise.services.LandedCostCache;
+import com.ratewise.services.RateComponentCache;
+import com.ratewise.services.ReferenceDataService;
+import com.ratewise.security.ratelimit.InMemoryRateLimiter;
+import com.ratewise.security.util.PasswordHashVerifier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Application metrics that are not recorded inline: response sizes and gauges over
+ * the auth hashing pool, the rate limiter, the API key cache and the calculator's caches.
+ * Gauges read the existing counters at scrape time, so nothing extra happens on the request path.
+ * Exposed with everything else on /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public FilterRegistrationBean<ResponseSizeMetricsFilter> responseSizeMetricsFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<ResponseSizeMetricsFilter> registration =
+                new FilterRegistrationBean<>(new ResponseSizeMetricsFilter(meterRegistry));
+        // Outermost, so 429/401 responses from the security chain are measured too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    @Bean
+    public MeterBinder authHashPoolMetrics(PasswordHashVerifier verifier) {
+        return registry -> {
+            Gauge.builder("ratewise.auth.hash.queue.size", verifier, PasswordHashVerifier::getQueueSize)
+                    .description("Logins waiting for a hashing thread")
+                    .register(registry);
+            Gauge.builder("ratewise.auth.hash.queue.capacity", verifier, PasswordHashVerifier::getQueueCapacity)
+                    .register(registry);
+            Gauge.builder("ratewise.auth.hash.active", verifier, PasswordHashVerifier::getActiveCount)
+                    .description("Hashing threads currently busy")
+                    .register(registry);
+            Gauge.builder("ratewise.auth.hash.pool.size", verifier, PasswordHashVerifier::getPoolSize)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.auth.hash.completed", verifier, PasswordHashVerifier::getCompletedCount)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.auth.hash.rejected", verifier, PasswordHashVerifier::getRejectedCount)
+                    .description("Logins turned away with 503 because the pool was full")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.auth.hash.timed_out", verifier, PasswordHashVerifier::getTimedOutCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder rateLimiterMetrics(ObjectProvider<InMemoryRateLimiter> rateLimiter) {
+        return registry -> rateLimiter.ifAvailable(limiter -> {
+            FunctionCounter.builder("ratewise.ratelimit.requests", limiter, InMemoryRateLimiter::getAllowedCount)
+                    .tag("result", "allowed")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.ratelimit.requests", limiter, InMemoryRateLimiter::getRejectedCount)
+                    .tag("result", "rejected")
+                    .register(registry);
+            Gauge.builder("ratewise.ratelimit.clients", limiter, InMemoryRateLimiter::getTrackedClients)
+                    .description("Clients with a bucket in memory")
+                    .register(registry);
+        });
+    }
+
+    // Hit rate: rate(ratewise_calculator_cache_requests_total{result="hit"}) over all results
+    @Bean
+    public MeterBinder landedCostCacheMetrics(LandedCostCache landedCostCache) {
+        return registry -> {
+            Gauge.builder("ratewise.calculator.cache.size", landedCostCache, LandedCostCache::size)
+                    .register(registry);
+            Gauge.builder("ratewise.calculator.cache.weight", landedCostCache, LandedCostCache::weight)
+                    .description("Estimated heap held by cached landed-cost results")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.cache.requests", landedCostCache, LandedCostCache::getHitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.cache.requests", landedCostCache, LandedCostCache::getMissCount)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.cache.removals", landedCostCache, LandedCostCache::getEvictionCount)
+                    .tag("cause", "size")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.cache.removals", landedCostCache, LandedCostCache::getInvalidationCount)
+                    .tag("cause", "invalidated")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder rateComponentCacheMetrics(RateComponentCache rateComponentCache) {
+        return registry -> {
+            Gauge.builder("ratewise.calculator.rate_components.intervals", rateComponentCache, RateComponentCache::weight)
+                    .description("Lane/HS/agreement validity intervals remembered for database lookups")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.rate_components.requests", rateComponentCache, RateComponentCache::getHitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.rate_components.requests", rateComponentCache, RateComponentCache::getMissCount)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.rate_components.loads", rateComponentCache, RateComponentCache::getLoadCount)
+                    .tag("result", "loaded")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.rate_components.loads", rateComponentCache, RateComponentCache::getCoalescedCount)
+                    .tag("result", "coalesced")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.rate_components.invalidations", rateComponentCache, RateComponentCache::getLaneInvalidationCount)
+                    .tag("scope", "lanes")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.rate_components.invalidations", rateComponentCache, RateComponentCache::getFullInvalidationCount)
+                    .tag("scope", "all")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder asyncCalculatorPoolMetrics(AsyncCalculatorService calculator) {
+        return registry -> {
+            Gauge.builder("ratewise.calculator.async.queue.size", calculator, AsyncCalculatorService::getQueueSize)
+                    .description("Async calculations waiting for a calculator thread")
+                    .register(registry);
+            Gauge.builder("ratewise.calculator.async.active", calculator, AsyncCalculatorService::getActiveCount)
+                    .register(registry);
+            Gauge.builder("ratewise.calculator.async.pool.size", calculator, AsyncCalculatorService::getPoolSize)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.async.completed", calculator, AsyncCalculatorService::getCompletedCount)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.async.inline", calculator, AsyncCalculatorService::getInlineCount)
+                    .description("Async calculations answered on the request thread from the tariff snapshot")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.async.rejected", calculator, AsyncCalculatorService::getRejectedCount)
+                    .description("Async calculations turned away with 503 because the pool was full")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculator.async.timed_out", calculator, AsyncCalculatorService::getTimedOutCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder exportStreamMetrics(ExportStreams exportStreams) {
+        return registry -> {
+            Gauge.builder("ratewise.export.active", exportStreams, ExportStreams::getActiveCount)
+                    .description("NDJSON exports admitted and not yet finished, each holding a database connection")
+                    .register(registry);
+            Gauge.builder("ratewise.export.max_concurrent", exportStreams, ExportStreams::getMaxConcurrent)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.export.rejected", exportStreams, ExportStreams::getRejectedCount)
+                    .description("Exports turned away with 503 because max-concurrent were running")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder tariffEventMetrics(TariffEventBroadcaster broadcaster, TariffChangeListener listener) {
+        return registry -> {
+            Gauge.builder("ratewise.tariff_events.subscribers", broadcaster, TariffEventBroadcaster::getSubscriberCount)
+                    .description("Dashboards connected to the tariff change stream")
+                    .register(registry);
+            Gauge.builder("ratewise.tariff_events.listener.connected", listener, l -> l.isConnected() ? 1 : 0)
+                    .description("1 while the LISTEN connection for tariff changes is up")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.tariff_events.published", broadcaster, TariffEventBroadcaster::getPublishedCount)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.tariff_events.dropped_subscribers", broadcaster, TariffEventBroadcaster::getDroppedSubscriberCount)
+                    .description("Subscribers closed for falling too far behind")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder tariffOutboxMetrics(TariffOutboxRelay relay) {
+        return registry -> {
+            FunctionCounter.builder("ratewise.tariff_outbox.published", relay, TariffOutboxRelay::getPublishedCount)
+                    .description("Tariff changes handed to the brokers")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.tariff_outbox.relay.failures", relay, TariffOutboxRelay::getFailureCount)
+                    .description("Relay runs that failed and will be retried")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder calculationLogMetrics(CalculationLog calculationLog) {
+        return registry -> {
+            Gauge.builder("ratewise.calculation_log.pending", calculationLog, CalculationLog::getPendingCount)
+                    .description("Calculations queued for calculation_log")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculation_log.written", calculationLog, CalculationLog::getWrittenCount)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculation_log.dropped", calculationLog, CalculationLog::getDroppedCount)
+                    .description("Calculations not logged because the queue was full")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.calculation_log.failed", calculationLog, CalculationLog::getFailedCount)
+                    .description("Calculations that could not be serialized or inserted")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder referenceDataMetrics(ReferenceDataService referenceData) {
+        return registry -> {
+            FunctionCounter.builder("ratewise.reference_data.requests", referenceData, ReferenceDataService::getFreshCount)
+                    .description("Country, HS code and agreement list requests by how they were answered")
+                    .tag("result", "fresh")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.reference_data.requests", referenceData, ReferenceDataService::getStaleCount)
+                    .tag("result", "stale")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.reference_data.requests", referenceData, ReferenceDataService::getCoalescedCount)
+                    .tag("result", "coalesced")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.reference_data.loads", referenceData, ReferenceDataService::getLoadCount)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.reference_data.refresh.failures", referenceData, ReferenceDataService::getRefreshFailures)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder apiKeyCacheMetrics(ApiKeyCache apiKeyCache) {
+        return registry -> {
+            Gauge.builder("ratewise.apikey.cache.size", apiKeyCache, ApiKeyCache::size)
+                    .register(registry);
+            FunctionCounter.builder("ratewise.apikey.lookups", apiKeyCache, ApiKeyCache::getHitCount)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("ratewise.apikey.lookups", apiKeyCache, ApiKeyCache::getMissCount)
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+}
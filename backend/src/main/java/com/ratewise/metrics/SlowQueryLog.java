@@ -0,0 +1,158 @@
+package com.ratewise.metrics;
+
+import com.ratewise.dto.SlowQueryEntry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of the most recent slow statements, each with its query plan when one could be taken.
+ *
+ * Plans are captured off the request thread on a single worker: the statement is re-run as
+ * {@code EXPLAIN (ANALYZE, BUFFERS)} with the same bound parameters, so it shows the plan
+ * Postgres actually picked for those values. Only plain SELECTs are re-run, a fingerprint is
+ * explained at most once per cooldown, and when the worker is busy new requests are dropped
+ * rather than queued behind it: the statement is still listed, as "dropped", and its
+ * fingerprint stays due for a plan.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog {
+
+    static final String EXPLAIN_PREFIX = "EXPLAIN (ANALYZE, BUFFERS) ";
+
+    private final SqlMonitorProperties properties;
+    // Lazy: this bean is built while the DataSource itself is being proxied
+    private final ObjectProvider<JdbcTemplate> jdbcProvider;
+    private final ThreadPoolExecutor explainExecutor;
+
+    private final Deque<SlowQueryEntry> entries = new ArrayDeque<>();
+    private final Map<String, Long> lastExplainedAt = new ConcurrentHashMap<>();
+    private final AtomicLong droppedExplains = new AtomicLong();
+
+    public SlowQueryLog(SqlMonitorProperties properties, ObjectProvider<JdbcTemplate> jdbcProvider) {
+        this.properties = properties;
+        this.jdbcProvider = jdbcProvider;
+        this.explainExecutor = new ThreadPoolExecutor(
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getExplainQueueCapacity())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Record a statement that crossed the threshold. {@code parameters} are (index, value) pairs
+     * bound to it; they are only used to re-run it for the plan and are never stored.
+     */
+    public void record(SqlFingerprint fingerprint, String sql, List<Object[]> parameters, long elapsedMs) {
+        Instant now = Instant.now();
+        if (!properties.isExplain() || !fingerprint.isExplainable()) {
+            add(new SlowQueryEntry(fingerprint.id(), fingerprint.normalizedSql(), elapsedMs, now, "skipped", List.of()));
+            return;
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        boolean[] due = new boolean[1];
+        lastExplainedAt.compute(fingerprint.id(), (id, previous) -> {
+            if (previous == null || nowMillis - previous >= properties.getExplainCooldownMs()) {
+                due[0] = true;
+                return nowMillis;
+            }
+            return previous;
+        });
+        if (!due[0]) {
+            add(new SlowQueryEntry(fingerprint.id(), fingerprint.normalizedSql(), elapsedMs, now, "cooldown", List.of()));
+            return;
+        }
+
+        try {
+            explainExecutor.execute(() -> {
+                try {
+                    List<String> plan = explain(sql, parameters);
+                    add(new SlowQueryEntry(fingerprint.id(), fingerprint.normalizedSql(), elapsedMs, now, "captured", plan));
+                } catch (Exception e) {
+                    log.debug("EXPLAIN failed for statement {}", fingerprint.id(), e);
+                    add(new SlowQueryEntry(fingerprint.id(), fingerprint.normalizedSql(), elapsedMs, now,
+                            "failed: " + e.getMessage(), List.of()));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Worker busy: no plan this time, so the cooldown was not used up
+            droppedExplains.incrementAndGet();
+            lastExplainedAt.remove(fingerprint.id(), nowMillis);
+            add(new SlowQueryEntry(fingerprint.id(), fingerprint.normalizedSql(), elapsedMs, now, "dropped", List.of()));
+        }
+    }
+
+    private List<String> explain(String sql, List<Object[]> parameters) {
+        return jdbcProvider.getObject().execute((ConnectionCallback<List<String>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(EXPLAIN_PREFIX + sql)) {
+                ps.setQueryTimeout(Math.max(1, properties.getExplainTimeoutMs() / 1000));
+                for (Object[] parameter : parameters) {
+                    ps.setObject(((Number) parameter[0]).intValue(), parameter[1]);
+                }
+                List<String> lines = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) lines.add(rs.getString(1));
+                }
+                return lines;
+            }
+        });
+    }
+
+    private void add(SlowQueryEntry entry) {
+        synchronized (entries) {
+            entries.addFirst(entry);
+            while (entries.size() > properties.getBufferSize()) entries.removeLast();
+        }
+    }
+
+    /**
+     * Captured entries, newest first.
+     */
+    public List<SlowQueryEntry> getEntries() {
+        synchronized (entries) {
+            return List.copyOf(entries);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        lastExplainedAt.clear();
+    }
+
+    public long getDroppedExplains() {
+        return droppedExplains.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+}
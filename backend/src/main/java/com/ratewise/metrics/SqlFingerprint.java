@@ -0,0 +1,63 @@
+package com.ratewise.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Stable identity for a SQL statement: literals replaced by {@code ?}, comments dropped and
+ * whitespace collapsed, so the same text block always maps to the same short id no matter
+ * how it is indented or which literal values were inlined.
+ */
+public record SqlFingerprint(String id, String normalizedSql) {
+
+    private static final Pattern LINE_COMMENT = Pattern.compile("--[^\\n]*");
+    private static final Pattern BLOCK_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'[^']*+(?:''[^']*+)*+'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern POSITIONAL_PARAM = Pattern.compile("\\$\\d+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // FOR UPDATE, FOR NO KEY UPDATE, FOR SHARE, FOR KEY SHARE: all take row locks
+    private static final Pattern LOCKING_CLAUSE = Pattern.compile("\\bfor\\s+(?:no\\s+key\\s+|key\\s+)?(?:update|share)\\b");
+
+    public static SqlFingerprint of(String sql) {
+        String normalized = normalize(sql);
+        return new SqlFingerprint(hash(normalized), normalized);
+    }
+
+    static String normalize(String sql) {
+        if (sql == null) return "";
+        String s = BLOCK_COMMENT.matcher(sql).replaceAll(" ");
+        s = LINE_COMMENT.matcher(s).replaceAll(" ");
+        s = STRING_LITERAL.matcher(s).replaceAll("?");
+        s = POSITIONAL_PARAM.matcher(s).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        return WHITESPACE.matcher(s).replaceAll(" ").trim();
+    }
+
+    private static String hash(String normalized) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * True for statements that are safe to re-run under EXPLAIN ANALYZE (plain reads only).
+     */
+    public boolean isExplainable() {
+        String lower = normalizedSql.toLowerCase();
+        if (LOCKING_CLAUSE.matcher(lower).find()) {
+            return false;
+        }
+        if (lower.startsWith("select ")) {
+            return true;
+        }
+        return lower.startsWith("with ")
+                && !lower.matches(".*\\b(insert|update|delete|merge)\\b.*");
+    }
+}
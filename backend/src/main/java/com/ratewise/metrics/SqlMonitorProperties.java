@@ -0,0 +1,39 @@
+package com.ratewise.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * monitoring.sql.* settings.
+ *
+ * Every JDBC statement is timed under its fingerprint. Statements slower than
+ * {@code slowThresholdMs} are kept in a ring buffer of {@code bufferSize} entries, and
+ * SELECTs among them get an {@code EXPLAIN (ANALYZE, BUFFERS)} plan captured in the
+ * background, at most once per fingerprint every {@code explainCooldownMs}.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "monitoring.sql")
+public class SqlMonitorProperties {
+
+    private boolean enabled = true;
+
+    private long slowThresholdMs = 250;
+
+    private boolean explain = true;
+
+    private long explainCooldownMs = 60_000;
+
+    private int explainTimeoutMs = 5_000;
+
+    // Slow statements waiting for a plan; more than this are dropped
+    private int explainQueueCapacity = 16;
+
+    private int bufferSize = 100;
+
+    // Statements past this many distinct fingerprints are timed as "other"
+    private int maxFingerprints = 500;
+}
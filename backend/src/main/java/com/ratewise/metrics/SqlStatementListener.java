@@ -0,0 +1,114 @@
+package com.ratewise.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every statement run through the (proxied) DataSource, so JdbcTemplate text blocks
+ * and JPA alike, as {@code ratewise.sql.statement{fingerprint,outcome}}. Statements slower
+ * than the threshold are handed to {@link SlowQueryLog}.
+ *
+ * Picked up by datasource-micrometer, which registers every QueryExecutionListener bean on
+ * its DataSource proxy. Also a MeterBinder: the listener exists before the MeterRegistry
+ * does, so statements run during startup are simply not timed.
+ */
+@Component
+public class SqlStatementListener implements QueryExecutionListener, MeterBinder {
+
+    static final String OTHER = "other";
+
+    private final SqlMonitorProperties properties;
+    private final SlowQueryLog slowQueryLog;
+
+    // Keyed by the exact SQL string; the text blocks are constants so this stays small
+    private final Map<String, SqlFingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public SqlStatementListener(SqlMonitorProperties properties, SlowQueryLog slowQueryLog) {
+        this.properties = properties;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // timing comes from ExecutionInfo
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (!properties.isEnabled() || queryInfoList.isEmpty()) return;
+
+        String sql = queryInfoList.get(0).getQuery();
+        if (sql == null || sql.startsWith(SlowQueryLog.EXPLAIN_PREFIX)) return;
+
+        SqlFingerprint fingerprint = fingerprint(sql);
+        long elapsedMs = execInfo.getElapsedTime();
+
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            String tag = fingerprints.containsKey(sql) ? fingerprint.id() : OTHER;
+            String outcome = execInfo.isSuccess() ? "ok" : "error";
+            timers.computeIfAbsent(tag + '|' + outcome, key -> Timer.builder("ratewise.sql.statement")
+                    .description("JDBC statement execution time by statement fingerprint")
+                    .tag("fingerprint", tag)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry))
+                .record(elapsedMs, TimeUnit.MILLISECONDS);
+        }
+
+        if (execInfo.isSuccess() && !execInfo.isBatch() && elapsedMs >= properties.getSlowThresholdMs()) {
+            slowQueryLog.record(fingerprint, sql, boundParameters(queryInfoList.get(0)), elapsedMs);
+        }
+    }
+
+    /**
+     * Fingerprints for statements seen so far, id to normalized SQL, to read the Prometheus tags.
+     */
+    public Map<String, String> getFingerprints() {
+        Map<String, String> byId = new TreeMap<>();
+        fingerprints.values().forEach(f -> byId.put(f.id(), f.normalizedSql()));
+        return byId;
+    }
+
+    private SqlFingerprint fingerprint(String sql) {
+        SqlFingerprint known = fingerprints.get(sql);
+        if (known != null) return known;
+        SqlFingerprint fingerprint = SqlFingerprint.of(sql);
+        if (fingerprints.size() < properties.getMaxFingerprints()) {
+            fingerprints.putIfAbsent(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    // (index, value) per bound parameter; setNull binds null whatever the declared type
+    private static List<Object[]> boundParameters(QueryInfo queryInfo) {
+        List<Object[]> parameters = new ArrayList<>();
+        if (queryInfo.getParametersList().isEmpty()) return parameters;
+        for (ParameterSetOperation operation : queryInfo.getParametersList().get(0)) {
+            Object[] args = operation.getArgs();
+            if (args == null || args.length < 1 || !(args[0] instanceof Number)) continue;
+            Object value = ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2 ? null : args[1];
+            parameters.add(new Object[] { args[0], value });
+        }
+        return parameters;
+    }
+}
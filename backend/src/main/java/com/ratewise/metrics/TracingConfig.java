@@ -0,0 +1,25 @@
+package com.ratewise.metrics;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+
+/**
+ * Keeps the current trace when work leaves the request thread.
+ *
+ * Spring Boot applies a TaskDecorator bean to the application task executor, which also
+ * runs MVC async work such as the NDJSON user stream, so those writes stay in the
+ * request's trace. The auth hashing pool wraps its own tasks (see PasswordHashVerifier).
+ *
+ * Spans are exported over OTLP (management.otlp.tracing.endpoint) and sampled by
+ * management.tracing.sampling.probability.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    public TaskDecorator contextPropagatingTaskDecorator() {
+        return new ContextPropagatingTaskDecorator();
+    }
+}
@@ -1,5 +1,7 @@
 package com.ratewise.restcontrollers;
 
+import com.ratewise.export.ExportStreams;
+import com.ratewise.security.apikey.ApiKeyCache;
 import com.ratewise.security.dto.*;
 import com.ratewise.security.entities.Role;
 import com.ratewise.security.entities.User;
@@ -8,6 +10,8 @@ import com.ratewise.security.exception.UserNotFoundException;
 import com.ratewise.security.repositories.UserRepository;
 import com.ratewise.security.repositories.RoleRepository;
 import com.ratewise.security.util.JWTUtil;
+import com.ratewise.services.UserAdminService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -15,9 +19,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 @RestController
@@ -27,51 +35,94 @@ public class AdminController {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final JWTUtil jwtUtil;
+    private final ObjectMapper objectMapper;
+    private final UserAdminService userAdminService;
+    private final ApiKeyCache apiKeyCache;
+    private final ExportStreams exportStreams;
 
-    public AdminController(UserRepository userRepository, RoleRepository roleRepository, JWTUtil jwtUtil) {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String NDJSON = "application/x-ndjson";
+
+    public AdminController(UserRepository userRepository, RoleRepository roleRepository, JWTUtil jwtUtil,
+                           ObjectMapper objectMapper, UserAdminService userAdminService, ApiKeyCache apiKeyCache,
+                           ExportStreams exportStreams) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.jwtUtil = jwtUtil;
+        this.objectMapper = objectMapper;
+        this.userAdminService = userAdminService;
+        this.apiKeyCache = apiKeyCache;
+        this.exportStreams = exportStreams;
     }
 
 
     /**
      * Get all users with their role
      * GET /api/v1/admin/users
+     *
+     * Single join query. Optional:
+     * - q: username/email prefix (case-insensitive)
+     * - limit + cursor: keyset pagination, the next cursor is returned in the X-Next-Cursor header
      */
     @Operation(summary = "Get all users", description = "Retrieve all users with their role (Admin only)")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Users retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit or cursor",
+                    content = @Content(schema = @Schema(hidden = true))),
             @ApiResponse(responseCode = "403", description = "Access denied - Admin only",
                     content = @Content(schema = @Schema(hidden = true))),
             @ApiResponse(responseCode = "500", description = "Internal server error",
                     content = @Content(schema = @Schema(hidden = true)))
     })
     @GetMapping("/users")
-    public ResponseEntity<List<UserSummaryResponse>> getAllUsers() {
-        List<UserSummaryResponse> users = new ArrayList<>();
-
-        List<User> allUsers = userRepository.findAll();
-
-        allUsers.forEach(user -> {
-            Optional<User> userWithRole = userRepository.findByIdWithRole(user.getId());
-            userWithRole.ifPresent(u -> {
-                String roleName = u.getRole() != null ? u.getRole().getRoleName() : null;
-                UserSummaryResponse userResponse = UserSummaryResponse.builder()
-                        .userId(u.getId())
-                        .username(u.getUsername())
-                        .email(u.getEmail())
-                        .isActive(u.isEnabled())
-                        .createdAt(u.getCreatedAt())
-                        .role(roleName)
-                        .oauthProvider(u.getOauthProvider())
-                        .oauthProviderId(u.getOauthProviderId())
-                        .build();
-                users.add(userResponse);
-            });
-        });
+    public ResponseEntity<List<UserSummaryResponse>> getAllUsers(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        UserPageCursor after = (cursor == null || cursor.isBlank()) ? null : UserPageCursor.decode(cursor);
 
-        return ResponseEntity.ok(users);
+        List<UserSummaryResponse> users = userRepository.findUserSummaries(q, after, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (limit != null && users.size() == limit) {
+            response.header(NEXT_CURSOR_HEADER, UserPageCursor.after(users.get(users.size() - 1)).encode());
+        }
+        return response.body(users);
+    }
+
+    /**
+     * Stream all users as newline-delimited JSON
+     * GET /api/v1/admin/users/stream
+     *
+     * Holds a database connection while the client reads, so it shares the export pool's cap
+     * (503 when export-streams.max-concurrent exports are running) and timeout.
+     */
+    @Operation(summary = "Stream all users", description = "Stream every user with their role as NDJSON, for large exports (Admin only)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Users streamed successfully"),
+            @ApiResponse(responseCode = "403", description = "Access denied - Admin only",
+                    content = @Content(schema = @Schema(hidden = true))),
+            @ApiResponse(responseCode = "503", description = "Too many exports running",
+                    content = @Content(schema = @Schema(hidden = true)))
+    })
+    @GetMapping(value = "/users/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam(required = false) String q) {
+        StreamingResponseBody body = out -> {
+            userRepository.streamUserSummaries(q, user -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(user));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(exportStreams.open(body));
     }
 
     /**
@@ -138,6 +189,7 @@ public class AdminController {
 
         // Invalidate user's token so they need to re-login with new role
         jwtUtil.invalidateUserToken(userId);
+        apiKeyCache.reloadUsers(List.of(userId));
 
         RoleUpdateResponse response = RoleUpdateResponse.builder()
                         .message("Role updated successfully for " + userOpt.get().getEmail())
@@ -186,6 +238,7 @@ public class AdminController {
         User user = userOpt.get();
         user.setEnabled(request.getIsActive());
         userRepository.save(user);
+        apiKeyCache.reloadUsers(List.of(id));
 
         UserStatusResponse response = UserStatusResponse.builder()
                         .message("User status updated successfully")
@@ -196,6 +249,44 @@ public class AdminController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Update the role of many users at once (all-or-nothing)
+     * PUT /api/v1/admin/users/bulk/role
+     */
+    @Operation(summary = "Bulk update user roles", description = "Replace the role of every listed user in one transaction (Admin only)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Roles updated successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid request body",
+                    content = @Content(schema = @Schema(hidden = true))),
+            @ApiResponse(responseCode = "404", description = "One or more users, or the role, not found",
+                    content = @Content(schema = @Schema(hidden = true))),
+            @ApiResponse(responseCode = "403", description = "Access denied - Admin only",
+                    content = @Content(schema = @Schema(hidden = true)))
+    })
+    @PutMapping("/users/bulk/role")
+    public ResponseEntity<BulkUpdateResponse> bulkUpdateUserRole(@RequestBody @Valid BulkRoleUpdateRequest request) {
+        return ResponseEntity.ok(userAdminService.updateRoles(request.getUserIds(), request.getRoleId()));
+    }
+
+    /**
+     * Enable/Disable many user accounts at once (all-or-nothing)
+     * PATCH /api/v1/admin/users/bulk/status
+     */
+    @Operation(summary = "Bulk update user status", description = "Enable or disable every listed user in one transaction (Admin only)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "User status updated successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid request body",
+                    content = @Content(schema = @Schema(hidden = true))),
+            @ApiResponse(responseCode = "404", description = "One or more users not found",
+                    content = @Content(schema = @Schema(hidden = true))),
+            @ApiResponse(responseCode = "403", description = "Access denied - Admin only",
+                    content = @Content(schema = @Schema(hidden = true)))
+    })
+    @PatchMapping("/users/bulk/status")
+    public ResponseEntity<BulkUpdateResponse> bulkUpdateUserStatus(@RequestBody @Valid BulkStatusUpdateRequest request) {
+        return ResponseEntity.ok(userAdminService.updateStatus(request.getUserIds(), request.getIsActive()));
+    }
+
     /**
      * Get all available roles
      * GET /api/v1/admin/roles
@@ -2,7 +2,7 @@ package com.ratewise.restcontrollers;
 
 import java.util.*;
 
-import org.springframework.jdbc.core.JdbcTemplate;
+import com.ratewise.services.ReferenceDataService;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -13,10 +13,10 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/api/v1/agreements")
 public class AgreementController {
-    private final JdbcTemplate jdbc;
+    private final ReferenceDataService referenceData;
     
-    public AgreementController(JdbcTemplate jdbc) {
-        this.jdbc = jdbc;
+    public AgreementController(ReferenceDataService referenceData) {
+        this.referenceData = referenceData;
     }
 
     /**
@@ -25,8 +25,6 @@ public class AgreementController {
     */
     @GetMapping
     public List<Map<String, Object>> listAgreements() {
-        return jdbc.queryForList(
-            "SELECT agreement_code, agreement_name FROM agreements ORDER BY agreement_code"
-        );
+        return referenceData.agreements();
     }
 }
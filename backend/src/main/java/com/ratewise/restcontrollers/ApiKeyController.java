@@ -0,0 +1,89 @@
+package com.ratewise.restcontrollers;
+
+import com.ratewise.security.dto.ApiKeyCreatedResponse;
+import com.ratewise.security.dto.ApiKeyRequest;
+import com.ratewise.security.dto.ApiKeyResponse;
+import com.ratewise.security.exception.JwtTokenException;
+import com.ratewise.security.util.JWTUtil;
+import com.ratewise.services.ApiKeyService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/auth/api-keys")
+@Tag(name = "API Keys", description = "Long-lived API keys for machine clients")
+public class ApiKeyController {
+
+    private final ApiKeyService apiKeyService;
+    private final JWTUtil jwtUtil;
+
+    public ApiKeyController(ApiKeyService apiKeyService, JWTUtil jwtUtil) {
+        this.apiKeyService = apiKeyService;
+        this.jwtUtil = jwtUtil;
+    }
+
+    /**
+     * Issue a new API key for the current user
+     * POST /api/v1/auth/api-keys
+     */
+    @Operation(summary = "Create API key", description = "Issue a scoped API key for the current user. The key is only returned once")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "201", description = "API key created"),
+        @ApiResponse(responseCode = "400", description = "Invalid scope or too many keys",
+                    content = @Content(schema = @Schema(hidden = true))),
+        @ApiResponse(responseCode = "403", description = "admin:import scope requested by a non-admin",
+                    content = @Content(schema = @Schema(hidden = true)))
+    })
+    @PostMapping
+    public ResponseEntity<ApiKeyCreatedResponse> createApiKey(@RequestHeader("Authorization") String authHeader,
+                                                              @RequestBody @Valid ApiKeyRequest request) {
+        String token = bearerToken(authHeader);
+        ApiKeyCreatedResponse response = apiKeyService.issue(jwtUtil.getUserId(token), jwtUtil.getRole(token), request);
+        return ResponseEntity.status(201).body(response);
+    }
+
+    /**
+     * List the current user's API keys (never includes the key itself)
+     * GET /api/v1/auth/api-keys
+     */
+    @Operation(summary = "List API keys", description = "List the current user's API keys, including revoked ones")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "API keys retrieved")
+    })
+    @GetMapping
+    public ResponseEntity<List<ApiKeyResponse>> listApiKeys(@RequestHeader("Authorization") String authHeader) {
+        return ResponseEntity.ok(apiKeyService.list(jwtUtil.getUserId(bearerToken(authHeader))));
+    }
+
+    /**
+     * Revoke one of the current user's API keys
+     * DELETE /api/v1/auth/api-keys/{id}
+     */
+    @Operation(summary = "Revoke API key", description = "Revoke one of the current user's API keys, effective immediately")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "204", description = "API key revoked"),
+        @ApiResponse(responseCode = "404", description = "API key not found or already revoked",
+                    content = @Content(schema = @Schema(hidden = true)))
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> revokeApiKey(@RequestHeader("Authorization") String authHeader, @PathVariable String id) {
+        apiKeyService.revoke(jwtUtil.getUserId(bearerToken(authHeader)), id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private String bearerToken(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new JwtTokenException("Invalid token format");
+        }
+        return authHeader.substring(7);
+    }
+}
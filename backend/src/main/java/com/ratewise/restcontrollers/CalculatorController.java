@@ -1,12 +1,19 @@
 package com.ratewise.restcontrollers;
 
+import com.ratewise.services.AsyncCalculatorService;
+import com.ratewise.services.CalculationReplayService;
 import com.ratewise.services.CalculatorService;
 import com.ratewise.dto.CalculatorRequest;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -14,6 +21,8 @@ import org.springframework.web.bind.annotation.RestController;
  *
  * REST API for the calculator feature.
  * Endpoint: POST /api/v1/calculator/landed-cost
+ *           POST /api/v1/calculator/landed-cost/async (same contract, answered without holding a servlet thread)
+ *           GET  /api/v1/calculator/quotes/{quoteId}/replay (recalculate a logged quote and diff it)
  *
  * Behavior:
  * - Accepts CalculatorRequest DTO.
@@ -27,9 +36,14 @@ import org.springframework.web.bind.annotation.RestController;
 public class CalculatorController {
 
     private final CalculatorService calculatorService;
+    private final AsyncCalculatorService asyncCalculatorService;
+    private final CalculationReplayService calculationReplayService;
 
-    public CalculatorController(CalculatorService calculatorService) {
+    public CalculatorController(CalculatorService calculatorService, AsyncCalculatorService asyncCalculatorService,
+                                CalculationReplayService calculationReplayService) {
         this.calculatorService = calculatorService;
+        this.asyncCalculatorService = asyncCalculatorService;
+        this.calculationReplayService = calculationReplayService;
     }
 
     /**
@@ -45,7 +59,8 @@ public class CalculatorController {
      *   "quantity": 2,
      *   "freight": 50,
      *   "insurance": 100,
-     *   "effectiveDate": "2025-10-28" // optional, single exact lookup date
+     *   "effectiveDate": "2025-10-28", // optional, single exact lookup date
+     *   "asOf": "2025-10-01T08:00:00Z"  // optional, rates as the database held them then
      * }
      *
      * Returns landed cost breakdown:
@@ -53,9 +68,39 @@ public class CalculatorController {
      * - duty rate & duty amount (tariff rate chosen for exact effectiveDate; lowest if multiple)
      * - tax rate & tax amount
      * - total landed cost
+     * - data_version the rates were read at; null with asOf, since that answer reflects a past
+     *   state of the rates and no current version
      */
     @PostMapping("/landed-cost")
     public Map<String, Object> calculateLandedCost(@RequestBody CalculatorRequest request) {
+        return calculatorService.calculateLandedCost(toPayload(request));
+    }
+
+    /**
+     * POST /api/v1/calculator/landed-cost/async
+     *
+     * Same request body and response as /landed-cost. The servlet thread is released while the
+     * calculation waits for the database; 503 with Retry-After when the calculator pool is full.
+     */
+    @PostMapping("/landed-cost/async")
+    public CompletableFuture<Map<String, Object>> calculateLandedCostAsync(@RequestBody CalculatorRequest request) {
+        return asyncCalculatorService.calculateLandedCost(toPayload(request));
+    }
+
+    /**
+     * GET /api/v1/calculator/quotes/{quoteId}/replay?current=false
+     *
+     * Recalculates the quote_id of an earlier /landed-cost answer from its logged request, with the
+     * tariff rates as they were when it was calculated (or, with current=true, as they are now), and
+     * returns both answers with the fields that differ. 404 for an unknown quote or someone else's.
+     */
+    @GetMapping("/quotes/{quoteId}/replay")
+    public Map<String, Object> replayQuote(@PathVariable UUID quoteId,
+                                           @RequestParam(defaultValue = "false") boolean current) {
+        return calculationReplayService.replay(quoteId, current);
+    }
+
+    private static Map<String, Object> toPayload(CalculatorRequest request) {
         Map<String, Object> payload = new HashMap<>();
         payload.put("exporter", request.exporter());
         payload.put("importer", request.importer());
@@ -70,7 +115,10 @@ public class CalculatorController {
         if (request.effectiveDate() != null && !request.effectiveDate().isBlank()) {
             payload.put("effectiveDate", request.effectiveDate());
         }
+        if (request.asOf() != null && !request.asOf().isBlank()) {
+            payload.put("asOf", request.asOf());
+        }
 
-        return calculatorService.calculateLandedCost(payload);
+        return payload;
     }
 }
\ No newline at end of file
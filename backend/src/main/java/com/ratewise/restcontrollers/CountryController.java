@@ -3,7 +3,7 @@ package com.ratewise.restcontrollers;
 import java.util.List;
 import java.util.Map;
 
-import org.springframework.jdbc.core.JdbcTemplate;
+import com.ratewise.services.ReferenceDataService;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -12,16 +12,17 @@ import org.springframework.web.bind.annotation.RestController;
 /**
  * Controller for querying country information.
  * Now Includes CIF/FOB customs basis that we added recently.
+ * Served from ReferenceDataService's in-memory copy.
  */
 
 @RestController
 @RequestMapping("/api/v1/countries")
 public class CountryController {
 
-    private final JdbcTemplate jdbc;
+    private final ReferenceDataService referenceData;
     
-    public CountryController(JdbcTemplate jdbc) {
-        this.jdbc = jdbc;
+    public CountryController(ReferenceDataService referenceData) {
+        this.referenceData = referenceData;
     }
 
 
@@ -31,9 +32,7 @@ public class CountryController {
     */
     @GetMapping
     public List<Map<String, Object>> listCountries() {
-        return jdbc.queryForList(
-            "SELECT country_code, country_name, customs_basis FROM countries ORDER BY country_code"
-        );
+        return referenceData.countries();
     }
 
     /**
@@ -42,9 +41,6 @@ public class CountryController {
      */
     @GetMapping("/{code}")
     public Map<String, Object> getCountry(@PathVariable String code) {
-        return jdbc.queryForMap(
-            "SELECT country_code, country_name, customs_basis FROM countries WHERE country_code = ?",
-            code
-        );
+        return referenceData.country(code);
     }
 }
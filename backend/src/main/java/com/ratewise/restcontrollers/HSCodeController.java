@@ -2,7 +2,7 @@ package com.ratewise.restcontrollers;
 
 import java.util.*;
 
-import org.springframework.jdbc.core.JdbcTemplate;
+import com.ratewise.services.ReferenceDataService;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -13,10 +13,10 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/api/v1/hscodes")
 public class HSCodeController {
-    private final JdbcTemplate jdbc;
+    private final ReferenceDataService referenceData;
     
-    public HSCodeController(JdbcTemplate jdbc) {
-        this.jdbc = jdbc;
+    public HSCodeController(ReferenceDataService referenceData) {
+        this.referenceData = referenceData;
     }
 
     /**
@@ -25,8 +25,6 @@ public class HSCodeController {
     */
     @GetMapping
     public List<Map<String, Object>> listHSCodes() {
-        return jdbc.queryForList(
-            "SELECT hs_code, description FROM hs_codes ORDER BY description"
-        );
+        return referenceData.hsCodes();
     }
 }
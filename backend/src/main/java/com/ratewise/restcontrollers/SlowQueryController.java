@@ -0,0 +1,49 @@
+package com.ratewise.restcontrollers;
+
+import com.ratewise.dto.SlowQueryEntry;
+import com.ratewise.metrics.SlowQueryLog;
+import com.ratewise.metrics.SqlStatementListener;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slow statements and their captured query plans. Mounted under /api/v1/admin/slow-queries
+ * and protected by role ADMIN via WebSecurityConfig.
+ */
+@RestController
+@RequestMapping("/api/v1/admin/slow-queries")
+@Tag(name = "Admin", description = "Slow query log")
+public class SlowQueryController {
+
+    private final SlowQueryLog slowQueryLog;
+    private final SqlStatementListener sqlStatementListener;
+
+    public SlowQueryController(SlowQueryLog slowQueryLog, SqlStatementListener sqlStatementListener) {
+        this.slowQueryLog = slowQueryLog;
+        this.sqlStatementListener = sqlStatementListener;
+    }
+
+    @Operation(summary = "Recent slow queries", description = "Newest first, with EXPLAIN (ANALYZE, BUFFERS) output when captured (Admin only)")
+    @GetMapping
+    public ResponseEntity<List<SlowQueryEntry>> list() {
+        return ResponseEntity.ok(slowQueryLog.getEntries());
+    }
+
+    @Operation(summary = "Statement fingerprints", description = "Maps the fingerprint tag of ratewise_sql_statement_seconds to its SQL (Admin only)")
+    @GetMapping("/fingerprints")
+    public ResponseEntity<Map<String, String>> fingerprints() {
+        return ResponseEntity.ok(sqlStatementListener.getFingerprints());
+    }
+
+    @Operation(summary = "Clear the slow query log", description = "Also resets the per-statement EXPLAIN cooldown (Admin only)")
+    @DeleteMapping
+    public ResponseEntity<Void> clear() {
+        slowQueryLog.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -35,6 +35,11 @@ public class TariffAdminController {
         return ResponseEntity.ok(row);
     }
 
+    @GetMapping("/{id}/history")
+    public ResponseEntity<List<Map<String, Object>>> history(@PathVariable int id) {
+        return ResponseEntity.ok(adminService.history(id));
+    }
+
     @GetMapping
     public ResponseEntity<List<Map<String, Object>>> listAll() {
         return ResponseEntity.ok(adminService.listAll());
@@ -1,50 +1,155 @@
-package com.ratewise.restcontrollers;
-import com.ratewise.services.TariffService;
-
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.web.bind.annotation.*;
-import java.util.*;
-
-
-
-
-/**
-* TariffController
-* Provides a lookup endpoint for import duty + VAT/GST.
-*/
-
-@RestController
-@RequestMapping("/api/v1/tariffs")
-public class TariffController {
-
-    private final TariffService tariffService;
-
-    public TariffController(TariffService tariffService) {
-        this.tariffService = tariffService;
-    }
-
-    // Single tariff lookup
-    @GetMapping("/lookup")
-    public Map<String, Object> lookup(
-            @RequestParam String exporter,
-            @RequestParam String importer,
-            @RequestParam String hsCode,
-            @RequestParam String agreement) {
-        return tariffService.getTariffInfo(exporter, importer, hsCode, agreement);
-    }   
-    
-    // Tariff dashboard listing
-    @GetMapping("/list")
-    public List<Map<String, Object>> listTariffs(
-        @RequestParam(required = false) String importer,
-        @RequestParam(required = false) String exporter,
-        @RequestParam(required = false) String agreement) {
-    return tariffService.listTariffs(importer, exporter, agreement);
-    }
-
-    // Tariff table listing
-    @GetMapping("/table")
-    public List<Map<String, Object>> listTariffsTable() {
-        return tariffService.listTariffsTable();
-    }
-}
+package com.ratewise.restcontrollers;
+import com.ratewise.events.TariffEventBroadcaster;
+import com.ratewise.export.ExportStreams;
+import com.ratewise.services.TariffAnalyticsService;
+import com.ratewise.services.TariffService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+
+
+
+/**
+* TariffController
+* Provides a lookup endpoint for import duty + VAT/GST.
+*/
+
+@RestController
+@RequestMapping("/api/v1/tariffs")
+public class TariffController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final TariffService tariffService;
+    private final TariffAnalyticsService tariffAnalyticsService;
+    private final ObjectMapper objectMapper;
+    private final TariffEventBroadcaster tariffEvents;
+    private final ExportStreams exportStreams;
+
+    public TariffController(TariffService tariffService, TariffAnalyticsService tariffAnalyticsService,
+                            ObjectMapper objectMapper, TariffEventBroadcaster tariffEvents,
+                            ExportStreams exportStreams) {
+        this.tariffService = tariffService;
+        this.tariffAnalyticsService = tariffAnalyticsService;
+        this.objectMapper = objectMapper;
+        this.tariffEvents = tariffEvents;
+        this.exportStreams = exportStreams;
+    }
+
+    // Single tariff lookup
+    @GetMapping("/lookup")
+    public Map<String, Object> lookup(
+            @RequestParam String exporter,
+            @RequestParam String importer,
+            @RequestParam String hsCode,
+            @RequestParam String agreement) {
+        return tariffService.getTariffInfo(exporter, importer, hsCode, agreement);
+    }   
+    
+    // Tariff dashboard listing
+    @GetMapping("/list")
+    public List<Map<String, Object>> listTariffs(
+        @RequestParam(required = false) String importer,
+        @RequestParam(required = false) String exporter,
+        @RequestParam(required = false) String agreement,
+        @RequestParam(required = false) String hsCode) {
+    return tariffService.listTariffs(importer, exporter, agreement, hsCode);
+    }
+
+    /**
+     * Same rows and filters as /list, as newline-delimited JSON written while they are read
+     * (server-side cursor), for large exports. Neither side holds the whole listing. The export
+     * keeps a database connection until the client has read the last row, so it runs on the
+     * export pool: 503 when export-streams.max-concurrent exports are running, cut off after
+     * export-streams.timeout-ms.
+     * e.g. GET /api/v1/tariffs/list/stream?importer=US
+     */
+    @GetMapping(value = "/list/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamTariffs(
+            @RequestParam(required = false) String importer,
+            @RequestParam(required = false) String exporter,
+            @RequestParam(required = false) String agreement,
+            @RequestParam(required = false) String hsCode) {
+        StreamingResponseBody body = out -> {
+            tariffService.streamTariffs(importer, exporter, agreement, hsCode, row -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(row));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(exportStreams.open(body));
+    }
+
+    /**
+     * Live tariff changes as server-sent events, so a dashboard can load /list once and then
+     * patch it: "tariff" events carry {op: created|updated|deleted, id, lane codes, rate, validity},
+     * a "resync" event means reload. A reconnecting EventSource sends Last-Event-ID and is
+     * replayed what it missed. See TariffEventBroadcaster.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return tariffEvents.subscribe(lastEventId);
+    }
+
+    // Tariff table listing
+    @GetMapping("/table")
+    public List<Map<String, Object>> listTariffsTable() {
+        return tariffService.listTariffsTable();
+    }
+
+    /**
+     * Rate statistics per group over the lanes with a rate on {@code date} (default today).
+     * groupBy: exporter, importer, agreement, hs_chapter, hs_heading or hs_subheading;
+     * hsCode filters by HS prefix ("01", "0101*").
+     * e.g. GET /api/v1/tariffs/analytics?groupBy=importer&agreement=MFN&hsCode=01
+     */
+    @GetMapping("/analytics")
+    public List<Map<String, Object>> analytics(
+            @RequestParam String groupBy,
+            @RequestParam(required = false) String exporter,
+            @RequestParam(required = false) String importer,
+            @RequestParam(required = false) String agreement,
+            @RequestParam(required = false) String hsCode,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return tariffAnalyticsService.aggregate(
+                TariffAnalyticsService.GroupBy.parse(groupBy),
+                new TariffAnalyticsService.Filter(exporter, importer, agreement, hsCode),
+                date != null ? date : LocalDate.now());
+    }
+
+    /**
+     * Lanes whose rate moved by more than {@code minChange} points between {@code from} and
+     * {@code to} (default: Jan 1st of this year to today).
+     * e.g. GET /api/v1/tariffs/analytics/rate-changes?minChange=5&importer=US
+     */
+    @GetMapping("/analytics/rate-changes")
+    public List<Map<String, Object>> rateChanges(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "0") BigDecimal minChange,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String exporter,
+            @RequestParam(required = false) String importer,
+            @RequestParam(required = false) String agreement,
+            @RequestParam(required = false) String hsCode) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        return tariffAnalyticsService.rateChanges(
+                new TariffAnalyticsService.Filter(exporter, importer, agreement, hsCode),
+                from != null ? from : end.withDayOfYear(1), end, minChange, limit);
+    }
+}
@@ -0,0 +1,61 @@
+package com.ratewise.security.apikey;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Authenticates machine clients sending an X-API-Key header. The key is checked against
+ * {@link ApiKeyCache} only; the resulting authentication carries the key's SCOPE_*
+ * authorities and no roles. Requests with a Bearer token are left to the JWT filter.
+ */
+public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String API_KEY_HEADER = "X-API-Key";
+
+    private final ApiKeyCache apiKeyCache;
+
+    public ApiKeyAuthenticationFilter(ApiKeyCache apiKeyCache) {
+        this.apiKeyCache = apiKeyCache;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Optional<ApiKeyPrincipal> principal = apiKeyCache.lookup(request.getHeader(API_KEY_HEADER));
+        if (principal.isEmpty()) {
+            SecurityContextHolder.clearContext();
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.setContentType("application/json");
+            response.getWriter().write("{\"error\":\"Invalid, expired or revoked API key\"}");
+            return;
+        }
+
+        List<SimpleGrantedAuthority> authorities = principal.get().scopes().stream()
+                .map(scope -> new SimpleGrantedAuthority(scope.authority()))
+                .toList();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal.get(), null, authorities));
+
+        filterChain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY_HEADER);
+        String authHeader = request.getHeader("Authorization");
+        return apiKey == null || apiKey.isBlank()
+                || (authHeader != null && authHeader.startsWith("Bearer "))
+                || "OPTIONS".equalsIgnoreCase(request.getMethod());
+    }
+}
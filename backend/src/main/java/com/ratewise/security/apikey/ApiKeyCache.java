@@ -0,0 +1,159 @@
+package com.ratewise.security.apikey;
+
+import com.ratewise.security.repositories.ApiKeyRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory copy of every active API key, keyed by SHA-256 hash, so that verifying a key
+ * is one hash and one map lookup with no database round trip.
+ *
+ * Issue/revoke on this node update the cache immediately; changes made on other nodes are
+ * picked up by the periodic full reload (security.api-key.cache-refresh-ms).
+ *
+ * A reload reads the database without holding the cache lock, so a key issued or revoked
+ * while the read is in flight is recorded and replayed over the reloaded rows; otherwise a
+ * reload that read the row just before a revoke committed would bring the key back.
+ */
+@Component
+public class ApiKeyCache {
+
+    private final ApiKeyRepository apiKeyRepository;
+    private volatile ConcurrentHashMap<String, ApiKeyPrincipal> keysByHash = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private final Object reloadLock = new Object();
+    // Guarded by this: issue/revoke seen while a reload is reading, null value meaning removed.
+    private Map<String, ApiKeyPrincipal> changedDuringReload;
+
+    public ApiKeyCache(ApiKeyRepository apiKeyRepository) {
+        this.apiKeyRepository = apiKeyRepository;
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${security.api-key.cache-refresh-ms:30000}",
+               initialDelayString = "${security.api-key.cache-refresh-ms:30000}")
+    public void refresh() {
+        synchronized (reloadLock) {
+            startRecording();
+            try {
+                List<ApiKeyPrincipal> active = apiKeyRepository.findAllActive();
+                synchronized (this) {
+                    ConcurrentHashMap<String, ApiKeyPrincipal> reloaded = new ConcurrentHashMap<>();
+                    active.forEach(key -> reloaded.put(key.keyHash(), key));
+                    replayChanges(reloaded);
+                    keysByHash = reloaded;
+                }
+            } finally {
+                stopRecording();
+            }
+        }
+    }
+
+    public Optional<ApiKeyPrincipal> lookup(String rawKey) {
+        Optional<ApiKeyPrincipal> principal = peek(rawKey);
+        if (principal.isEmpty()) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return principal;
+    }
+
+    /**
+     * As {@link #lookup}, without counting it, e.g. to tell whether to rate limit by the key.
+     */
+    public Optional<ApiKeyPrincipal> peek(String rawKey) {
+        ApiKeyPrincipal principal = keysByHash.get(ApiKeyHasher.hash(rawKey));
+        if (principal == null || principal.isExpired(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(principal);
+    }
+
+    public synchronized void put(ApiKeyPrincipal principal) {
+        keysByHash.put(principal.keyHash(), principal);
+        if (changedDuringReload != null) {
+            changedDuringReload.put(principal.keyHash(), principal);
+        }
+    }
+
+    public synchronized void remove(String keyHash) {
+        keysByHash.remove(keyHash);
+        if (changedDuringReload != null) {
+            changedDuringReload.put(keyHash, null);
+        }
+    }
+
+    /**
+     * Re-read the keys of the given users in one query (after a role or status change),
+     * so disabled users lose their keys and demoted users lose admin scopes right away.
+     */
+    public void reloadUsers(Collection<String> userIds) {
+        Set<String> ids = new HashSet<>(userIds);
+        synchronized (reloadLock) {
+            startRecording();
+            try {
+                List<ApiKeyPrincipal> active = apiKeyRepository.findActiveByUserIds(ids);
+                synchronized (this) {
+                    keysByHash.values().removeIf(key -> ids.contains(key.userId()));
+                    active.forEach(key -> keysByHash.put(key.keyHash(), key));
+                    replayChanges(keysByHash);
+                }
+            } finally {
+                stopRecording();
+            }
+        }
+    }
+
+    private synchronized void startRecording() {
+        changedDuringReload = new HashMap<>();
+    }
+
+    // Also when the read failed, or every later issue/revoke would keep adding to the map
+    private synchronized void stopRecording() {
+        changedDuringReload = null;
+    }
+
+    synchronized boolean isRecordingChanges() {
+        return changedDuringReload != null;
+    }
+
+    private void replayChanges(Map<String, ApiKeyPrincipal> target) {
+        changedDuringReload.forEach((keyHash, key) -> {
+            if (key == null) {
+                target.remove(keyHash);
+            } else {
+                target.put(keyHash, key);
+            }
+        });
+    }
+
+    // Metrics
+
+    public int size() {
+        return keysByHash.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+}
@@ -0,0 +1,44 @@
+package com.ratewise.security.apikey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Generates API keys and hashes them for storage and lookup.
+ *
+ * Keys are 256 random bits, so a single SHA-256 is enough (no salt or work factor needed,
+ * unlike user-chosen passwords) and verification is one hash plus a map lookup.
+ */
+public final class ApiKeyHasher {
+
+    public static final String KEY_PREFIX = "rw_";
+    private static final int PREFIX_DISPLAY_LENGTH = 8;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ApiKeyHasher() {
+    }
+
+    public static String generateKey() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return KEY_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // Shown in listings so users can tell their keys apart without seeing them
+    public static String displayPrefix(String rawKey) {
+        return rawKey.substring(0, Math.min(rawKey.length(), KEY_PREFIX.length() + PREFIX_DISPLAY_LENGTH));
+    }
+
+    public static String hash(String rawKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ratewise.security.apikey;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * An active API key as held in {@link ApiKeyCache}: enough to authenticate a request
+ * without touching the database.
+ *
+ * As the principal of a request, its name is "apikey:" + keyId, which is what ends up in
+ * actor columns and logs; the key hash is never part of it.
+ */
+public record ApiKeyPrincipal(String keyId, String userId, String keyHash,
+                              Set<ApiKeyScope> scopes, LocalDateTime expiresAt) implements AuthenticatedPrincipal {
+
+    public static final String NAME_PREFIX = "apikey:";
+
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+
+    @Override
+    public String getName() {
+        return NAME_PREFIX + keyId;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,34 @@
+package com.ratewise.security.apikey;
+
+import java.util.Arrays;
+
+/**
+ * Permissions an API key can carry. Each scope becomes a SCOPE_* authority
+ * that WebSecurityConfig accepts next to the matching roles.
+ */
+public enum ApiKeyScope {
+    TARIFFS_READ("tariffs:read"),
+    CALCULATOR("calculator"),
+    ADMIN_IMPORT("admin:import");
+
+    private final String value;
+
+    ApiKeyScope(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String authority() {
+        return "SCOPE_" + value;
+    }
+
+    public static ApiKeyScope fromValue(String value) {
+        return Arrays.stream(values())
+                .filter(scope -> scope.value.equals(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown API key scope: " + value));
+    }
+}
@@ -1,10 +1,15 @@
 package com.ratewise.security.config;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -32,6 +37,13 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratewise.security.apikey.ApiKeyAuthenticationFilter;
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.apikey.ApiKeyScope;
+import com.ratewise.security.ratelimit.RateLimitFilter;
+import com.ratewise.security.ratelimit.RateLimitProperties;
+import com.ratewise.security.ratelimit.RateLimiter;
 import com.ratewise.security.util.JWTUtil;
 import com.ratewise.security.repositories.UserRepository;
 import com.ratewise.security.entities.User;
@@ -48,26 +60,48 @@ import java.util.Optional;
 @EnableMethodSecurity
 public class WebSecurityConfig {
 
+    private static final String SCOPE_TARIFFS_READ = ApiKeyScope.TARIFFS_READ.authority();
+    private static final String SCOPE_CALCULATOR = ApiKeyScope.CALCULATOR.authority();
+    private static final String SCOPE_ADMIN_IMPORT = ApiKeyScope.ADMIN_IMPORT.authority();
+
     private final JWTUtil jwtUtil;
     private final UserRepository userRepository;
     private final CustomOAuth2UserService customOAuth2UserService;
     private final OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler;
     private final OAuth2LoginFailureHandler oAuth2LoginFailureHandler;
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties rateLimitProperties;
+    private final ObjectMapper objectMapper;
+    private final ApiKeyCache apiKeyCache;
+    private final ObservationRegistry observationRegistry;
 
     public WebSecurityConfig(JWTUtil jwtUtil,
                            UserRepository userRepository,
                            CustomOAuth2UserService customOAuth2UserService,
                            OAuth2LoginSuccessHandler oAuth2LoginSuccessHandler,
-                           OAuth2LoginFailureHandler oAuth2LoginFailureHandler) {
+                           OAuth2LoginFailureHandler oAuth2LoginFailureHandler,
+                           RateLimiter rateLimiter,
+                           RateLimitProperties rateLimitProperties,
+                           ObjectMapper objectMapper,
+                           ApiKeyCache apiKeyCache,
+                           ObservationRegistry observationRegistry) {
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
         this.customOAuth2UserService = customOAuth2UserService;
         this.oAuth2LoginSuccessHandler = oAuth2LoginSuccessHandler;
         this.oAuth2LoginFailureHandler = oAuth2LoginFailureHandler;
+        this.rateLimiter = rateLimiter;
+        this.rateLimitProperties = rateLimitProperties;
+        this.objectMapper = objectMapper;
+        this.apiKeyCache = apiKeyCache;
+        this.observationRegistry = observationRegistry;
     }
 
+    // Stored hashes below this cost are re-hashed on the next successful login
     @Bean
-    public PasswordEncoder passwordEncoder() { return new BCryptPasswordEncoder(); }
+    public PasswordEncoder passwordEncoder(@Value("${security.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
+    }
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -77,6 +111,9 @@ public class WebSecurityConfig {
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED))
                 .authorizeHttpRequests(auth -> auth
+                // Async re-dispatch of an already-authorized request (streamed responses)
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // === PUBLIC: SPA entry, login route, static assets ===
                 .requestMatchers(
                     "/", "/index.html", "/favicon.ico",
@@ -86,6 +123,9 @@ public class WebSecurityConfig {
                     "/oauth-callback"            
                 ).permitAll()
 
+                // === PUBLIC: health check and Prometheus scrape (management.server.port) ===
+                .requestMatchers("/actuator/health", "/actuator/health/**", "/actuator/prometheus").permitAll()
+
                 // === PUBLIC: Swagger, error, OAuth2 endpoints ===
                 .requestMatchers(
                     "/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html",
@@ -101,23 +141,29 @@ public class WebSecurityConfig {
                 .requestMatchers(HttpMethod.DELETE, "/api/v1/auth/session").hasAnyRole("ADMIN","USER")
                 .requestMatchers(HttpMethod.GET,    "/api/v1/auth/profile").hasAnyRole("ADMIN","USER")
                 .requestMatchers(HttpMethod.GET,    "/api/v1/auth/validation").hasAnyRole("ADMIN","USER")
+                .requestMatchers("/api/v1/auth/api-keys/**").hasAnyRole("ADMIN","USER")
 
                 .requestMatchers("/api/v1/health/**").hasAnyRole("ADMIN","USER")
                 .requestMatchers("/db/**").hasAnyRole("ADMIN","USER")
-                .requestMatchers(HttpMethod.POST, "/api/v1/calculator/landed-cost").hasAnyRole("ADMIN","USER")
-                .requestMatchers(HttpMethod.GET,  "/api/v1/tariffs/**").hasAnyRole("ADMIN","USER")
-                .requestMatchers(HttpMethod.GET,  "/api/v1/countries/**").hasAnyRole("ADMIN","USER")
-                .requestMatchers(HttpMethod.GET,  "/api/v1/agreements/**").hasAnyRole("ADMIN","USER")
-                .requestMatchers(HttpMethod.GET,  "/api/v1/hscodes/**").hasAnyRole("ADMIN","USER")
+
+                // === AUTHENTICATED (USER or ADMIN) or API key with the matching scope ===
+                .requestMatchers(HttpMethod.POST, "/api/v1/calculator/landed-cost", "/api/v1/calculator/landed-cost/async").hasAnyAuthority("ROLE_ADMIN","ROLE_USER", SCOPE_CALCULATOR)
+                .requestMatchers(HttpMethod.GET,  "/api/v1/calculator/quotes/*/replay").hasAnyAuthority("ROLE_ADMIN","ROLE_USER", SCOPE_CALCULATOR)
+                .requestMatchers(HttpMethod.GET,  "/api/v1/tariffs/**").hasAnyAuthority("ROLE_ADMIN","ROLE_USER", SCOPE_TARIFFS_READ)
+                .requestMatchers(HttpMethod.GET,  "/api/v1/countries/**").hasAnyAuthority("ROLE_ADMIN","ROLE_USER", SCOPE_TARIFFS_READ)
+                .requestMatchers(HttpMethod.GET,  "/api/v1/agreements/**").hasAnyAuthority("ROLE_ADMIN","ROLE_USER", SCOPE_TARIFFS_READ)
+                .requestMatchers(HttpMethod.GET,  "/api/v1/hscodes/**").hasAnyAuthority("ROLE_ADMIN","ROLE_USER", SCOPE_TARIFFS_READ)
 
                 // === ADMIN-ONLY ===
                 .requestMatchers("/api/v1/admin/users/**").hasRole("ADMIN")
                 .requestMatchers(HttpMethod.GET,    "/api/v1/admin/roles").hasRole("ADMIN")
-                .requestMatchers(HttpMethod.GET,    "/api/v1/admin/tariffs/{id}").hasRole("ADMIN")
-                .requestMatchers(HttpMethod.PUT,    "/api/v1/admin/tariffs/{id}").hasRole("ADMIN")
-                .requestMatchers(HttpMethod.DELETE, "/api/v1/admin/tariffs/{id}").hasRole("ADMIN")
-                .requestMatchers(HttpMethod.POST,   "/api/v1/admin/tariffs").hasRole("ADMIN")
-                .requestMatchers(HttpMethod.GET,    "/api/v1/admin/tariffs").hasRole("ADMIN")
+                .requestMatchers("/api/v1/admin/slow-queries/**").hasRole("ADMIN")
+                .requestMatchers(HttpMethod.GET,    "/api/v1/admin/tariffs/{id}").hasAnyAuthority("ROLE_ADMIN", SCOPE_ADMIN_IMPORT)
+                .requestMatchers(HttpMethod.GET,    "/api/v1/admin/tariffs/{id}/history").hasAnyAuthority("ROLE_ADMIN", SCOPE_ADMIN_IMPORT)
+                .requestMatchers(HttpMethod.PUT,    "/api/v1/admin/tariffs/{id}").hasAnyAuthority("ROLE_ADMIN", SCOPE_ADMIN_IMPORT)
+                .requestMatchers(HttpMethod.DELETE, "/api/v1/admin/tariffs/{id}").hasAnyAuthority("ROLE_ADMIN", SCOPE_ADMIN_IMPORT)
+                .requestMatchers(HttpMethod.POST,   "/api/v1/admin/tariffs").hasAnyAuthority("ROLE_ADMIN", SCOPE_ADMIN_IMPORT)
+                .requestMatchers(HttpMethod.GET,    "/api/v1/admin/tariffs").hasAnyAuthority("ROLE_ADMIN", SCOPE_ADMIN_IMPORT)
 
                 // Everything else stays public so the SPA can client-route
                 .anyRequest().permitAll()
@@ -136,6 +182,11 @@ public class WebSecurityConfig {
                 .failureHandler(oAuth2LoginFailureHandler)
             )
 
+            // Rate limiting runs first: filters added at the same position keep insertion order,
+            // and the JWT filter hits the database for every request
+            .addFilterBefore(new RateLimitFilter(rateLimiter, rateLimitProperties, jwtUtil, apiKeyCache, objectMapper),
+                    UsernamePasswordAuthenticationFilter.class)
+            .addFilterBefore(new ApiKeyAuthenticationFilter(apiKeyCache), UsernamePasswordAuthenticationFilter.class)
             .addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class)
             .build();
     }
@@ -156,7 +207,11 @@ public class WebSecurityConfig {
                 String authHeader = request.getHeader("Authorization");
 
                 if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                    try {
+                    // Token validation and user lookup, timed and traced by outcome; the rest of the chain is not included
+                    Observation observation = Observation.createNotStarted("ratewise.security.jwt_filter", observationRegistry)
+                            .contextualName("jwt authentication")
+                            .start();
+                    try (Observation.Scope scope = observation.openScope()) {
                         String token = authHeader.substring(7);
 
                         jwtUtil.validateToken(token);
@@ -185,13 +240,18 @@ public class WebSecurityConfig {
                             email, null, authorities
                         );
                         SecurityContextHolder.getContext().setAuthentication(authentication);
+                        observation.lowCardinalityKeyValue("outcome", "authenticated");
 
                     } catch (Exception e) {
+                        observation.lowCardinalityKeyValue("outcome", "rejected");
+                        observation.error(e);
                         SecurityContextHolder.clearContext();
                         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                         response.setContentType("application/json");
                         response.getWriter().write("{\"error\":\"Invalid or expired token: " + e.getMessage() + "\"}");
                         return;
+                    } finally {
+                        observation.stop();
                     }
                 }
                 filterChain.doFilter(request, response);
@@ -247,7 +307,8 @@ public class WebSecurityConfig {
             "https://csd-assignment-app-e4ftdka3fjc3htca.southeastasia-01.azurewebsites.net" // add this
         ));
         config.setAllowedMethods(List.of("GET","POST","PUT","DELETE","OPTIONS","PATCH"));
-        config.setAllowedHeaders(List.of("Authorization","Content-Type"));
+        config.setAllowedHeaders(List.of("Authorization","Content-Type", ApiKeyAuthenticationFilter.API_KEY_HEADER));
+        config.setExposedHeaders(List.of("Retry-After","X-RateLimit-Remaining"));
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,19 @@
+package com.ratewise.security.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class ApiKeyCreatedResponse {
+    private final String message;
+    private final String keyId;
+    private final String name;
+    // The raw key, returned only once at creation
+    private final String apiKey;
+    private final List<String> scopes;
+    private final LocalDateTime expiresAt;
+}
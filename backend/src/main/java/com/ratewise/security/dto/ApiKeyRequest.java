@@ -0,0 +1,33 @@
+package com.ratewise.security.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApiKeyRequest {
+
+    @NotBlank(message = "name is required")
+    @Size(max = 100, message = "name must be at most 100 characters")
+    private String name;
+
+    // tariffs:read, calculator, admin:import (ADMIN users only)
+    @NotEmpty(message = "At least one scope is required")
+    private List<String> scopes;
+
+    // Omit for a key that never expires
+    @Min(value = 1, message = "expiresInDays must be at least 1")
+    @Max(value = 3650, message = "expiresInDays must be at most 3650")
+    private Integer expiresInDays;
+}
@@ -0,0 +1,19 @@
+package com.ratewise.security.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class ApiKeyResponse {
+    private final String keyId;
+    private final String name;
+    private final String keyPrefix;
+    private final List<String> scopes;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime expiresAt;
+    private final LocalDateTime revokedAt;
+}
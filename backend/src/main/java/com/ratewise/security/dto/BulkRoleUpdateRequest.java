@@ -0,0 +1,25 @@
+package com.ratewise.security.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkRoleUpdateRequest {
+
+    @NotEmpty(message = "userIds must contain at least one user ID")
+    @Size(max = 10000, message = "At most 10000 users can be updated at once")
+    private List<String> userIds;
+
+    @NotNull(message = "roleId is required")
+    private Long roleId;
+}
@@ -0,0 +1,14 @@
+package com.ratewise.security.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BulkUpdateResponse {
+    private final String message;
+    private final Integer updatedCount;
+    private final String newRole;
+    private final Boolean isActive;
+    private final String note;
+}
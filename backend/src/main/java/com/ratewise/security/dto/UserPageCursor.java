@@ -0,0 +1,37 @@
+package com.ratewise.security.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset cursor for the admin user listing: the (created_at, id) of the last row returned.
+ * Sent to clients as an opaque URL-safe string in the X-Next-Cursor header.
+ */
+public record UserPageCursor(LocalDateTime createdAt, String userId) {
+
+    public String encode() {
+        String raw = createdAt + "|" + userId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserPageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator <= 0 || separator == raw.length() - 1) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new UserPageCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public static UserPageCursor after(UserSummaryResponse lastRow) {
+        return new UserPageCursor(lastRow.getCreatedAt(), lastRow.getUserId());
+    }
+}
@@ -0,0 +1,8 @@
+package com.ratewise.security.exception;
+
+public class ApiKeyNotFoundException extends RuntimeException {
+
+    public ApiKeyNotFoundException(String id) {
+        super("Could not find active API key with ID: " + id);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ratewise.security.exception;
+
+public class AuthThrottledException extends RuntimeException {
+    public AuthThrottledException(String message) {
+        super(message);
+    }
+}
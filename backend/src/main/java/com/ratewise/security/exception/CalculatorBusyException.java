@@ -0,0 +1,7 @@
+package com.ratewise.security.exception;
+
+public class CalculatorBusyException extends RuntimeException {
+    public CalculatorBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ratewise.security.exception;
+
+public class EventStreamBusyException extends RuntimeException {
+    public EventStreamBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ratewise.security.exception;
+
+public class ExportBusyException extends RuntimeException {
+    public ExportBusyException(String message) {
+        super(message);
+    }
+}
@@ -91,6 +91,34 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Handle ApiKeyNotFoundException and provide a consistent error response.
+     */
+    @ExceptionHandler(ApiKeyNotFoundException.class)
+    public ResponseEntity<Object> handleApiKeyNotFoundException(ApiKeyNotFoundException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.NOT_FOUND.value());
+        body.put("error", "API Key Not Found");
+        body.put("message", ex.getMessage());
+
+        return new ResponseEntity<>(body, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Handle QuoteNotFoundException (calculation replay) with a 404.
+     */
+    @ExceptionHandler(QuoteNotFoundException.class)
+    public ResponseEntity<Object> handleQuoteNotFoundException(QuoteNotFoundException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.NOT_FOUND.value());
+        body.put("error", "Quote Not Found");
+        body.put("message", ex.getMessage());
+
+        return new ResponseEntity<>(body, HttpStatus.NOT_FOUND);
+    }
+
     /**
      * Handle JWT token related exceptions
      */
@@ -213,6 +241,70 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.FORBIDDEN);
     }
 
+    /**
+     * Handle AuthThrottledException (auth hashing pool is saturated)
+     */
+    @ExceptionHandler(AuthThrottledException.class)
+    public ResponseEntity<Object> handleAuthThrottled(AuthThrottledException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        body.put("error", "Service Busy");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(body);
+    }
+
+    /**
+     * Handle CalculatorBusyException (async calculator pool is saturated)
+     */
+    @ExceptionHandler(CalculatorBusyException.class)
+    public ResponseEntity<Object> handleCalculatorBusy(CalculatorBusyException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        body.put("error", "Service Busy");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(body);
+    }
+
+    /**
+     * Handle EventStreamBusyException (too many live event subscribers)
+     */
+    @ExceptionHandler(EventStreamBusyException.class)
+    public ResponseEntity<Object> handleEventStreamBusy(EventStreamBusyException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        body.put("error", "Service Busy");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "5")
+                .body(body);
+    }
+
+    /**
+     * Handle ExportBusyException (too many NDJSON exports running)
+     */
+    @ExceptionHandler(ExportBusyException.class)
+    public ResponseEntity<Object> handleExportBusy(ExportBusyException ex) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.SERVICE_UNAVAILABLE.value());
+        body.put("error", "Service Busy");
+        body.put("message", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "5")
+                .body(body);
+    }
+
     /**
      * Handle IllegalArgumentException
      */
@@ -0,0 +1,8 @@
+package com.ratewise.security.exception;
+
+public class QuoteNotFoundException extends RuntimeException {
+
+    public QuoteNotFoundException(String quoteId) {
+        super("Could not find calculation with quote ID: " + quoteId);
+    }
+}
@@ -0,0 +1,125 @@
+package com.ratewise.security.ratelimit;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free per-node rate limiter (GCRA form of a token bucket).
+ *
+ * Each client is a single AtomicLong holding the "theoretical arrival time": the instant at
+ * which its bucket would be full again. Taking n tokens moves it forward by n emission
+ * intervals with one CAS; the request is rejected if that would push it more than
+ * {@code capacity} intervals past now. No locks and no per-request allocation for known clients.
+ *
+ * Buckets that have refilled are dropped by a periodic sweep (security.rate-limit.sweep-ms).
+ * Past max-tracked-clients a new client also triggers one, at most once per second, so a flood
+ * of new clients costs one scan a second rather than one each.
+ *
+ * Registered by {@link RateLimitConfig} unless another {@link RateLimiter} bean is defined.
+ */
+public class InMemoryRateLimiter implements RateLimiter {
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int capacity;
+    private final int maxTrackedClients;
+
+    private static final long MIN_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile long lastSweepNanos;
+    private final LongAdder allowedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public InMemoryRateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    InMemoryRateLimiter(RateLimitProperties properties, LongSupplier nanoClock) {
+        if (properties.getCapacity() < 1 || properties.getRefillPerSecond() <= 0) {
+            throw new IllegalStateException("security.rate-limit.capacity and refill-per-second must be positive");
+        }
+        this.nanoClock = nanoClock;
+        this.capacity = properties.getCapacity();
+        this.emissionIntervalNanos = Math.max(1L, (long) (1_000_000_000L / properties.getRefillPerSecond()));
+        this.burstToleranceNanos = emissionIntervalNanos * capacity;
+        this.maxTrackedClients = properties.getMaxTrackedClients();
+        this.lastSweepNanos = nanoClock.getAsLong();
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String clientKey, int cost) {
+        if (cost > capacity) {
+            throw new IllegalArgumentException("Request cost " + cost + " exceeds bucket capacity " + capacity);
+        }
+        long now = nanoClock.getAsLong();
+        long increment = cost * emissionIntervalNanos;
+
+        AtomicLong bucket = buckets.get(clientKey);
+        if (bucket == null) {
+            // Unknown client starts with a full bucket; sweep first, its new bucket counts as refilled
+            sweepIfNeeded(now);
+            bucket = buckets.computeIfAbsent(clientKey, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long current = bucket.get();
+            long newArrival = Math.max(current, now) + increment;
+            long allowAt = newArrival - burstToleranceNanos;
+            if (allowAt > now) {
+                rejectedCount.increment();
+                return RateLimitDecision.reject((allowAt - now) / 1_000_000L);
+            }
+            if (bucket.compareAndSet(current, newArrival)) {
+                allowedCount.increment();
+                return RateLimitDecision.allow((now - allowAt) / emissionIntervalNanos);
+            }
+        }
+    }
+
+    private void sweepIfNeeded(long now) {
+        if (buckets.size() > maxTrackedClients && now - lastSweepNanos >= MIN_SWEEP_INTERVAL_NANOS) {
+            sweep(now);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.rate-limit.sweep-ms:10000}")
+    public void sweep() {
+        sweep(nanoClock.getAsLong());
+    }
+
+    // A bucket whose arrival time has passed is full again, same as not tracking it at all
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lastSweepNanos = now;
+            buckets.values().removeIf(bucket -> bucket.get() <= now);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    // Metrics
+
+    public long getAllowedCount() {
+        return allowedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public int getTrackedClients() {
+        return buckets.size();
+    }
+}
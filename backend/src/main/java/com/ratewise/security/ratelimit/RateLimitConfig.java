@@ -0,0 +1,19 @@
+package com.ratewise.security.ratelimit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the per-node {@link InMemoryRateLimiter} as the {@link RateLimiter}, unless the
+ * application already defines one (e.g. a shared store for a multi-node deployment).
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(RateLimiter.class)
+    public InMemoryRateLimiter inMemoryRateLimiter(RateLimitProperties properties) {
+        return new InMemoryRateLimiter(properties);
+    }
+}
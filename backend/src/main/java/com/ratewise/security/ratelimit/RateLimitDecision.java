@@ -0,0 +1,24 @@
+package com.ratewise.security.ratelimit;
+
+/**
+ * Outcome of a {@link RateLimiter#tryAcquire} call.
+ *
+ * @param allowed          whether the request may proceed
+ * @param remaining        whole tokens left in the bucket after this call
+ * @param retryAfterMillis how long until the same request would be allowed (0 when allowed)
+ */
+public record RateLimitDecision(boolean allowed, long remaining, long retryAfterMillis) {
+
+    public static RateLimitDecision allow(long remaining) {
+        return new RateLimitDecision(true, remaining, 0L);
+    }
+
+    public static RateLimitDecision reject(long retryAfterMillis) {
+        return new RateLimitDecision(false, 0L, retryAfterMillis);
+    }
+
+    // Retry-After is in whole seconds and must be at least 1 for a rejected request
+    public long retryAfterSeconds() {
+        return Math.max(1L, (retryAfterMillis + 999) / 1000);
+    }
+}
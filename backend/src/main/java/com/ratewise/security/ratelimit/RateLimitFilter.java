@@ -0,0 +1,127 @@
+package com.ratewise.security.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratewise.security.apikey.ApiKeyAuthenticationFilter;
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.apikey.ApiKeyPrincipal;
+import com.ratewise.security.util.JWTUtil;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per-client rate limiting for /api/**. Registered in the security chain ahead of the JWT
+ * filter, so a throttled client is turned away before any database lookup happens.
+ *
+ * The client is the JWT subject (signature checked, no DB), else the X-API-Key if it is an
+ * active key (checked against ApiKeyCache, no DB), else the remote address. Unverified tokens
+ * and keys count against the address, so inventing new ones does not buy a fresh bucket.
+ * The remote address is only rewritten from X-Forwarded-For when the connection comes from a
+ * trusted proxy (server.forward-headers-strategy=native), so rotating that header does not either.
+ * Rejected requests get 429 with Retry-After.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+    private final JWTUtil jwtUtil;
+    private final ApiKeyCache apiKeyCache;
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public RateLimitFilter(RateLimiter rateLimiter, RateLimitProperties properties, JWTUtil jwtUtil,
+                           ApiKeyCache apiKeyCache, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.properties = properties;
+        this.jwtUtil = jwtUtil;
+        this.apiKeyCache = apiKeyCache;
+        this.objectMapper = objectMapper;
+
+        // A cost the bucket can never hold would make every request fail, refuse to start instead
+        if (properties.getDefaultCost() < 1 || properties.getDefaultCost() > properties.getCapacity()) {
+            throw new IllegalStateException("security.rate-limit.default-cost must be between 1 and capacity");
+        }
+        properties.getCosts().forEach((pattern, cost) -> {
+            if (cost < 1 || cost > properties.getCapacity()) {
+                throw new IllegalStateException("security.rate-limit.costs[" + pattern + "] must be between 1 and capacity");
+            }
+        });
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RateLimitDecision decision = rateLimiter.tryAcquire(resolveClientKey(request), resolveCost(request.getRequestURI()));
+
+        if (!decision.allowed()) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("timestamp", LocalDateTime.now());
+            body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+            body.put("error", "Too Many Requests");
+            body.put("message", "Rate limit exceeded, retry after " + decision.retryAfterSeconds() + "s");
+
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader("Retry-After", String.valueOf(decision.retryAfterSeconds()));
+            response.setHeader(REMAINING_HEADER, "0");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), body);
+            return;
+        }
+
+        response.setHeader(REMAINING_HEADER, String.valueOf(decision.remaining()));
+        filterChain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled()
+                || "OPTIONS".equalsIgnoreCase(request.getMethod())
+                || !request.getRequestURI().startsWith("/api/");
+    }
+
+    String resolveClientKey(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                return "user:" + jwtUtil.validateToken(authHeader.substring(7)).getSubject();
+            } catch (Exception e) {
+                // Invalid token: the JWT filter rejects it, just count it against the caller's address
+            }
+        }
+
+        String apiKey = request.getHeader(ApiKeyAuthenticationFilter.API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isBlank()) {
+            Optional<ApiKeyPrincipal> principal = apiKeyCache.peek(apiKey);
+            if (principal.isPresent()) {
+                // Never keep raw keys in memory
+                return "key:" + principal.get().keyHash();
+            }
+            // Unknown key: the API key filter rejects it, count it against the caller's address
+        }
+
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    int resolveCost(String path) {
+        for (Map.Entry<String, Integer> entry : properties.getCosts().entrySet()) {
+            if (pathMatcher.match(entry.getKey(), path)) {
+                return entry.getValue();
+            }
+        }
+        return properties.getDefaultCost();
+    }
+}
@@ -0,0 +1,39 @@
+package com.ratewise.security.ratelimit;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * security.rate-limit.* settings.
+ *
+ * Every client gets a bucket of {@code capacity} tokens refilled at {@code refillPerSecond}.
+ * A request costs {@code defaultCost} tokens unless its path matches one of {@code costs}
+ * (Ant-style patterns, first match wins), e.g.
+ * {@code security.rate-limit.costs.[/api/v1/calculator/**]=5}.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "security.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    private int capacity = 60;
+
+    private double refillPerSecond = 10.0;
+
+    private int defaultCost = 1;
+
+    private Map<String, Integer> costs = new LinkedHashMap<>();
+
+    // Refilled buckets are swept every sweepMs, and early (at most once a second) past maxTrackedClients
+    private long sweepMs = 10_000;
+
+    private int maxTrackedClients = 100_000;
+}
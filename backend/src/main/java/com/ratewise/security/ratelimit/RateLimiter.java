@@ -0,0 +1,17 @@
+package com.ratewise.security.ratelimit;
+
+/**
+ * Token-bucket style limiter keyed by client (user ID, API key or IP).
+ *
+ * The default {@link InMemoryRateLimiter} is per node. A multi-node deployment that needs
+ * one shared budget per client plugs in another implementation of this interface as the
+ * {@code RateLimiter} bean; the filter only depends on this contract.
+ */
+public interface RateLimiter {
+
+    /**
+     * Try to take {@code cost} tokens from the bucket of {@code clientKey}.
+     * Never blocks; a rejected call takes nothing from the bucket.
+     */
+    RateLimitDecision tryAcquire(String clientKey, int cost);
+}
@@ -0,0 +1,133 @@
+package com.ratewise.security.repositories;
+
+import com.ratewise.security.apikey.ApiKeyPrincipal;
+import com.ratewise.security.apikey.ApiKeyScope;
+import com.ratewise.security.dto.ApiKeyResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Repository
+public class ApiKeyRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    // Active = not revoked, not expired, owner enabled. admin:import only survives while the owner is ADMIN.
+    private static final String ACTIVE_KEYS_SQL = """
+            SELECT k.id, k.user_id, k.key_hash, k.scopes, k.expires_at, r.role_name
+            FROM api_keys k
+            JOIN users u ON u.id = k.user_id
+            LEFT JOIN user_roles ur ON ur.user_id = u.id
+            LEFT JOIN roles r ON r.id = ur.role_id
+            WHERE k.revoked_at IS NULL
+              AND (k.expires_at IS NULL OR k.expires_at > now())
+              AND u.is_active = true
+            """;
+
+    private final RowMapper<ApiKeyPrincipal> principalRowMapper = (rs, rowNum) -> {
+        Set<ApiKeyScope> scopes = parseScopes(rs.getString("scopes"));
+        if (!"ADMIN".equals(rs.getString("role_name"))) {
+            scopes.remove(ApiKeyScope.ADMIN_IMPORT);
+        }
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        return new ApiKeyPrincipal(
+                rs.getString("id"),
+                rs.getString("user_id"),
+                rs.getString("key_hash"),
+                Set.copyOf(scopes),
+                expiresAt != null ? expiresAt.toLocalDateTime() : null);
+    };
+
+    private final RowMapper<ApiKeyResponse> responseRowMapper = (rs, rowNum) -> {
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        Timestamp revokedAt = rs.getTimestamp("revoked_at");
+        return ApiKeyResponse.builder()
+                .keyId(rs.getString("id"))
+                .name(rs.getString("name"))
+                .keyPrefix(rs.getString("key_prefix"))
+                .scopes(parseScopes(rs.getString("scopes")).stream().map(ApiKeyScope::getValue).toList())
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .expiresAt(expiresAt != null ? expiresAt.toLocalDateTime() : null)
+                .revokedAt(revokedAt != null ? revokedAt.toLocalDateTime() : null)
+                .build();
+    };
+
+    public ApiKeyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<ApiKeyPrincipal> findAllActive() {
+        return jdbcTemplate.query(ACTIVE_KEYS_SQL, principalRowMapper);
+    }
+
+    public List<ApiKeyPrincipal> findActiveByUserIds(Collection<String> userIds) {
+        String sql = ACTIVE_KEYS_SQL + " AND k.user_id = ANY(?)";
+        return jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", userIds.toArray())),
+                principalRowMapper);
+    }
+
+    public List<ApiKeyResponse> findByUserId(String userId) {
+        String sql = """
+                SELECT id, name, key_prefix, scopes, created_at, expires_at, revoked_at
+                FROM api_keys
+                WHERE user_id = ?
+                ORDER BY created_at DESC
+                """;
+        return jdbcTemplate.query(sql, responseRowMapper, userId);
+    }
+
+    public int countActiveByUserId(String userId) {
+        String sql = "SELECT COUNT(*) FROM api_keys WHERE user_id = ? AND revoked_at IS NULL";
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        return count != null ? count : 0;
+    }
+
+    public void insert(String id, String userId, String name, String keyPrefix, String keyHash,
+                       Set<ApiKeyScope> scopes, LocalDateTime createdAt, LocalDateTime expiresAt) {
+        String sql = """
+                INSERT INTO api_keys (id, user_id, name, key_prefix, key_hash, scopes, created_at, expires_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+        jdbcTemplate.update(sql, id, userId, name, keyPrefix, keyHash, formatScopes(scopes), createdAt, expiresAt);
+    }
+
+    /**
+     * Revoke one of the user's keys. Returns the key hash (to drop it from the cache),
+     * or empty if the key does not exist, belongs to someone else or is already revoked.
+     */
+    public Optional<String> revoke(String id, String userId) {
+        String sql = """
+                UPDATE api_keys SET revoked_at = now()
+                WHERE id = ? AND user_id = ? AND revoked_at IS NULL
+                RETURNING key_hash
+                """;
+        List<String> hashes = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("key_hash"), id, userId);
+        return hashes.isEmpty() ? Optional.empty() : Optional.of(hashes.get(0));
+    }
+
+    private static Set<ApiKeyScope> parseScopes(String scopes) {
+        Set<ApiKeyScope> parsed = EnumSet.noneOf(ApiKeyScope.class);
+        if (scopes == null || scopes.isBlank()) {
+            return parsed;
+        }
+        Arrays.stream(scopes.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .forEach(s -> parsed.add(ApiKeyScope.fromValue(s)));
+        return parsed;
+    }
+
+    private static String formatScopes(Set<ApiKeyScope> scopes) {
+        return scopes.stream().map(ApiKeyScope::getValue).collect(Collectors.joining(","));
+    }
+}
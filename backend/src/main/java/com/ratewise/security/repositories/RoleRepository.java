@@ -5,6 +5,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -52,6 +53,22 @@ public class RoleRepository {
         jdbcTemplate.update(insertSql, userId, roleId);
     }
 
+    /**
+     * Replace the role of every given user with set-based statements
+     * (one DELETE and one INSERT for the whole batch, not one pair per user).
+     * Call inside a transaction so the batch is all-or-nothing.
+     */
+    public int assignRoleToUsers(Collection<String> userIds, Long roleId) {
+        String deleteSql = "DELETE FROM user_roles WHERE user_id = ANY(?)";
+        jdbcTemplate.update(deleteSql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", userIds.toArray())));
+
+        String insertSql = "INSERT INTO user_roles (user_id, role_id) SELECT u.id, ? FROM unnest(?) AS u(id)";
+        return jdbcTemplate.update(insertSql, ps -> {
+            ps.setLong(1, roleId);
+            ps.setArray(2, ps.getConnection().createArrayOf("varchar", userIds.toArray()));
+        });
+    }
+
     public void removeRoleFromUser(String userId) {
         String sql = "DELETE FROM user_roles WHERE user_id = ?";
         jdbcTemplate.update(sql, userId);
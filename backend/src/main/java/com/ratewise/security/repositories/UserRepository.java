@@ -1,5 +1,7 @@
 package com.ratewise.security.repositories;
 
+import com.ratewise.security.dto.UserPageCursor;
+import com.ratewise.security.dto.UserSummaryResponse;
 import com.ratewise.security.entities.User;
 import com.ratewise.security.entities.Role;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -7,24 +9,28 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Repository
 public class UserRepository {
     private final JdbcTemplate jdbcTemplate;
-    private final RoleRepository roleRepository;
 
-    public UserRepository(JdbcTemplate jdbcTemplate, RoleRepository roleRepository) {
+    public UserRepository(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
-        this.roleRepository = roleRepository;
     }
 
     private final RowMapper<User> userRowMapper = new RowMapper<User>() {
@@ -137,30 +143,153 @@ public class UserRepository {
         return count != null && count > 0;
     }
 
-    public Optional<User> findByUsernameWithRole(String username) {
-        Optional<User> userOpt = findByUsername(username);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            Optional<Role> role = roleRepository.findRoleByUserId(user.getId());
-            role.ifPresent(user::setRole);
-            return Optional.of(user);
+    // users joined with their (single) role, so login/profile lookups need one round trip
+    private static final String USER_WITH_ROLE_SQL = """
+            SELECT u.*, r.id AS role_id, r.role_name
+            FROM users u
+            LEFT JOIN user_roles ur ON ur.user_id = u.id
+            LEFT JOIN roles r ON r.id = ur.role_id
+            """;
+
+    private final RowMapper<User> userWithRoleRowMapper = (rs, rowNum) -> {
+        User user = userRowMapper.mapRow(rs, rowNum);
+        String roleName = rs.getString("role_name");
+        if (roleName != null) {
+            user.setRole(Role.builder()
+                    .id(rs.getLong("role_id"))
+                    .roleName(roleName)
+                    .build());
         }
-        return Optional.empty();
+        return user;
+    };
+
+    public Optional<User> findByUsernameWithRole(String username) {
+        String sql = USER_WITH_ROLE_SQL + " WHERE u.username = ? LIMIT 1";
+        List<User> users = jdbcTemplate.query(sql, userWithRoleRowMapper, username);
+        return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
     }
 
     public Optional<User> findByIdWithRole(String id) {
-        Optional<User> userOpt = findById(id);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            Optional<Role> role = roleRepository.findRoleByUserId(user.getId());
-            role.ifPresent(user::setRole);
-            return Optional.of(user);
-        }
-        return Optional.empty();
+        String sql = USER_WITH_ROLE_SQL + " WHERE u.id = ? LIMIT 1";
+        List<User> users = jdbcTemplate.query(sql, userWithRoleRowMapper, id);
+        return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
+    }
+
+    /**
+     * Which of the given IDs exist, in one query.
+     */
+    public Set<String> findExistingIds(Collection<String> ids) {
+        String sql = "SELECT id FROM users WHERE id = ANY(?)";
+        List<String> found = jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", ids.toArray())),
+                (rs, rowNum) -> rs.getString("id"));
+        return new HashSet<>(found);
+    }
+
+    /**
+     * Enable/disable every given user in a single UPDATE. Returns the number of rows changed.
+     */
+    public int updateEnabled(Collection<String> ids, boolean enabled) {
+        String sql = "UPDATE users SET is_active = ? WHERE id = ANY(?)";
+        return jdbcTemplate.update(sql, ps -> {
+            ps.setBoolean(1, enabled);
+            ps.setArray(2, ps.getConnection().createArrayOf("varchar", ids.toArray()));
+        });
+    }
+
+    public void updatePasswordHash(String id, String passwordHash) {
+        String sql = "UPDATE users SET password_hash = ? WHERE id = ?";
+        jdbcTemplate.update(sql, passwordHash, id);
     }
 
     public List<User> findAll() {
         String sql = "SELECT * FROM users ORDER BY created_at DESC";
         return jdbcTemplate.query(sql, userRowMapper);
     }
-}
\ No newline at end of file
+
+    // Admin listing: users + role in one query, newest first, keyset-paginated on (created_at, id)
+    private static final String USER_SUMMARY_SQL = """
+            SELECT u.id, u.username, u.email, u.is_active, u.created_at,
+                   u.oauth_provider, u.oauth_provider_id, r.role_name
+            FROM users u
+            LEFT JOIN user_roles ur ON ur.user_id = u.id
+            LEFT JOIN roles r ON r.id = ur.role_id
+            WHERE 1 = 1
+            """;
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private final RowMapper<UserSummaryResponse> userSummaryRowMapper = (rs, rowNum) -> UserSummaryResponse.builder()
+            .userId(rs.getString("id"))
+            .username(rs.getString("username"))
+            .email(rs.getString("email"))
+            .isActive(rs.getBoolean("is_active"))
+            .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+            .role(rs.getString("role_name"))
+            .oauthProvider(rs.getString("oauth_provider"))
+            .oauthProviderId(rs.getString("oauth_provider_id"))
+            .build();
+
+    /**
+     * One page of user summaries.
+     *
+     * @param search  optional case-insensitive prefix matched against username or email
+     * @param after   optional cursor (rows strictly after it are returned)
+     * @param limit   page size, or null for every matching row
+     */
+    public List<UserSummaryResponse> findUserSummaries(String search, UserPageCursor after, Integer limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = summaryQuery(search, after, params);
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            params.add(limit);
+        }
+        return jdbcTemplate.query(sql.toString(), userSummaryRowMapper, params.toArray());
+    }
+
+    /**
+     * Stream every matching user summary to the consumer without materialising the list.
+     * Runs in a read-only transaction so PgJDBC can use a server-side cursor with the fetch size;
+     * the connection is held until the consumer has taken the last user.
+     */
+    @Transactional(readOnly = true)
+    public void streamUserSummaries(String search, Consumer<UserSummaryResponse> consumer) {
+        List<Object> params = new ArrayList<>();
+        String sql = summaryQuery(search, null, params).toString();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, rs -> {
+            consumer.accept(userSummaryRowMapper.mapRow(rs, rs.getRow()));
+        });
+    }
+
+    private static StringBuilder summaryQuery(String search, UserPageCursor after, List<Object> params) {
+        StringBuilder sql = new StringBuilder(USER_SUMMARY_SQL);
+
+        if (search != null && !search.isBlank()) {
+            // prefix match, served by the LOWER(...) text_pattern_ops indexes
+            String prefix = escapeLike(search.trim().toLowerCase()) + "%";
+            sql.append(" AND (LOWER(u.username) LIKE ? OR LOWER(u.email) LIKE ?)");
+            params.add(prefix);
+            params.add(prefix);
+        }
+
+        if (after != null) {
+            sql.append(" AND (u.created_at, u.id) < (?, ?)");
+            params.add(Timestamp.valueOf(after.createdAt()));
+            params.add(after.userId());
+        }
+
+        sql.append(" ORDER BY u.created_at DESC, u.id DESC");
+        return sql;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 import java.time.Instant;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -96,6 +97,11 @@ public class JWTUtil {
         userTokens.remove(userId);
     }
 
+    // Invalidate many users in one sweep (bulk admin changes)
+    public void invalidateUserTokens(Collection<String> userIds) {
+        userTokens.keySet().removeAll(userIds);
+    }
+
     public boolean isTokenActiveForUser(String token) {
         try {
             DecodedJWT decoded = validateToken(token);
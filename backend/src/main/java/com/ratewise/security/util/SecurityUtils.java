@@ -9,13 +9,14 @@ public class SecurityUtils {
     
     /**
      * Get the current authenticated user's email from SecurityContext
-     * @return email of authenticated user, or null if not authenticated
+     * @return email of authenticated user, or null if not authenticated or authenticated by API key
      */
     public static String getCurrentUserEmail() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.isAuthenticated() 
-            && !authentication.getPrincipal().equals("anonymousUser")) {
-            return (String) authentication.getPrincipal();
+            && authentication.getPrincipal() instanceof String email
+            && !email.equals("anonymousUser")) {
+            return email;
         }
         return null;
     }
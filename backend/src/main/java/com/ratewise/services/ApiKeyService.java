@@ -0,0 +1,80 @@
+package com.ratewise.services;
+
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.apikey.ApiKeyHasher;
+import com.ratewise.security.apikey.ApiKeyPrincipal;
+import com.ratewise.security.apikey.ApiKeyScope;
+import com.ratewise.security.dto.ApiKeyCreatedResponse;
+import com.ratewise.security.dto.ApiKeyRequest;
+import com.ratewise.security.dto.ApiKeyResponse;
+import com.ratewise.security.exception.ApiKeyNotFoundException;
+import com.ratewise.security.repositories.ApiKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Issues, lists and revokes API keys for machine clients. The raw key is returned once
+ * and never stored; the database and {@link ApiKeyCache} only hold its SHA-256.
+ */
+@Service
+public class ApiKeyService {
+
+    private final ApiKeyRepository apiKeyRepository;
+    private final ApiKeyCache apiKeyCache;
+    private final int maxKeysPerUser;
+
+    public ApiKeyService(ApiKeyRepository apiKeyRepository, ApiKeyCache apiKeyCache,
+                         @Value("${security.api-key.max-per-user:20}") int maxKeysPerUser) {
+        this.apiKeyRepository = apiKeyRepository;
+        this.apiKeyCache = apiKeyCache;
+        this.maxKeysPerUser = maxKeysPerUser;
+    }
+
+    public ApiKeyCreatedResponse issue(String userId, String role, ApiKeyRequest request) {
+        Set<ApiKeyScope> scopes = EnumSet.noneOf(ApiKeyScope.class);
+        request.getScopes().forEach(scope -> scopes.add(ApiKeyScope.fromValue(scope)));
+
+        if (scopes.contains(ApiKeyScope.ADMIN_IMPORT) && !"ADMIN".equals(role)) {
+            throw new AccessDeniedException("Only admins can issue keys with the admin:import scope");
+        }
+        if (apiKeyRepository.countActiveByUserId(userId) >= maxKeysPerUser) {
+            throw new IllegalArgumentException("A user can have at most " + maxKeysPerUser + " active API keys");
+        }
+
+        String rawKey = ApiKeyHasher.generateKey();
+        String keyHash = ApiKeyHasher.hash(rawKey);
+        String keyId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = request.getExpiresInDays() != null ? now.plusDays(request.getExpiresInDays()) : null;
+
+        apiKeyRepository.insert(keyId, userId, request.getName().trim(), ApiKeyHasher.displayPrefix(rawKey),
+                keyHash, scopes, now, expiresAt);
+        apiKeyCache.put(new ApiKeyPrincipal(keyId, userId, keyHash, Set.copyOf(scopes), expiresAt));
+
+        return ApiKeyCreatedResponse.builder()
+                .message("API key created. Store it now, it will not be shown again")
+                .keyId(keyId)
+                .name(request.getName().trim())
+                .apiKey(rawKey)
+                .scopes(scopes.stream().map(ApiKeyScope::getValue).toList())
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    public List<ApiKeyResponse> list(String userId) {
+        return apiKeyRepository.findByUserId(userId);
+    }
+
+    public void revoke(String userId, String keyId) {
+        String keyHash = apiKeyRepository.revoke(keyId, userId)
+                .orElseThrow(() -> new ApiKeyNotFoundException(keyId));
+        apiKeyCache.remove(keyHash);
+    }
+}
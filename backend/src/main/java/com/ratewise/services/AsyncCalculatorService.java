@@ -0,0 +1,151 @@
+package com.ratewise.services;
+
+import com.ratewise.security.exception.CalculatorBusyException;
+import com.ratewise.snapshot.TariffSnapshotService;
+import io.micrometer.context.ContextSnapshotFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs landed-cost calculations off the request thread, for the async calculator endpoint.
+ *
+ * A calculation that has to go to the database runs on a bounded pool sized to the connection
+ * pool (more workers would only wait for a connection), and the servlet thread is released
+ * while it does. When the tariff snapshot is loaded and the request has no asOf the calculation
+ * is in-memory only, so it is answered on the calling thread instead of paying for the hand-off.
+ *
+ * As with the auth pool (PasswordHashVerifier), a full queue or a calculation that outlives
+ * calculator.async.timeout-ms fails with {@link CalculatorBusyException} (HTTP 503), and tasks
+ * carry the caller's context so the calculation stays in the request's trace.
+ */
+@Service
+public class AsyncCalculatorService {
+
+    private static final ContextSnapshotFactory CONTEXT_SNAPSHOTS = ContextSnapshotFactory.builder().build();
+
+    private final CalculatorService calculatorService;
+    private final TariffSnapshotService tariffSnapshots;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final AtomicLong inlineCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+
+    public AsyncCalculatorService(CalculatorService calculatorService,
+                                  TariffSnapshotService tariffSnapshots,
+                                  @Value("${calculator.async.threads:0}") int threads,
+                                  @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+                                  @Value("${calculator.async.queue-capacity:256}") int queueCapacity,
+                                  @Value("${calculator.async.timeout-ms:10000}") long timeoutMillis) {
+        this.calculatorService = calculatorService;
+        this.tariffSnapshots = tariffSnapshots;
+        this.timeoutMillis = timeoutMillis;
+
+        // 0 = one worker per pooled connection, each calculation holds one for its lookup
+        int poolSize = threads > 0 ? threads : connectionPoolSize;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "calculator-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Same request and response as {@link CalculatorService#calculateLandedCost}; its exceptions
+     * complete the future instead of being thrown.
+     */
+    public CompletableFuture<Map<String, Object>> calculateLandedCost(Map<String, Object> request) {
+        // asOf reads tariff_rates_history from the database even with a snapshot loaded
+        if (tariffSnapshots.current() != null && !CalculatorService.isAsOf(request)) {
+            inlineCount.incrementAndGet();
+            try {
+                return CompletableFuture.completedFuture(calculatorService.calculateLandedCost(request));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        Runnable task = CONTEXT_SNAPSHOTS.captureAll().wrap(() -> {
+            try {
+                result.complete(calculatorService.calculateLandedCost(request));
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        });
+        Future<?> running;
+        try {
+            running = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            return CompletableFuture.failedFuture(
+                    new CalculatorBusyException("Too many concurrent calculations, please retry shortly"));
+        }
+
+        return result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).exceptionallyCompose(e -> {
+            if (e instanceof TimeoutException) {
+                running.cancel(true);
+                timedOutCount.incrementAndGet();
+                return CompletableFuture.failedFuture(
+                        new CalculatorBusyException("Calculation is taking too long, please retry shortly"));
+            }
+            return CompletableFuture.failedFuture(e);
+        });
+    }
+
+    // Pool metrics
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /** Answered on the calling thread from the tariff snapshot. */
+    public long getInlineCount() {
+        return inlineCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -6,6 +6,7 @@ import com.ratewise.security.dto.RegisterRequest;
 import com.ratewise.security.repositories.UserRepository;
 import com.ratewise.security.repositories.RoleRepository;
 import com.ratewise.security.util.JWTUtil;
+import com.ratewise.security.util.PasswordHashVerifier;
 import com.ratewise.security.entities.User;
 import com.ratewise.security.entities.Role;
 import com.ratewise.security.exception.EmailAlreadyExistsException;
@@ -25,19 +26,22 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JWTUtil jwtUtil;
     private final RoleRepository roleRepository;
+    private final PasswordHashVerifier passwordHashVerifier;
 
     public AuthService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
-                       JWTUtil jwtUtil, RoleRepository roleRepository) {
+                       JWTUtil jwtUtil, RoleRepository roleRepository,
+                       PasswordHashVerifier passwordHashVerifier) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtil = jwtUtil;
         this.roleRepository = roleRepository;
+        this.passwordHashVerifier = passwordHashVerifier;
     }
 
     public LoginResponse login(LoginRequest request) {
-        // Check if user exists
-        User user = userRepository.findByUsername(request.getUsername())
+        // Check if user exists (user + role in a single query)
+        User user = userRepository.findByUsernameWithRole(request.getUsername())
                 .orElseThrow(() -> new InvalidCredentialsException("Invalid username or password"));
 
         // Check if account is enabled
@@ -45,22 +49,25 @@ public class AuthService {
             throw new AccountDisabledException("Account is disabled");
         }
 
-        // Check password, throw error for wrong password
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        // Check password on the bounded auth pool, throw error for wrong password
+        if (!passwordHashVerifier.matches(request.getPassword(), user.getPassword())) {
             throw new InvalidCredentialsException("Invalid username or password");
         }
 
-        // Load user with role for token generation
-        User userWithRole = userRepository.findByIdWithRole(user.getId())
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        // Re-hash with the configured cost if the stored hash is weaker
+        if (passwordHashVerifier.needsUpgrade(user.getPassword())) {
+            String upgradedHash = passwordHashVerifier.encode(request.getPassword());
+            userRepository.updatePasswordHash(user.getId(), upgradedHash);
+            user.setPassword(upgradedHash);
+        }
 
         // Generate token with role
-        String token = jwtUtil.generateToken(userWithRole);
+        String token = jwtUtil.generateToken(user);
 
         return LoginResponse.builder()
                 .accessToken(token)
-                .username(userWithRole.getUsername())
-                .role(userWithRole.getRole().getRoleName())  // or getRoleName(), depending on your entity field
+                .username(user.getUsername())
+                .role(user.getRole() != null ? user.getRole().getRoleName() : null)
                 .build();
     }
 
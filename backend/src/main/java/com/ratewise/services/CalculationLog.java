@@ -0,0 +1,197 @@
+package com.ratewise.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps every landed-cost calculation in calculation_log (see db/schema.sql): its inputs, its
+ * response, the tariff_rates and tax_rules rows it used and the data_version, under a quote_id
+ * returned to the caller, so the quote can be replayed later (CalculationReplayService).
+ *
+ * The calculation only queues the row; one writer thread inserts the queue in batches
+ * (calculation-log.*), so logging costs the request no database round trip. The price is that
+ * rows still queued when the process dies are lost, and that calculations are not logged while
+ * the queue is full; both are counted. calculation_log is append-only.
+ */
+@Slf4j
+@Component
+public class CalculationLog {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO calculation_log (quote_id, created_at, actor, request, response, tariff_id, tax_rule_id, data_version)
+            VALUES (?, ?, ?, CAST(? AS jsonb), CAST(? AS jsonb), ?, ?, ?)
+            """;
+
+    record Entry(UUID quoteId, Instant createdAt, String actor, String request, String response,
+                 Integer tariffId, Integer taxRuleId, Long dataVersion) {}
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushMillis;
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    @Autowired
+    public CalculationLog(CalculationLogProperties properties, JdbcTemplate jdbc, ObjectMapper objectMapper) {
+        this(properties, jdbc, objectMapper, true);
+    }
+
+    CalculationLog(CalculationLogProperties properties, JdbcTemplate jdbc, ObjectMapper objectMapper, boolean startWriter) {
+        this.enabled = properties.isEnabled();
+        this.batchSize = properties.getBatchSize();
+        this.flushMillis = properties.getFlushMs();
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        if (enabled && startWriter) {
+            writer = new Thread(this::run, "calculation-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * Queue {@code response} to {@code request} for writing and add its "quote_id" to the
+     * response. Never blocks; when the queue is full the calculation is returned without one.
+     */
+    public void record(Map<String, Object> request, Map<String, Object> response) {
+        if (!enabled) return;
+        Entry entry;
+        try {
+            entry = new Entry(UUID.randomUUID(), Instant.now(), currentActor(),
+                    objectMapper.writeValueAsString(request), objectMapper.writeValueAsString(response),
+                    (Integer) response.get("tariff_id"), (Integer) response.get("tax_rule_id"),
+                    (Long) response.get("data_version"));
+        } catch (JsonProcessingException e) {
+            failedCount.increment();
+            log.warn("Calculation not logged, could not serialize it: {}", e.getMessage());
+            return;
+        }
+        if (queue.offer(entry)) {
+            response.put("quote_id", entry.quoteId().toString());
+        } else {
+            droppedCount.increment();
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    write(first);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        flush(); // whatever came in while stopping
+    }
+
+    /**
+     * Write everything queued now, in batches. The writer thread does this on its own; tests
+     * without one call it directly.
+     */
+    void flush() {
+        Entry first;
+        while ((first = queue.poll()) != null) {
+            write(first);
+        }
+    }
+
+    private void write(Entry first) {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Entry e : batch) {
+            rows.add(new Object[]{e.quoteId(), Timestamp.from(e.createdAt()), e.actor(), e.request(), e.response(),
+                    e.tariffId(), e.taxRuleId(), e.dataVersion()});
+        }
+        try {
+            jdbc.batchUpdate(INSERT_SQL, rows);
+            writtenCount.add(batch.size());
+        } catch (DataIntegrityViolationException e) {
+            // A bad row fails the whole batch: write them one by one so only that row is lost
+            writeOneByOne(rows);
+        } catch (RuntimeException e) {
+            failedCount.add(batch.size());
+            log.error("Could not write {} calculation log rows: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private void writeOneByOne(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            try {
+                jdbc.update(INSERT_SQL, row);
+                writtenCount.increment();
+            } catch (RuntimeException e) {
+                failedCount.increment();
+                log.error("Could not write calculation log row {}: {}", row[0], e.getMessage());
+            }
+        }
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? null : authentication.getName();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    // Metrics
+
+    /** Calculations queued and not yet written. */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /** Calculations not logged because the queue was full. */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /** Calculations that could not be serialized or written. */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+}
@@ -0,0 +1,30 @@
+package com.ratewise.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * calculation-log.* settings.
+ *
+ * Calculations wait in a queue of {@code queueCapacity} for the writer, which inserts whatever
+ * has queued up while it wrote the previous batch, up to {@code batchSize} rows per statement.
+ * {@code flushMs} is how long it waits for a row before checking for shutdown. When the queue is
+ * full (the database is down or slower than the calculators) calculations are not logged rather
+ * than slowed down.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "calculation-log")
+public class CalculationLogProperties {
+
+    private boolean enabled = true;
+
+    private int queueCapacity = 10_000;
+
+    private int batchSize = 200;
+
+    private long flushMs = 200;
+}
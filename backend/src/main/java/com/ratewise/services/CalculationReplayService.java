@@ -0,0 +1,144 @@
+package com.ratewise.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratewise.security.exception.QuoteNotFoundException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Replays a calculation from the calculation log (see CalculationLog) and diffs the result
+ * against the logged response, e.g. to show which rate produced a disputed quote.
+ *
+ * By default the calculation is rerun as of the time it was made (or the asOf it was made for),
+ * so the tariff rates are the ones the database held then (tariff_rates_history); with
+ * {@code current} it is rerun against today's rates instead. Tax rules and reference data are
+ * not versioned and are always today's. A quote answered from a tariff snapshot that had not yet
+ * picked up a change (up to one check behind) replays with the change. A replay is not logged itself.
+ *
+ * Users can replay their own quotes, admins any quote; anything else is reported as not found.
+ */
+@Service
+public class CalculationReplayService {
+
+    private static final String QUOTE_SQL = """
+            SELECT request::text AS request, response::text AS response, created_at, actor
+            FROM calculation_log
+            WHERE quote_id = ?
+            """;
+
+    // Differ between any two runs, so not part of the comparison
+    private static final Set<String> NOT_COMPARED = Set.of("quote_id", "as_of", "data_version");
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {};
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final CalculatorService calculatorService;
+
+    public CalculationReplayService(JdbcTemplate jdbc, ObjectMapper objectMapper, CalculatorService calculatorService) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.calculatorService = calculatorService;
+    }
+
+    /**
+     * @throws QuoteNotFoundException when there is no such quote, or the caller may not see it
+     */
+    public Map<String, Object> replay(UUID quoteId, boolean current) {
+        List<Map<String, Object>> rows = jdbc.queryForList(QUOTE_SQL, quoteId);
+        if (rows.isEmpty() || !mayReplay((String) rows.get(0).get("actor"))) {
+            throw new QuoteNotFoundException(quoteId.toString());
+        }
+        Map<String, Object> row = rows.get(0);
+        Map<String, Object> request = parse((String) row.get("request"));
+        Map<String, Object> original = parse((String) row.get("response"));
+        OffsetDateTime createdAt = ((java.sql.Timestamp) row.get("created_at")).toInstant().atOffset(ZoneOffset.UTC);
+
+        if (current) {
+            request.remove("asOf");
+        } else if (request.get("asOf") == null) {
+            request.put("asOf", createdAt.toString());
+        }
+        Map<String, Object> replayed;
+        try {
+            replayed = calculatorService.recalculateLandedCost(request);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // e.g. the lane has no rate any more: that is the difference to report
+            replayed = new LinkedHashMap<>();
+            replayed.put("ok", false);
+            replayed.put("error", e.getMessage());
+        }
+
+        Map<String, Object> differences = differences(original, replayed);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("quote_id", quoteId.toString());
+        result.put("created_at", createdAt.toString());
+        result.put("replayed_as_of", request.get("asOf"));
+        result.put("matches", differences.isEmpty());
+        result.put("differences", differences);
+        result.put("original", original);
+        result.put("replayed", replayed);
+        return result;
+    }
+
+    /**
+     * The fields whose values differ, each as {original, replayed}; numbers compare by value.
+     */
+    static Map<String, Object> differences(Map<String, Object> original, Map<String, Object> replayed) {
+        Set<String> fields = new LinkedHashSet<>(original.keySet());
+        fields.addAll(replayed.keySet());
+        fields.removeAll(NOT_COMPARED);
+
+        Map<String, Object> differences = new LinkedHashMap<>();
+        for (String field : fields) {
+            Object before = original.get(field);
+            Object after = replayed.get(field);
+            if (!sameValue(before, after)) {
+                Map<String, Object> difference = new LinkedHashMap<>();
+                difference.put("original", before);
+                difference.put("replayed", after);
+                differences.put(field, difference);
+            }
+        }
+        return differences;
+    }
+
+    // 1050 and 1050.0 are the same amount, whether the JSON round trip kept it an int or not
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof Number x && b instanceof Number y) {
+            return new BigDecimal(x.toString()).compareTo(new BigDecimal(y.toString())) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static boolean mayReplay(String actor) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) return true; // not a web request
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+        return admin || (actor != null && actor.equals(authentication.getName()));
+    }
+
+    private Map<String, Object> parse(String json) {
+        try {
+            return objectMapper.readValue(json, JSON_OBJECT);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable calculation_log row", e);
+        }
+    }
+}
@@ -5,15 +5,24 @@ import java.util.Map;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.sql.Date;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
-import java.util.Comparator; // added import
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffSnapshotService;
 
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.transaction.annotation.Transactional;
 
 
 /**
@@ -22,9 +31,24 @@ import org.springframework.dao.EmptyResultDataAccessException;
  * Business logic for tariff & tax calculations and landed-cost estimation.
  *
  * Responsibilities:
- * - Resolve user inputs (country names/codes, HS code or product description).
- * - Fetch tariff and tax rules valid for a given date range.
+ * - Resolve user inputs (country names/codes, HS code or product description) and fetch the
+ *   tariff and tax rules valid on the effective date, all in one query (CalculatorSql.LANDED_COST_LOOKUP),
+ *   or from the in-memory tariff snapshot when one is loaded (TariffSnapshotService).
  * - Apply CIF/FOB rules, compute customs value, duty, VAT/GST, and total landed cost.
+ * - Keep every calculation, with the rows it used, in the calculation log (CalculationLog) under the
+ *   quote_id it returns, so it can be replayed (CalculationReplayService).
+ * - Answer repeated quotes from LandedCostCache (snapshot only); a hit skips the lookup and compute
+ *   stages and the hs_resolution counter. Without a snapshot, the lookup's answer is kept per validity
+ *   interval by RateComponentCache, so other dates and amounts on the same lane skip the database.
+ *
+ * Observability:
+ * - ratewise.calculator.landed_cost{outcome}: whole calculation (ok / invalid / error)
+ * - ratewise.calculator.stage{stage,source}: lookup (one database round trip, or source=snapshot / cache,
+ *   or history for an asOf calculation), compute
+ * - ratewise.calculator.hs_resolution{path}: explicit, exact_description, like_fallback, unresolved (counter)
+ * - ratewise.calculator.cache.*: the result cache (LandedCostCache), see MetricsConfig
+ * The first two are Observations, so each produces both a timer and a span; the JDBC statements
+ * run inside a stage show up as child spans of it.
  */
 
 @Service
@@ -39,8 +63,47 @@ public class CalculatorService {
         DateTimeFormatter.ofPattern("d/M/uuuu")           // 1/3/1990
     );
 
-    public CalculatorService(JdbcTemplate jdbc) {
+    private static final String LANDED_COST_OBSERVATION = "ratewise.calculator.landed_cost";
+    private static final String STAGE_OBSERVATION = "ratewise.calculator.stage";
+    private static final String HS_RESOLUTION_COUNTER = "ratewise.calculator.hs_resolution";
+
+    private final ObservationRegistry observationRegistry;
+    private final TariffSnapshotService tariffSnapshots;
+    private final LandedCostCache resultCache;
+    private final RateComponentCache rateComponents;
+    private final CalculationLog calculationLog;
+    private final Counter hsExplicit;
+    private final Counter hsExactDescription;
+    private final Counter hsLikeFallback;
+    private final Counter hsUnresolved;
+
+    public CalculatorService(JdbcTemplate jdbc, MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                             TariffSnapshotService tariffSnapshots, LandedCostCache resultCache,
+                             RateComponentCache rateComponents, CalculationLog calculationLog) {
         this.jdbc = jdbc;
+        this.observationRegistry = observationRegistry;
+        this.tariffSnapshots = tariffSnapshots;
+        this.resultCache = resultCache;
+        this.rateComponents = rateComponents;
+        this.calculationLog = calculationLog;
+
+        this.hsExplicit         = hsCounter(meterRegistry, "explicit");
+        this.hsExactDescription = hsCounter(meterRegistry, "exact_description");
+        this.hsLikeFallback     = hsCounter(meterRegistry, "like_fallback");
+        this.hsUnresolved       = hsCounter(meterRegistry, "unresolved");
+    }
+
+    private static Counter hsCounter(MeterRegistry registry, String path) {
+        return Counter.builder(HS_RESOLUTION_COUNTER)
+                .description("How the HS code of a calculation was resolved")
+                .tag("path", path)
+                .register(registry);
+    }
+
+    private Observation stage(String stage) {
+        return Observation.createNotStarted(STAGE_OBSERVATION, observationRegistry)
+                .contextualName("calculator " + stage)
+                .lowCardinalityKeyValue("stage", stage);
     }
 
     // ------------------------
@@ -64,121 +127,23 @@ public class CalculatorService {
         return rawHsCode.trim().replaceAll("\\s+", "").toUpperCase();
     }
 
-    //returns true if the string looks like a valid 2-letter ISO alpha-2 code (e.g. "SG")
-    private boolean isIsoAlpha2(String s) {
-        return s != null && s.length() == 2 && s.chars().allMatch(Character::isLetter);
+    private static Map<String, Object> hsNotFound(String productDescription) {
+        Map<String,Object> response = new LinkedHashMap<>();
+        response.put("ok", false);
+        response.put("error", "Either hsCode or productDescription must be provided (no match found).");
+        response.put("productDescription", productDescription);
+        return response;
     }
 
-    /**
-     * Resolve a country input to its ISO alpha-2 code.
-     *
-     * Accepts either:
-     * - exact country code (e.g., "SG"), or
-     * - exact stored country name (case-insensitive).
-     *
-     */
-    private String resolveCountryCode(String raw) {
-        if (raw == null || raw.trim().isEmpty()) {
-            return null; // lenient: let caller decide how to message this
-        }
-        String input = raw.trim();
-
-        final String byCodeSql = """
-            SELECT country_code
-            FROM countries
-            WHERE UPPER(country_code) = UPPER(?)
-            LIMIT 1
-        """;
-
-        final String byNameSql = """
-            SELECT country_code
-            FROM countries
-            WHERE LOWER(country_name) = LOWER(?)
-            LIMIT 1
-        """;
-
-        try {
-            if (isIsoAlpha2(input)) {
-                return jdbc.queryForObject(byCodeSql, String.class, input);
-            } else {
-                return jdbc.queryForObject(byNameSql, String.class, input);
-            }
-        } catch (EmptyResultDataAccessException e) {
-            return null; // lenient: unknown country
+    // An HS level: chapter (2), heading (4), subheading (6) or a national 8/10-digit line
+    private static void requireHsLevel(String hsCode) {
+        switch (hsCode.length()) {
+            case 2, 4, 6, 8, 10 -> { }
+            default -> throw new IllegalArgumentException(
+                "HS code must be 2, 4, 6, 8 or 10 characters (chapter, heading, subheading or national line).");
         }
     }
 
-    /**
-     * Resolve an HS code from a product description using the {@code hs_codes} table.
-     *
-     * Strategy:
-     * - First try exact (case-insensitive) match on description.
-     * - Fallback to substring LIKE (case-insensitive), preferring the shortest description.
-     *
-     */
-    private String resolveHsCodeFromDescription(String desc) {
-        if (desc == null || desc.isBlank()) return null;
-
-        // exact (case-insensitive)
-        final String exactSql = """
-            SELECT hs_code
-            FROM hs_codes
-            WHERE LOWER(description) = LOWER(?)
-            LIMIT 1
-        """;
-
-        // substring (case-insensitive)
-        final String likeSql = """
-            SELECT hs_code
-            FROM hs_codes
-            WHERE LOWER(description) LIKE LOWER(?)
-            ORDER BY LENGTH(description) ASC
-            LIMIT 1
-        """;
-
-        try {
-            return jdbc.queryForObject(exactSql, String.class, desc.trim());
-        } catch (EmptyResultDataAccessException ignored) {
-            // fall through
-        }
-
-        try {
-            return jdbc.queryForObject(likeSql, String.class, "%" + desc.trim() + "%");
-        } catch (EmptyResultDataAccessException e) {
-            return null;
-        }
-    }    
-
-    /**
-     * Resolve HS code from the request payload:
-     * - Prefer explicit {@code hsCode} field.
-     * - If missing, try mapping {@code productDescription} via {@link #resolveHsCodeFromDescription(String)}.
-     *
-     */
-    private String resolveHsCodeFromRequest(Map<String, Object> requestPayload) {
-        String rawHsCodeFromRequest = (String) requestPayload.get("hsCode");
-        String resolvedHsCode;
-
-        if (rawHsCodeFromRequest != null && !rawHsCodeFromRequest.isBlank()) {
-            resolvedHsCode = normalizeHsCodeInput(rawHsCodeFromRequest);
-        } else {
-            String productDescriptionFromRequest = (String) requestPayload.get("productDescription");
-            if (productDescriptionFromRequest == null || productDescriptionFromRequest.isBlank()) {
-                return null;
-            }
-            resolvedHsCode = normalizeHsCodeInput(resolveHsCodeFromDescription(productDescriptionFromRequest));
-        }
-
-        if (resolvedHsCode == null || resolvedHsCode.isBlank()) return null;
-
-        // MVP constraint: must be 6 characters
-        if (resolvedHsCode.length() != 6) {
-            throw new IllegalArgumentException("HS code must be exactly 6 characters for MVP.");
-        }
-
-        return resolvedHsCode;
-    }
-   
     private static LocalDate parseFlexibleDate(Object value, String fieldName) {
         if (value == null) return null;
         final String s = value.toString().trim();
@@ -217,99 +182,142 @@ public class CalculatorService {
 
         return new DateRange(effective, effective);
     }
-    
-    /**
-    * Fetch tariff % and tax info for a given trade lane and HS code, and time frame.
-    * Returns: rate %, customs basis (CIF/FOB), tax type, tax rate %.
-    * Called inside calculateLandedCost function later.
-    */
-        /**
-    * Fetch tariff % and tax info for a given trade lane and HS code, and time frame.
-    * Returns: rate %, customs basis (CIF/FOB), tax type, tax rate %.
-    * Called inside calculateLandedCost function later.
-    */
-    private Map<String, Object> getTariffAndTax(
-        String exporter, String importer, String hsCode, String agreement,
-        LocalDate startDate, LocalDate endDate
-    ) {
-        // Overlap window bound to SQL
-        Date sqlStart = Date.valueOf(startDate);
-        Date sqlEnd   = Date.valueOf(endDate);
-
-        // Treat NULL valid_to as "valid through infinite"
-        String tariffSql = """
-            SELECT tr.rate_percent,
-                ic.customs_basis,
-                ic.id AS importer_id
-            FROM tariff_rates tr
-            JOIN hs_codes   hc ON hc.id = tr.hs_code_id
-            JOIN countries  ec ON ec.id = tr.exporter_id
-            JOIN countries  ic ON ic.id = tr.importer_id
-            JOIN agreements ag ON ag.id = tr.agreement_id
-            WHERE UPPER(ec.country_code) = UPPER(?)
-            AND UPPER(ic.country_code) = UPPER(?)
-            AND UPPER(hc.hs_code)      = UPPER(?)
-            AND UPPER(ag.agreement_code) = UPPER(?)
-            AND tr.valid_from <= ?
-            AND COALESCE(tr.valid_to, DATE '9999-12-31') >= ?
-        """;
-
-
-        var tariffs = jdbc.queryForList(
-            tariffSql,
-            exporter, importer, hsCode, agreement,
-            sqlEnd,   // valid_from <= end
-            sqlStart  // coalesced valid_to >= start
-        );
 
-        if (tariffs.isEmpty()) {
-            throw new IllegalStateException(
-                "No tariff rate found for the given lane/HS/agreement within the requested date range. " +
-                "Note: open-ended rates are only considered valid through today."
+    /**
+     * Parse the optional "asOf" from the request: an ISO-8601 timestamp with offset, e.g.
+     * "2025-10-01T08:00:00Z". When given, the tariff rates are the ones the database held at that
+     * time (tariff_rates_history), so the answer is what a calculation then would have returned.
+     */
+    private static OffsetDateTime parseAsOf(Object raw) {
+        if (isBlank(raw)) return null;
+        try {
+            return OffsetDateTime.parse(raw.toString().trim());
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException(
+                "Invalid asOf. Use an ISO-8601 timestamp with offset, e.g. 2025-10-01T08:00:00Z.", ex
             );
         }
+    }
 
-        // Choose the tariff row with the lowest rate_percent when multiple applicable rows are present.
-        Map<String, Object> tariffRow = tariffs.stream()
-            .min(Comparator.comparingDouble(r -> ((Number) r.get("rate_percent")).doubleValue()))
-            .orElse(tariffs.get(0));
-
-        
-        String taxSql = """
-            SELECT tr.tax_type, tr.rate_percent
-            FROM tax_rules tr
-            WHERE tr.country_id = ?
-            AND tr.valid_from <= ?
-            AND COALESCE(tr.valid_to, DATE '9999-12-31') >= ?
-            ORDER BY tr.valid_from DESC
-            LIMIT 1
-        """;
-
-        var taxes = jdbc.queryForList(
-            taxSql,
-            tariffRow.get("importer_id"),
-            sqlEnd,
-            sqlStart
-        );
+    /**
+     * True if the request asks for an as-of calculation, which always reads tariff_rates_history
+     * from the database, snapshot or not.
+     */
+    static boolean isAsOf(Map<String, Object> request) {
+        return !isBlank(request.get("asOf"));
+    }
 
-        if (taxes.isEmpty()) {
-            throw new IllegalStateException(
-                "No tax rule found for importer within the requested date range. " +
-                "Note: open-ended rules are only considered valid through today."
-            );
-        }
+    private static boolean isBlank(Object raw) {
+        return raw == null || (raw instanceof String s && s.isBlank());
+    }
+    
+    /**
+     * Everything the calculation needs from the database, in one row from {@link CalculatorSql#LANDED_COST_LOOKUP}.
+     * A null column means that part of the lookup found nothing:
+     * - exporterCode / importerCode: unknown country input
+     * - hsCode: no HS code matched the product description (hsPath tells how it was resolved)
+     * - ratePercent: no tariff for the lane/agreement on that date at the HS code or any shorter
+     *   level of it (tariffHsCode is the level that matched)
+     * - taxRatePercent: no tax rule for the importer on that date
+     * tariffId / taxRuleId are the tariff_rates and tax_rules rows the rates came from.
+     * validFrom / validTo bound the dates the same answer holds for (null = unbounded, and both
+     * null from the snapshot); dataVersion is the data_version it was read at (0 for an as-of
+     * lookup, which reflects no current version).
+     */
+    record LandedCostLookup(
+        String exporterCode, String importerCode, String customsBasis,
+        String hsCode, String hsPath,
+        Number ratePercent, String tariffHsCode, String taxType, Number taxRatePercent,
+        Integer tariffId, Integer taxRuleId,
+        LocalDate validFrom, LocalDate validTo, long dataVersion
+    ) {}
+
+    // Blank inputs are sent as NULL so they resolve to nothing, like an unknown value
+    private static String trimToNull(String raw) {
+        return (raw == null || raw.isBlank()) ? null : raw.trim();
+    }
 
-        Map<String, Object> taxRow = taxes.get(0);
+    private static final RowMapper<LandedCostLookup> LOOKUP_ROW = (rs, rowNum) -> new LandedCostLookup(
+        rs.getString("exporter_code"),
+        rs.getString("importer_code"),
+        rs.getString("customs_basis"),
+        rs.getString("hs_code"),
+        rs.getString("hs_path"),
+        (Number) rs.getObject("rate_percent"),
+        rs.getString("tariff_hs_code"),
+        rs.getString("tax_type"),
+        (Number) rs.getObject("tax_rate_percent"),
+        (Integer) rs.getObject("tariff_id"),
+        (Integer) rs.getObject("tax_rule_id"),
+        rs.getObject("valid_from", LocalDate.class),
+        rs.getObject("valid_to", LocalDate.class),
+        rs.getLong("data_version")
+    );
+
+    /**
+     * Resolve countries and HS code, and fetch the tariff and tax rows valid on {@code effectiveDate},
+     * in a single round trip. {@code hsCode} is the already-normalized explicit code, or null to
+     * resolve {@code productDescription} instead.
+     */
+    private LandedCostLookup lookup(String exporterInput, String importerInput, String hsCode,
+                                    String productDescription, String agreement, LocalDate effectiveDate) {
+        return jdbc.queryForObject(
+            CalculatorSql.LANDED_COST_LOOKUP,
+            LOOKUP_ROW,
+            trimToNull(exporterInput),
+            trimToNull(importerInput),
+            hsCode,
+            hsCode == null ? trimToNull(productDescription) : null,
+            agreement,
+            Date.valueOf(effectiveDate)
+        );
+    }
 
-        Map<String, Object> result = new LinkedHashMap<>();
-        result.put("rate_percent",     tariffRow.get("rate_percent"));
-        result.put("customs_basis",    tariffRow.get("customs_basis"));
-        result.put("tax_type",         taxRow.get("tax_type"));
-        result.put("tax_rate_percent", taxRow.get("rate_percent"));
-        return result;
+    // As lookup(), with the tariff rows the database held at system time asOf
+    private LandedCostLookup lookupAsOf(String exporterInput, String importerInput, String hsCode,
+                                        String productDescription, String agreement, LocalDate effectiveDate,
+                                        OffsetDateTime asOf) {
+        return jdbc.queryForObject(
+            CalculatorSql.LANDED_COST_LOOKUP_AS_OF,
+            LOOKUP_ROW,
+            trimToNull(exporterInput),
+            trimToNull(importerInput),
+            hsCode,
+            hsCode == null ? trimToNull(productDescription) : null,
+            agreement,
+            Date.valueOf(effectiveDate),
+            asOf
+        );
     }
 
+    // Same inputs and answer as lookup(), from the in-memory snapshot
+    private static LandedCostLookup lookup(TariffDataset dataset, String exporterInput, String importerInput, String hsCode,
+                                           String productDescription, String agreement, LocalDate effectiveDate) {
+        TariffDataset.Lookup found = dataset.lookup(
+            trimToNull(exporterInput),
+            trimToNull(importerInput),
+            hsCode,
+            hsCode == null ? trimToNull(productDescription) : null,
+            agreement,
+            effectiveDate
+        );
+        return new LandedCostLookup(
+            found.exporterCode(), found.importerCode(), found.customsBasis(),
+            found.hsCode(), found.hsPath(),
+            found.ratePercent(), found.tariffHsCode(), found.taxType(), found.taxRatePercent(),
+            found.tariffId(), found.taxRuleId(),
+            null, null, dataset.getDataVersion()
+        );
+    }
 
+    private void countHsPath(String hsPath) {
+        switch (hsPath == null ? "unresolved" : hsPath) {
+            case "explicit" -> hsExplicit.increment();
+            case "exact_description" -> hsExactDescription.increment();
+            case "like_fallback" -> hsLikeFallback.increment();
+            default -> hsUnresolved.increment();
+        }
+    }
 
     /**
     Example Input
@@ -323,10 +331,44 @@ public class CalculatorService {
       "freight": 50,
       "insurance": 100,
       "startDate": "01/09/2025",
-      "endDate": "30/09/2025"
+      "endDate": "30/09/2025",
+      "asOf": "2025-10-01T08:00:00Z"   (optional: rates as the database held them then)
     }
      */
+    @Transactional(readOnly = true)
     public Map<String, Object> calculateLandedCost(Map<String, Object> request) {
+        Map<String, Object> response = observeCalculation(request);
+        calculationLog.record(request, response);
+        return response;
+    }
+
+    /**
+     * As {@link #calculateLandedCost}, but not kept in the calculation log: for replaying a
+     * calculation that already is.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> recalculateLandedCost(Map<String, Object> request) {
+        return observeCalculation(request);
+    }
+
+    private Map<String, Object> observeCalculation(Map<String, Object> request) {
+        Observation observation = Observation.createNotStarted(LANDED_COST_OBSERVATION, observationRegistry)
+                .contextualName("calculate landed-cost")
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            Map<String, Object> response = calculate(request);
+            observation.lowCardinalityKeyValue("outcome", Boolean.TRUE.equals(response.get("ok")) ? "ok" : "invalid");
+            return response;
+        } catch (RuntimeException e) {
+            observation.lowCardinalityKeyValue("outcome", "error");
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private Map<String, Object> calculate(Map<String, Object> request) {
         Map<String,Object> response;
 
         // 1) Inputs (normalize agreement up-front)
@@ -341,14 +383,15 @@ public class CalculatorService {
             return errorResponse;
         }
 
-        // Resolve HS (prefers hsCode, else productDescription) and normalize
-        String resolvedHsCode = resolveHsCodeFromRequest(request);
-        if (resolvedHsCode == null || resolvedHsCode.isBlank()) {
-            response = new LinkedHashMap<>();
-            response.put("ok", false);
-            response.put("error", "Either hsCode or productDescription must be provided (no match found).");
-            response.put("productDescription", (String) request.get("productDescription"));
-            return response;
+        // HS: prefer explicit hsCode (checked here), else productDescription (resolved in the lookup query)
+        String explicitHsCode = normalizeHsCodeInput(trimToNull((String) request.get("hsCode")));
+        String productDescription = (String) request.get("productDescription");
+        if (explicitHsCode == null && trimToNull(productDescription) == null) {
+            hsUnresolved.increment();
+            return hsNotFound(productDescription);
+        }
+        if (explicitHsCode != null) {
+            requireHsLevel(explicitHsCode);
         }
 
         // 2) Numbers + validation
@@ -373,12 +416,50 @@ public class CalculatorService {
 
         // 3) Dates
         DateRange dateRange = parseDateRange(request);
-        LocalDate startDate = dateRange.start();
-        LocalDate endDate   = dateRange.end();
+        LocalDate startDate = dateRange.start(); // == end, the lookup is for a single date
+
+        // 3a) A past system time? Then neither the snapshot nor the caches, which only hold the present
+        OffsetDateTime asOf = parseAsOf(request.get("asOf"));
+
+        // 3b) Same quote already answered from this snapshot? Only the echoed inputs differ
+        TariffDataset dataset = asOf == null ? tariffSnapshots.current() : null;
+        LandedCostCache.Key cacheKey = resultCache.key(dataset, trimToNull(exporterCountryInput), trimToNull(importerCountryInput),
+            explicitHsCode, productDescription, tradeAgreementInput, startDate,
+            declaredGoodsValue, declaredFreightCost, declaredInsuranceCost, declaredQuantity);
+        Map<String,Object> cached = resultCache.get(cacheKey, dataset);
+        if (cached != null) {
+            cached.put("exporter_input", exporterCountryInput);
+            cached.put("importer_input", importerCountryInput);
+            return cached;
+        }
+
+        // 4) One round trip: countries, HS code, tariff and tax (agreement case-insensitive via SQL + normalized input),
+        //    or none when the tariff snapshot is loaded or the lane's rates are remembered for this date
+        RateComponentCache.Key componentKey = dataset == null && asOf == null
+            ? rateComponents.key(trimToNull(exporterCountryInput), trimToNull(importerCountryInput), explicitHsCode,
+                explicitHsCode == null ? trimToNull(productDescription) : null, tradeAgreementInput)
+            : null;
+        LandedCostLookup remembered = rateComponents.get(componentKey, startDate);
+        LandedCostLookup lookup = stage("lookup")
+            .lowCardinalityKeyValue("source", asOf != null ? "history" : dataset != null ? "snapshot" : remembered != null ? "cache" : "database")
+            .observe(() -> asOf != null
+                ? lookupAsOf(exporterCountryInput, importerCountryInput, explicitHsCode, productDescription, tradeAgreementInput, startDate, asOf)
+                : dataset != null
+                ? lookup(dataset, exporterCountryInput, importerCountryInput, explicitHsCode, productDescription, tradeAgreementInput, startDate)
+                : remembered != null
+                ? remembered
+                : rateComponents.load(componentKey, startDate, () ->
+                    lookup(exporterCountryInput, importerCountryInput, explicitHsCode, productDescription, tradeAgreementInput, startDate)));
+
+        countHsPath(lookup.hsPath());
+        String resolvedHsCode = normalizeHsCodeInput(lookup.hsCode());
+        if (resolvedHsCode == null || resolvedHsCode.isBlank()) {
+            return hsNotFound(productDescription);
+        }
+        requireHsLevel(resolvedHsCode);
 
-        // 4) Resolve countries to ISO codes
-        String exporterIsoCode = resolveCountryCode(exporterCountryInput);
-        String importerIsoCode = resolveCountryCode(importerCountryInput);
+        String exporterIsoCode = lookup.exporterCode();
+        String importerIsoCode = lookup.importerCode();
         if (exporterIsoCode == null || importerIsoCode == null) {
             response = new LinkedHashMap<>();
             response.put("ok", false);
@@ -392,15 +473,26 @@ public class CalculatorService {
         // 5) Quantity-adjusted goods value
         double quantityAdjustedGoodsValue = declaredGoodsValue * declaredQuantity;
 
-        // 6) Lookup duty/tax (agreement now case-insensitive via SQL + normalized input)
-        Map<String, Object> tariffInfo = getTariffAndTax(
-            exporterIsoCode, importerIsoCode, resolvedHsCode, tradeAgreementInput, startDate, endDate
-        );
+        // 6) Duty/tax rows from the lookup
+        if (lookup.ratePercent() == null) {
+            throw new IllegalStateException(
+                "No tariff rate found for the given lane/HS/agreement within the requested date range. " +
+                "Note: open-ended rates are only considered valid through today."
+            );
+        }
+        if (lookup.taxRatePercent() == null) {
+            throw new IllegalStateException(
+                "No tax rule found for importer within the requested date range. " +
+                "Note: open-ended rules are only considered valid through today."
+            );
+        }
+
+        double dutyRatePercent = lookup.ratePercent().doubleValue();
+        String customsValuationBasis = lookup.customsBasis();
+        String importerTaxType = lookup.taxType();
+        double importerTaxRatePercent = lookup.taxRatePercent().doubleValue();
 
-        double dutyRatePercent = ((Number) tariffInfo.get("rate_percent")).doubleValue();
-        String customsValuationBasis = (String) tariffInfo.get("customs_basis");  
-        String importerTaxType = (String) tariffInfo.get("tax_type");
-        double importerTaxRatePercent = ((Number) tariffInfo.get("tax_rate_percent")).doubleValue();
+        Observation compute = stage("compute").start();
 
         // 7) Customs value (CIF vs FOB)
         double computedCustomsValue = (customsValuationBasis != null && customsValuationBasis.equalsIgnoreCase("CIF")) //check if CIF vs FOB
@@ -419,6 +511,7 @@ public class CalculatorService {
         response.put("exporter_code", exporterIsoCode);
         response.put("importer_code", importerIsoCode);
         response.put("hs_code", resolvedHsCode);
+        response.put("tariff_hs_code", lookup.tariffHsCode());
         response.put("agreement", tradeAgreementInput);
         response.put("customs_basis", customsValuationBasis);
         response.put("rate_percent", dutyRatePercent);
@@ -429,6 +522,15 @@ public class CalculatorService {
         response.put("tax", computedTaxAmount);
         response.put("quantity", declaredQuantity);
         response.put("total_landed_cost", round2DP(computedCustomsValue + computedDutyAmount + computedTaxAmount));
+        response.put("tariff_id", lookup.tariffId());
+        response.put("tax_rule_id", lookup.taxRuleId());
+        // An as-of answer reflects no current data_version, reporting one would pass it off as current
+        response.put("data_version", asOf == null ? lookup.dataVersion() : null);
+        if (asOf != null) {
+            response.put("as_of", asOf.toString());
+        }
+        compute.stop();
+        resultCache.put(cacheKey, dataset, response);
         return response;
     }
 }
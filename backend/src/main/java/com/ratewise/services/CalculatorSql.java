@@ -0,0 +1,185 @@
+package com.ratewise.services;
+
+/**
+ * The SQL the calculator runs, as constants.
+ *
+ * Keeping it as a constant (rather than a text block built inside a method) means every call
+ * sends byte-identical SQL, so PgJDBC's per-connection statement cache always hits and, with
+ * prepareThreshold=1 (see spring.datasource.hikari.data-source-properties), the statement is
+ * parsed and planned once per pooled connection and then only bound and executed.
+ * Parameters are always bound, never concatenated, for the same reason.
+ */
+final class CalculatorSql {
+
+    private CalculatorSql() {}
+
+    /**
+     * Countries, HS code, tariff and tax for one calculation, always exactly one row.
+     *
+     * Parameters: exporter input, importer input, explicit HS code (normalized, or NULL),
+     * product description (NULL when an HS code is given), agreement code, effective date.
+     *
+     * - Countries: a 2-letter input matches country_code, anything else the exact country name
+     *   (both case-insensitive).
+     * - HS code: the explicit code, else the exact description, else the shortest description
+     *   containing the input. The LIKE scan only runs when the exact match found nothing.
+     * - Tariff: at the most specific HS level that has a rate for the lane on the date (the code
+     *   itself, else its 8-digit, subheading, heading or chapter prefix), the lowest such rate;
+     *   tariff_hs_code tells which level matched, tariff_id which row (the lowest id among equal
+     *   rates). The prefixes are equality probes on the hs_codes unique index, so a 10-digit code
+     *   costs the same as a 6-digit one.
+     * - Tax: latest rule valid on the date (tax_rule_id). NULL valid_to means "valid through infinite".
+     * - valid_from / valid_to: the dates around the effective date over which every column above
+     *   stays the same (NULL = unbounded): between consecutive validity boundaries of the lane's
+     *   tariff rows (at any HS level) and the importer's tax rules, the same rows apply.
+     * - data_version: the data_version the statement read, so a caller caching the answer can
+     *   tell it was read before or after a change (and from which replica state).
+     * Anything not found comes back as NULL columns, so the caller can tell which input was wrong.
+     */
+    static final String LANDED_COST_LOOKUP = """
+        WITH params AS (
+            SELECT CAST(? AS text) AS exporter_in,
+                   CAST(? AS text) AS importer_in,
+                   CAST(? AS text) AS hs_in,
+                   CAST(? AS text) AS description_in,
+                   CAST(? AS text) AS agreement_in,
+                   CAST(? AS date) AS on_date
+        ),
+        exporter AS (
+            SELECT c.id, c.country_code
+            FROM countries c, params p
+            WHERE CASE WHEN p.exporter_in ~ '^[[:alpha:]]{2}$'
+                       THEN UPPER(c.country_code) = UPPER(p.exporter_in)
+                       ELSE LOWER(c.country_name) = LOWER(p.exporter_in) END
+            LIMIT 1
+        ),
+        importer AS (
+            SELECT c.id, c.country_code, c.customs_basis
+            FROM countries c, params p
+            WHERE CASE WHEN p.importer_in ~ '^[[:alpha:]]{2}$'
+                       THEN UPPER(c.country_code) = UPPER(p.importer_in)
+                       ELSE LOWER(c.country_name) = LOWER(p.importer_in) END
+            LIMIT 1
+        ),
+        hs_exact AS (
+            SELECT hc.hs_code
+            FROM hs_codes hc, params p
+            WHERE LOWER(hc.description) = LOWER(p.description_in)
+            LIMIT 1
+        ),
+        hs_like AS (
+            SELECT hc.hs_code
+            FROM hs_codes hc, params p
+            WHERE NOT EXISTS (SELECT 1 FROM hs_exact)
+            AND LOWER(hc.description) LIKE LOWER('%' || p.description_in || '%')
+            ORDER BY LENGTH(hc.description) ASC
+            LIMIT 1
+        ),
+        hs AS (
+            SELECT p.hs_in AS hs_code, 'explicit' AS hs_path FROM params p WHERE p.hs_in IS NOT NULL
+            UNION ALL
+            SELECT hs_code, 'exact_description' FROM hs_exact
+            UNION ALL
+            SELECT hs_code, 'like_fallback' FROM hs_like
+        ),
+        hs_norm AS (
+            SELECT UPPER(REGEXP_REPLACE(hs_code, '[[:space:]]+', '', 'g')) AS code FROM hs LIMIT 1
+        ),
+        lane_rates AS (
+            SELECT tr.id AS tariff_id, tr.rate_percent, tr.valid_from, tr.valid_to, hc.hs_code
+            FROM tariff_rates tr
+            JOIN hs_codes   hc ON hc.id = tr.hs_code_id
+            JOIN agreements ag ON ag.id = tr.agreement_id
+            JOIN exporter   e  ON e.id  = tr.exporter_id
+            JOIN importer   i  ON i.id  = tr.importer_id
+            CROSS JOIN hs_norm h
+            CROSS JOIN params p
+            WHERE hc.hs_code = ANY (ARRAY[h.code, LEFT(h.code, 8), LEFT(h.code, 6), LEFT(h.code, 4), LEFT(h.code, 2)])
+            AND UPPER(ag.agreement_code) = UPPER(p.agreement_in)
+        ),
+        tariff AS (
+            SELECT lr.tariff_id, lr.rate_percent, lr.hs_code
+            FROM lane_rates lr, params p
+            WHERE lr.valid_from <= p.on_date
+            AND COALESCE(lr.valid_to, DATE '9999-12-31') >= p.on_date
+            ORDER BY LENGTH(lr.hs_code) DESC, lr.rate_percent ASC, lr.tariff_id ASC
+            LIMIT 1
+        ),
+        importer_taxes AS (
+            SELECT tx.id, tx.tax_type, tx.rate_percent, tx.valid_from, tx.valid_to
+            FROM tax_rules tx
+            JOIN importer i ON i.id = tx.country_id
+        ),
+        tax AS (
+            SELECT it.id, it.tax_type, it.rate_percent
+            FROM importer_taxes it, params p
+            WHERE it.valid_from <= p.on_date
+            AND COALESCE(it.valid_to, DATE '9999-12-31') >= p.on_date
+            ORDER BY it.valid_from DESC
+            LIMIT 1
+        ),
+        validity AS (
+            SELECT MAX(b.day) FILTER (WHERE b.day <= p.on_date)    AS valid_from,
+                   MIN(b.day) FILTER (WHERE b.day > p.on_date) - 1 AS valid_to
+            FROM (
+                SELECT valid_from AS day FROM lane_rates
+                UNION ALL SELECT valid_to + 1 FROM lane_rates WHERE valid_to IS NOT NULL
+                UNION ALL SELECT valid_from FROM importer_taxes
+                UNION ALL SELECT valid_to + 1 FROM importer_taxes WHERE valid_to IS NOT NULL
+            ) b
+            CROSS JOIN params p
+        )
+        SELECT e.country_code  AS exporter_code,
+               i.country_code  AS importer_code,
+               i.customs_basis,
+               hs.hs_code,
+               hs.hs_path,
+               t.rate_percent,
+               t.hs_code       AS tariff_hs_code,
+               t.tariff_id,
+               tx.id           AS tax_rule_id,
+               tx.tax_type,
+               tx.rate_percent AS tax_rate_percent,
+               v.valid_from,
+               v.valid_to,
+               (SELECT version FROM data_version WHERE id = 1) AS data_version
+        FROM params
+        LEFT JOIN exporter e ON true
+        LEFT JOIN importer i ON true
+        LEFT JOIN (SELECT * FROM hs LIMIT 1) hs ON true
+        LEFT JOIN tariff   t ON true
+        LEFT JOIN tax     tx ON true
+        CROSS JOIN validity v
+    """;
+
+    /**
+     * {@link #LANDED_COST_LOOKUP} with the tariff rows as the database held them at a past system
+     * time, from tariff_rates_history (see db/schema.sql): what the lookup would have answered
+     * then. Countries, HS codes and tax rules are not versioned and are read as they are now.
+     * data_version is NULL: the current version says nothing about the rows the answer came from.
+     *
+     * Parameters: as for LANDED_COST_LOOKUP, then the system time (timestamptz).
+     */
+    static final String LANDED_COST_LOOKUP_AS_OF = asOf(LANDED_COST_LOOKUP);
+
+    // Derived rather than copied so the two cannot drift apart; fails class loading if the text moved
+    private static String asOf(String lookup) {
+        String[][] edits = {
+            {"CAST(? AS date) AS on_date\n", "CAST(? AS date) AS on_date,\n           CAST(? AS timestamptz) AS as_of\n"},
+            {"SELECT tr.id AS tariff_id,", "SELECT tr.tariff_id,"},
+            {"FROM tariff_rates tr\n", "FROM tariff_rates_history tr\n"},
+            {"(SELECT version FROM data_version WHERE id = 1) AS data_version",
+             "CAST(NULL AS bigint) AS data_version"},
+            {"AND UPPER(ag.agreement_code) = UPPER(p.agreement_in)\n",
+             "AND UPPER(ag.agreement_code) = UPPER(p.agreement_in)\n    AND tr.sys_from <= p.as_of AND tr.sys_to > p.as_of\n"},
+        };
+        String sql = lookup;
+        for (String[] edit : edits) {
+            if (!sql.contains(edit[0])) {
+                throw new IllegalStateException("LANDED_COST_LOOKUP no longer contains: " + edit[0].strip());
+            }
+            sql = sql.replace(edit[0], edit[1]);
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,46 @@
+package com.ratewise.services;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * An HS code prefix such as "01" (chapter), "0101" (heading) or "0101*" (same, wildcard form).
+ *
+ * Matched in SQL as the half-open range [from, to) on {@code hs_code COLLATE "C"}, where
+ * {@code to} is the prefix with its last character incremented. Unlike LIKE with a bound
+ * pattern, the range can use the idx_tariff_view_hs_prefix btree index in generic plans too,
+ * so a prefix query costs about the same as an exact one.
+ */
+record HsPrefix(String prefix) {
+
+    private static final Pattern VALID = Pattern.compile("[0-9A-Z]{1,10}");
+
+    /** SQL condition on a column named hs_code; bind {@link #from()} then {@link #to()}. */
+    static final String SQL_CONDITION = "hs_code COLLATE \"C\" >= ? AND hs_code COLLATE \"C\" < ?";
+
+    /**
+     * @return null for a null or blank input
+     * @throws IllegalArgumentException when it is not 1 to 10 letters/digits, optionally followed by '*'
+     */
+    static HsPrefix parse(String input) {
+        if (input == null || input.isBlank()) return null;
+        String prefix = input.trim().replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+        if (prefix.endsWith("*")) prefix = prefix.substring(0, prefix.length() - 1);
+        if (!VALID.matcher(prefix).matches()) {
+            throw new IllegalArgumentException("HS code prefix must be 1 to 10 letters or digits, optionally ending in '*'.");
+        }
+        return new HsPrefix(prefix);
+    }
+
+    String from() {
+        return prefix;
+    }
+
+    String to() {
+        return prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+    }
+
+    boolean matches(String hsCode) {
+        return hsCode.startsWith(prefix);
+    }
+}
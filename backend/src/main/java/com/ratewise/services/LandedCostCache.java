@@ -0,0 +1,185 @@
+package com.ratewise.services;
+
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffSnapshotService;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of {@link CalculatorService#calculateLandedCost} for repeated quotes, keyed by the
+ * request in canonical form (see {@link Key}) and bounded by estimated size with W-TinyLFU
+ * admission ({@link WTinyLfuCache}), so a burst of one-off quotes does not push out the popular ones.
+ *
+ * Entries belong to the tariff snapshot they were computed from, and the cache is only used
+ * while the calculator answers from one. When TariffSnapshotService swaps in a new dataset, the
+ * first request that sees it diffs it against the previous one and drops only what changed:
+ * - results on a changed tariff lane whose HS code is the lane's code or under it (a heading or
+ *   chapter rate can be the fallback for longer codes)
+ * - results for an importer whose tax rules changed
+ * - everything, when countries, HS codes or agreements changed
+ * Everything else carries over, so a rate change on one lane costs the other lanes nothing.
+ * Results are therefore exactly as fresh as the snapshot (tariff-snapshot.check-ms).
+ */
+@Component
+public class LandedCostCache {
+
+    /**
+     * A request in canonical form: countries as the codes they resolve to (so "sg" and
+     * "Singapore" share entries), the normalized HS code or else the lower-cased description,
+     * the upper-cased agreement, and the amounts as the exact doubles the calculation uses.
+     */
+    public record Key(String exporterCode, String importerCode, String hsCode, String productDescription,
+                      String agreement, LocalDate effectiveDate,
+                      double goodsValue, double freight, double insurance, int quantity) {}
+
+    // hsCode is the resolved one, which is what lane invalidation matches on
+    private record Entry(Map<String, Object> response, String hsCode) {}
+
+    private record Route(String exporterCode, String importerCode, String agreement) {}
+
+    // For the weigher: key and entry objects, plus per response field a map node, boxed value and key
+    private static final int ENTRY_BYTES = 256;
+    private static final int FIELD_BYTES = 64;
+    private static final int EXPECTED_ENTRY_BYTES = 2048;
+
+    private final boolean enabled;
+    private final TariffSnapshotService tariffSnapshots;
+    private final WTinyLfuCache<Key, Entry> cache;
+    private final LongAdder invalidationCount = new LongAdder();
+
+    // The dataset the entries are valid for; changes only under this object's lock
+    private volatile TariffDataset synced;
+
+    public LandedCostCache(LandedCostCacheProperties properties, TariffSnapshotService tariffSnapshots) {
+        this.enabled = properties.isEnabled();
+        this.tariffSnapshots = tariffSnapshots;
+        long maximumBytes = properties.getMaximumSize().toBytes();
+        this.cache = new WTinyLfuCache<>(maximumBytes, (int) Math.min(1 << 20, maximumBytes / EXPECTED_ENTRY_BYTES),
+                LandedCostCache::weigh);
+    }
+
+    /**
+     * The key for a validated request, or null when it is not cacheable: cache off, no
+     * snapshot loaded, or a country that does not resolve.
+     */
+    public Key key(TariffDataset dataset, String exporterInput, String importerInput, String hsCode,
+                   String productDescription, String agreement, LocalDate effectiveDate,
+                   double goodsValue, double freight, double insurance, int quantity) {
+        if (!enabled || dataset == null) return null;
+        String exporterCode = dataset.countryCode(exporterInput);
+        String importerCode = dataset.countryCode(importerInput);
+        if (exporterCode == null || importerCode == null) return null;
+        String description = hsCode == null ? productDescription.trim().toLowerCase(Locale.ROOT) : null;
+        return new Key(exporterCode, importerCode, hsCode, description, agreement, effectiveDate,
+                goodsValue, freight, insurance, quantity);
+    }
+
+    /**
+     * A copy of the cached response for {@code key}, computed from {@code dataset}, or null.
+     */
+    public Map<String, Object> get(Key key, TariffDataset dataset) {
+        if (key == null) return null;
+        syncTo(dataset);
+        if (dataset != synced) return null; // a request still on the previous dataset
+        Entry entry = cache.get(key);
+        return entry == null ? null : new LinkedHashMap<>(entry.response());
+    }
+
+    /**
+     * Cache a successful response computed from {@code dataset}. Ignored if the cache has
+     * moved on to a newer dataset in the meantime.
+     */
+    public void put(Key key, TariffDataset dataset, Map<String, Object> response) {
+        if (key == null) return;
+        Entry entry = new Entry(new LinkedHashMap<>(response), (String) response.get("hs_code"));
+        synchronized (this) {
+            if (dataset == synced) {
+                cache.put(key, entry);
+            }
+        }
+    }
+
+    private void syncTo(TariffDataset dataset) {
+        if (dataset == synced || dataset != tariffSnapshots.current()) return;
+        synchronized (this) {
+            TariffDataset previous = synced;
+            if (dataset == previous) return;
+            if (previous == null) {
+                cache.clear();
+            } else {
+                invalidate(dataset.changesSince(previous));
+            }
+            synced = dataset;
+        }
+    }
+
+    private void invalidate(TariffDataset.Changes changes) {
+        if (changes.isEmpty()) return;
+        if (changes.referenceData()) {
+            invalidationCount.add(cache.size());
+            cache.clear();
+            return;
+        }
+        Map<Route, List<String>> changedHsCodes = new HashMap<>();
+        for (TariffDataset.Lane lane : changes.tariffLanes()) {
+            changedHsCodes.computeIfAbsent(
+                    new Route(lane.exporterCode(), lane.importerCode(), lane.agreementCode().toUpperCase(Locale.ROOT)),
+                    route -> new ArrayList<>()).add(lane.hsCode());
+        }
+        invalidationCount.add(cache.removeIf((key, entry) -> {
+            if (changes.taxImporters().contains(key.importerCode())) return true;
+            List<String> hsCodes = changedHsCodes.get(new Route(key.exporterCode(), key.importerCode(), key.agreement()));
+            return hsCodes != null && hsCodes.stream().anyMatch(entry.hsCode()::startsWith);
+        }));
+    }
+
+    private static int weigh(Key key, Entry entry) {
+        int bytes = ENTRY_BYTES + 2 * length(key.productDescription());
+        for (Map.Entry<String, Object> field : entry.response().entrySet()) {
+            bytes += FIELD_BYTES + 2 * length(field.getKey());
+            if (field.getValue() instanceof String value) bytes += 2 * value.length();
+        }
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    // Metrics
+
+    public int size() {
+        return cache.size();
+    }
+
+    /** Estimated bytes held by cached results. */
+    public long weight() {
+        return cache.weight();
+    }
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /** Dropped for space or refused admission. */
+    public long getEvictionCount() {
+        return cache.getEvictionCount() + cache.getRejectionCount();
+    }
+
+    /** Dropped because a snapshot reload changed their lane, importer tax or reference data. */
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+}
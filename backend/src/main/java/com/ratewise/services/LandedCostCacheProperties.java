@@ -0,0 +1,24 @@
+package com.ratewise.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * landed-cost-cache.* settings.
+ *
+ * {@code maximumSize} bounds the estimated heap taken by cached results (keys and response maps),
+ * not their number.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "landed-cost-cache")
+public class LandedCostCacheProperties {
+
+    private boolean enabled = true;
+
+    private DataSize maximumSize = DataSize.ofMegabytes(16);
+}
@@ -0,0 +1,252 @@
+package com.ratewise.services;
+
+import com.ratewise.events.TariffChange;
+import com.ratewise.events.TariffOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The rate components of a calculation (countries, HS code, tariff rate, customs basis, tax)
+ * as resolved by the database, per lane/HS/agreement and validity interval.
+ *
+ * The lookup's answer only changes on the validity boundaries of the lane's tariff rows and
+ * the importer's tax rules, and CalculatorSql.LANDED_COST_LOOKUP returns the interval around
+ * the effective date over which it holds. Any other date inside that interval, with any goods
+ * value, freight or quantity, is then answered from here and the calculation is arithmetic only.
+ *
+ * Only used for database lookups; the tariff snapshot already answers from memory. Entries are
+ * kept for the data_version the lookup read. That version is polled (rate-component-cache.check-ms);
+ * when it moves and tariff_outbox accounts for every change in between (all made through
+ * TariffAdminService, see TariffOutbox#changesBetween), only the entries of the changed lanes are
+ * dropped, otherwise everything is. A lookup that read any other version (a lagging replica, or a
+ * transaction with its own uncommitted tariff writes) is not kept. So, like the snapshot, answers
+ * can lag a committed change by up to one check.
+ *
+ * Misses go through {@link #load}, so when a popular lane is dropped the concurrent requests for
+ * it wait for one database lookup instead of all running their own.
+ */
+@Slf4j
+@Component
+public class RateComponentCache {
+
+    /**
+     * What the lookup depends on besides the date: the inputs as the SQL compares them, i.e.
+     * country inputs and the description case-insensitively, the HS code and agreement normalized.
+     */
+    record Key(String exporter, String importer, String hsCode, String productDescription, String agreement) {}
+
+    // One answer and the dates it holds for (null = unbounded)
+    private record Interval(LocalDate from, LocalDate to, CalculatorService.LandedCostLookup lookup) {
+
+        boolean contains(LocalDate day) {
+            return holds(from, to, day);
+        }
+    }
+
+    private static final String DATA_VERSION_SQL = "SELECT version FROM data_version WHERE id = 1";
+
+    private final boolean enabled;
+    private final JdbcTemplate jdbc;
+    private final TariffOutbox outbox;
+    private final WTinyLfuCache<Key, List<Interval>> cache;
+    private final SingleFlight<Key, CalculatorService.LandedCostLookup> flights = new SingleFlight<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder laneInvalidations = new LongAdder();
+    private final LongAdder fullInvalidations = new LongAdder();
+
+    // The data_version the entries are for; -1 until the first check or after a failed one
+    private volatile long dataVersion = -1;
+
+    /**
+     * Without an outbox every data_version change drops everything.
+     */
+    public RateComponentCache(RateComponentCacheProperties properties, JdbcTemplate jdbc) {
+        this(properties, jdbc, null);
+    }
+
+    @Autowired
+    public RateComponentCache(RateComponentCacheProperties properties, JdbcTemplate jdbc, TariffOutbox outbox) {
+        this.enabled = properties.isEnabled();
+        this.jdbc = jdbc;
+        this.outbox = outbox;
+        this.cache = new WTinyLfuCache<>(properties.getMaximumIntervals(), properties.getMaximumIntervals(),
+                (key, intervals) -> intervals.size());
+    }
+
+    /**
+     * The key for the lookup's inputs (already trimmed, HS code and agreement normalized), or
+     * null when the cache is off.
+     */
+    Key key(String exporterInput, String importerInput, String hsCode, String productDescription, String agreement) {
+        if (!enabled) return null;
+        return new Key(lower(exporterInput), lower(importerInput), hsCode, lower(productDescription), agreement);
+    }
+
+    /**
+     * The remembered lookup for {@code key} on {@code day}, or null.
+     */
+    CalculatorService.LandedCostLookup get(Key key, LocalDate day) {
+        if (key == null || dataVersion < 0) return null;
+        List<Interval> intervals = cache.get(key);
+        if (intervals != null) {
+            for (Interval interval : intervals) {
+                if (interval.contains(day)) {
+                    hitCount.increment();
+                    return interval.lookup();
+                }
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Run {@code loader} (the database lookup for {@code key} on {@code day}) and remember its
+     * answer. Concurrent calls for the same key share one run when its answer holds on their day
+     * and was read at the current data version, the same answers {@link #put} would keep;
+     * anything else they load themselves.
+     */
+    CalculatorService.LandedCostLookup load(Key key, LocalDate day, Supplier<CalculatorService.LandedCostLookup> loader) {
+        if (key == null) return loader.get();
+        return flights.load(key,
+                () -> {
+                    CalculatorService.LandedCostLookup loaded = loader.get();
+                    put(key, loaded);
+                    return loaded;
+                },
+                shared -> shared.dataVersion() == dataVersion
+                        && holds(shared.validFrom(), shared.validTo(), day));
+    }
+
+    /**
+     * Remember a database lookup for its validity interval, if it read the current data version.
+     */
+    void put(Key key, CalculatorService.LandedCostLookup lookup) {
+        if (key == null) return;
+        Interval added = new Interval(lookup.validFrom(), lookup.validTo(), lookup);
+        synchronized (this) {
+            if (lookup.dataVersion() != dataVersion) return;
+            List<Interval> current = cache.peek(key);
+            List<Interval> intervals = new ArrayList<>(current == null ? 1 : current.size() + 1);
+            if (current != null) {
+                // answers of one data version never overlap, except the same interval looked up twice
+                current.stream().filter(i -> !sameDates(i, added)).forEach(intervals::add);
+            }
+            intervals.add(added);
+            cache.put(key, List.copyOf(intervals));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${rate-component-cache.check-ms:5000}")
+    public void checkDataVersion() {
+        if (!enabled) return;
+        long seen;
+        try {
+            Long version = jdbc.queryForObject(DATA_VERSION_SQL, Long.class);
+            seen = version == null ? -1 : version;
+        } catch (RuntimeException e) {
+            // cannot tell whether anything changed, so stop answering until the next good check
+            log.warn("Rate component cache version check failed: {}", e.getMessage());
+            seen = -1;
+        }
+        List<TariffChange> changes = seen > dataVersion && dataVersion >= 0 ? changesBetween(dataVersion, seen) : null;
+        synchronized (this) {
+            if (seen == dataVersion) return;
+            if (changes != null && !changes.isEmpty() && changes.get(0).versionBefore() == dataVersion) {
+                cache.removeIf((key, intervals) -> affected(key, intervals, changes));
+                laneInvalidations.increment();
+            } else {
+                cache.clear();
+                fullInvalidations.increment();
+            }
+            dataVersion = seen;
+        }
+    }
+
+    private List<TariffChange> changesBetween(long from, long to) {
+        if (outbox == null) return null;
+        try {
+            return outbox.changesBetween(from, to);
+        } catch (RuntimeException e) {
+            log.warn("Rate component cache could not read tariff_outbox, dropping everything: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // All intervals of a key share its lane, HS code and agreement, so the first one tells
+    private static boolean affected(Key key, List<Interval> intervals, List<TariffChange> changes) {
+        CalculatorService.LandedCostLookup lookup = intervals.get(0).lookup();
+        for (TariffChange change : changes) {
+            if (matches(key, lookup, change.before()) || matches(key, lookup, change.after())) return true;
+        }
+        return false;
+    }
+
+    // A tariff row is a candidate for the lookup at its HS code or any shorter prefix of it
+    private static boolean matches(Key key, CalculatorService.LandedCostLookup lookup, TariffChange.Lane lane) {
+        return lane != null
+                && Objects.equals(lane.exporterCode(), lookup.exporterCode())
+                && Objects.equals(lane.importerCode(), lookup.importerCode())
+                && lane.agreementCode() != null && lane.agreementCode().equalsIgnoreCase(key.agreement())
+                && lookup.hsCode() != null && lane.hsCode() != null && lookup.hsCode().startsWith(lane.hsCode());
+    }
+
+    private static boolean holds(LocalDate from, LocalDate to, LocalDate day) {
+        return (from == null || !from.isAfter(day)) && (to == null || !to.isBefore(day));
+    }
+
+    private static boolean sameDates(Interval a, Interval b) {
+        return Objects.equals(a.from(), b.from()) && Objects.equals(a.to(), b.to());
+    }
+
+    private static String lower(String s) {
+        return s == null ? null : s.toLowerCase(Locale.ROOT);
+    }
+
+    // Metrics
+
+    /** Intervals held. */
+    public long weight() {
+        return cache.weight();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /** Database lookups run on a miss. */
+    public long getLoadCount() {
+        return flights.getLoadCount();
+    }
+
+    /** Misses served by a concurrent request's lookup instead of their own. */
+    public long getCoalescedCount() {
+        return flights.getCoalescedCount();
+    }
+
+    /** Data version changes that only dropped the changed lanes. */
+    public long getLaneInvalidationCount() {
+        return laneInvalidations.sum();
+    }
+
+    /** Data version changes that dropped everything. */
+    public long getFullInvalidationCount() {
+        return fullInvalidations.sum();
+    }
+}
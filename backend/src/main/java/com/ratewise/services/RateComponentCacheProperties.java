@@ -0,0 +1,26 @@
+package com.ratewise.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * rate-component-cache.* settings.
+ *
+ * At most {@code maximumIntervals} answers are kept (one per key and validity interval).
+ * Every {@code checkMs} the database's data_version is read; when it has moved, the lanes
+ * tariff_outbox says were changed are dropped, or everything when it cannot account for the move.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "rate-component-cache")
+public class RateComponentCacheProperties {
+
+    private boolean enabled = true;
+
+    private int maximumIntervals = 50_000;
+
+    private long checkMs = 5_000;
+}
@@ -0,0 +1,23 @@
+package com.ratewise.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * reference-data.* settings.
+ *
+ * A cached list older than {@code refreshAfterMs} is still served, and reloaded in the
+ * background; one older than {@code expireAfterMs} is reloaded before answering.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "reference-data")
+public class ReferenceDataProperties {
+
+    private long refreshAfterMs = 30_000;
+
+    private long expireAfterMs = 600_000;
+}
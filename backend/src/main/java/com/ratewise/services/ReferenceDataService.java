@@ -0,0 +1,184 @@
+package com.ratewise.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Countries, HS codes and agreements for the reference endpoints, served from memory with
+ * stale-while-revalidate (reference-data.*):
+ * - younger than refresh-after: served as is
+ * - older: still served, while one background reload replaces it
+ * - older than expire-after, or never loaded: loaded before answering
+ * Loads of the same list are coalesced ({@link SingleFlight}), so an expiry under load runs
+ * one query, not one per request.
+ */
+@Slf4j
+@Service
+public class ReferenceDataService {
+
+    private static final String COUNTRIES_SQL =
+            "SELECT country_code, country_name, customs_basis FROM countries ORDER BY country_code";
+    private static final String HS_CODES_SQL =
+            "SELECT hs_code, description FROM hs_codes ORDER BY description";
+    private static final String AGREEMENTS_SQL =
+            "SELECT agreement_code, agreement_name FROM agreements ORDER BY agreement_code";
+
+    private record Cached(List<Map<String, Object>> rows, long loadedAtNanos) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnly;
+    private final Executor refresher;
+    private final LongSupplier nanoClock;
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final SingleFlight<String, List<Map<String, Object>>> flights = new SingleFlight<>();
+
+    private final LongAdder freshCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    @Autowired
+    public ReferenceDataService(ReferenceDataProperties properties, JdbcTemplate jdbc,
+                                PlatformTransactionManager transactionManager) {
+        this(properties, jdbc, transactionManager, new ThreadPoolExecutor(
+                1, 1,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(3), // one per list; refreshing already dedups
+                runnable -> {
+                    Thread thread = new Thread(runnable, "reference-data-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy()
+        ), System::nanoTime);
+    }
+
+    ReferenceDataService(ReferenceDataProperties properties, JdbcTemplate jdbc,
+                         PlatformTransactionManager transactionManager, Executor refresher, LongSupplier nanoClock) {
+        this.jdbc = jdbc;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.refresher = refresher;
+        this.nanoClock = nanoClock;
+        this.refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(properties.getRefreshAfterMs());
+        this.expireAfterNanos = TimeUnit.MILLISECONDS.toNanos(properties.getExpireAfterMs());
+    }
+
+    public List<Map<String, Object>> countries() {
+        return get(COUNTRIES_SQL);
+    }
+
+    /**
+     * One country by exact ISO alpha-2 code.
+     *
+     * @throws EmptyResultDataAccessException when there is none, as the single-row query did
+     */
+    public Map<String, Object> country(String code) {
+        return countries().stream()
+                .filter(row -> row.get("country_code").equals(code))
+                .findFirst()
+                .orElseThrow(() -> new EmptyResultDataAccessException(1));
+    }
+
+    public List<Map<String, Object>> hsCodes() {
+        return get(HS_CODES_SQL);
+    }
+
+    public List<Map<String, Object>> agreements() {
+        return get(AGREEMENTS_SQL);
+    }
+
+    private List<Map<String, Object>> get(String sql) {
+        Cached cached = cache.get(sql);
+        long age = cached == null ? Long.MAX_VALUE : nanoClock.getAsLong() - cached.loadedAtNanos();
+        if (age < refreshAfterNanos) {
+            freshCount.increment();
+            return cached.rows();
+        }
+        if (age < expireAfterNanos) {
+            staleCount.increment();
+            refreshInBackground(sql);
+            return cached.rows();
+        }
+        return flights.load(sql, () -> load(sql));
+    }
+
+    private void refreshInBackground(String sql) {
+        if (!refreshing.add(sql)) return;
+        try {
+            refresher.execute(() -> {
+                try {
+                    flights.load(sql, () -> load(sql));
+                } catch (RuntimeException e) {
+                    // keep serving the stale copy; the next request past refresh-after retries
+                    refreshFailures.increment();
+                    log.warn("Reference data refresh failed: {}", e.getMessage());
+                } finally {
+                    refreshing.remove(sql);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(sql);
+            throw e;
+        }
+    }
+
+    private List<Map<String, Object>> load(String sql) {
+        List<Map<String, Object>> rows = Collections.unmodifiableList(readOnly.execute(status -> jdbc.queryForList(sql)));
+        cache.put(sql, new Cached(rows, nanoClock.getAsLong()));
+        return rows;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refresher instanceof ThreadPoolExecutor executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    // Metrics
+
+    /** Answered from a copy younger than refresh-after. */
+    public long getFreshCount() {
+        return freshCount.sum();
+    }
+
+    /** Answered from an older copy while it was being reloaded. */
+    public long getStaleCount() {
+        return staleCount.sum();
+    }
+
+    public long getLoadCount() {
+        return flights.getLoadCount();
+    }
+
+    /** Requests that waited for another request's load instead of querying. */
+    public long getCoalescedCount() {
+        return flights.getCoalescedCount();
+    }
+
+    public long getRefreshFailures() {
+        return refreshFailures.sum();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ratewise.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader, callers that
+ * arrive while it runs wait for it and get its result (or its exception) instead of running
+ * their own. Nothing is kept once the load finishes; caching is up to the caller.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    V load(K key, Supplier<V> loader) {
+        return load(key, loader, result -> true);
+    }
+
+    /**
+     * As {@link #load(Object, Supplier)}, but a waiter only takes the running load's result if
+     * {@code usable} accepts it, and otherwise runs {@code loader} itself.
+     */
+    V load(K key, Supplier<V> loader, Predicate<? super V> usable) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running == null) {
+            return lead(key, mine, loader);
+        }
+
+        V shared;
+        try {
+            shared = running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+        if (usable.test(shared)) {
+            coalescedCount.increment();
+            return shared;
+        }
+        loadCount.increment();
+        return loader.get();
+    }
+
+    private V lead(K key, CompletableFuture<V> flight, Supplier<V> loader) {
+        loadCount.increment();
+        try {
+            V result = loader.get();
+            // out of the map before waiters wake, so a waiter that cannot use it starts a new load
+            inFlight.remove(key, flight);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Loads actually run. */
+    long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    /** Callers served by another caller's load. */
+    long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+}
@@ -1,7 +1,11 @@
 package com.ratewise.services;
 
+import com.ratewise.events.TariffOutbox;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Map;
 import java.util.HashMap;
@@ -24,20 +28,30 @@ import org.springframework.dao.EmptyResultDataAccessException;
 /**
  * TariffAdminService — isolated admin CRUD logic for tariff_rates.
  * Only admin accounts should call these endpoints (controller is mounted under /api/v1/admin/**).
+ *
+ * Each write is recorded in tariff_outbox in its own transaction (see TariffOutbox). It takes
+ * the data_version row lock first, so admin writes are serialized and the outbox row can say
+ * exactly which data_version change it was.
  */
 @Service
 public class TariffAdminService {
 
+    private static final String LOCK_DATA_VERSION_SQL = "SELECT version FROM data_version WHERE id = 1 FOR UPDATE";
+    private static final String DATA_VERSION_SQL = "SELECT version FROM data_version WHERE id = 1";
+
     private final JdbcTemplate jdbc;
+    private final TariffOutbox outbox;
 
-    public TariffAdminService(JdbcTemplate jdbc) {
+    public TariffAdminService(JdbcTemplate jdbc, TariffOutbox outbox) {
         this.jdbc = jdbc;
+        this.outbox = outbox;
     }
 
     /**
      * Create a tariff_rates row. Returns the inserted row (joined view).
      * Note: uses subqueries to resolve foreign keys by code.
      */
+    @Transactional
     public Map<String, Object> createTariff(TariffAdminRequest req) {
         // --- 1. Parse dates safely ---
         java.sql.Date validFromDate = null;
@@ -55,6 +69,20 @@ public class TariffAdminService {
             throw new IllegalArgumentException("Invalid date format. Use ISO yyyy-MM-dd.", ex);
         }
 
+        long versionBefore = lockDataVersion();
+        // an existing version of the lane is overwritten, which the outbox records as an update
+        List<Integer> existing = jdbc.queryForList("""
+            SELECT tr.id
+            FROM tariff_rates tr
+            JOIN countries  e  ON e.id  = tr.exporter_id
+            JOIN countries  i  ON i.id  = tr.importer_id
+            JOIN hs_codes   h  ON h.id  = tr.hs_code_id
+            JOIN agreements ag ON ag.id = tr.agreement_id
+            WHERE e.country_code = ? AND i.country_code = ? AND h.hs_code = ?
+              AND ag.agreement_code = ? AND tr.valid_from = ?
+            """, Integer.class, req.exporterCode, req.importerCode, req.hsCode, req.agreementCode, validFromDate);
+        String before = existing.isEmpty() ? null : outbox.laneJson(existing.get(0));
+
         // --- 2. Execute insert with RETURNING id ---
         String sql = """
             WITH ids AS (
@@ -96,6 +124,8 @@ public class TariffAdminService {
             throw new IllegalStateException("Failed to insert or update tariff — no ID returned.");
         }
 
+        recordChange(newId.intValue(), before == null ? "created" : "updated", versionBefore, before);
+
         // --- 3. Return the inserted/updated tariff as a map ---
         return getById(newId.intValue());
     }
@@ -104,6 +134,7 @@ public class TariffAdminService {
     /**
      * Update tariff row by id; returns updated row.
      */
+    @Transactional
     public Map<String, Object> updateTariff(int id, TariffAdminRequest req) {
         // 1) Parse dates as java.sql.Date (NOT strings)
         java.sql.Date vf;
@@ -124,9 +155,9 @@ public class TariffAdminService {
         }
 
         // 2) Ensure the row exists first (give 404 if not)
-        Integer exists = jdbc.queryForObject("SELECT COUNT(*) FROM tariff_rates WHERE id = ?",
-                                            Integer.class, id);
-        if (exists == null || exists == 0) {
+        long versionBefore = lockDataVersion();
+        String before = outbox.laneJson(id);
+        if (before == null) {
             throw new org.springframework.web.server.ResponseStatusException(
                 org.springframework.http.HttpStatus.NOT_FOUND,
                 "Tariff ID " + id + " not found"
@@ -175,6 +206,7 @@ public class TariffAdminService {
             if (updatedId == null) {
                 throw new IllegalStateException("Update returned no id");
             }
+            recordChange(updatedId.intValue(), "updated", versionBefore, before);
             return getById(updatedId.intValue());
         } catch (org.springframework.dao.DataIntegrityViolationException dup) {
             // Likely hit uniq_tariff_version after changing keys/valid_from to an existing version
@@ -189,10 +221,12 @@ public class TariffAdminService {
     /**
      * Delete tariff row by id.
      */
+    @Transactional
     public void deleteTariff(int id) {
         // Optional: verify the tariff exists before deletion (so we can return 404)
-        Integer exists = jdbc.queryForObject("SELECT COUNT(*) FROM tariff_rates WHERE id = ?", Integer.class, id);
-        if (exists == null || exists == 0) {
+        long versionBefore = lockDataVersion();
+        String before = outbox.laneJson(id);
+        if (before == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tariff ID " + id + " not found");
         }
 
@@ -201,38 +235,49 @@ public class TariffAdminService {
             if (rows == 0) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tariff ID " + id + " not found");
             }
+            recordChange(id, "deleted", versionBefore, before);
         } catch (EmptyResultDataAccessException ex) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tariff ID " + id + " not found", ex);
         }
     }
 
+    // Taken before anything is read, and held to commit: no other write moves data_version meanwhile
+    private long lockDataVersion() {
+        Long version = jdbc.queryForObject(LOCK_DATA_VERSION_SQL, Long.class);
+        return version == null ? 0 : version;
+    }
+
+    // After the write: the row as it is now, and the data_version the write took it to
+    private void recordChange(int tariffId, String op, long versionBefore, String before) {
+        Long versionAfter = jdbc.queryForObject(DATA_VERSION_SQL, Long.class);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        outbox.record(tariffId, op, versionBefore, versionAfter == null ? versionBefore : versionAfter,
+                before, outbox.laneJson(tariffId),
+                authentication == null ? null : authentication.getName());
+    }
+
     /**
-     * Fetch a tariff row (joined payload) by tariff_rates.id
+     * Fetch a tariff row (joined payload) by tariff_rates.id.
+     * tariff_view is updated by trigger in the same transaction, so a row just written is visible here.
      */
     public Map<String, Object> getById(Integer id) {
         String sql = """
-            SELECT tr.id,
-                   exporter.country_code AS exporter_code,
-                   exporter.country_name AS exporter_name,
-                   importer.country_code AS importer_code,
-                   importer.country_name AS importer_name,
-                   importer.customs_basis AS importer_customs,
-                   tax_rules.tax_type AS importer_tax,
-                   agreements.agreement_code,
-                   agreements.agreement_name,
-                   hs_codes.hs_code,
-                   hs_codes.description AS hs_description,
-                   tr.rate_percent,
-                   tr.valid_from,
-                   tr.valid_to
-            FROM tariff_rates tr
-            JOIN countries AS exporter ON exporter.id = tr.exporter_id
-            JOIN countries AS importer ON importer.id = tr.importer_id
-            JOIN hs_codes ON hs_codes.id = tr.hs_code_id
-            JOIN agreements ON agreements.id = tr.agreement_id
-            LEFT JOIN tax_rules ON tax_rules.country_id = importer.id
-            WHERE tr.id = ?
-            LIMIT 1
+            SELECT tariff_id AS id,
+                   exporter_code,
+                   exporter_name,
+                   importer_code,
+                   importer_name,
+                   customs_basis AS importer_customs,
+                   tax_type AS importer_tax,
+                   agreement_code,
+                   agreement_name,
+                   hs_code,
+                   hs_description,
+                   rate_percent,
+                   valid_from,
+                   valid_to
+            FROM tariff_view
+            WHERE tariff_id = ?
             """;
 
         try {
@@ -242,33 +287,57 @@ public class TariffAdminService {
         }
     }
 
+    /**
+     * Every version of a tariff row, oldest first, from tariff_rates_history: the rate and validity
+     * it had, and from when to when the database held it (system_from null = since before history
+     * was kept, system_to null = current). Versions of a deleted row are still returned.
+     */
+    public List<Map<String, Object>> history(int id) {
+        String sql = """
+            SELECT h.tariff_id AS id,
+                   (SELECT country_code FROM countries WHERE id = h.exporter_id)      AS exporter_code,
+                   (SELECT country_code FROM countries WHERE id = h.importer_id)      AS importer_code,
+                   (SELECT hs_code FROM hs_codes WHERE id = h.hs_code_id)             AS hs_code,
+                   (SELECT agreement_code FROM agreements WHERE id = h.agreement_id)  AS agreement_code,
+                   h.rate_percent,
+                   h.valid_from,
+                   h.valid_to,
+                   h.source_ref,
+                   CASE WHEN isfinite(h.sys_from) THEN h.sys_from END AS system_from,
+                   CASE WHEN isfinite(h.sys_to) THEN h.sys_to END     AS system_to
+            FROM tariff_rates_history h
+            WHERE h.tariff_id = ?
+            ORDER BY h.sys_from
+            """;
+        List<Map<String, Object>> versions = jdbc.queryForList(sql, id);
+        if (versions.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tariff ID " + id + " not found");
+        }
+        return versions;
+    }
+
     /**
      * Optional: list all admin-manageable tariff rows (delegates to TariffService.listTariffsTable)
      */
     public List<Map<String, Object>> listAll() {
         // reuse existing TariffService logic if desired by injecting it here instead.
         String sql = """
-            SELECT exporter.country_code AS exporter_code,
-                   exporter.country_name AS exporter_name,
-                   importer.country_code AS importer_code,
-                   importer.country_name AS importer_name,
-                   importer.customs_basis AS importer_customs,
-                   tax_rules.tax_type AS importer_tax,
-                   agreements.agreement_code,
-                   agreements.agreement_name,
-                   hs_codes.hs_code,
-                   hs_codes.description AS hs_description,
-                   tariff_rates.rate_percent,
-                   tariff_rates.valid_from,
-                   tariff_rates.valid_to,
-                   tariff_rates.id
-            FROM tariff_rates
-            JOIN countries AS exporter ON exporter.id = tariff_rates.exporter_id
-            JOIN countries AS importer ON importer.id = tariff_rates.importer_id
-            JOIN hs_codes ON hs_codes.id = tariff_rates.hs_code_id
-            JOIN agreements ON agreements.id = tariff_rates.agreement_id
-            LEFT JOIN tax_rules ON tax_rules.country_id = importer.id
-            ORDER BY exporter ASC, importer ASC, hs_codes.hs_code ASC
+            SELECT exporter_code,
+                   exporter_name,
+                   importer_code,
+                   importer_name,
+                   customs_basis AS importer_customs,
+                   tax_type AS importer_tax,
+                   agreement_code,
+                   agreement_name,
+                   hs_code,
+                   hs_description,
+                   rate_percent,
+                   valid_from,
+                   valid_to,
+                   tariff_id AS id
+            FROM tariff_view
+            ORDER BY exporter_code ASC, importer_code ASC, hs_code ASC
             """;
         return jdbc.queryForList(sql);
     }
@@ -0,0 +1,415 @@
+package com.ratewise.services;
+
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffRateColumns;
+import com.ratewise.snapshot.TariffSnapshotService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * TariffAnalyticsService
+ * Aggregations over tariff lanes for the analytics endpoints.
+ *
+ * A lane is one (exporter, importer, HS code, agreement); its rate on a date is the lowest rate
+ * valid that day, as in the calculator. With a tariff snapshot loaded the lanes are scanned in
+ * parallel (fork-join, via a parallel IntStream) straight off the snapshot's columns. Otherwise
+ * the same query is pushed down to tariff_view as a GROUP BY on a read-only transaction.
+ * Both paths return the same rows; the snapshot may trail the database by one check interval.
+ */
+@Service
+public class TariffAnalyticsService {
+
+    public enum GroupBy {
+        EXPORTER("exporter_code", 0),
+        IMPORTER("importer_code", 0),
+        AGREEMENT("agreement_code", 0),
+        HS_CHAPTER("LEFT(hs_code, 2)", 2),
+        HS_HEADING("LEFT(hs_code, 4)", 4),
+        HS_SUBHEADING("LEFT(hs_code, 6)", 6);
+
+        private final String sqlExpression;
+        private final int hsLength; // 0 when not grouped by an HS level
+
+        GroupBy(String sqlExpression, int hsLength) {
+            this.sqlExpression = sqlExpression;
+            this.hsLength = hsLength;
+        }
+
+        public static GroupBy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException(
+                        "groupBy must be one of exporter, importer, agreement, hs_chapter, hs_heading, hs_subheading", ex);
+            }
+        }
+    }
+
+    /**
+     * Lane filters; null or blank fields match everything. Codes match exactly, as in listTariffs.
+     * hsPrefix is any HS prefix, "01", "0101" or "0101*"; it is validated and kept without the '*'.
+     */
+    public record Filter(String exporter, String importer, String agreement, String hsPrefix) {
+        public Filter {
+            exporter = blankToNull(exporter);
+            importer = blankToNull(importer);
+            agreement = blankToNull(agreement);
+            HsPrefix hs = HsPrefix.parse(hsPrefix);
+            hsPrefix = hs == null ? null : hs.prefix();
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TariffSnapshotService tariffSnapshots;
+    private final TransactionTemplate readOnly;
+
+    public TariffAnalyticsService(JdbcTemplate jdbc, TariffSnapshotService tariffSnapshots,
+                                  PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.tariffSnapshots = tariffSnapshots;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+    }
+
+    /**
+     * Lane count and min/max/avg rate per group, for the lanes with a rate on {@code onDate}.
+     * Rows: group_key, lane_count, min_rate, max_rate, avg_rate (4 decimals), ordered by group_key.
+     */
+    public List<Map<String, Object>> aggregate(GroupBy groupBy, Filter filter, LocalDate onDate) {
+        TariffDataset dataset = tariffSnapshots.current();
+        return dataset != null
+                ? aggregateInMemory(dataset, groupBy, filter, onDate)
+                : aggregateInDatabase(groupBy, filter, onDate);
+    }
+
+    /**
+     * Lanes whose rate moved by more than {@code minChange} points between {@code from} and
+     * {@code to}; lanes without a rate on either date are left out. Rows: exporter_code,
+     * importer_code, hs_code, agreement_code, rate_from, rate_to, rate_change; biggest moves first.
+     */
+    public List<Map<String, Object>> rateChanges(Filter filter, LocalDate from, LocalDate to,
+                                                 BigDecimal minChange, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        TariffDataset dataset = tariffSnapshots.current();
+        return dataset != null
+                ? rateChangesInMemory(dataset, filter, from, to, minChange, limit)
+                : rateChangesInDatabase(filter, from, to, minChange, limit);
+    }
+
+    // -------- snapshot --------
+
+    List<Map<String, Object>> aggregateInMemory(TariffDataset dataset, GroupBy groupBy, Filter filter, LocalDate onDate) {
+        TariffRateColumns rates = dataset.getTariffRates();
+        Lanes lanes = new Lanes(dataset, filter, groupBy.hsLength);
+        int day = Math.toIntExact(onDate.toEpochDay());
+
+        // group labels; lanes map their ids to an index into these
+        String[] labels = switch (groupBy) {
+            case EXPORTER, IMPORTER -> lanes.countryCodes;
+            case AGREEMENT -> lanes.agreementCodes;
+            case HS_CHAPTER, HS_HEADING, HS_SUBHEADING -> lanes.hsGroups;
+        };
+
+        Stats stats = IntStream.range(0, rates.laneCount()).parallel().collect(
+                () -> new Stats(labels.length),
+                (acc, lane) -> {
+                    if (!lanes.matches(lane)) return;
+                    int rate = rates.laneRate(lane, day);
+                    if (rate == TariffRateColumns.NO_RATE) return;
+                    int group = switch (groupBy) {
+                        case EXPORTER -> lanes.country(rates.laneExporterId(lane));
+                        case IMPORTER -> lanes.country(rates.laneImporterId(lane));
+                        case AGREEMENT -> lanes.agreement(rates.laneAgreementId(lane));
+                        case HS_CHAPTER, HS_HEADING, HS_SUBHEADING -> lanes.hsGroup(rates.laneHsCodeId(lane));
+                    };
+                    acc.add(group, rate);
+                },
+                Stats::merge);
+
+        Integer[] order = IntStream.range(0, labels.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparing(i -> labels[i]));
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int g : order) {
+            if (stats.count[g] == 0) continue;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("group_key", labels[g]);
+            row.put("lane_count", stats.count[g]);
+            row.put("min_rate", TariffRateColumns.rate(stats.min[g]));
+            row.put("max_rate", TariffRateColumns.rate(stats.max[g]));
+            row.put("avg_rate", BigDecimal.valueOf(stats.sum[g], TariffRateColumns.RATE_SCALE)
+                    .divide(BigDecimal.valueOf(stats.count[g]), TariffRateColumns.RATE_SCALE, RoundingMode.HALF_UP));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    List<Map<String, Object>> rateChangesInMemory(TariffDataset dataset, Filter filter, LocalDate from, LocalDate to,
+                                                  BigDecimal minChange, int limit) {
+        TariffRateColumns rates = dataset.getTariffRates();
+        Lanes lanes = new Lanes(dataset, filter, 0);
+        int fromDay = Math.toIntExact(from.toEpochDay());
+        int toDay = Math.toIntExact(to.toEpochDay());
+        long threshold = minChange.setScale(TariffRateColumns.RATE_SCALE, RoundingMode.FLOOR).unscaledValue().longValueExact();
+
+        int[] changed = IntStream.range(0, rates.laneCount()).parallel()
+                .filter(lane -> {
+                    if (!lanes.matches(lane)) return false;
+                    int before = rates.laneRate(lane, fromDay);
+                    int after = rates.laneRate(lane, toDay);
+                    return before != TariffRateColumns.NO_RATE && after != TariffRateColumns.NO_RATE
+                            && Math.abs((long) after - before) > threshold;
+                })
+                .toArray();
+
+        List<Map<String, Object>> rows = new ArrayList<>(changed.length);
+        for (int lane : changed) {
+            BigDecimal before = TariffRateColumns.rate(rates.laneRate(lane, fromDay));
+            BigDecimal after = TariffRateColumns.rate(rates.laneRate(lane, toDay));
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("exporter_code", lanes.countryCodes[lanes.country(rates.laneExporterId(lane))]);
+            row.put("importer_code", lanes.countryCodes[lanes.country(rates.laneImporterId(lane))]);
+            row.put("hs_code", lanes.hsCodes[lanes.hsCode(rates.laneHsCodeId(lane))]);
+            row.put("agreement_code", lanes.agreementCodes[lanes.agreement(rates.laneAgreementId(lane))]);
+            row.put("rate_from", before);
+            row.put("rate_to", after);
+            row.put("rate_change", after.subtract(before));
+            rows.add(row);
+        }
+        rows.sort(Comparator.<Map<String, Object>, BigDecimal>comparing(r -> ((BigDecimal) r.get("rate_change")).abs())
+                .reversed()
+                .thenComparing(r -> (String) r.get("exporter_code"))
+                .thenComparing(r -> (String) r.get("importer_code"))
+                .thenComparing(r -> (String) r.get("hs_code"))
+                .thenComparing(r -> (String) r.get("agreement_code")));
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+
+    // -------- database --------
+
+    List<Map<String, Object>> aggregateInDatabase(GroupBy groupBy, Filter filter, LocalDate onDate) {
+        List<Object> params = new ArrayList<>(List.of(onDate, onDate));
+        StringBuilder sql = new StringBuilder("""
+                WITH lanes AS (
+                    SELECT exporter_code, importer_code, hs_code, agreement_code, MIN(rate_percent) AS rate
+                    FROM tariff_view
+                    WHERE valid_from <= ? AND (valid_to IS NULL OR valid_to >= ?)
+                """);
+        appendFilters(sql, params, filter);
+        sql.append("""
+                    GROUP BY exporter_code, importer_code, hs_code, agreement_code
+                )
+                SELECT %1$s AS group_key,
+                       COUNT(*) AS lane_count,
+                       MIN(rate) AS min_rate,
+                       MAX(rate) AS max_rate,
+                       ROUND(AVG(rate), 4) AS avg_rate
+                FROM lanes
+                GROUP BY 1
+                ORDER BY %1$s COLLATE "C"
+                """.formatted(groupBy.sqlExpression));
+
+        return readOnly.execute(status -> jdbc.queryForList(sql.toString(), params.toArray()));
+    }
+
+    List<Map<String, Object>> rateChangesInDatabase(Filter filter, LocalDate from, LocalDate to,
+                                                    BigDecimal minChange, int limit) {
+        List<Object> params = new ArrayList<>(List.of(from, from, to, to));
+        StringBuilder sql = new StringBuilder("""
+                WITH lanes AS (
+                    SELECT exporter_code, importer_code, hs_code, agreement_code,
+                           MIN(rate_percent) FILTER (WHERE valid_from <= ? AND (valid_to IS NULL OR valid_to >= ?)) AS rate_from,
+                           MIN(rate_percent) FILTER (WHERE valid_from <= ? AND (valid_to IS NULL OR valid_to >= ?)) AS rate_to
+                    FROM tariff_view
+                    WHERE TRUE
+                """);
+        appendFilters(sql, params, filter);
+        sql.append("""
+                    GROUP BY exporter_code, importer_code, hs_code, agreement_code
+                )
+                SELECT exporter_code, importer_code, hs_code, agreement_code,
+                       rate_from, rate_to, rate_to - rate_from AS rate_change
+                FROM lanes
+                WHERE ABS(rate_to - rate_from) > ?
+                ORDER BY ABS(rate_to - rate_from) DESC,
+                         exporter_code COLLATE "C", importer_code COLLATE "C",
+                         hs_code COLLATE "C", agreement_code COLLATE "C"
+                LIMIT ?
+                """);
+        params.add(minChange);
+        params.add(limit);
+
+        return readOnly.execute(status -> jdbc.queryForList(sql.toString(), params.toArray()));
+    }
+
+    private static void appendFilters(StringBuilder sql, List<Object> params, Filter filter) {
+        if (filter.exporter() != null) {
+            sql.append("      AND exporter_code = ?\n");
+            params.add(filter.exporter());
+        }
+        if (filter.importer() != null) {
+            sql.append("      AND importer_code = ?\n");
+            params.add(filter.importer());
+        }
+        if (filter.agreement() != null) {
+            sql.append("      AND agreement_code = ?\n");
+            params.add(filter.agreement());
+        }
+        if (filter.hsPrefix() != null) {
+            HsPrefix hs = new HsPrefix(filter.hsPrefix());
+            sql.append("      AND ").append(HsPrefix.SQL_CONDITION).append('\n');
+            params.add(hs.from());
+            params.add(hs.to());
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * Reference data of one dataset as sorted id arrays with parallel code arrays, so a lane's ids
+     * resolve to codes and group indices by binary search, and the filter as ids.
+     */
+    private static final class Lanes {
+
+        private final TariffRateColumns rates;
+        private final int[] countryIds;
+        private final String[] countryCodes;
+        private final int[] agreementIds;
+        private final String[] agreementCodes;
+        private final int[] hsCodeIds;
+        private final String[] hsCodes;
+        private final int[] hsGroupIndex;
+        private final String[] hsGroups;
+        private final boolean[] hsMatches;
+
+        private final int exporterId;
+        private final int importerId;
+        private final int agreementId;
+        private final boolean matchesNothing;
+
+        // hsGroupLength: the HS prefix length lanes are grouped by, 0 for none
+        Lanes(TariffDataset dataset, Filter filter, int hsGroupLength) {
+            rates = dataset.getTariffRates();
+            List<TariffDataset.Country> countries = dataset.getCountries().stream()
+                    .sorted(Comparator.comparingInt(TariffDataset.Country::id)).toList();
+            countryIds = countries.stream().mapToInt(TariffDataset.Country::id).toArray();
+            countryCodes = countries.stream().map(TariffDataset.Country::code).toArray(String[]::new);
+
+            List<TariffDataset.Agreement> agreements = dataset.getAgreements().stream()
+                    .sorted(Comparator.comparingInt(TariffDataset.Agreement::id)).toList();
+            agreementIds = agreements.stream().mapToInt(TariffDataset.Agreement::id).toArray();
+            agreementCodes = agreements.stream().map(TariffDataset.Agreement::code).toArray(String[]::new);
+
+            List<TariffDataset.HsCode> hs = dataset.getHsCodes().stream()
+                    .sorted(Comparator.comparingInt(TariffDataset.HsCode::id)).toList();
+            hsCodeIds = hs.stream().mapToInt(TariffDataset.HsCode::id).toArray();
+            hsCodes = hs.stream().map(TariffDataset.HsCode::code).toArray(String[]::new);
+            hsGroups = new TreeSet<>(Arrays.stream(hsCodes).map(code -> level(code, hsGroupLength)).toList())
+                    .toArray(String[]::new);
+            hsGroupIndex = Arrays.stream(hsCodes)
+                    .mapToInt(code -> Arrays.binarySearch(hsGroups, level(code, hsGroupLength))).toArray();
+            if (filter.hsPrefix() != null) {
+                hsMatches = new boolean[hsCodes.length];
+                for (int i = 0; i < hsCodes.length; i++) {
+                    hsMatches[i] = hsCodes[i].startsWith(filter.hsPrefix());
+                }
+            } else {
+                hsMatches = null;
+            }
+
+            exporterId = filter.exporter() == null ? TariffRateColumns.ANY : idOf(countries, filter.exporter());
+            importerId = filter.importer() == null ? TariffRateColumns.ANY : idOf(countries, filter.importer());
+            agreementId = filter.agreement() == null ? TariffRateColumns.ANY : agreements.stream()
+                    .filter(a -> a.code().equals(filter.agreement())).mapToInt(TariffDataset.Agreement::id)
+                    .findFirst().orElse(Integer.MIN_VALUE);
+            matchesNothing = exporterId == Integer.MIN_VALUE || importerId == Integer.MIN_VALUE
+                    || agreementId == Integer.MIN_VALUE;
+        }
+
+        // Runs on fork-join workers; all state here and the columns' reads are immutable
+        boolean matches(int lane) {
+            return !matchesNothing
+                    && (exporterId == TariffRateColumns.ANY || rates.laneExporterId(lane) == exporterId)
+                    && (importerId == TariffRateColumns.ANY || rates.laneImporterId(lane) == importerId)
+                    && (agreementId == TariffRateColumns.ANY || rates.laneAgreementId(lane) == agreementId)
+                    && (hsMatches == null || hsMatches[hsCode(rates.laneHsCodeId(lane))]);
+        }
+
+        int country(int id) {
+            return Arrays.binarySearch(countryIds, id);
+        }
+
+        int agreement(int id) {
+            return Arrays.binarySearch(agreementIds, id);
+        }
+
+        int hsCode(int id) {
+            return Arrays.binarySearch(hsCodeIds, id);
+        }
+
+        int hsGroup(int hsCodeId) {
+            return hsGroupIndex[hsCode(hsCodeId)];
+        }
+
+        private static int idOf(List<TariffDataset.Country> countries, String code) {
+            return countries.stream().filter(c -> c.code().equals(code)).mapToInt(TariffDataset.Country::id)
+                    .findFirst().orElse(Integer.MIN_VALUE);
+        }
+
+        // LEFT(hs_code, length)
+        private static String level(String hsCode, int length) {
+            return hsCode.length() <= length ? hsCode : hsCode.substring(0, length);
+        }
+    }
+
+    private static final class Stats {
+
+        private final long[] count;
+        private final long[] sum;
+        private final int[] min;
+        private final int[] max;
+
+        Stats(int groups) {
+            count = new long[groups];
+            sum = new long[groups];
+            min = new int[groups];
+            max = new int[groups];
+            Arrays.fill(min, Integer.MAX_VALUE);
+            Arrays.fill(max, Integer.MIN_VALUE);
+        }
+
+        void add(int group, int rate) {
+            count[group]++;
+            sum[group] += rate;
+            min[group] = Math.min(min[group], rate);
+            max[group] = Math.max(max[group], rate);
+        }
+
+        void merge(Stats other) {
+            for (int g = 0; g < count.length; g++) {
+                count[g] += other.count[g];
+                sum[g] += other.sum[g];
+                min[g] = Math.min(min[g], other.min[g]);
+                max[g] = Math.max(max[g], other.max[g]);
+            }
+        }
+    }
+}
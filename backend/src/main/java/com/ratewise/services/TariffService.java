@@ -1,20 +1,29 @@
 package com.ratewise.services;
 
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * TariffService
  * Business logic for retrieving tariff data for the dashboard
  * and performing landed cost calculations.
+ * Tariff reads go to tariff_view, the pre-joined copy of tariff_rates (see db/schema.sql).
+ * Read-only throughout, so it may be served by a read replica.
  */
 @Service
+@Transactional(readOnly = true)
 public class TariffService {
 
+  private static final int STREAM_FETCH_SIZE = 500;
+
   private final JdbcTemplate jdbc;
 
   public TariffService(JdbcTemplate jdbc) {
@@ -39,7 +48,8 @@ public class TariffService {
 
   /**
    * Get tariff info for a specific lane (exporter → importer),
-   * HS code, and agreement.
+   * HS code, and agreement. Falls back to the most specific HS level that has a
+   * current rate: the code itself, else its 8-digit, subheading, heading or chapter prefix.
    *
    * Example use:
    * - Exporter = "SG"
@@ -52,129 +62,137 @@ public class TariffService {
    */
   public Map<String, Object> getTariffInfo(String exporter, String importer, String hsCode, String agreement) {
     String sql = """
-            SELECT tariff_rates.rate_percent,
-                   importer_country.customs_basis,
-                   agreements.agreement_code,
-                   agreements.agreement_name,
-                   hs_codes.hs_code,
-                   hs_codes.description AS hs_description,
-                   exporter_country.country_code AS exporter_code,
-                   exporter_country.country_name AS exporter_name,
-                   importer_country.country_code AS importer_code,
-                   importer_country.country_name AS importer_name
-            FROM tariff_rates
-
-            JOIN hs_codes
-              ON hs_codes.id = tariff_rates.hs_code_id
-
-            JOIN countries AS exporter_country
-              ON exporter_country.id = tariff_rates.exporter_id
-
-            JOIN countries AS importer_country
-              ON importer_country.id = tariff_rates.importer_id
-
-            JOIN agreements
-              ON agreements.id = tariff_rates.agreement_id
-
-            WHERE exporter_country.country_code = ?
-              AND importer_country.country_code = ?
-              AND hs_codes.hs_code = ?
-              AND agreements.agreement_code = ?
-              AND (tariff_rates.valid_to IS NULL OR tariff_rates.valid_to >= CURRENT_DATE)
-
-            ORDER BY tariff_rates.valid_from DESC
+            SELECT rate_percent,
+                   customs_basis,
+                   agreement_code,
+                   agreement_name,
+                   hs_code,
+                   hs_description,
+                   exporter_code,
+                   exporter_name,
+                   importer_code,
+                   importer_name
+            FROM tariff_view
+            WHERE exporter_code = ?
+              AND importer_code = ?
+              AND hs_code = ANY (ARRAY[CAST(? AS text), LEFT(?, 8), LEFT(?, 6), LEFT(?, 4), LEFT(?, 2)])
+              AND agreement_code = ?
+              AND (valid_to IS NULL OR valid_to >= CURRENT_DATE)
+            ORDER BY LENGTH(hs_code) DESC, valid_from DESC
             LIMIT 1
         """;
 
-    return jdbc.queryForMap(sql, exporter, importer, hsCode, agreement);
+    return jdbc.queryForMap(sql, exporter, importer, hsCode, hsCode, hsCode, hsCode, hsCode, agreement);
+  }
+
+  public List<Map<String, Object>> listTariffs(String importer, String exporter, String agreement) {
+    return listTariffs(importer, exporter, agreement, null);
   }
 
   /**
-   * Optional filters: importer, exporter, agreement.
+   * Optional filters: importer, exporter, agreement, HS code prefix.
    *
    * Example:
    * - GET /api/tariffs/list?importer=US
    * - GET /api/tariffs/list?exporter=SG&agreement=CPTPP
+   * - GET /api/tariffs/list?hsCode=0101* (every line under heading 0101)
    *
    * Returns a list of tariff rows (HS code, description, exporter/importer, agreement, duty rate, basis).
    */
-  public List<Map<String, Object>> listTariffs(String importer, String exporter, String agreement) {
-      StringBuilder sql = new StringBuilder("""
-              SELECT hs_codes.hs_code,
-                    hs_codes.description AS hs_description,
-                    exporter_country.country_code AS exporter_code,
-                    exporter_country.country_name AS exporter_name,
-                    importer_country.country_code AS importer_code,
-                    importer_country.country_name AS importer_name,
-                    agreements.agreement_code,
-                    agreements.agreement_name,
-                    tariff_rates.rate_percent,
-                    importer_country.customs_basis,
-                    tariff_rates.valid_from AS valid_from,
-                    tariff_rates.valid_to   AS valid_to
-              FROM tariff_rates
-              JOIN hs_codes
-                ON hs_codes.id = tariff_rates.hs_code_id
-              JOIN countries AS exporter_country
-                ON exporter_country.id = tariff_rates.exporter_id
-              JOIN countries AS importer_country
-                ON importer_country.id = tariff_rates.importer_id
-              JOIN agreements
-                ON agreements.id = tariff_rates.agreement_id
-              WHERE (tariff_rates.valid_to IS NULL OR tariff_rates.valid_to >= CURRENT_DATE)
-          """);
+  public List<Map<String, Object>> listTariffs(String importer, String exporter, String agreement, String hsPrefix) {
+      List<Object> params = new ArrayList<>();
+      String sql = listTariffsQuery(importer, exporter, agreement, hsPrefix, params);
+      return jdbc.queryForList(sql, params.toArray());
+  }
 
+  /**
+   * Same rows and order as {@link #listTariffs(String, String, String, String)}, handed to the
+   * consumer one at a time instead of materialised as a list. Runs in the read-only transaction,
+   * so PgJDBC reads through a server-side cursor STREAM_FETCH_SIZE rows per round trip. The
+   * transaction, and with it a pooled connection, stays open until the consumer has taken the
+   * last row, however slow it is; callers bound how many run at once (ExportStreams).
+   */
+  public void streamTariffs(String importer, String exporter, String agreement, String hsPrefix,
+                            Consumer<Map<String, Object>> consumer) {
       List<Object> params = new ArrayList<>();
+      String sql = listTariffsQuery(importer, exporter, agreement, hsPrefix, params);
+      ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+      jdbc.query(con -> {
+          PreparedStatement ps = con.prepareStatement(sql);
+          ps.setFetchSize(STREAM_FETCH_SIZE);
+          for (int i = 0; i < params.size(); i++) {
+              ps.setObject(i + 1, params.get(i));
+          }
+          return ps;
+      }, rs -> {
+          consumer.accept(rowMapper.mapRow(rs, rs.getRow()));
+      });
+  }
+
+  private static String listTariffsQuery(String importer, String exporter, String agreement, String hsPrefix,
+                                         List<Object> params) {
+      StringBuilder sql = new StringBuilder("""
+              SELECT hs_code,
+                    hs_description,
+                    exporter_code,
+                    exporter_name,
+                    importer_code,
+                    importer_name,
+                    agreement_code,
+                    agreement_name,
+                    rate_percent,
+                    customs_basis,
+                    valid_from,
+                    valid_to
+              FROM tariff_view
+              WHERE (valid_to IS NULL OR valid_to >= CURRENT_DATE)
+          """);
 
       if (importer != null && !importer.isEmpty()) {
-          sql.append(" AND importer_country.country_code = ?");
+          sql.append(" AND importer_code = ?");
           params.add(importer);
       }
 
       if (exporter != null && !exporter.isEmpty()) {
-          sql.append(" AND exporter_country.country_code = ?");
+          sql.append(" AND exporter_code = ?");
           params.add(exporter);
       }
 
       if (agreement != null && !agreement.isEmpty()) {
-          sql.append(" AND agreements.agreement_code = ?");
+          sql.append(" AND agreement_code = ?");
           params.add(agreement);
       }
 
-      sql.append(" ORDER BY hs_codes.hs_code ASC, agreements.agreement_code ASC");
+      HsPrefix hs = HsPrefix.parse(hsPrefix);
+      if (hs != null) {
+          sql.append(" AND ").append(HsPrefix.SQL_CONDITION);
+          params.add(hs.from());
+          params.add(hs.to());
+      }
 
-      return jdbc.queryForList(sql.toString(), params.toArray());
+      sql.append(" ORDER BY hs_code ASC, agreement_code ASC");
+      return sql.toString();
   }
 
   // Query for Tariff Table
   public List<Map<String, Object>> listTariffsTable() {
     String sql = """
-            SELECT exporter.country_code AS exporter_code,
-                   exporter.country_name AS exporter_name,
-                   importer.country_code AS importer_code,
-                   importer.country_name AS importer_name,
-                   importer.customs_basis AS importer_customs,
-                   tax_rules.tax_type AS importer_tax,
-                   agreements.agreement_code,
-                   agreements.agreement_name,
-                   hs_codes.hs_code,
-                   hs_codes.description AS hs_description,
-                   tariff_rates.rate_percent,
-                   tariff_rates.valid_from,
-                  tariff_rates.valid_to
-            FROM tariff_rates
-            JOIN countries AS exporter
-              ON exporter.id = tariff_rates.exporter_id
-            JOIN countries AS importer
-              ON importer.id = tariff_rates.importer_id
-            JOIN hs_codes
-              ON hs_codes.id = tariff_rates.hs_code_id
-            JOIN agreements
-              ON agreements.id = tariff_rates.agreement_id
-            JOIN tax_rules
-              ON tax_rules.country_id = importer.id
-            ORDER BY exporter.country_code ASC, importer.country_code ASC, hs_codes.hs_code ASC 
-            """; 
+            SELECT exporter_code,
+                   exporter_name,
+                   importer_code,
+                   importer_name,
+                   customs_basis AS importer_customs,
+                   tax_type AS importer_tax,
+                   agreement_code,
+                   agreement_name,
+                   hs_code,
+                   hs_description,
+                   rate_percent,
+                   valid_from,
+                   valid_to
+            FROM tariff_view
+            ORDER BY exporter_code ASC, importer_code ASC, hs_code ASC
+            """;
 
     return jdbc.queryForList(sql);
   }
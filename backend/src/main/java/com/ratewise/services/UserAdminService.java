@@ -0,0 +1,117 @@
+package com.ratewise.services;
+
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.dto.BulkUpdateResponse;
+import com.ratewise.security.entities.Role;
+import com.ratewise.security.exception.RoleNotFoundException;
+import com.ratewise.security.exception.UserNotFoundException;
+import com.ratewise.security.repositories.RoleRepository;
+import com.ratewise.security.repositories.UserRepository;
+import com.ratewise.security.util.JWTUtil;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk user administration. Each call validates the whole batch up front and then
+ * applies it with set-based statements in one transaction, so either every user is
+ * updated or none is. Tokens of all affected users are invalidated in one sweep, and their
+ * API keys re-read, once the transaction has committed: a rollback leaves both untouched, and
+ * the key reload sees the committed rows rather than this transaction's.
+ */
+@Service
+public class UserAdminService {
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final JWTUtil jwtUtil;
+    private final ApiKeyCache apiKeyCache;
+
+    public UserAdminService(UserRepository userRepository, RoleRepository roleRepository, JWTUtil jwtUtil,
+                            ApiKeyCache apiKeyCache) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.jwtUtil = jwtUtil;
+        this.apiKeyCache = apiKeyCache;
+    }
+
+    @Transactional
+    public BulkUpdateResponse updateRoles(List<String> userIds, Long roleId) {
+        Role role = roleRepository.findById(roleId)
+                .orElseThrow(() -> new RoleNotFoundException(roleId));
+
+        Set<String> ids = requireExistingUsers(userIds);
+        roleRepository.assignRoleToUsers(ids, roleId);
+
+        // Users must re-login to pick up the new role; API key scopes follow the role
+        afterCommit(() -> {
+            jwtUtil.invalidateUserTokens(ids);
+            apiKeyCache.reloadUsers(ids);
+        });
+
+        return BulkUpdateResponse.builder()
+                .message("Role updated successfully for " + ids.size() + " users")
+                .updatedCount(ids.size())
+                .newRole(role.getRoleName())
+                .note("Users must re-login for changes to take effect")
+                .build();
+    }
+
+    @Transactional
+    public BulkUpdateResponse updateStatus(List<String> userIds, boolean isActive) {
+        Set<String> ids = requireExistingUsers(userIds);
+        int updated = userRepository.updateEnabled(ids, isActive);
+
+        // Invalidate tokens if disabling users
+        afterCommit(() -> {
+            if (!isActive) {
+                jwtUtil.invalidateUserTokens(ids);
+            }
+            apiKeyCache.reloadUsers(ids);
+        });
+
+        return BulkUpdateResponse.builder()
+                .message("User status updated successfully for " + updated + " users")
+                .updatedCount(updated)
+                .isActive(isActive)
+                .build();
+    }
+
+    // Runs straight away when there is no transaction (e.g. unit tests)
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // De-duplicate and check every ID exists (one query); unknown IDs reject the whole batch
+    private Set<String> requireExistingUsers(List<String> userIds) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (String id : userIds) {
+            if (id == null || id.isBlank()) {
+                throw new IllegalArgumentException("Invalid request body: userIds must not contain blank IDs");
+            }
+            ids.add(id.trim());
+        }
+
+        Set<String> existing = userRepository.findExistingIds(ids);
+        if (existing.size() != ids.size()) {
+            List<String> missing = ids.stream().filter(id -> !existing.contains(id)).toList();
+            throw new UserNotFoundException(String.join(", ", missing));
+        }
+        return ids;
+    }
+}
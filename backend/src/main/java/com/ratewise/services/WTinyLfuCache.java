@@ -0,0 +1,368 @@
+package com.ratewise.services;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A bounded, weighted cache with W-TinyLFU admission (Einziger, Friedman, Manes).
+ *
+ * New entries go to a small LRU window (1% of the weight). An entry pushed out of the window is
+ * only admitted to the main space, a segmented LRU (probation, then protected once hit again),
+ * if a frequency sketch has seen its key more often than the main-space entries it would evict.
+ * One-off requests therefore cycle through the window without flushing the entries that are
+ * asked for again and again. Frequencies are estimated by a 4-bit count-min sketch that is
+ * halved periodically, so popularity ages out.
+ *
+ * Unlike Caffeine, which this follows, the window does not resize itself and all operations
+ * take one lock; the cached values here are cheap to look up, so that is not a bottleneck.
+ */
+final class WTinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final Queue<K, V> window = new Queue<>();
+    private final Queue<K, V> probation = new Queue<>();
+    private final Queue<K, V> protectedQueue = new Queue<>();
+    private final FrequencySketch sketch;
+    private final ToIntBiFunction<K, V> weigher;
+
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long windowWeight;
+    private long mainWeight;
+    private long protectedWeight;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long rejectionCount;
+
+    /**
+     * @param maximumWeight    bound on the sum of entry weights
+     * @param expectedEntries  rough number of entries that fit, to size the frequency sketch
+     * @param weigher          weight of an entry, e.g. its approximate size in bytes
+     */
+    WTinyLfuCache(long maximumWeight, int expectedEntries, ToIntBiFunction<K, V> weigher) {
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 80 / 100;
+        this.sketch = new FrequencySketch(Math.max(16, expectedEntries));
+        this.weigher = weigher;
+    }
+
+    synchronized V get(K key) {
+        sketch.increment(key.hashCode());
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        onHit(node);
+        return node.value;
+    }
+
+    /**
+     * The value for {@code key} without counting it as a request or touching its recency,
+     * e.g. to read-modify-write an entry.
+     */
+    synchronized V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Add or replace. Entries heavier than the whole cache are not kept.
+     */
+    synchronized void put(K key, V value) {
+        int weight = weigher.applyAsInt(key, value);
+        Node<K, V> existing = data.remove(key);
+        if (existing != null) {
+            unlink(existing);
+        }
+        if (weight > maximumWeight) {
+            rejectionCount++;
+            return;
+        }
+        Node<K, V> node = new Node<>(key, value, weight);
+        data.put(key, node);
+        node.queue = WINDOW;
+        window.add(node);
+        windowWeight += weight;
+        evict();
+    }
+
+    /**
+     * Remove every entry matching {@code predicate}.
+     *
+     * @return how many were removed
+     */
+    synchronized int removeIf(BiPredicate<? super K, ? super V> predicate) {
+        int removed = 0;
+        for (Iterator<Node<K, V>> it = data.values().iterator(); it.hasNext(); ) {
+            Node<K, V> node = it.next();
+            if (predicate.test(node.key, node.value)) {
+                it.remove();
+                unlink(node);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    synchronized void clear() {
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedQueue.clear();
+        windowWeight = mainWeight = protectedWeight = 0;
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToBack(node);
+            case PROTECTED -> protectedQueue.moveToBack(node);
+            default -> {
+                // hit again while on probation: protect it, demoting the least recent protected entries
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.add(node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaximum) {
+                    Node<K, V> demoted = protectedQueue.poll();
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probation.add(demoted);
+                }
+            }
+        }
+    }
+
+    // Move window overflow to the main space where it wins admission, dropping it otherwise
+    private void evict() {
+        long mainMaximum = maximumWeight - windowMaximum;
+        while (windowWeight > windowMaximum) {
+            Node<K, V> candidate = window.poll();
+            windowWeight -= candidate.weight;
+
+            long needed = mainWeight + candidate.weight - mainMaximum;
+            if (needed > 0 && !admit(candidate, needed)) {
+                data.remove(candidate.key);
+                evictionCount++;
+                continue;
+            }
+            candidate.queue = PROBATION;
+            probation.add(candidate);
+            mainWeight += candidate.weight;
+        }
+    }
+
+    // The victims are the least recent entries, probation before protected. The candidate gets
+    // in (and they go) only if it is more frequent than each of them; otherwise nothing changes
+    private boolean admit(Node<K, V> candidate, long needed) {
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+        long freed = 0;
+        Node<K, V> last = null;
+        for (Node<K, V> victim = firstVictim(); victim != null && freed < needed; victim = nextVictim(victim)) {
+            if (sketch.frequency(victim.key.hashCode()) >= candidateFrequency) {
+                return false;
+            }
+            freed += victim.weight;
+            last = victim;
+        }
+        if (freed < needed) {
+            return false;
+        }
+        for (Node<K, V> victim = firstVictim(); ; ) {
+            Node<K, V> next = nextVictim(victim);
+            data.remove(victim.key);
+            unlink(victim);
+            evictionCount++;
+            if (victim == last) break;
+            victim = next;
+        }
+        return true;
+    }
+
+    private Node<K, V> firstVictim() {
+        return probation.head != null ? probation.head : protectedQueue.head;
+    }
+
+    private Node<K, V> nextVictim(Node<K, V> victim) {
+        if (victim.next != null) return victim.next;
+        return victim.queue == PROBATION ? protectedQueue.head : null;
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> {
+                probation.remove(node);
+                mainWeight -= node.weight;
+            }
+            default -> {
+                protectedQueue.remove(node);
+                mainWeight -= node.weight;
+                protectedWeight -= node.weight;
+            }
+        }
+    }
+
+    // Metrics
+
+    synchronized int size() {
+        return data.size();
+    }
+
+    synchronized long weight() {
+        return windowWeight + mainWeight;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /** Entries dropped for space, including window entries that lost admission. */
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /** Puts not kept because the entry alone is heavier than the cache. */
+    synchronized long getRejectionCount() {
+        return rejectionCount;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        int queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    // Intrusive doubly-linked LRU list, least recent at the head
+    private static final class Queue<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        void add(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) head = node;
+            else tail.next = node;
+            tail = node;
+        }
+
+        Node<K, V> poll() {
+            Node<K, V> node = head;
+            if (node != null) remove(node);
+            return node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) head = node.next;
+            else node.prev.next = node.next;
+            if (node.next == null) tail = node.prev;
+            else node.next.prev = node.prev;
+            node.prev = node.next = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        void clear() {
+            head = tail = null;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, four per key, packed sixteen to a long. After ten
+     * increments per counter slot every counter is halved, so old popularity decays.
+     */
+    static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            table = new long[Integer.highestOneBit(Math.max(2, expectedEntries) - 1) << 1];
+            sampleSize = 10 * table.length;
+        }
+
+        void increment(int hashCode) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                added |= incrementAt(slot(hashCode, i), offset(hashCode, i));
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(int hashCode) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, (int) ((table[slot(hashCode, i)] >>> (offset(hashCode, i) << 2)) & 0xfL));
+            }
+            return frequency;
+        }
+
+        private boolean incrementAt(int slot, int offset) {
+            long mask = 0xfL << (offset << 2);
+            if ((table[slot] & mask) == mask) {
+                return false; // saturated at 15
+            }
+            table[slot] += 1L << (offset << 2);
+            return true;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+
+        private int slot(int hashCode, int i) {
+            long h = (hashCode + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & (table.length - 1);
+        }
+
+        // Which of the sixteen counters in the slot
+        private static int offset(int hashCode, int i) {
+            int h = hashCode * 0x9E3779B9 + i * 0x7F4A7C15;
+            return (h ^ (h >>> 16)) & 0xf;
+        }
+    }
+}
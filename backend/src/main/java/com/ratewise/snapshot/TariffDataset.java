@@ -0,0 +1,292 @@
+package com.ratewise.snapshot;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable in-memory copy of the tariff and reference data at one data version, indexed for
+ * the calculator's lookup.
+ *
+ * {@link #lookup} answers exactly what CalculatorSql.LANDED_COST_LOOKUP does, against this copy
+ * instead of the database; keep the two in step. Reference data and tax rules are small and kept
+ * as records; tariff rates, the bulk of the data, are held off-heap in {@link TariffRateColumns}.
+ */
+public final class TariffDataset {
+
+    public record Country(int id, String code, String name, String customsBasis) {}
+
+    public record HsCode(int id, String code, String description) {}
+
+    public record Agreement(int id, String code, String name) {}
+
+    // validTo null = open-ended. Only used to build and materialize TariffRateColumns
+    public record TariffRate(int id, int exporterId, int importerId, int hsCodeId, int agreementId,
+                             BigDecimal ratePercent, LocalDate validFrom, LocalDate validTo) {}
+
+    public record TaxRule(int id, int countryId, String taxType, BigDecimal ratePercent,
+                          LocalDate validFrom, LocalDate validTo) {}
+
+    /**
+     * Same columns as the SQL lookup; null where nothing matched.
+     */
+    public record Lookup(String exporterCode, String importerCode, String customsBasis,
+                         String hsCode, String hsPath,
+                         BigDecimal ratePercent, String tariffHsCode,
+                         String taxType, BigDecimal taxRatePercent,
+                         Integer tariffId, Integer taxRuleId) {}
+
+    /** One tariff lane by code: what {@link #changesSince} reports and caches invalidate by. */
+    public record Lane(String exporterCode, String importerCode, String hsCode, String agreementCode) {}
+
+    /**
+     * What differs between two datasets as far as a lookup can tell:
+     * - referenceData: countries, HS codes or agreements changed (any lookup may answer differently)
+     * - taxImporters: codes of importers whose tax rules changed
+     * - tariffLanes: lanes with rates added, removed or changed. A rate on an HS heading or chapter
+     *   also applies to the longer codes under it (see {@link #lookup}).
+     */
+    public record Changes(boolean referenceData, Set<String> taxImporters, Set<Lane> tariffLanes) {
+
+        public boolean isEmpty() {
+            return !referenceData && taxImporters.isEmpty() && tariffLanes.isEmpty();
+        }
+    }
+
+    // PostgreSQL's [[:alpha:]] is Unicode-aware
+    private static final Pattern COUNTRY_CODE_INPUT = Pattern.compile("\\p{IsAlphabetic}{2}");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Shorter HS levels a code falls back to, most specific first: national 8-digit, subheading, heading, chapter
+    private static final int[] HS_FALLBACK_LENGTHS = {8, 6, 4, 2};
+
+    private final long dataVersion;
+    private final Instant createdAt;
+    private final List<Country> countries;
+    private final List<HsCode> hsCodes;
+    private final List<Agreement> agreements;
+    private final TariffRateColumns tariffRates;
+    private final List<TaxRule> taxRules;
+
+    private final Map<String, Country> countriesByCode = new HashMap<>();
+    private final Map<String, Country> countriesByName = new HashMap<>();
+    private final Map<String, HsCode> hsByCode = new HashMap<>();
+    private final List<String> hsDescriptionsLower = new ArrayList<>();
+    private final Map<String, Agreement> agreementsByCode = new HashMap<>();
+    private final Map<Integer, List<TaxRule>> taxByCountry = new HashMap<>();
+
+    public TariffDataset(long dataVersion, Instant createdAt, List<Country> countries, List<HsCode> hsCodes,
+                         List<Agreement> agreements, TariffRateColumns tariffRates, List<TaxRule> taxRules) {
+        this.dataVersion = dataVersion;
+        this.createdAt = createdAt;
+        this.countries = List.copyOf(countries);
+        this.hsCodes = List.copyOf(hsCodes);
+        this.agreements = List.copyOf(agreements);
+        this.tariffRates = tariffRates;
+        this.taxRules = List.copyOf(taxRules);
+
+        // Lists arrive ordered by id, so putIfAbsent keeps the lowest id on duplicates
+        for (Country c : this.countries) {
+            countriesByCode.putIfAbsent(c.code().toUpperCase(Locale.ROOT), c);
+            countriesByName.putIfAbsent(c.name().toLowerCase(Locale.ROOT), c);
+        }
+        for (HsCode h : this.hsCodes) {
+            hsByCode.putIfAbsent(h.code(), h);
+            hsDescriptionsLower.add(h.description().toLowerCase(Locale.ROOT));
+        }
+        for (Agreement a : this.agreements) {
+            agreementsByCode.putIfAbsent(a.code().toUpperCase(Locale.ROOT), a);
+        }
+        for (TaxRule t : this.taxRules) {
+            taxByCountry.computeIfAbsent(t.countryId(), id -> new ArrayList<>()).add(t);
+        }
+        taxByCountry.values().forEach(rules -> rules.sort(Comparator.comparing(TaxRule::validFrom).reversed()));
+    }
+
+    /**
+     * The calculator's lookup. Same parameters as the SQL: exporter and importer input, the
+     * normalized explicit HS code or null, the product description (null when an HS code is
+     * given), agreement code and effective date.
+     */
+    public Lookup lookup(String exporterInput, String importerInput, String hsInput,
+                         String descriptionInput, String agreementInput, LocalDate onDate) {
+        Country exporter = country(exporterInput);
+        Country importer = country(importerInput);
+
+        String hs = null;
+        String hsPath = null;
+        if (hsInput != null) {
+            hs = hsInput;
+            hsPath = "explicit";
+        } else if (descriptionInput != null) {
+            HsCode match = hsByDescription(descriptionInput);
+            if (match != null) {
+                hs = match.code();
+                hsPath = match.description().toLowerCase(Locale.ROOT).equals(descriptionInput.toLowerCase(Locale.ROOT))
+                        ? "exact_description" : "like_fallback";
+            }
+        }
+
+        BigDecimal rate = null;
+        String tariffHsCode = null;
+        Integer tariffId = null;
+        if (exporter != null && importer != null && hs != null && agreementInput != null) {
+            String code = WHITESPACE.matcher(hs).replaceAll("").toUpperCase(Locale.ROOT);
+            Agreement agreement = agreementsByCode.get(agreementInput.toUpperCase(Locale.ROOT));
+            int day = Math.toIntExact(onDate.toEpochDay());
+            // the code itself, then each shorter level, until one has a rate on the lane
+            for (int i = -1; agreement != null && i < HS_FALLBACK_LENGTHS.length; i++) {
+                if (i >= 0 && HS_FALLBACK_LENGTHS[i] >= code.length()) continue;
+                HsCode level = hsByCode.get(i < 0 ? code : code.substring(0, HS_FALLBACK_LENGTHS[i]));
+                if (level == null) continue;
+                int scaled = tariffRates.minRate(exporter.id(), importer.id(), level.id(), agreement.id(), day);
+                if (scaled != TariffRateColumns.NO_RATE) {
+                    rate = TariffRateColumns.rate(scaled);
+                    tariffHsCode = level.code();
+                    tariffId = tariffRates.minRateTariffId(exporter.id(), importer.id(), level.id(), agreement.id(), day);
+                    break;
+                }
+            }
+        }
+
+        TaxRule tax = null;
+        if (importer != null) {
+            for (TaxRule t : taxByCountry.getOrDefault(importer.id(), List.of())) {
+                if (validOn(t.validFrom(), t.validTo(), onDate)) {
+                    tax = t;
+                    break;
+                }
+            }
+        }
+
+        return new Lookup(
+                exporter == null ? null : exporter.code(),
+                importer == null ? null : importer.code(),
+                importer == null ? null : importer.customsBasis(),
+                hs, hsPath, rate, tariffHsCode,
+                tax == null ? null : tax.taxType(),
+                tax == null ? null : tax.ratePercent(),
+                tariffId,
+                tax == null ? null : tax.id());
+    }
+
+    /**
+     * The code of the country {@code input} names, resolved as {@link #lookup} does, or null.
+     */
+    public String countryCode(String input) {
+        Country country = country(input);
+        return country == null ? null : country.code();
+    }
+
+    /**
+     * Compare with {@code previous}, normally the dataset this one replaces. Reference data is
+     * compared as a whole, tax rules per importer and tariff rates per lane by fingerprint, so
+     * the cost is one pass over both datasets' lanes.
+     */
+    public Changes changesSince(TariffDataset previous) {
+        if (!countries.equals(previous.countries) || !hsCodes.equals(previous.hsCodes)
+                || !agreements.equals(previous.agreements)) {
+            return new Changes(true, Set.of(), Set.of());
+        }
+
+        Set<String> taxImporters = new HashSet<>();
+        for (Country c : countries) {
+            if (!taxByCountry.getOrDefault(c.id(), List.of()).equals(previous.taxByCountry.getOrDefault(c.id(), List.of()))) {
+                taxImporters.add(c.code());
+            }
+        }
+
+        Map<Lane, Long> before = previous.laneFingerprints();
+        Set<Lane> tariffLanes = new HashSet<>();
+        laneFingerprints().forEach((lane, fingerprint) -> {
+            if (!fingerprint.equals(before.remove(lane))) tariffLanes.add(lane);
+        });
+        tariffLanes.addAll(before.keySet()); // lanes that are gone
+        return new Changes(false, taxImporters, tariffLanes);
+    }
+
+    private Map<Lane, Long> laneFingerprints() {
+        Map<Integer, String> countryCodes = new HashMap<>();
+        countries.forEach(c -> countryCodes.put(c.id(), c.code()));
+        Map<Integer, String> hsCodeById = new HashMap<>();
+        hsCodes.forEach(h -> hsCodeById.put(h.id(), h.code()));
+        Map<Integer, String> agreementCodes = new HashMap<>();
+        agreements.forEach(a -> agreementCodes.put(a.id(), a.code()));
+
+        Map<Lane, Long> fingerprints = new HashMap<>();
+        for (int lane = 0; lane < tariffRates.laneCount(); lane++) {
+            fingerprints.put(new Lane(
+                    countryCodes.get(tariffRates.laneExporterId(lane)),
+                    countryCodes.get(tariffRates.laneImporterId(lane)),
+                    hsCodeById.get(tariffRates.laneHsCodeId(lane)),
+                    agreementCodes.get(tariffRates.laneAgreementId(lane))),
+                    tariffRates.laneFingerprint(lane));
+        }
+        return fingerprints;
+    }
+
+    // A 2-letter input is a code, anything else the exact name; both case-insensitive
+    private Country country(String input) {
+        if (input == null) return null;
+        return COUNTRY_CODE_INPUT.matcher(input).matches()
+                ? countriesByCode.get(input.toUpperCase(Locale.ROOT))
+                : countriesByName.get(input.toLowerCase(Locale.ROOT));
+    }
+
+    // Exact description first, else the shortest description containing the input
+    private HsCode hsByDescription(String description) {
+        String needle = description.toLowerCase(Locale.ROOT);
+        HsCode shortest = null;
+        for (int i = 0; i < hsCodes.size(); i++) {
+            String candidate = hsDescriptionsLower.get(i);
+            if (candidate.equals(needle)) {
+                return hsCodes.get(i);
+            }
+            if (candidate.contains(needle)
+                    && (shortest == null || candidate.length() < shortest.description().length())) {
+                shortest = hsCodes.get(i);
+            }
+        }
+        return shortest;
+    }
+
+    private static boolean validOn(LocalDate from, LocalDate to, LocalDate onDate) {
+        return !from.isAfter(onDate) && (to == null || !to.isBefore(onDate));
+    }
+
+    public long getDataVersion() {
+        return dataVersion;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public List<Country> getCountries() {
+        return countries;
+    }
+
+    public List<HsCode> getHsCodes() {
+        return hsCodes;
+    }
+
+    public List<Agreement> getAgreements() {
+        return agreements;
+    }
+
+    public TariffRateColumns getTariffRates() {
+        return tariffRates;
+    }
+
+    public List<TaxRule> getTaxRules() {
+        return taxRules;
+    }
+}
@@ -0,0 +1,402 @@
+package com.ratewise.snapshot;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * tariff_rates as columns in off-heap memory.
+ *
+ * Country, HS code and agreement ids are dictionary-encoded into dense ints, dates are epoch
+ * days ({@link #OPEN_ENDED} for no valid_to) and rates are ints scaled by 10^{@link #RATE_SCALE}.
+ * Rows are sorted by lane (exporter, importer, HS code, agreement) and a lane table holds the
+ * offset of each lane's first row, so a lookup is a binary search over lanes plus a scan of that
+ * lane's few rows. The columns are direct buffers: a full national schedule with history is a
+ * dozen buffers rather than millions of heap objects, and reads go straight to primitives.
+ */
+public final class TariffRateColumns {
+
+    /** Decimal places kept for rate_percent; finer rates are rejected when building. */
+    public static final int RATE_SCALE = 4;
+
+    /** valid_to of an open-ended rate. */
+    public static final int OPEN_ENDED = Integer.MAX_VALUE;
+
+    /** Returned by {@link #minRate} when no rate is valid. */
+    public static final int NO_RATE = Integer.MIN_VALUE;
+
+    /** Wildcard for the id filters of {@link #forEach(int, int, int, int, RowVisitor)}. */
+    public static final int ANY = -1;
+
+    /**
+     * One row, as database ids, scaled rate and epoch days.
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(int tariffId, int exporterId, int importerId, int hsCodeId, int agreementId,
+                   int rateScaled, int validFromDay, int validToDay);
+    }
+
+    // Dictionaries: index = dense code, value = database id, ascending so encoding is a binary search
+    private final int[] countryIds;
+    private final int[] hsCodeIds;
+    private final int[] agreementIds;
+
+    private final int rowCount;
+    private final int laneCount;
+
+    // Per row, grouped by lane
+    private final IntBuffer tariffId;
+    private final IntBuffer rate;
+    private final IntBuffer validFrom;
+    private final IntBuffer validTo;
+
+    // Per lane, sorted; laneStart has one extra entry so lane l spans [laneStart(l), laneStart(l + 1))
+    private final IntBuffer laneExporter;
+    private final IntBuffer laneImporter;
+    private final IntBuffer laneHsCode;
+    private final IntBuffer laneAgreement;
+    private final IntBuffer laneStart;
+
+    private TariffRateColumns(Builder b) {
+        int n = b.size;
+        countryIds = IntStream.concat(IntStream.of(b.exporter).limit(n), IntStream.of(b.importer).limit(n))
+                .distinct().sorted().toArray();
+        hsCodeIds = IntStream.of(b.hsCode).limit(n).distinct().sorted().toArray();
+        agreementIds = IntStream.of(b.agreement).limit(n).distinct().sorted().toArray();
+
+        int[] exporter = encode(b.exporter, n, countryIds);
+        int[] importer = encode(b.importer, n, countryIds);
+        int[] hsCode = encode(b.hsCode, n, hsCodeIds);
+        int[] agreement = encode(b.agreement, n, agreementIds);
+
+        int[] order = IntStream.range(0, n).toArray();
+        sort(order, new int[n], 0, n, (x, y) -> {
+            int c = Integer.compare(exporter[x], exporter[y]);
+            if (c == 0) c = Integer.compare(importer[x], importer[y]);
+            if (c == 0) c = Integer.compare(hsCode[x], hsCode[y]);
+            if (c == 0) c = Integer.compare(agreement[x], agreement[y]);
+            if (c == 0) c = Integer.compare(b.validFrom[x], b.validFrom[y]);
+            return c;
+        });
+
+        int lanes = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || !sameLane(order[i - 1], order[i], exporter, importer, hsCode, agreement)) lanes++;
+        }
+
+        rowCount = n;
+        laneCount = lanes;
+        tariffId = allocate(n);
+        rate = allocate(n);
+        validFrom = allocate(n);
+        validTo = allocate(n);
+        laneExporter = allocate(lanes);
+        laneImporter = allocate(lanes);
+        laneHsCode = allocate(lanes);
+        laneAgreement = allocate(lanes);
+        laneStart = allocate(lanes + 1);
+
+        int lane = -1;
+        for (int row = 0; row < n; row++) {
+            int src = order[row];
+            if (row == 0 || !sameLane(order[row - 1], src, exporter, importer, hsCode, agreement)) {
+                lane++;
+                laneExporter.put(lane, exporter[src]);
+                laneImporter.put(lane, importer[src]);
+                laneHsCode.put(lane, hsCode[src]);
+                laneAgreement.put(lane, agreement[src]);
+                laneStart.put(lane, row);
+            }
+            tariffId.put(row, b.tariffId[src]);
+            rate.put(row, b.rate[src]);
+            validFrom.put(row, b.validFrom[src]);
+            validTo.put(row, b.validTo[src]);
+        }
+        laneStart.put(lanes, n);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static TariffRateColumns of(List<TariffDataset.TariffRate> rates) {
+        Builder builder = builder();
+        for (TariffDataset.TariffRate r : rates) {
+            builder.add(r.id(), r.exporterId(), r.importerId(), r.hsCodeId(), r.agreementId(),
+                    r.ratePercent(), r.validFrom(), r.validTo());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    public int laneCount() {
+        return laneCount;
+    }
+
+    /** Bytes held outside the heap by the columns. */
+    public long offHeapBytes() {
+        return (4L * rowCount + 5L * laneCount + 1) * Integer.BYTES;
+    }
+
+    /**
+     * Lowest scaled rate on the lane valid on {@code epochDay}, or {@link #NO_RATE}.
+     */
+    public int minRate(int exporterId, int importerId, int hsCodeId, int agreementId, int epochDay) {
+        int lane = findLane(exporterId, importerId, hsCodeId, agreementId);
+        return lane < 0 ? NO_RATE : laneRate(lane, epochDay);
+    }
+
+    /**
+     * tariff_rates.id of the row {@link #minRate} takes its rate from (the lowest id among equal
+     * rates), or -1 when no rate is valid.
+     */
+    public int minRateTariffId(int exporterId, int importerId, int hsCodeId, int agreementId, int epochDay) {
+        int lane = findLane(exporterId, importerId, hsCodeId, agreementId);
+        if (lane < 0) return -1;
+        int min = NO_RATE;
+        int id = -1;
+        for (int row = laneStart.get(lane), end = laneStart.get(lane + 1); row < end; row++) {
+            if (validFrom.get(row) <= epochDay && validTo.get(row) >= epochDay
+                    && (min == NO_RATE || rate.get(row) < min || (rate.get(row) == min && tariffId.get(row) < id))) {
+                min = rate.get(row);
+                id = tariffId.get(row);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Lowest scaled rate of lane {@code lane} (0 to laneCount() - 1) valid on {@code epochDay},
+     * or {@link #NO_RATE}. With the laneXxxId accessors this lets callers scan lanes in parallel.
+     */
+    public int laneRate(int lane, int epochDay) {
+        int min = NO_RATE;
+        for (int row = laneStart.get(lane), end = laneStart.get(lane + 1); row < end; row++) {
+            if (validFrom.get(row) <= epochDay && validTo.get(row) >= epochDay
+                    && (min == NO_RATE || rate.get(row) < min)) {
+                min = rate.get(row);
+            }
+        }
+        return min;
+    }
+
+    public int laneExporterId(int lane) {
+        return countryIds[laneExporter.get(lane)];
+    }
+
+    public int laneImporterId(int lane) {
+        return countryIds[laneImporter.get(lane)];
+    }
+
+    public int laneHsCodeId(int lane) {
+        return hsCodeIds[laneHsCode.get(lane)];
+    }
+
+    public int laneAgreementId(int lane) {
+        return agreementIds[laneAgreement.get(lane)];
+    }
+
+    /**
+     * 64-bit hash of lane {@code lane}'s rates and validity dates. Two datasets give a lane the
+     * same fingerprint exactly when every lookup on it answers the same (collisions aside).
+     */
+    public long laneFingerprint(int lane) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int row = laneStart.get(lane), end = laneStart.get(lane + 1); row < end; row++) {
+            h = mix64(h ^ (((long) rate.get(row) << 32) | (validFrom.get(row) & 0xFFFFFFFFL)));
+            h = mix64(h ^ validTo.get(row));
+        }
+        return h;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Visit rows not expired before {@code activeOnOrAfterDay} (valid_to null or on/after it)
+     * matching the given ids, each of which may be {@link #ANY}. Rows come grouped by lane.
+     */
+    public void forEach(int exporterId, int importerId, int agreementId, int activeOnOrAfterDay, RowVisitor visitor) {
+        int exporter = exporterId == ANY ? ANY : Arrays.binarySearch(countryIds, exporterId);
+        int importer = importerId == ANY ? ANY : Arrays.binarySearch(countryIds, importerId);
+        int agreement = agreementId == ANY ? ANY : Arrays.binarySearch(agreementIds, agreementId);
+        if ((exporterId != ANY && exporter < 0) || (importerId != ANY && importer < 0)
+                || (agreementId != ANY && agreement < 0)) {
+            return; // id not in the data
+        }
+
+        for (int lane = 0; lane < laneCount; lane++) {
+            if ((exporterId != ANY && laneExporter.get(lane) != exporter)
+                    || (importerId != ANY && laneImporter.get(lane) != importer)
+                    || (agreementId != ANY && laneAgreement.get(lane) != agreement)) {
+                continue;
+            }
+            for (int row = laneStart.get(lane), end = laneStart.get(lane + 1); row < end; row++) {
+                if (validTo.get(row) >= activeOnOrAfterDay) {
+                    visit(lane, row, visitor);
+                }
+            }
+        }
+    }
+
+    /** Visit every row. */
+    public void forEach(RowVisitor visitor) {
+        for (int lane = 0; lane < laneCount; lane++) {
+            for (int row = laneStart.get(lane), end = laneStart.get(lane + 1); row < end; row++) {
+                visit(lane, row, visitor);
+            }
+        }
+    }
+
+    /** Rows as records, in lane order. Allocates one object per row; for writing and tests. */
+    public List<TariffDataset.TariffRate> toList() {
+        List<TariffDataset.TariffRate> rows = new ArrayList<>(rowCount);
+        forEach((id, exporterId, importerId, hsCodeId, agreementId, rateScaled, fromDay, toDay) ->
+                rows.add(new TariffDataset.TariffRate(id, exporterId, importerId, hsCodeId, agreementId,
+                        rate(rateScaled), date(fromDay), date(toDay))));
+        return rows;
+    }
+
+    public static BigDecimal rate(int rateScaled) {
+        return BigDecimal.valueOf(rateScaled, RATE_SCALE);
+    }
+
+    public static LocalDate date(int epochDay) {
+        return epochDay == OPEN_ENDED ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private void visit(int lane, int row, RowVisitor visitor) {
+        visitor.visit(tariffId.get(row),
+                countryIds[laneExporter.get(lane)], countryIds[laneImporter.get(lane)],
+                hsCodeIds[laneHsCode.get(lane)], agreementIds[laneAgreement.get(lane)],
+                rate.get(row), validFrom.get(row), validTo.get(row));
+    }
+
+    private int findLane(int exporterId, int importerId, int hsCodeId, int agreementId) {
+        int exporter = Arrays.binarySearch(countryIds, exporterId);
+        int importer = Arrays.binarySearch(countryIds, importerId);
+        int hsCode = Arrays.binarySearch(hsCodeIds, hsCodeId);
+        int agreement = Arrays.binarySearch(agreementIds, agreementId);
+        if (exporter < 0 || importer < 0 || hsCode < 0 || agreement < 0) return -1;
+
+        int low = 0;
+        int high = laneCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = Integer.compare(laneExporter.get(mid), exporter);
+            if (c == 0) c = Integer.compare(laneImporter.get(mid), importer);
+            if (c == 0) c = Integer.compare(laneHsCode.get(mid), hsCode);
+            if (c == 0) c = Integer.compare(laneAgreement.get(mid), agreement);
+            if (c < 0) low = mid + 1;
+            else if (c > 0) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private static boolean sameLane(int x, int y, int[] exporter, int[] importer, int[] hsCode, int[] agreement) {
+        return exporter[x] == exporter[y] && importer[x] == importer[y]
+                && hsCode[x] == hsCode[y] && agreement[x] == agreement[y];
+    }
+
+    private static int[] encode(int[] ids, int n, int[] dictionary) {
+        int[] codes = new int[n];
+        for (int i = 0; i < n; i++) {
+            codes[i] = Arrays.binarySearch(dictionary, ids[i]);
+        }
+        return codes;
+    }
+
+    private static IntBuffer allocate(int ints) {
+        return ByteBuffer.allocateDirect(ints * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private interface IntComparator {
+        int compare(int x, int y);
+    }
+
+    // Stable merge sort of row indices; Arrays.sort has no primitive-comparator overload
+    private static void sort(int[] a, int[] scratch, int from, int to, IntComparator cmp) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sort(a, scratch, from, mid, cmp);
+        sort(a, scratch, mid, to, cmp);
+        if (cmp.compare(a[mid - 1], a[mid]) <= 0) return;
+        System.arraycopy(a, from, scratch, from, to - from);
+        for (int i = from, left = from, right = mid; i < to; i++) {
+            if (right >= to || (left < mid && cmp.compare(scratch[left], scratch[right]) <= 0)) {
+                a[i] = scratch[left++];
+            } else {
+                a[i] = scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * Collects rows into primitive arrays; {@link #build()} sorts them and copies them off-heap.
+     */
+    public static final class Builder {
+
+        private int size;
+        private int[] tariffId = new int[256];
+        private int[] exporter = new int[256];
+        private int[] importer = new int[256];
+        private int[] hsCode = new int[256];
+        private int[] agreement = new int[256];
+        private int[] rate = new int[256];
+        private int[] validFrom = new int[256];
+        private int[] validTo = new int[256];
+
+        private Builder() {}
+
+        /**
+         * @throws ArithmeticException when the rate has more than {@link #RATE_SCALE} decimals or
+         *                             does not fit an int once scaled
+         */
+        public Builder add(int tariffId, int exporterId, int importerId, int hsCodeId, int agreementId,
+                           BigDecimal ratePercent, LocalDate validFrom, LocalDate validTo) {
+            if (size == this.tariffId.length) grow();
+            this.tariffId[size] = tariffId;
+            exporter[size] = exporterId;
+            importer[size] = importerId;
+            hsCode[size] = hsCodeId;
+            agreement[size] = agreementId;
+            rate[size] = ratePercent.setScale(RATE_SCALE, RoundingMode.UNNECESSARY).unscaledValue().intValueExact();
+            this.validFrom[size] = Math.toIntExact(validFrom.toEpochDay());
+            this.validTo[size] = validTo == null ? OPEN_ENDED : Math.toIntExact(validTo.toEpochDay());
+            size++;
+            return this;
+        }
+
+        public TariffRateColumns build() {
+            return new TariffRateColumns(this);
+        }
+
+        private void grow() {
+            int capacity = tariffId.length * 2;
+            tariffId = Arrays.copyOf(tariffId, capacity);
+            exporter = Arrays.copyOf(exporter, capacity);
+            importer = Arrays.copyOf(importer, capacity);
+            hsCode = Arrays.copyOf(hsCode, capacity);
+            agreement = Arrays.copyOf(agreement, capacity);
+            rate = Arrays.copyOf(rate, capacity);
+            validFrom = Arrays.copyOf(validFrom, capacity);
+            validTo = Arrays.copyOf(validTo, capacity);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.ratewise.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot file format for a {@link TariffDataset}.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * header  magic "RWTARIFF" | int format | long data version | long created (epoch ms)
+ *         | int body length | long CRC32C of body
+ * body    countries | hs codes | agreements | tariff rates | tax rules,
+ *         each an int count followed by fixed-order fields
+ * </pre>
+ * Strings are an int byte length + UTF-8, dates an int epoch day ({@link #NULL_DATE} for
+ * open-ended), decimals an int scale + short length + unscaled two's-complement bytes.
+ *
+ * Files are read through a read-only memory map and rejected when the magic, format or
+ * checksum does not match, so a torn or foreign file is never loaded.
+ */
+public final class TariffSnapshotCodec {
+
+    static final byte[] MAGIC = "RWTARIFF".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT = 1;
+    static final int HEADER_BYTES = MAGIC.length + 4 + 8 + 8 + 4 + 8;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private TariffSnapshotCodec() {}
+
+    /**
+     * Write {@code dataset} to {@code target} atomically: a temp file in the same directory is
+     * written, forced to disk and then moved over the target.
+     */
+    public static void write(TariffDataset dataset, Path target) throws IOException {
+        byte[] body = encodeBody(dataset);
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .put(MAGIC)
+                .putInt(FORMAT)
+                .putLong(dataset.getDataVersion())
+                .putLong(dataset.getCreatedAt().toEpochMilli())
+                .putInt(body.length)
+                .putLong(crc.getValue())
+                .flip();
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp-" + UUID.randomUUID());
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+                while (header.hasRemaining()) channel.write(header);
+                while (bodyBuffer.hasRemaining()) channel.write(bodyBuffer);
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Map {@code file} and decode it.
+     *
+     * @throws IOException when it cannot be read or is not a valid snapshot
+     */
+    public static TariffDataset read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Snapshot too short: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(mapped, file);
+        }
+    }
+
+    static TariffDataset decode(ByteBuffer buffer, Object source) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a tariff snapshot: " + source);
+        }
+        int format = buffer.getInt();
+        if (format != FORMAT) {
+            throw new IOException("Unsupported snapshot format " + format + ": " + source);
+        }
+        long dataVersion = buffer.getLong();
+        Instant createdAt = Instant.ofEpochMilli(buffer.getLong());
+        int bodyLength = buffer.getInt();
+        long checksum = buffer.getLong();
+        if (bodyLength < 0 || bodyLength != buffer.remaining()) {
+            throw new IOException("Snapshot truncated: " + source);
+        }
+
+        ByteBuffer body = buffer.slice(buffer.position(), bodyLength);
+        CRC32C crc = new CRC32C();
+        crc.update(body.duplicate());
+        if (crc.getValue() != checksum) {
+            throw new IOException("Snapshot checksum mismatch: " + source);
+        }
+
+        try {
+            List<TariffDataset.Country> countries = new ArrayList<>();
+            for (int i = body.getInt(); i > 0; i--) {
+                countries.add(new TariffDataset.Country(body.getInt(), string(body), string(body), string(body)));
+            }
+            List<TariffDataset.HsCode> hsCodes = new ArrayList<>();
+            for (int i = body.getInt(); i > 0; i--) {
+                hsCodes.add(new TariffDataset.HsCode(body.getInt(), string(body), string(body)));
+            }
+            List<TariffDataset.Agreement> agreements = new ArrayList<>();
+            for (int i = body.getInt(); i > 0; i--) {
+                agreements.add(new TariffDataset.Agreement(body.getInt(), string(body), string(body)));
+            }
+            // straight into the column builder, no per-row objects kept
+            TariffRateColumns.Builder tariffRates = TariffRateColumns.builder();
+            for (int i = body.getInt(); i > 0; i--) {
+                tariffRates.add(body.getInt(), body.getInt(), body.getInt(), body.getInt(),
+                        body.getInt(), decimal(body), date(body), date(body));
+            }
+            List<TariffDataset.TaxRule> taxRules = new ArrayList<>();
+            for (int i = body.getInt(); i > 0; i--) {
+                taxRules.add(new TariffDataset.TaxRule(body.getInt(), body.getInt(), string(body), decimal(body),
+                        date(body), date(body)));
+            }
+            return new TariffDataset(dataVersion, createdAt, countries, hsCodes, agreements, tariffRates.build(), taxRules);
+        } catch (RuntimeException e) {
+            // checksum matched but the body does not parse: written by a buggy or different build
+            throw new IOException("Corrupt snapshot body: " + source, e);
+        }
+    }
+
+    private static byte[] encodeBody(TariffDataset dataset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(dataset.getCountries().size());
+            for (TariffDataset.Country c : dataset.getCountries()) {
+                out.writeInt(c.id());
+                string(out, c.code());
+                string(out, c.name());
+                string(out, c.customsBasis());
+            }
+            out.writeInt(dataset.getHsCodes().size());
+            for (TariffDataset.HsCode h : dataset.getHsCodes()) {
+                out.writeInt(h.id());
+                string(out, h.code());
+                string(out, h.description());
+            }
+            out.writeInt(dataset.getAgreements().size());
+            for (TariffDataset.Agreement a : dataset.getAgreements()) {
+                out.writeInt(a.id());
+                string(out, a.code());
+                string(out, a.name());
+            }
+            out.writeInt(dataset.getTariffRates().size());
+            try {
+                dataset.getTariffRates().forEach((id, exporterId, importerId, hsCodeId, agreementId, rate, from, to) -> {
+                    try {
+                        out.writeInt(id);
+                        out.writeInt(exporterId);
+                        out.writeInt(importerId);
+                        out.writeInt(hsCodeId);
+                        out.writeInt(agreementId);
+                        decimal(out, TariffRateColumns.rate(rate));
+                        date(out, TariffRateColumns.date(from));
+                        date(out, TariffRateColumns.date(to));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeInt(dataset.getTaxRules().size());
+            for (TariffDataset.TaxRule t : dataset.getTaxRules()) {
+                out.writeInt(t.id());
+                out.writeInt(t.countryId());
+                string(out, t.taxType());
+                decimal(out, t.ratePercent());
+                date(out, t.validFrom());
+                date(out, t.validTo());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void string(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void decimal(DataOutputStream out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal decimal(ByteBuffer in) {
+        int scale = in.getInt();
+        byte[] unscaled = new byte[in.getShort()];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void date(DataOutputStream out, LocalDate value) throws IOException {
+        out.writeInt(value == null ? NULL_DATE : Math.toIntExact(value.toEpochDay()));
+    }
+
+    private static LocalDate date(ByteBuffer in) {
+        int epochDay = in.getInt();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
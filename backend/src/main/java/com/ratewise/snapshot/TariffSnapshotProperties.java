@@ -0,0 +1,29 @@
+package com.ratewise.snapshot;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * tariff-snapshot.* settings.
+ *
+ * Snapshot files are written to {@code directory}, one per data version, keeping the newest
+ * {@code keep}. Point it at a volume shared by (or persisted across) instances so new ones
+ * start warm. Every {@code checkMs} the data version in the database is compared with the
+ * loaded snapshot's and the snapshot is rebuilt when they differ.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "tariff-snapshot")
+public class TariffSnapshotProperties {
+
+    private boolean enabled = true;
+
+    private String directory = System.getProperty("java.io.tmpdir") + "/ratewise-snapshots";
+
+    private long checkMs = 5_000;
+
+    private int keep = 3;
+}
@@ -0,0 +1,189 @@
+package com.ratewise.snapshot;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Holds the current {@link TariffDataset} and keeps it in step with the database.
+ *
+ * On startup the newest valid snapshot file is memory-mapped and loaded, so the calculator can
+ * answer from memory before this instance has run a single tariff query. In the background
+ * the database's data_version (bumped by trigger on every tariff/reference change, see
+ * db/schema.sql) is compared with the loaded version; when they differ, the data is re-read in
+ * one REPEATABLE READ transaction, swapped in and written out as a new snapshot file for the
+ * next instance to start from.
+ *
+ * Between a change and the next check (tariff-snapshot.check-ms) the calculator may still
+ * answer from the previous version.
+ */
+@Slf4j
+@Service
+public class TariffSnapshotService {
+
+    private static final String FILE_PREFIX = "tariffs-v";
+    private static final String FILE_SUFFIX = ".snap";
+
+    private static final String DATA_VERSION_SQL = "SELECT version FROM data_version WHERE id = 1";
+
+    private final TariffSnapshotProperties properties;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate consistentRead;
+
+    private volatile TariffDataset current;
+
+    public TariffSnapshotService(TariffSnapshotProperties properties, JdbcTemplate jdbc,
+                                 PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.jdbc = jdbc;
+        this.consistentRead = new TransactionTemplate(transactionManager);
+        this.consistentRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.consistentRead.setReadOnly(true);
+    }
+
+    /**
+     * The dataset to serve from, or null when snapshots are off or nothing is loaded yet
+     * (callers then go to the database).
+     */
+    public TariffDataset current() {
+        return properties.isEnabled() ? current : null;
+    }
+
+    @PostConstruct
+    void loadLatestSnapshot() {
+        if (!properties.isEnabled()) return;
+        for (Path file : snapshotFiles()) {
+            long started = System.nanoTime();
+            try {
+                current = TariffSnapshotCodec.read(file);
+                log.info("Loaded tariff snapshot {} (data version {}, {} tariff rates, {} KiB off-heap) in {} ms",
+                        file.getFileName(), current.getDataVersion(), current.getTariffRates().size(),
+                        current.getTariffRates().offHeapBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+                return;
+            } catch (IOException e) {
+                log.warn("Skipping unreadable tariff snapshot {}: {}", file, e.getMessage());
+            }
+        }
+        log.info("No tariff snapshot in {}, the calculator uses the database until the first reload",
+                properties.getDirectory());
+    }
+
+    @Scheduled(fixedDelayString = "${tariff-snapshot.check-ms:5000}")
+    public void reconcile() {
+        if (!properties.isEnabled()) return;
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // keep serving what we have; the next check retries
+            log.warn("Tariff snapshot reconcile failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reload from the database if its data version differs from the loaded one.
+     *
+     * @return true when a new dataset was loaded
+     */
+    public synchronized boolean refresh() {
+        Long dbVersion = jdbc.queryForObject(DATA_VERSION_SQL, Long.class);
+        TariffDataset loaded = current;
+        if (loaded != null && dbVersion != null && loaded.getDataVersion() == dbVersion) {
+            return false;
+        }
+
+        TariffDataset fresh = consistentRead.execute(status -> loadFromDatabase());
+        current = fresh;
+        log.info("Tariff data reloaded at data version {} (was {})",
+                fresh.getDataVersion(), loaded == null ? "none" : loaded.getDataVersion());
+        writeSnapshot(fresh);
+        return true;
+    }
+
+    private TariffDataset loadFromDatabase() {
+        Long version = jdbc.queryForObject(DATA_VERSION_SQL, Long.class);
+        List<TariffDataset.Country> countries = jdbc.query(
+                "SELECT id, country_code, country_name, customs_basis FROM countries ORDER BY id",
+                (rs, i) -> new TariffDataset.Country(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+        List<TariffDataset.HsCode> hsCodes = jdbc.query(
+                "SELECT id, hs_code, description FROM hs_codes ORDER BY id",
+                (rs, i) -> new TariffDataset.HsCode(rs.getInt(1), rs.getString(2), rs.getString(3)));
+        List<TariffDataset.Agreement> agreements = jdbc.query(
+                "SELECT id, agreement_code, agreement_name FROM agreements ORDER BY id",
+                (rs, i) -> new TariffDataset.Agreement(rs.getInt(1), rs.getString(2), rs.getString(3)));
+        TariffRateColumns.Builder tariffRates = TariffRateColumns.builder();
+        jdbc.query("""
+                SELECT id, exporter_id, importer_id, hs_code_id, agreement_id, rate_percent, valid_from, valid_to
+                FROM tariff_rates ORDER BY id
+                """,
+                (RowCallbackHandler) rs -> tariffRates.add(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4),
+                        rs.getInt(5), rs.getBigDecimal(6), rs.getObject(7, LocalDate.class),
+                        rs.getObject(8, LocalDate.class)));
+        List<TariffDataset.TaxRule> taxRules = jdbc.query("""
+                SELECT id, country_id, tax_type, rate_percent, valid_from, valid_to
+                FROM tax_rules ORDER BY id
+                """,
+                (rs, i) -> new TariffDataset.TaxRule(rs.getInt(1), rs.getInt(2), rs.getString(3), rs.getBigDecimal(4),
+                        rs.getObject(5, LocalDate.class), rs.getObject(6, LocalDate.class)));
+        return new TariffDataset(version == null ? 0 : version, Instant.now(),
+                countries, hsCodes, agreements, tariffRates.build(), taxRules);
+    }
+
+    private void writeSnapshot(TariffDataset dataset) {
+        try {
+            Path directory = Paths.get(properties.getDirectory());
+            Files.createDirectories(directory);
+            TariffSnapshotCodec.write(dataset, directory.resolve(FILE_PREFIX + dataset.getDataVersion() + FILE_SUFFIX));
+            List<Path> files = snapshotFiles();
+            for (Path old : files.subList(Math.min(files.size(), Math.max(1, properties.getKeep())), files.size())) {
+                Files.deleteIfExists(old);
+            }
+        } catch (IOException e) {
+            // the in-memory copy is already current; only the next instance's warm start is affected
+            log.warn("Could not write tariff snapshot to {}: {}", properties.getDirectory(), e.getMessage());
+        }
+    }
+
+    // Newest first. By modification time, not version, so a database restored to a lower
+    // version does not leave an older-looking but newer file behind
+    private List<Path> snapshotFiles() {
+        Path directory = Paths.get(properties.getDirectory());
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted(Comparator.comparing(TariffSnapshotService::modifiedTime).reversed())
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not list tariff snapshots in {}: {}", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static FileTime modifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+-- ===============================================
+-- RateWise schema additions
+-- Run on startup by spring.sql.init (see application.properties).
+-- Every statement must be idempotent (IF NOT EXISTS / ON CONFLICT).
+-- The base tables (countries, tariff_rates, users, ...) are pre-created.
+-- ===============================================
+
+-- Admin user listing: keyset pagination on (created_at, id)
+CREATE INDEX IF NOT EXISTS idx_users_created_at_id ON users (created_at DESC, id DESC);
+
+-- Admin user search: case-insensitive prefix match on username/email
+CREATE INDEX IF NOT EXISTS idx_users_username_prefix ON users (LOWER(username) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_email_prefix ON users (LOWER(email) text_pattern_ops);
+
+-- User -> role join
+CREATE INDEX IF NOT EXISTS idx_user_roles_user_id ON user_roles (user_id);
+
+-- API keys for machine clients. Only the SHA-256 of the key is stored;
+-- scopes is a comma-separated list (tariffs:read, calculator, admin:import)
+CREATE TABLE IF NOT EXISTS api_keys (
+    id          VARCHAR(36)  PRIMARY KEY,
+    user_id     VARCHAR(36)  NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    name        VARCHAR(100) NOT NULL,
+    key_prefix  VARCHAR(16)  NOT NULL,
+    key_hash    CHAR(64)     NOT NULL UNIQUE,
+    scopes      VARCHAR(255) NOT NULL,
+    created_at  TIMESTAMP    NOT NULL,
+    expires_at  TIMESTAMP,
+    revoked_at  TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_api_keys_user_id ON api_keys (user_id);
+
+-- ===============================================
+-- tariff_view: tariff_rates pre-joined with country, HS code and agreement
+-- names, the importer's customs basis and the importer tax in force when the
+-- tariff starts (else the importer's latest tax rule). All tariff list/lookup
+-- reads use it instead of repeating the joins.
+-- Kept current by the triggers below: a change to a tariff row, or to a
+-- country, tax rule, HS code or agreement it references, re-derives only the
+-- affected rows.
+-- Function bodies are single-quoted (not $$) so spring.sql.init's ';' splitter
+-- keeps each CREATE FUNCTION in one statement.
+-- ===============================================
+CREATE TABLE IF NOT EXISTS tariff_view (
+    tariff_id        INTEGER      PRIMARY KEY REFERENCES tariff_rates(id) ON DELETE CASCADE,
+    exporter_id      INTEGER      NOT NULL,
+    importer_id      INTEGER      NOT NULL,
+    hs_code_id       INTEGER      NOT NULL,
+    agreement_id     INTEGER      NOT NULL,
+    exporter_code    VARCHAR(10)  NOT NULL,
+    exporter_name    VARCHAR(255) NOT NULL,
+    importer_code    VARCHAR(10)  NOT NULL,
+    importer_name    VARCHAR(255) NOT NULL,
+    customs_basis    VARCHAR(10)  NOT NULL,
+    hs_code          VARCHAR(20)  NOT NULL,
+    hs_description   TEXT         NOT NULL,
+    agreement_code   VARCHAR(50)  NOT NULL,
+    agreement_name   VARCHAR(255) NOT NULL,
+    rate_percent     NUMERIC      NOT NULL,
+    valid_from       DATE         NOT NULL,
+    valid_to         DATE,
+    tax_type         VARCHAR(50),
+    tax_rate_percent NUMERIC
+);
+CREATE INDEX IF NOT EXISTS idx_tariff_view_lane ON tariff_view (exporter_code, importer_code, hs_code, agreement_code, valid_from DESC);
+CREATE INDEX IF NOT EXISTS idx_tariff_view_importer ON tariff_view (importer_code, hs_code);
+CREATE INDEX IF NOT EXISTS idx_tariff_view_exporter_id ON tariff_view (exporter_id);
+CREATE INDEX IF NOT EXISTS idx_tariff_view_importer_id ON tariff_view (importer_id);
+CREATE INDEX IF NOT EXISTS idx_tariff_view_hs_code_id ON tariff_view (hs_code_id);
+CREATE INDEX IF NOT EXISTS idx_tariff_view_agreement_id ON tariff_view (agreement_id);
+-- HS prefix queries ("0101*", grouping by chapter/heading) are byte-order ranges on hs_code
+CREATE INDEX IF NOT EXISTS idx_tariff_view_hs_prefix ON tariff_view ((hs_code COLLATE "C"), valid_from);
+
+-- The refresh below selects tariff_rates rows by country, HS code and agreement id
+CREATE INDEX IF NOT EXISTS idx_tariff_rates_exporter_id ON tariff_rates (exporter_id);
+CREATE INDEX IF NOT EXISTS idx_tariff_rates_importer_id ON tariff_rates (importer_id);
+CREATE INDEX IF NOT EXISTS idx_tariff_rates_hs_code_id ON tariff_rates (hs_code_id);
+CREATE INDEX IF NOT EXISTS idx_tariff_rates_agreement_id ON tariff_rates (agreement_id);
+
+-- What tariff_view holds for each tariff_rates row. A filter on its id columns
+-- is pushed down to tariff_rates, so selecting a few rows only reads those.
+CREATE OR REPLACE VIEW tariff_view_source AS
+SELECT tr.id AS tariff_id, tr.exporter_id, tr.importer_id, tr.hs_code_id, tr.agreement_id,
+       e.country_code AS exporter_code, e.country_name AS exporter_name,
+       i.country_code AS importer_code, i.country_name AS importer_name, i.customs_basis,
+       h.hs_code, h.description AS hs_description, a.agreement_code, a.agreement_name,
+       tr.rate_percent, tr.valid_from, tr.valid_to, tax.tax_type, tax.rate_percent AS tax_rate_percent
+FROM tariff_rates tr
+JOIN countries e ON e.id = tr.exporter_id
+JOIN countries i ON i.id = tr.importer_id
+JOIN hs_codes h ON h.id = tr.hs_code_id
+JOIN agreements a ON a.id = tr.agreement_id
+LEFT JOIN LATERAL (
+    SELECT t.tax_type, t.rate_percent
+    FROM tax_rules t
+    WHERE t.country_id = tr.importer_id
+    ORDER BY (t.valid_from <= tr.valid_from AND (t.valid_to IS NULL OR t.valid_to >= tr.valid_from)) DESC,
+             t.valid_from DESC
+    LIMIT 1
+) tax ON TRUE;
+
+-- Re-derive the rows for one tariff and/or everything referencing a country,
+-- HS code or agreement; NULL arguments match nothing. One statement per key,
+-- so each is an index lookup (a single OR across the keys would scan).
+CREATE OR REPLACE FUNCTION tariff_view_refresh(p_tariff_id INTEGER, p_country_id INTEGER,
+                                               p_hs_code_id INTEGER, p_agreement_id INTEGER)
+RETURNS void LANGUAGE plpgsql AS '
+BEGIN
+    IF p_tariff_id IS NOT NULL THEN
+        DELETE FROM tariff_view WHERE tariff_id = p_tariff_id;
+        INSERT INTO tariff_view SELECT * FROM tariff_view_source WHERE tariff_id = p_tariff_id;
+    END IF;
+    IF p_country_id IS NOT NULL THEN
+        DELETE FROM tariff_view WHERE exporter_id = p_country_id OR importer_id = p_country_id;
+        INSERT INTO tariff_view SELECT * FROM tariff_view_source
+        WHERE exporter_id = p_country_id OR importer_id = p_country_id;
+    END IF;
+    IF p_hs_code_id IS NOT NULL THEN
+        DELETE FROM tariff_view WHERE hs_code_id = p_hs_code_id;
+        INSERT INTO tariff_view SELECT * FROM tariff_view_source WHERE hs_code_id = p_hs_code_id;
+    END IF;
+    IF p_agreement_id IS NOT NULL THEN
+        DELETE FROM tariff_view WHERE agreement_id = p_agreement_id;
+        INSERT INTO tariff_view SELECT * FROM tariff_view_source WHERE agreement_id = p_agreement_id;
+    END IF;
+END';
+
+CREATE OR REPLACE FUNCTION tariff_view_on_tariff_rates() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP <> ''INSERT'' THEN PERFORM tariff_view_refresh(OLD.id, NULL, NULL, NULL); END IF;
+    IF TG_OP <> ''DELETE'' THEN PERFORM tariff_view_refresh(NEW.id, NULL, NULL, NULL); END IF;
+    RETURN NULL;
+END';
+
+-- Only the importer side carries tax, but refreshing by country covers both
+CREATE OR REPLACE FUNCTION tariff_view_on_tax_rules() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP <> ''INSERT'' THEN PERFORM tariff_view_refresh(NULL, OLD.country_id, NULL, NULL); END IF;
+    IF TG_OP <> ''DELETE'' AND (TG_OP = ''INSERT'' OR NEW.country_id <> OLD.country_id) THEN
+        PERFORM tariff_view_refresh(NULL, NEW.country_id, NULL, NULL);
+    END IF;
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE FUNCTION tariff_view_on_reference() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_TABLE_NAME = ''countries'' THEN PERFORM tariff_view_refresh(NULL, NEW.id, NULL, NULL);
+    ELSIF TG_TABLE_NAME = ''hs_codes'' THEN PERFORM tariff_view_refresh(NULL, NULL, NEW.id, NULL);
+    ELSE PERFORM tariff_view_refresh(NULL, NULL, NULL, NEW.id);
+    END IF;
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE TRIGGER trg_tariff_view_tariff_rates
+    AFTER INSERT OR UPDATE OR DELETE ON tariff_rates
+    FOR EACH ROW EXECUTE FUNCTION tariff_view_on_tariff_rates();
+CREATE OR REPLACE TRIGGER trg_tariff_view_tax_rules
+    AFTER INSERT OR UPDATE OR DELETE ON tax_rules
+    FOR EACH ROW EXECUTE FUNCTION tariff_view_on_tax_rules();
+-- A referenced country/HS code/agreement cannot be deleted (FKs), only renamed
+CREATE OR REPLACE TRIGGER trg_tariff_view_countries
+    AFTER UPDATE ON countries
+    FOR EACH ROW WHEN (OLD IS DISTINCT FROM NEW) EXECUTE FUNCTION tariff_view_on_reference();
+CREATE OR REPLACE TRIGGER trg_tariff_view_hs_codes
+    AFTER UPDATE ON hs_codes
+    FOR EACH ROW WHEN (OLD IS DISTINCT FROM NEW) EXECUTE FUNCTION tariff_view_on_reference();
+CREATE OR REPLACE TRIGGER trg_tariff_view_agreements
+    AFTER UPDATE ON agreements
+    FOR EACH ROW WHEN (OLD IS DISTINCT FROM NEW) EXECUTE FUNCTION tariff_view_on_reference();
+
+-- Backfill: rows written before the triggers existed (first start, or a restore),
+-- in one set-based statement; a no-op once every row is there
+INSERT INTO tariff_view
+SELECT s.* FROM tariff_view_source s
+WHERE NOT EXISTS (SELECT 1 FROM tariff_view v WHERE v.tariff_id = s.tariff_id)
+ON CONFLICT (tariff_id) DO NOTHING;
+
+-- ===============================================
+-- data_version: a counter bumped by every statement that changes tariff or
+-- reference data (tariff_rates, tax_rules, countries, hs_codes, agreements).
+-- Instances compare it with the version of their in-memory tariff snapshot
+-- and reload when it moves. One row, so concurrent writers to these tables
+-- queue on it until commit; admin edits are rare enough for that.
+-- ===============================================
+CREATE TABLE IF NOT EXISTS data_version (
+    id         SMALLINT  PRIMARY KEY CHECK (id = 1),
+    version    BIGINT    NOT NULL,
+    changed_at TIMESTAMP NOT NULL
+);
+INSERT INTO data_version (id, version, changed_at) VALUES (1, 1, now()) ON CONFLICT (id) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION data_version_bump() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    UPDATE data_version SET version = version + 1, changed_at = now() WHERE id = 1;
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE TRIGGER trg_data_version_tariff_rates
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON tariff_rates
+    FOR EACH STATEMENT EXECUTE FUNCTION data_version_bump();
+CREATE OR REPLACE TRIGGER trg_data_version_tax_rules
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON tax_rules
+    FOR EACH STATEMENT EXECUTE FUNCTION data_version_bump();
+CREATE OR REPLACE TRIGGER trg_data_version_countries
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON countries
+    FOR EACH STATEMENT EXECUTE FUNCTION data_version_bump();
+CREATE OR REPLACE TRIGGER trg_data_version_hs_codes
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON hs_codes
+    FOR EACH STATEMENT EXECUTE FUNCTION data_version_bump();
+CREATE OR REPLACE TRIGGER trg_data_version_agreements
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON agreements
+    FOR EACH STATEMENT EXECUTE FUNCTION data_version_bump();
+
+-- ===============================================
+-- tariff_changes: NOTIFY channel with one JSON payload per changed tariff row
+-- ({op: created|updated|deleted, id, lane codes, rate, validity}), or
+-- {op: resync} on TRUNCATE. Sent on commit to every listening instance, which
+-- relays it to its live dashboards (TariffChangeListener, GET /api/v1/tariffs/events).
+-- ===============================================
+CREATE OR REPLACE FUNCTION tariff_change_notify() RETURNS trigger LANGUAGE plpgsql AS '
+DECLARE
+    r tariff_rates%ROWTYPE;
+BEGIN
+    IF TG_OP = ''TRUNCATE'' THEN
+        PERFORM pg_notify(''tariff_changes'', ''{"op":"resync"}'');
+        RETURN NULL;
+    END IF;
+    IF TG_OP = ''DELETE'' THEN r := OLD; ELSE r := NEW; END IF;
+    PERFORM pg_notify(''tariff_changes'', json_build_object(
+        ''op'', CASE TG_OP WHEN ''INSERT'' THEN ''created'' WHEN ''UPDATE'' THEN ''updated'' ELSE ''deleted'' END,
+        ''id'', r.id,
+        ''exporter_code'', (SELECT country_code FROM countries WHERE id = r.exporter_id),
+        ''importer_code'', (SELECT country_code FROM countries WHERE id = r.importer_id),
+        ''hs_code'', (SELECT hs_code FROM hs_codes WHERE id = r.hs_code_id),
+        ''agreement_code'', (SELECT agreement_code FROM agreements WHERE id = r.agreement_id),
+        ''rate_percent'', r.rate_percent,
+        ''valid_from'', r.valid_from,
+        ''valid_to'', r.valid_to)::text);
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE TRIGGER trg_tariff_change_notify
+    AFTER INSERT OR UPDATE OR DELETE ON tariff_rates
+    FOR EACH ROW EXECUTE FUNCTION tariff_change_notify();
+CREATE OR REPLACE TRIGGER trg_tariff_change_notify_truncate
+    AFTER TRUNCATE ON tariff_rates
+    FOR EACH STATEMENT EXECUTE FUNCTION tariff_change_notify();
+
+-- ===============================================
+-- tariff_outbox: one row per tariff change made through TariffAdminService,
+-- inserted in the same transaction as the change. before_row/after_row hold
+-- the lane, rate and validity (NULL for a create/delete). The change holds the
+-- data_version row lock for its whole transaction, so it moved data_version
+-- from version_before to version_after with nothing else in between; caches
+-- use that to drop only the changed lanes (see TariffOutbox.changesBetween).
+-- published_at is set by the relay (TariffOutboxRelay) once the row has been
+-- handed to the broker.
+-- ===============================================
+CREATE TABLE IF NOT EXISTS tariff_outbox (
+    id             BIGSERIAL    PRIMARY KEY,
+    tariff_id      INTEGER      NOT NULL,
+    op             VARCHAR(10)  NOT NULL,
+    version_before BIGINT       NOT NULL,
+    version_after  BIGINT       NOT NULL,
+    before_row     JSONB,
+    after_row      JSONB,
+    actor          VARCHAR(255),
+    created_at     TIMESTAMP    NOT NULL DEFAULT now(),
+    published_at   TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_tariff_outbox_unpublished ON tariff_outbox (id) WHERE published_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_tariff_outbox_version ON tariff_outbox (version_before);
+
+-- ===============================================
+-- tariff_rates_history: every version of every tariff_rates row, bitemporal.
+-- valid_from/valid_to is when the rate applies (business time, as in
+-- tariff_rates); sys_from/sys_to is when the database held that version
+-- (system time, the writing transaction's start, sys_to 'infinity' while
+-- current). An update or delete, including the ON CONFLICT update of an admin
+-- create, closes the current version and an insert or update opens a new one,
+-- so the rows of tariff_rates as of system time T are those with
+-- sys_from <= T < sys_to. A version replaced within its own transaction was
+-- never visible and is not kept.
+-- Rows that predate the history are backfilled with sys_from '-infinity'.
+-- ===============================================
+CREATE TABLE IF NOT EXISTS tariff_rates_history (
+    history_id   BIGSERIAL     PRIMARY KEY,
+    tariff_id    INTEGER       NOT NULL,
+    exporter_id  INTEGER       NOT NULL,
+    importer_id  INTEGER       NOT NULL,
+    hs_code_id   INTEGER       NOT NULL,
+    agreement_id INTEGER       NOT NULL,
+    rate_percent NUMERIC(7,4)  NOT NULL,
+    valid_from   DATE          NOT NULL,
+    valid_to     DATE,
+    source_ref   TEXT,
+    sys_from     TIMESTAMPTZ   NOT NULL,
+    sys_to       TIMESTAMPTZ   NOT NULL DEFAULT 'infinity'
+);
+-- as-of lookups probe the lane's HS levels like tariff_rates does, then range-scan system time
+CREATE INDEX IF NOT EXISTS idx_tariff_history_lane ON tariff_rates_history (hs_code_id, exporter_id, importer_id, agreement_id, sys_from);
+CREATE INDEX IF NOT EXISTS idx_tariff_history_tariff ON tariff_rates_history (tariff_id, sys_from);
+
+CREATE OR REPLACE FUNCTION tariff_rates_history_record() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP = ''TRUNCATE'' THEN
+        UPDATE tariff_rates_history SET sys_to = now() WHERE sys_to = ''infinity'';
+        DELETE FROM tariff_rates_history WHERE sys_from = sys_to;
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN (''UPDATE'', ''DELETE'') THEN
+        UPDATE tariff_rates_history SET sys_to = now()
+        WHERE tariff_id = OLD.id AND sys_to = ''infinity'';
+        DELETE FROM tariff_rates_history
+        WHERE tariff_id = OLD.id AND sys_from = now() AND sys_to = now();
+    END IF;
+    IF TG_OP IN (''INSERT'', ''UPDATE'') THEN
+        INSERT INTO tariff_rates_history (tariff_id, exporter_id, importer_id, hs_code_id, agreement_id,
+                                          rate_percent, valid_from, valid_to, source_ref, sys_from)
+        VALUES (NEW.id, NEW.exporter_id, NEW.importer_id, NEW.hs_code_id, NEW.agreement_id,
+                NEW.rate_percent, NEW.valid_from, NEW.valid_to, NEW.source_ref, now());
+    END IF;
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE TRIGGER trg_tariff_rates_history
+    AFTER INSERT OR UPDATE OR DELETE ON tariff_rates
+    FOR EACH ROW EXECUTE FUNCTION tariff_rates_history_record();
+CREATE OR REPLACE TRIGGER trg_tariff_rates_history_truncate
+    AFTER TRUNCATE ON tariff_rates
+    FOR EACH STATEMENT EXECUTE FUNCTION tariff_rates_history_record();
+
+INSERT INTO tariff_rates_history (tariff_id, exporter_id, importer_id, hs_code_id, agreement_id,
+                                  rate_percent, valid_from, valid_to, source_ref, sys_from)
+SELECT tr.id, tr.exporter_id, tr.importer_id, tr.hs_code_id, tr.agreement_id,
+       tr.rate_percent, tr.valid_from, tr.valid_to, tr.source_ref, '-infinity'
+FROM tariff_rates tr
+WHERE NOT EXISTS (SELECT 1 FROM tariff_rates_history h WHERE h.tariff_id = tr.id);
+
+-- ===============================================
+-- calculation_log: every landed-cost calculation as answered, keyed by the
+-- quote_id returned with it, with the request, the response, the tariff and
+-- tax rule rows it used and the data_version it was calculated at. Written in
+-- batches after the response (CalculationLog) and replayed against
+-- tariff_rates_history by CalculationReplayService. Append only: rows cannot
+-- be updated or deleted, only truncated.
+-- ===============================================
+CREATE TABLE IF NOT EXISTS calculation_log (
+    quote_id     UUID         PRIMARY KEY,
+    created_at   TIMESTAMPTZ  NOT NULL,
+    actor        VARCHAR(255),
+    request      JSONB        NOT NULL,
+    response     JSONB        NOT NULL,
+    tariff_id    INTEGER,
+    tax_rule_id  INTEGER,
+    data_version BIGINT
+);
+CREATE INDEX IF NOT EXISTS idx_calculation_log_created ON calculation_log (created_at);
+
+CREATE OR REPLACE FUNCTION calculation_log_append_only() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    RAISE EXCEPTION ''calculation_log is append-only'';
+END';
+
+CREATE OR REPLACE TRIGGER trg_calculation_log_append_only
+    BEFORE UPDATE OR DELETE ON calculation_log
+    FOR EACH ROW EXECUTE FUNCTION calculation_log_append_only();
@@ -0,0 +1,145 @@
+package com.ratewise.datasource;
+
+import com.ratewise.security.dto.LoginRequest;
+import com.ratewise.security.dto.LoginResponse;
+import com.ratewise.security.dto.RegisterRequest;
+import com.ratewise.services.CalculatorService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * No real standby here: "replica-1" is the same database under another application_name,
+ * so the pool a statement ran on can be read back, and "replica-2" is unreachable.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ReadReplicaRoutingIT {
+
+    private static final String REPLICA_APPLICATION_NAME = "ratewise-replica";
+
+    @DynamicPropertySource
+    static void replicas(DynamicPropertyRegistry registry) {
+        String primaryUrl = System.getenv("SPRING_DATASOURCE_URL");
+        String replicaUrl = primaryUrl + (primaryUrl.contains("?") ? "&" : "?") + "ApplicationName=" + REPLICA_APPLICATION_NAME;
+        registry.add("datasource.read-replicas.urls", () -> replicaUrl + ",jdbc:postgresql://localhost:1/ratewise");
+        registry.add("datasource.read-replicas.connection-timeout-ms", () -> "500");
+        // the calculator should read through the routing pool, not the in-memory snapshot or rate cache
+        registry.add("tariff-snapshot.enabled", () -> "false");
+        registry.add("rate-component-cache.enabled", () -> "false");
+        registry.add("landed-cost-cache.enabled", () -> "false");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Autowired
+    private CalculatorService calculatorService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private String applicationName(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> jdbc.queryForObject("SELECT current_setting('application_name')", String.class));
+    }
+
+    @Test
+    void testReadOnlyTransactionRunsOnReplica() {
+        assertEquals(REPLICA_APPLICATION_NAME, applicationName(true));
+    }
+
+    @Test
+    void testReadWriteTransactionAndPlainStatementsRunOnPrimary() {
+        assertNotEquals(REPLICA_APPLICATION_NAME, applicationName(false));
+        assertNotEquals(REPLICA_APPLICATION_NAME,
+                jdbc.queryForObject("SELECT current_setting('application_name')", String.class));
+    }
+
+    @Test
+    void testUserWhoJustWroteReadsFromPrimary() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("replica-it-admin", null, List.of()));
+        readYourWritesTracker.markWrite("replica-it-admin");
+
+        assertNotEquals(REPLICA_APPLICATION_NAME, applicationName(true));
+    }
+
+    @Test
+    void testUnreachableReplicaIsSkipped() {
+        assertEquals(-1.0, meterRegistry.get("ratewise.datasource.replica.lag").tag("replica", "replica-2").gauge().value());
+        assertEquals(0.0, meterRegistry.get("ratewise.datasource.replica.lag").tag("replica", "replica-1").gauge().value());
+
+        // every read-only transaction lands on replica-1, never on the dead one
+        for (int i = 0; i < 4; i++) {
+            assertEquals(REPLICA_APPLICATION_NAME, applicationName(true));
+        }
+    }
+
+    @Test
+    void testCalculatingDoesNotPinTheCallerToThePrimary() {
+        String username = "replica_" + System.nanoTime();
+        restTemplate.postForEntity("/api/v1/auth/registration", RegisterRequest.builder()
+                .username(username).email(username + "@example.com").password("Password123").build(), String.class);
+        ResponseEntity<LoginResponse> login = restTemplate.postForEntity("/api/v1/auth/session",
+                LoginRequest.builder().username(username).password("Password123").build(), LoginResponse.class);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(login.getBody().getAccessToken());
+        HttpEntity<Map<String, Object>> quote = new HttpEntity<>(Map.of(
+                "exporter", "SG", "importer", "US", "hsCode", "010121", "agreement", "MFN",
+                "goods_value", 1000.0, "effectiveDate", "2025-10-28"), headers);
+
+        assertEquals(HttpStatus.OK, restTemplate.exchange("/api/v1/calculator/landed-cost", HttpMethod.POST, quote, String.class).getStatusCode());
+        assertFalse(readYourWritesTracker.isPinned(username + "@example.com"));
+
+        double before = meterRegistry.get("ratewise.datasource.reads").tag("target", "replica").functionCounter().count();
+        assertEquals(HttpStatus.OK, restTemplate.exchange("/api/v1/calculator/landed-cost", HttpMethod.POST, quote, String.class).getStatusCode());
+        assertTrue(meterRegistry.get("ratewise.datasource.reads").tag("target", "replica").functionCounter().count() > before);
+    }
+
+    @Test
+    void testCalculatorWorksThroughReplica() {
+        double before = meterRegistry.get("ratewise.datasource.reads").tag("target", "replica").functionCounter().count();
+
+        Map<String, Object> result = calculatorService.calculateLandedCost(Map.of(
+                "exporter", "SG", "importer", "US", "hsCode", "010121", "agreement", "MFN",
+                "goods_value", 1000.0, "effectiveDate", "2025-10-28"));
+
+        assertEquals(true, result.get("ok"));
+        assertTrue(meterRegistry.get("ratewise.datasource.reads").tag("target", "replica").functionCounter().count() > before);
+    }
+}
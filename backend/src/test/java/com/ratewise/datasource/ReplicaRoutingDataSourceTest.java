@@ -0,0 +1,117 @@
+package com.ratewise.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final ReplicaNode replica1 = new ReplicaNode("replica-1", mock(DataSource.class));
+    private final ReplicaNode replica2 = new ReplicaNode("replica-2", mock(DataSource.class));
+    private final ReadYourWritesTracker tracker = new ReadYourWritesTracker(60_000);
+    private final ReplicaRoutingDataSource routing =
+            new ReplicaRoutingDataSource(mock(DataSource.class), List.of(replica1, replica2), tracker, 1_000);
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void writesAndNonTransactionalWorkGoToPrimary() {
+        routing.updateHealth(replica1, 0L);
+
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routing.determineCurrentLookupKey());
+        assertEquals(0, routing.getPrimaryReadCount());
+        assertEquals(0, routing.getReplicaReadCount());
+    }
+
+    @Test
+    void readOnlyTransactionsAlternateBetweenHealthyReplicas() throws SQLException {
+        routing.updateHealth(replica1, 0L);
+        routing.updateHealth(replica2, 200L);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        Object first = routing.determineCurrentLookupKey();
+        Object second = routing.determineCurrentLookupKey();
+
+        assertNotEquals(first, second);
+        assertTrue(List.of("replica-1", "replica-2").containsAll(List.of(first, second)));
+
+        routing.getConnection();
+        assertEquals(1, routing.getReplicaReadCount());
+    }
+
+    @Test
+    void readOnlyTransactionStillBeginningGoesToReplica() {
+        routing.updateHealth(replica1, 0L);
+        ReadOnlyTransactionListener listener = new ReadOnlyTransactionListener();
+        TransactionExecution readOnly = mock(TransactionExecution.class);
+        when(readOnly.isReadOnly()).thenReturn(true);
+
+        listener.beforeBegin(readOnly);
+        assertEquals("replica-1", routing.determineCurrentLookupKey());
+
+        listener.afterBegin(readOnly, null);
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routing.determineCurrentLookupKey());
+        // routing lookups from unwrap() are not reads
+        assertEquals(0, routing.getReplicaReadCount());
+    }
+
+    @Test
+    void laggingOrUnreachableReplicasAreSkipped() throws SQLException {
+        routing.updateHealth(replica1, 5_000L);
+        routing.updateHealth(replica2, null);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routing.determineCurrentLookupKey());
+        routing.getConnection();
+        assertEquals(1, routing.getPrimaryReadCount());
+        assertFalse(replica1.isHealthy());
+        assertEquals(5_000, replica1.getLagMillis());
+        assertEquals(-1, replica2.getLagMillis());
+
+        // replica 1 catches up
+        routing.updateHealth(replica1, 10L);
+        assertEquals("replica-1", routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void userWhoJustWroteReadsFromPrimary() {
+        routing.updateHealth(replica1, 0L);
+        routing.updateHealth(replica2, 0L);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("admin", null, List.of()));
+
+        tracker.markWrite("admin");
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, routing.determineCurrentLookupKey());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("someone-else", null, List.of()));
+        assertNotEquals(ReplicaRoutingDataSource.PRIMARY, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void pinExpiresAfterWindow() throws InterruptedException {
+        ReadYourWritesTracker shortWindow = new ReadYourWritesTracker(20);
+        shortWindow.markWrite("admin");
+        assertTrue(shortWindow.isPinned("admin"));
+        assertFalse(shortWindow.isPinned(null));
+
+        Thread.sleep(50);
+        assertFalse(shortWindow.isPinned("admin"));
+    }
+}
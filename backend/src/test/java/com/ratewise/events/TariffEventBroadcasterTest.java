@@ -0,0 +1,85 @@
+package com.ratewise.events;
+
+import com.ratewise.security.exception.EventStreamBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TariffEventBroadcasterTest {
+
+    private TariffEventBroadcaster broadcaster;
+
+    private TariffEventBroadcaster broadcaster(int replayEvents, int maxSubscribers) {
+        TariffEventProperties properties = new TariffEventProperties();
+        properties.setReplayEvents(replayEvents);
+        properties.setMaxSubscribers(maxSubscribers);
+        broadcaster = new TariffEventBroadcaster(properties);
+        return broadcaster;
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    private static String change(int id) {
+        return "{\"op\":\"updated\",\"id\":" + id + "}";
+    }
+
+    @Test
+    void reconnectIsReplayedWhatItMissed() {
+        TariffEventBroadcaster events = broadcaster(10, 5);
+        for (int i = 1; i <= 5; i++) {
+            events.publish(change(i));
+        }
+
+        List<TariffEventBroadcaster.Event> missed = events.since(events.eventId(3));
+
+        assertEquals(List.of(change(4), change(5)), missed.stream().map(TariffEventBroadcaster.Event::data).toList());
+        assertEquals(List.of(), events.since(events.eventId(5)));
+    }
+
+    @Test
+    void reconnectFromBeforeTheBufferMustResync() {
+        TariffEventBroadcaster events = broadcaster(3, 5);
+        for (int i = 1; i <= 6; i++) {
+            events.publish(change(i));
+        }
+
+        // 4..6 kept: continuing after 3 works, after 2 would skip 3
+        assertEquals(3, events.since(events.eventId(3)).size());
+        assertNull(events.since(events.eventId(2)));
+    }
+
+    @Test
+    void idsFromElsewhereMustResync() {
+        TariffEventBroadcaster events = broadcaster(10, 5);
+        events.publish(change(1));
+
+        assertNull(events.since("otherinstance-1"));
+        assertNull(events.since(events.eventId(7)));
+        assertNull(events.since("garbage"));
+    }
+
+    @Test
+    void resyncPayloadIsSentAsResyncEvent() {
+        TariffEventBroadcaster events = broadcaster(10, 5);
+        events.resync();
+
+        TariffEventBroadcaster.Event event = events.since(events.eventId(0)).get(0);
+        assertEquals(TariffEventBroadcaster.RESYNC_EVENT, event.name());
+    }
+
+    @Test
+    void subscribersAreCapped() {
+        TariffEventBroadcaster events = broadcaster(10, 2);
+        events.subscribe(null);
+        events.subscribe(null);
+
+        assertThrows(EventStreamBusyException.class, () -> events.subscribe(null));
+        assertEquals(2, events.getSubscriberCount());
+    }
+}
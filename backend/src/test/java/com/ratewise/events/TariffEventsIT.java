@@ -0,0 +1,128 @@
+package com.ratewise.events;
+
+import com.ratewise.security.dto.LoginRequest;
+import com.ratewise.security.dto.LoginResponse;
+import com.ratewise.security.dto.RegisterRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TariffEventsIT {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TariffChangeListener listener;
+
+    private String accessToken;
+
+    @BeforeEach
+    void registerAndLogin() throws InterruptedException {
+        String username = "events_" + System.nanoTime();
+        RegisterRequest registerRequest = RegisterRequest.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("Password123")
+                .build();
+        restTemplate.postForEntity("/api/v1/auth/registration", registerRequest, String.class);
+
+        LoginRequest loginRequest = LoginRequest.builder()
+                .username(username)
+                .password("Password123")
+                .build();
+        ResponseEntity<LoginResponse> login = restTemplate.postForEntity("/api/v1/auth/session", loginRequest, LoginResponse.class);
+        assertEquals(HttpStatus.OK, login.getStatusCode());
+        accessToken = login.getBody().getAccessToken();
+
+        for (int i = 0; i < 100 && !listener.isConnected(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(listener.isConnected());
+    }
+
+    @Test
+    void committedTariffWritesArePushedToSubscribers() throws Exception {
+        BlockingQueue<String> lines = new ArrayBlockingQueue<>(100);
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/tariffs/events"))
+                .header("Authorization", "Bearer " + accessToken)
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        Thread reader = Thread.ofVirtual().start(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                for (String line; (line = in.readLine()) != null; ) {
+                    lines.offer(line);
+                }
+            } catch (Exception ignored) {
+                // closed at the end of the test
+            }
+        });
+
+        Integer id = null;
+        try {
+            id = jdbc.queryForObject("""
+                    INSERT INTO tariff_rates (exporter_id, importer_id, hs_code_id, agreement_id, rate_percent, valid_from)
+                    SELECT exporter_id, importer_id, hs_code_id, agreement_id, 7.5, DATE '2031-01-01'
+                    FROM tariff_rates WHERE id = 6
+                    RETURNING id
+                    """, Integer.class);
+            String created = awaitData(lines);
+            assertTrue(created.contains("\"op\" : \"created\"") || created.contains("\"op\":\"created\""), created);
+            assertTrue(created.contains("\"id\" : " + id) || created.contains("\"id\":" + id), created);
+            assertTrue(created.contains("SG") && created.contains("010129"), created);
+
+            jdbc.update("DELETE FROM tariff_rates WHERE id = ?", id);
+            id = null;
+            assertTrue(awaitData(lines).contains("deleted"));
+        } finally {
+            if (id != null) jdbc.update("DELETE FROM tariff_rates WHERE id = ?", id);
+            response.body().close();
+            reader.interrupt();
+        }
+    }
+
+    // The data line of the next "tariff" event
+    private static String awaitData(BlockingQueue<String> lines) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        boolean tariffEvent = false;
+        while (System.nanoTime() < deadline) {
+            String line = lines.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (line == null) break;
+            if (line.equals("event:tariff")) tariffEvent = true;
+            else if (tariffEvent && line.startsWith("data:")) return line.substring("data:".length());
+        }
+        fail("no tariff event within 10s");
+        return null;
+    }
+}
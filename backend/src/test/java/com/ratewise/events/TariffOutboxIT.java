@@ -0,0 +1,159 @@
+package com.ratewise.events;
+
+import com.ratewise.dto.TariffAdminRequest;
+import com.ratewise.services.TariffAdminService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the scheduled relay is off so the tests decide when batches go out
+@SpringBootTest(properties = "tariff-outbox.relay-enabled=false")
+class TariffOutboxIT {
+
+    @Autowired
+    private TariffAdminService tariffAdminService;
+
+    @Autowired
+    private TariffOutbox outbox;
+
+    @Autowired
+    private TariffOutboxRelay relay;
+
+    @Autowired
+    private InMemoryTariffChangeBroker broker;
+
+    @Autowired
+    private TariffOutboxProperties properties;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Integer tariffId;
+
+    @BeforeEach
+    void drainOutbox() {
+        // earlier writes are not what these tests are about
+        while (relay.relayBatch() > 0) {
+            // next batch
+        }
+        broker.clear();
+    }
+
+    @AfterEach
+    void cleanup() {
+        if (tariffId != null) {
+            jdbc.update("DELETE FROM tariff_rates WHERE id = ?", tariffId);
+        }
+    }
+
+    @Test
+    void adminWritesAreRecordedAsAChainOfDataVersionChanges() {
+        long start = dataVersion();
+
+        Map<String, Object> created = tariffAdminService.createTariff(request("4.25", "2031-01-01"));
+        tariffId = ((Number) created.get("id")).intValue();
+        tariffAdminService.updateTariff(tariffId, request("3.75", "2031-01-01"));
+        tariffAdminService.deleteTariff(tariffId);
+        tariffId = null;
+
+        List<TariffChange> changes = outbox.changesBetween(start, dataVersion());
+        assertNotNull(changes, "the three writes should account for every version in between");
+        assertEquals(List.of("created", "updated", "deleted"), changes.stream().map(TariffChange::op).toList());
+
+        TariffChange create = changes.get(0);
+        assertNull(create.before());
+        assertEquals(new TariffChange.Lane("SG", "JP", "010121", "MFN", new BigDecimal("4.25"),
+                LocalDate.of(2031, 1, 1), null), create.after());
+
+        TariffChange update = changes.get(1);
+        assertEquals(create.after(), update.before());
+        assertEquals(0, new BigDecimal("3.75").compareTo(update.after().ratePercent()));
+
+        TariffChange delete = changes.get(2);
+        assertEquals(update.after(), delete.before());
+        assertNull(delete.after());
+    }
+
+    @Test
+    void changesNotMadeThroughTheAdminServiceBreakTheChain() {
+        long start = dataVersion();
+        Map<String, Object> created = tariffAdminService.createTariff(request("4.25", "2031-01-01"));
+        tariffId = ((Number) created.get("id")).intValue();
+
+        jdbc.update("UPDATE tariff_rates SET rate_percent = 4.5 WHERE id = ?", tariffId);
+
+        assertNull(outbox.changesBetween(start, dataVersion()));
+    }
+
+    @Test
+    void relayPublishesToTheBrokerAndMarksRowsPublished() {
+        Map<String, Object> created = tariffAdminService.createTariff(request("4.25", "2031-01-01"));
+        tariffId = ((Number) created.get("id")).intValue();
+
+        assertEquals(1, relay.relayBatch());
+
+        List<TariffChange> published = broker.recent();
+        assertEquals(1, published.size());
+        assertEquals(tariffId, published.get(0).tariffId());
+        assertEquals("created", published.get(0).op());
+        assertNotNull(jdbc.queryForObject("SELECT published_at FROM tariff_outbox WHERE id = ?",
+                java.sql.Timestamp.class, published.get(0).id()));
+        assertEquals(0, relay.relayBatch());
+    }
+
+    @Test
+    void failedPublishLeavesTheBatchForTheNextRun() {
+        Map<String, Object> created = tariffAdminService.createTariff(request("4.25", "2031-01-01"));
+        tariffId = ((Number) created.get("id")).intValue();
+
+        TariffChangeBroker failing = changes -> {
+            throw new IllegalStateException("broker down");
+        };
+        TariffOutboxRelay failingRelay = new TariffOutboxRelay(relayEnabled(), outbox, List.of(broker, failing),
+                events, transactionManager);
+        failingRelay.relay();
+
+        assertEquals(1, failingRelay.getFailureCount());
+        assertEquals(0, failingRelay.getPublishedCount());
+        Integer unpublished = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM tariff_outbox WHERE tariff_id = ? AND published_at IS NULL", Integer.class, tariffId);
+        assertEquals(1, unpublished);
+
+        // at least once: the broker that did take it sees it again
+        broker.clear();
+        assertEquals(1, relay.relayBatch());
+        assertEquals(tariffId, broker.recent().get(0).tariffId());
+    }
+
+    private TariffOutboxProperties relayEnabled() {
+        TariffOutboxProperties enabled = new TariffOutboxProperties();
+        enabled.setBatchSize(properties.getBatchSize());
+        return enabled;
+    }
+
+    private long dataVersion() {
+        return jdbc.queryForObject("SELECT version FROM data_version WHERE id = 1", Long.class);
+    }
+
+    private static TariffAdminRequest request(String rate, String validFrom) {
+        return new TariffAdminRequest("SG", "JP", "010121", "MFN", new BigDecimal(rate), validFrom, null);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ratewise.export;
+
+import com.ratewise.security.exception.ExportBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportStreamsTest {
+
+    private ExportStreams exports;
+
+    private ExportStreams exports(int maxConcurrent) {
+        ExportStreamProperties properties = new ExportStreamProperties();
+        properties.setMaxConcurrent(maxConcurrent);
+        exports = new ExportStreams(properties);
+        return exports;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (exports != null) exports.shutdown();
+    }
+
+    @Test
+    void rejectsExportsBeyondTheCap() {
+        ExportStreams exports = exports(2);
+        exports.open(out -> { });
+        exports.open(out -> { });
+
+        assertThrows(ExportBusyException.class, () -> exports.open(out -> { }));
+        assertEquals(2, exports.getActiveCount());
+        assertEquals(1, exports.getRejectedCount());
+    }
+
+    @Test
+    void permitIsFreedWhenTheBodyEnds() throws Exception {
+        ExportStreams exports = exports(1);
+        StreamingResponseBody body = exports.open(out -> out.write('x'));
+        body.writeTo(new ByteArrayOutputStream());
+
+        assertEquals(0, exports.getActiveCount());
+        exports.open(out -> { });
+    }
+
+    @Test
+    void permitIsFreedWhenTheBodyFails() {
+        ExportStreams exports = exports(1);
+        StreamingResponseBody body = exports.open(out -> { throw new IOException("client went away"); });
+
+        assertThrows(IOException.class, () -> body.writeTo(new ByteArrayOutputStream()));
+        assertEquals(0, exports.getActiveCount());
+    }
+
+    @Test
+    void completionFreesThePermitOfABodyThatNeverRan() throws Exception {
+        ExportStreams exports = exports(1);
+        ExportStreams.Permit permit = exports.acquire();
+        AtomicBoolean ran = new AtomicBoolean();
+        StreamingResponseBody body = permit.wrap(out -> ran.set(true));
+
+        permit.afterCompletion(null, null);
+        assertEquals(0, exports.getActiveCount());
+
+        // A body dequeued after the request timed out has nobody to write to
+        body.writeTo(new ByteArrayOutputStream());
+        assertFalse(ran.get());
+        assertEquals(0, exports.getActiveCount());
+    }
+
+    @Test
+    void completionAfterTheBodyDoesNotFreeTwice() throws Exception {
+        ExportStreams exports = exports(2);
+        ExportStreams.Permit permit = exports.acquire();
+        permit.wrap(out -> { }).writeTo(new ByteArrayOutputStream());
+        exports.acquire();
+
+        permit.afterCompletion(null, null);
+        assertEquals(1, exports.getActiveCount());
+    }
+
+    @Test
+    void bodiesRunOnTheExportPool() throws Exception {
+        ExportStreams exports = exports(1);
+        CompletableFuture<String> thread = new CompletableFuture<>();
+        exports.taskExecutor().execute(() -> thread.complete(Thread.currentThread().getName()));
+
+        assertTrue(thread.get(5, TimeUnit.SECONDS).startsWith("export-"));
+    }
+}
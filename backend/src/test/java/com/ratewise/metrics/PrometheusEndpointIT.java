@@ -0,0 +1,71 @@
+package com.ratewise.metrics;
+
+import com.ratewise.services.CalculatorService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability // Boot tests switch metrics export off by default
+class PrometheusEndpointIT {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private CalculatorService calculatorService;
+
+    // Boot gives the separate management port a random one too under RANDOM_PORT
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void testHealthIsPublic() {
+        ResponseEntity<String> response = restTemplate.getForEntity(management("/actuator/health"), String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("UP"));
+    }
+
+    @Test
+    void testPrometheusExposesAppMetrics() {
+        // an unauthenticated API call, so the response size and rate limiter meters have data
+        restTemplate.getForEntity("/api/v1/countries", String.class);
+        // calculator timers are Observations, registered on first use
+        calculatorService.calculateLandedCost(Map.of(
+                "exporter", "SG", "importer", "US", "hsCode", "010121", "agreement", "MFN",
+                "goods_value", 1000.0, "effectiveDate", "2025-10-28"));
+
+        ResponseEntity<String> response = restTemplate.getForEntity(management("/actuator/prometheus"), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String body = response.getBody();
+        assertTrue(body.contains("ratewise_calculator_stage_seconds_bucket"));
+        assertTrue(body.contains("ratewise_calculator_hs_resolution_total"));
+        assertTrue(body.contains("ratewise_calculator_cache_requests_total"));
+        assertTrue(body.contains("ratewise_http_response_size_bytes_count"));
+        assertTrue(body.contains("ratewise_auth_hash_queue_size"));
+        assertTrue(body.contains("ratewise_ratelimit_requests_total"));
+        assertTrue(body.contains("hikaricp_connections_acquire_seconds_bucket"));
+        assertTrue(body.contains("ratewise_sql_statement_seconds_bucket"));
+    }
+
+    @Test
+    void testPublicPortDoesNotServeMetrics() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertTrue(response.getBody() == null || !response.getBody().contains("jvm_memory_used_bytes"));
+    }
+
+    private String management(String path) {
+        return "http://localhost:" + managementPort + path;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ratewise.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseSizeMetricsFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ResponseSizeMetricsFilter filter = new ResponseSizeMetricsFilter(registry);
+
+    @Test
+    void recordsBytesPerRouteTemplate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/admin/users/u1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(new jakarta.servlet.http.HttpServlet() {
+            @Override
+            protected void service(jakarta.servlet.http.HttpServletRequest req, HttpServletResponse res) throws java.io.IOException {
+                req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/admin/users/{id}");
+                res.getOutputStream().write("{\"userId\":\"u1\"}".getBytes(StandardCharsets.UTF_8));
+            }
+        }));
+
+        DistributionSummary summary = registry.get(ResponseSizeMetricsFilter.METRIC_NAME)
+                .tag("uri", "/api/v1/admin/users/{id}")
+                .tag("method", "GET")
+                .summary();
+        assertEquals(1, summary.count());
+        assertEquals(15, summary.totalAmount());
+        assertEquals("{\"userId\":\"u1\"}", response.getContentAsString());
+    }
+
+    @Test
+    void countsWriterOutputInBytes() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/countries");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain(new jakarta.servlet.http.HttpServlet() {
+            @Override
+            protected void service(jakarta.servlet.http.HttpServletRequest req, HttpServletResponse res) throws java.io.IOException {
+                res.setCharacterEncoding("UTF-8");
+                res.getWriter().write("日本"); // 6 bytes in UTF-8
+            }
+        }));
+
+        DistributionSummary summary = registry.get(ResponseSizeMetricsFilter.METRIC_NAME).tag("uri", "UNMATCHED").summary();
+        assertEquals(6, summary.totalAmount());
+    }
+
+    @Test
+    void tagsNonStandardMethodsAsUnknown() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("FOO", "/api/x"), new MockHttpServletResponse(), new MockFilterChain());
+        filter.doFilter(new MockHttpServletRequest("BAR", "/api/x"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(1, registry.find(ResponseSizeMetricsFilter.METRIC_NAME).summaries().size());
+        assertEquals(2, registry.get(ResponseSizeMetricsFilter.METRIC_NAME).tag("method", "UNKNOWN").summary().count());
+    }
+
+    @Test
+    void ignoresNonApiPaths() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/assets/app.js"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(registry.find(ResponseSizeMetricsFilter.METRIC_NAME).summary());
+    }
+}
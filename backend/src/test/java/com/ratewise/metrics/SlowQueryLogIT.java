@@ -0,0 +1,73 @@
+package com.ratewise.metrics;
+
+import com.ratewise.dto.SlowQueryEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// threshold 0: every statement counts as slow
+@SpringBootTest(properties = "monitoring.sql.slow-threshold-ms=0")
+class SlowQueryLogIT {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Autowired
+    private SqlStatementListener sqlStatementListener;
+
+    @BeforeEach
+    void setUp() {
+        slowQueryLog.clear();
+    }
+
+    private Optional<SlowQueryEntry> awaitEntry(String sqlFragment, String status) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            Optional<SlowQueryEntry> entry = slowQueryLog.getEntries().stream()
+                    .filter(e -> e.sql().contains(sqlFragment) && e.planStatus().equals(status))
+                    .findFirst();
+            if (entry.isPresent()) return entry;
+            Thread.sleep(100);
+        }
+        return Optional.empty();
+    }
+
+    @Test
+    void testSlowSelectGetsPlanWithBoundParameters() throws InterruptedException {
+        jdbc.queryForList("SELECT country_code FROM countries WHERE UPPER(country_code) = UPPER(?)", "SG");
+
+        SlowQueryEntry entry = awaitEntry("FROM countries WHERE UPPER(country_code)", "captured").orElseThrow();
+
+        List<String> plan = entry.plan();
+        assertTrue(plan.stream().anyMatch(line -> line.contains("actual time")));
+        assertTrue(plan.stream().anyMatch(line -> line.contains("Execution Time")));
+        assertFalse(entry.sql().contains("SG"));
+        assertTrue(sqlStatementListener.getFingerprints().containsKey(entry.fingerprint()));
+    }
+
+    @Test
+    void testSameStatementIsExplainedOncePerCooldown() throws InterruptedException {
+        String sql = "SELECT country_name FROM countries WHERE country_code = ?";
+        jdbc.queryForList(sql, "SG");
+        jdbc.queryForList(sql, "US");
+
+        assertTrue(awaitEntry("SELECT country_name FROM countries", "captured").isPresent());
+        assertTrue(awaitEntry("SELECT country_name FROM countries", "cooldown").isPresent());
+    }
+
+    @Test
+    void testWritesAreNeverReRun() throws InterruptedException {
+        jdbc.update("UPDATE countries SET country_name = country_name WHERE country_code = ?", "ZZ");
+
+        assertTrue(awaitEntry("UPDATE countries", "skipped").isPresent());
+    }
+}
@@ -0,0 +1,74 @@
+package com.ratewise.metrics;
+
+import com.ratewise.dto.SlowQueryEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SlowQueryLogTest {
+
+    @Mock
+    private ObjectProvider<JdbcTemplate> jdbcProvider;
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    private final CountDownLatch explaining = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SlowQueryLog slowQueryLog;
+
+    @BeforeEach
+    void setUp() {
+        SqlMonitorProperties properties = new SqlMonitorProperties();
+        properties.setExplainQueueCapacity(1);
+        slowQueryLog = new SlowQueryLog(properties, jdbcProvider);
+
+        // the worker blocks inside the first EXPLAIN until released
+        lenient().when(jdbcProvider.getObject()).thenReturn(jdbc);
+        lenient().when(jdbc.execute(any(ConnectionCallback.class))).thenAnswer(invocation -> {
+            explaining.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of("Seq Scan");
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        slowQueryLog.shutdown();
+    }
+
+    @Test
+    void busyWorkerListsTheStatementAsDroppedAndKeepsItDue() throws InterruptedException {
+        slowQueryLog.record(SqlFingerprint.of("SELECT * FROM a"), "SELECT * FROM a", List.of(), 300);
+        assertTrue(explaining.await(5, TimeUnit.SECONDS));
+        slowQueryLog.record(SqlFingerprint.of("SELECT * FROM b"), "SELECT * FROM b", List.of(), 300); // queued
+        SqlFingerprint dropped = SqlFingerprint.of("SELECT * FROM c");
+
+        slowQueryLog.record(dropped, "SELECT * FROM c", List.of(), 300);
+
+        SlowQueryEntry entry = slowQueryLog.getEntries().get(0);
+        assertEquals(dropped.id(), entry.fingerprint());
+        assertEquals("dropped", entry.planStatus());
+        assertEquals(1, slowQueryLog.getDroppedExplains());
+
+        // still busy, so dropped again rather than held back by a cooldown it never used
+        slowQueryLog.record(dropped, "SELECT * FROM c", List.of(), 300);
+        assertEquals("dropped", slowQueryLog.getEntries().get(0).planStatus());
+    }
+}
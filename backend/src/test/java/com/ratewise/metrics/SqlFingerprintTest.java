@@ -0,0 +1,48 @@
+package com.ratewise.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlFingerprintTest {
+
+    @Test
+    void of_IgnoresLayoutCommentsAndLiterals() {
+        SqlFingerprint a = SqlFingerprint.of("""
+            SELECT hs_code
+            FROM hs_codes -- lookup
+            WHERE LOWER(description) = LOWER(?)
+            LIMIT 1
+        """);
+        SqlFingerprint b = SqlFingerprint.of("SELECT hs_code /* x */ FROM hs_codes WHERE LOWER(description) = LOWER('it''s') LIMIT 5");
+
+        assertEquals("SELECT hs_code FROM hs_codes WHERE LOWER(description) = LOWER(?) LIMIT ?", a.normalizedSql());
+        assertEquals(a.id(), b.id());
+        assertEquals(12, a.id().length());
+    }
+
+    @Test
+    void of_HandlesLongStringLiterals() {
+        // e.g. a single-quoted PL/pgSQL function body
+        String body = "BEGIN PERFORM f(1); ".repeat(5_000) + "RETURN NULL; END";
+        SqlFingerprint fingerprint = SqlFingerprint.of("CREATE FUNCTION f() RETURNS trigger AS '" + body + "'");
+        assertEquals("CREATE FUNCTION f() RETURNS trigger AS ?", fingerprint.normalizedSql());
+    }
+
+    @Test
+    void of_KeepsIdentifiersWithDigits() {
+        assertEquals("SELECT col1 FROM t2 WHERE id = ?", SqlFingerprint.of("SELECT col1 FROM t2 WHERE id = $1").normalizedSql());
+    }
+
+    @Test
+    void isExplainable_OnlyForPlainReads() {
+        assertTrue(SqlFingerprint.of("SELECT 1").isExplainable());
+        assertTrue(SqlFingerprint.of("WITH x AS (SELECT 1) SELECT * FROM x").isExplainable());
+        assertFalse(SqlFingerprint.of("SELECT * FROM users WHERE id = ? FOR UPDATE").isExplainable());
+        assertFalse(SqlFingerprint.of("SELECT * FROM users WHERE id = ? FOR NO KEY UPDATE").isExplainable());
+        assertFalse(SqlFingerprint.of("SELECT * FROM users WHERE id = ? FOR KEY SHARE SKIP LOCKED").isExplainable());
+        assertFalse(SqlFingerprint.of("WITH x AS (SELECT id FROM t FOR SHARE) SELECT * FROM x").isExplainable());
+        assertFalse(SqlFingerprint.of("WITH x AS (DELETE FROM t RETURNING id) SELECT * FROM x").isExplainable());
+        assertFalse(SqlFingerprint.of("UPDATE users SET enabled = ?").isExplainable());
+    }
+}
@@ -0,0 +1,92 @@
+package com.ratewise.metrics;
+
+import com.ratewise.services.CalculatorService;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// snapshot off so the lookup stage runs its query
+@SpringBootTest(properties = {"management.tracing.sampling.probability=1.0", "tariff-snapshot.enabled=false",
+        "rate-component-cache.enabled=false"})
+@AutoConfigureObservability // Boot tests switch tracing off by default
+class TracingIT {
+
+    @TestConfiguration
+    static class InMemoryExporterConfig {
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+
+    @Autowired
+    private CalculatorService calculatorService;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @BeforeEach
+    void setUp() {
+        spanExporter.reset();
+    }
+
+    private List<SpanData> finishedSpans() {
+        // spans go through a batch processor, push them out before asserting
+        tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+        return spanExporter.getFinishedSpanItems();
+    }
+
+    private static SpanData span(List<SpanData> spans, String name) {
+        return spans.stream()
+                .filter(s -> s.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no span named " + name + " in " + spans.stream().map(SpanData::getName).toList()));
+    }
+
+    @Test
+    void testCalculatorStagesAndQueriesShareOneTrace() {
+        Map<String, Object> response = calculatorService.calculateLandedCost(Map.of(
+                "exporter", "SG", "importer", "US", "hsCode", "010121", "agreement", "MFN",
+                "goods_value", 1000.0, "effectiveDate", "2025-10-28"));
+        assertEquals(Boolean.TRUE, response.get("ok"));
+
+        List<SpanData> spans = finishedSpans();
+        SpanData root = span(spans, "calculate landed-cost");
+        SpanData lookup = span(spans, "calculator lookup");
+
+        // other work (e.g. the scheduled API key refresh) has its own traces, so only compare ours
+        assertEquals(root.getTraceId(), lookup.getTraceId());
+        assertEquals(root.getSpanId(), lookup.getParentSpanId());
+
+        // the JDBC statement is a child of the stage that ran it, with its SQL text but no parameter values
+        SpanData lookupSql = spans.stream()
+                .filter(s -> lookup.getSpanId().equals(s.getParentSpanId()) && s.getName().equals("query"))
+                .findFirst()
+                .orElseThrow();
+        String sql = lookupSql.getAttributes().asMap().entrySet().stream()
+                .filter(e -> e.getKey().getKey().startsWith("jdbc.query"))
+                .map(e -> e.getValue().toString())
+                .findFirst()
+                .orElseThrow();
+        assertTrue(sql.contains("FROM tariff_rates"));
+        assertFalse(sql.contains("010121"));
+        assertTrue(spans.stream().anyMatch(s -> s.getName().equals("result-set")
+                && s.getAttributes().asMap().keySet().stream().anyMatch(k -> k.getKey().equals("jdbc.row-count"))));
+    }
+}
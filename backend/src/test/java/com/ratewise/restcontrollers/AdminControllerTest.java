@@ -1,5 +1,8 @@
 package com.ratewise.restcontrollers;
 
+import com.ratewise.export.ExportStreamProperties;
+import com.ratewise.export.ExportStreams;
+import com.ratewise.security.apikey.ApiKeyCache;
 import com.ratewise.security.dto.*;
 import com.ratewise.security.entities.Role;
 import com.ratewise.security.entities.User;
@@ -8,6 +11,7 @@ import com.ratewise.security.exception.UserNotFoundException;
 import com.ratewise.security.repositories.UserRepository;
 import com.ratewise.security.repositories.RoleRepository;
 import com.ratewise.security.util.JWTUtil;
+import com.ratewise.services.UserAdminService;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -15,17 +19,23 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStream;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(AdminController.class)
+@Import({ExportStreams.class, ExportStreamProperties.class})
 @AutoConfigureMockMvc(addFilters = false) // define the filter as false so that i dont get 403 on everything
 public class AdminControllerTest {
 
@@ -41,23 +51,116 @@ public class AdminControllerTest {
     @MockBean
     private JWTUtil jwtUtil;
 
+    @MockBean
+    private UserAdminService userAdminService;
+
+    @MockBean
+    private ApiKeyCache apiKeyCache;
+
+    @Autowired
+    private ExportStreams exportStreams;
+
     @Test
     void testGetAllUsersOk() throws Exception {
-        User user = new User();
-        user.setId("u1");
-        user.setUsername("alice");
-        user.setEmail("alice@example.com");
-        user.setEnabled(true);
-        user.setCreatedAt(LocalDateTime.now());
-        user.setRole(new Role(1L, "ADMIN", new ArrayList<>()));
+        UserSummaryResponse user = UserSummaryResponse.builder()
+                .userId("u1")
+                .username("alice")
+                .email("alice@example.com")
+                .isActive(true)
+                .createdAt(LocalDateTime.now())
+                .role("ADMIN")
+                .build();
 
-        Mockito.when(userRepository.findAll()).thenReturn(List.of(user));
-        Mockito.when(userRepository.findByIdWithRole("u1")).thenReturn(Optional.of(user));
+        Mockito.when(userRepository.findUserSummaries(null, null, null)).thenReturn(List.of(user));
 
         mockMvc.perform(get("/api/v1/admin/users"))
                 .andExpect(status().isOk()) // expecting 200
                 .andExpect(jsonPath("$[0].userId").value("u1"))
-                .andExpect(jsonPath("$[0].role").value("ADMIN"));
+                .andExpect(jsonPath("$[0].role").value("ADMIN"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        // one join query, no per-user lookups
+        Mockito.verify(userRepository, Mockito.never()).findByIdWithRole(Mockito.anyString());
+    }
+
+    @Test
+    void testGetAllUsersPageReturnsNextCursor() throws Exception {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 2, 3, 4, 5);
+        UserSummaryResponse user = UserSummaryResponse.builder()
+                .userId("u9")
+                .username("alice")
+                .createdAt(createdAt)
+                .build();
+
+        Mockito.when(userRepository.findUserSummaries("ali", null, 1)).thenReturn(List.of(user));
+
+        String expectedCursor = new UserPageCursor(createdAt, "u9").encode();
+        mockMvc.perform(get("/api/v1/admin/users").param("q", "ali").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", expectedCursor));
+
+        // following the cursor asks the repository for rows after (createdAt, u9)
+        Mockito.when(userRepository.findUserSummaries("ali", new UserPageCursor(createdAt, "u9"), 1))
+                .thenReturn(List.of());
+        mockMvc.perform(get("/api/v1/admin/users").param("q", "ali").param("limit", "1").param("cursor", expectedCursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty())
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void testGetAllUsersInvalidCursor() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/users").param("limit", "10").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetAllUsersInvalidLimit() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/users").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStreamUsers() throws Exception {
+        UserSummaryResponse alice = UserSummaryResponse.builder().userId("u1").username("alice").build();
+        UserSummaryResponse bob = UserSummaryResponse.builder().userId("u2").username("bob").build();
+        Mockito.doAnswer(invocation -> {
+            Consumer<UserSummaryResponse> consumer = invocation.getArgument(1);
+            consumer.accept(alice);
+            consumer.accept(bob);
+            return null;
+        }).when(userRepository).streamUserSummaries(Mockito.isNull(), Mockito.any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/admin/users/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.trim().split("\n");
+        org.junit.jupiter.api.Assertions.assertEquals(2, lines.length);
+        org.junit.jupiter.api.Assertions.assertTrue(lines[0].contains("\"userId\":\"u1\""));
+        org.junit.jupiter.api.Assertions.assertTrue(lines[1].contains("\"userId\":\"u2\""));
+    }
+
+    @Test
+    void testStreamUsersBusy() throws Exception {
+        List<StreamingResponseBody> running = new ArrayList<>();
+        for (int i = 0; i < exportStreams.getMaxConcurrent(); i++) {
+            running.add(exportStreams.open(out -> { }));
+        }
+        try {
+            mockMvc.perform(get("/api/v1/admin/users/stream"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists("Retry-After"));
+            Mockito.verify(userRepository, Mockito.never()).streamUserSummaries(Mockito.any(), Mockito.any());
+        } finally {
+            for (StreamingResponseBody body : running) {
+                body.writeTo(OutputStream.nullOutputStream());
+            }
+        }
     }
 
     @Test
@@ -175,4 +278,72 @@ public class AdminControllerTest {
                 .andExpect(jsonPath("$[0].roleName").value("ADMIN"))
                 .andExpect(jsonPath("$[1].roleName").value("USER"));
     }
+
+    @Test
+    void testBulkUpdateRoleOk() throws Exception {
+        BulkUpdateResponse response = BulkUpdateResponse.builder()
+                .message("Role updated successfully for 2 users")
+                .updatedCount(2)
+                .newRole("ADMIN")
+                .build();
+        Mockito.when(userAdminService.updateRoles(List.of("u1", "u2"), 1L)).thenReturn(response);
+
+        String body = "{\"userIds\":[\"u1\",\"u2\"],\"roleId\":1}";
+        mockMvc.perform(put("/api/v1/admin/users/bulk/role")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk()) // expecting 200
+                .andExpect(jsonPath("$.updatedCount").value(2))
+                .andExpect(jsonPath("$.newRole").value("ADMIN"));
+    }
+
+    @Test
+    void testBulkUpdateRole_UserNotFound() throws Exception {
+        Mockito.when(userAdminService.updateRoles(List.of("u1", "missing"), 1L))
+                .thenThrow(new UserNotFoundException("missing"));
+
+        String body = "{\"userIds\":[\"u1\",\"missing\"],\"roleId\":1}";
+        mockMvc.perform(put("/api/v1/admin/users/bulk/role")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isNotFound()); // expecting 404
+    }
+
+    @Test
+    void testBulkUpdateRole_EmptyUserIds() throws Exception {
+        String body = "{\"userIds\":[],\"roleId\":1}";
+        mockMvc.perform(put("/api/v1/admin/users/bulk/role")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isBadRequest()); // expecting 400
+
+        Mockito.verifyNoInteractions(userAdminService);
+    }
+
+    @Test
+    void testBulkUpdateStatusOk() throws Exception {
+        BulkUpdateResponse response = BulkUpdateResponse.builder()
+                .message("User status updated successfully for 2 users")
+                .updatedCount(2)
+                .isActive(false)
+                .build();
+        Mockito.when(userAdminService.updateStatus(List.of("u1", "u2"), false)).thenReturn(response);
+
+        String body = "{\"userIds\":[\"u1\",\"u2\"],\"isActive\":false}";
+        mockMvc.perform(patch("/api/v1/admin/users/bulk/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk()) // expecting 200
+                .andExpect(jsonPath("$.updatedCount").value(2))
+                .andExpect(jsonPath("$.isActive").value(false));
+    }
+
+    @Test
+    void testBulkUpdateStatus_InvalidBody() throws Exception {
+        String body = "{\"userIds\":[\"u1\"]}";
+        mockMvc.perform(patch("/api/v1/admin/users/bulk/status")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isBadRequest()); // expecting 400
+    }
 }
@@ -0,0 +1,144 @@
+package com.ratewise.restcontrollers;
+
+import com.ratewise.security.dto.ApiKeyCreatedResponse;
+import com.ratewise.security.dto.ApiKeyRequest;
+import com.ratewise.security.dto.LoginRequest;
+import com.ratewise.security.dto.LoginResponse;
+import com.ratewise.security.dto.RegisterRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ApiKeyControllerIT {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private String accessToken;
+
+    @BeforeEach
+    void registerAndLogin() {
+        String username = "apikey_" + System.nanoTime();
+        RegisterRequest registerRequest = RegisterRequest.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("Password123")
+                .build();
+        restTemplate.postForEntity("/api/v1/auth/registration", registerRequest, String.class);
+
+        LoginRequest loginRequest = LoginRequest.builder()
+                .username(username)
+                .password("Password123")
+                .build();
+        ResponseEntity<LoginResponse> login = restTemplate.postForEntity("/api/v1/auth/session", loginRequest, LoginResponse.class);
+        assertEquals(HttpStatus.OK, login.getStatusCode());
+        accessToken = login.getBody().getAccessToken();
+    }
+
+    @Test
+    void testIssueUseAndRevokeKey() {
+        ResponseEntity<ApiKeyCreatedResponse> created = issue(List.of("tariffs:read"));
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        String apiKey = created.getBody().getApiKey();
+        assertTrue(apiKey.startsWith("rw_"));
+
+        // tariffs:read key can read reference data...
+        assertEquals(HttpStatus.OK, withApiKey(apiKey, HttpMethod.GET, "/api/v1/countries").getStatusCode());
+
+        // ...but not the calculator or admin endpoints
+        assertEquals(HttpStatus.FORBIDDEN, withApiKey(apiKey, HttpMethod.POST, "/api/v1/calculator/landed-cost").getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, withApiKey(apiKey, HttpMethod.GET, "/api/v1/admin/tariffs").getStatusCode());
+
+        // and cannot mint more keys
+        assertEquals(HttpStatus.FORBIDDEN, withApiKey(apiKey, HttpMethod.GET, "/api/v1/auth/api-keys").getStatusCode());
+
+        // Revoking takes effect immediately
+        ResponseEntity<Void> revoked = restTemplate.exchange("/api/v1/auth/api-keys/" + created.getBody().getKeyId(),
+                HttpMethod.DELETE, new HttpEntity<>(bearerHeaders()), Void.class);
+        assertEquals(HttpStatus.NO_CONTENT, revoked.getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, withApiKey(apiKey, HttpMethod.GET, "/api/v1/countries").getStatusCode());
+    }
+
+    @Test
+    void testCalculationIsLoggedUnderTheKeyIdNotTheKey() throws InterruptedException {
+        ResponseEntity<ApiKeyCreatedResponse> created = issue(List.of("calculator", "tariffs:read"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-API-Key", created.getBody().getApiKey());
+        Map<String, Object> quote = Map.of("exporter", "SG", "importer", "US", "hsCode", "010121",
+                "agreement", "MFN", "goods_value", 1000.0, "quantity", 2, "effectiveDate", "2025-06-01");
+
+        ResponseEntity<Map> response = restTemplate.exchange("/api/v1/calculator/landed-cost", HttpMethod.POST,
+                new HttpEntity<>(quote, headers), Map.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+
+        UUID quoteId = UUID.fromString((String) response.getBody().get("quote_id"));
+        assertEquals("apikey:" + created.getBody().getKeyId(), awaitActor(quoteId));
+    }
+
+    @Test
+    void testUnknownKeyIsRejected() {
+        assertEquals(HttpStatus.UNAUTHORIZED, withApiKey("rw_not-a-real-key", HttpMethod.GET, "/api/v1/countries").getStatusCode());
+    }
+
+    @Test
+    void testNonAdminCannotIssueAdminImportKey() {
+        assertEquals(HttpStatus.FORBIDDEN, issue(List.of("admin:import")).getStatusCode());
+    }
+
+    @Test
+    void testListNeverReturnsTheKey() {
+        issue(List.of("calculator"));
+
+        ResponseEntity<String> list = restTemplate.exchange("/api/v1/auth/api-keys", HttpMethod.GET,
+                new HttpEntity<>(bearerHeaders()), String.class);
+
+        assertEquals(HttpStatus.OK, list.getStatusCode());
+        assertTrue(list.getBody().contains("\"keyPrefix\":\"rw_"));
+        assertFalse(list.getBody().contains("apiKey"));
+    }
+
+    private ResponseEntity<ApiKeyCreatedResponse> issue(List<String> scopes) {
+        ApiKeyRequest request = ApiKeyRequest.builder().name("erp").scopes(scopes).expiresInDays(30).build();
+        return restTemplate.exchange("/api/v1/auth/api-keys", HttpMethod.POST,
+                new HttpEntity<>(request, bearerHeaders()), ApiKeyCreatedResponse.class);
+    }
+
+    private ResponseEntity<String> withApiKey(String apiKey, HttpMethod method, String path) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-API-Key", apiKey);
+        return restTemplate.exchange(path, method, new HttpEntity<>(headers), String.class);
+    }
+
+    private String awaitActor(UUID quoteId) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            List<String> actors = jdbc.queryForList("SELECT actor FROM calculation_log WHERE quote_id = ?", String.class, quoteId);
+            if (!actors.isEmpty()) return actors.get(0);
+            Thread.sleep(100);
+        }
+        return fail("quote " + quoteId + " was not logged");
+    }
+
+    private HttpHeaders bearerHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        return headers;
+    }
+}
@@ -0,0 +1,87 @@
+package com.ratewise.restcontrollers;
+
+import com.ratewise.security.dto.LoginRequest;
+import com.ratewise.security.dto.LoginResponse;
+import com.ratewise.security.dto.RegisterRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Without the snapshot, so the async endpoint goes through the calculator pool and the database
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"tariff-snapshot.enabled=false", "rate-component-cache.enabled=false"})
+class CalculatorControllerIT {
+
+    private static final Map<String, Object> QUOTE = Map.of(
+            "exporter", "SG",
+            "importer", "US",
+            "hsCode", "010121",
+            "agreement", "MFN",
+            "goods_value", 1000.0,
+            "quantity", 2,
+            "effectiveDate", "2025-06-01");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private String accessToken;
+
+    @BeforeEach
+    void registerAndLogin() {
+        String username = "calc_" + System.nanoTime();
+        RegisterRequest registerRequest = RegisterRequest.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("Password123")
+                .build();
+        restTemplate.postForEntity("/api/v1/auth/registration", registerRequest, String.class);
+
+        LoginRequest loginRequest = LoginRequest.builder()
+                .username(username)
+                .password("Password123")
+                .build();
+        ResponseEntity<LoginResponse> login = restTemplate.postForEntity("/api/v1/auth/session", loginRequest, LoginResponse.class);
+        assertEquals(HttpStatus.OK, login.getStatusCode());
+        accessToken = login.getBody().getAccessToken();
+    }
+
+    @Test
+    void asyncEndpointAnswersLikeTheBlockingOne() {
+        ResponseEntity<Map<String, Object>> blocking = post("/api/v1/calculator/landed-cost", QUOTE);
+        ResponseEntity<Map<String, Object>> async = post("/api/v1/calculator/landed-cost/async", QUOTE);
+
+        assertEquals(HttpStatus.OK, async.getStatusCode());
+        assertEquals(true, async.getBody().get("ok"));
+        // every calculation is logged under its own quote_id
+        assertNotEquals(blocking.getBody().remove("quote_id"), async.getBody().remove("quote_id"));
+        assertEquals(blocking.getBody(), async.getBody());
+    }
+
+    @Test
+    void asyncEndpointMapsCalculationErrors() {
+        Map<String, Object> badDate = new HashMap<>(QUOTE);
+        badDate.put("effectiveDate", "not-a-date");
+
+        assertEquals(HttpStatus.BAD_REQUEST, post("/api/v1/calculator/landed-cost/async", badDate).getStatusCode());
+    }
+
+    private ResponseEntity<Map<String, Object>> post(String path, Map<String, Object> body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        return restTemplate.exchange(path, HttpMethod.POST, new HttpEntity<>(body, headers),
+                new ParameterizedTypeReference<>() {});
+    }
+}
@@ -1,5 +1,7 @@
 package com.ratewise.restcontrollers;
 
+import com.ratewise.services.AsyncCalculatorService;
+import com.ratewise.services.CalculationReplayService;
 import com.ratewise.services.CalculatorService;
 import com.ratewise.dto.CalculatorRequest;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,8 @@ import org.springframework.test.context.TestExecutionListeners;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -21,6 +25,12 @@ import static org.mockito.Mockito.*;
 public class CalculatorControllerTest {
     @Mock
     private CalculatorService calculatorService;
+
+    @Mock
+    private AsyncCalculatorService asyncCalculatorService;
+
+    @Mock
+    private CalculationReplayService calculationReplayService;
     
     @InjectMocks
     private CalculatorController calculatorController;
@@ -120,4 +130,68 @@ public class CalculatorControllerTest {
 
     }
 
+    @Test
+    void calculateLandedCost_ShouldForwardAsOf_WhenProvided() {
+        CalculatorRequest request = new CalculatorRequest(
+            "Singapore",
+            "United States",
+            "010121",
+            null,
+            "MFN",
+            1000.0,
+            2,
+            50.0,
+            100.0,
+            "2025-10-28",
+            "2025-10-01T08:00:00Z"
+        );
+
+        when(calculatorService.calculateLandedCost(any())).thenReturn(new HashMap<>());
+
+        calculatorController.calculateLandedCost(request);
+
+        verify(calculatorService).calculateLandedCost(argThat(payload ->
+            "2025-10-01T08:00:00Z".equals(payload.get("asOf"))
+        ));
+    }
+
+    // the async endpoint forwards the same payload and hands back the service's future
+    @Test
+    void calculateLandedCostAsync_ShouldForwardSamePayload() {
+        CalculatorRequest request = new CalculatorRequest(
+            "Singapore",
+            "United States",
+            "010121",
+            null,
+            "MFN",
+            1000.0,
+            2,
+            50.0,
+            100.0,
+            "2025-10-28"
+        );
+
+        CompletableFuture<Map<String, Object>> pending = new CompletableFuture<>();
+        when(asyncCalculatorService.calculateLandedCost(any())).thenReturn(pending);
+
+        assertSame(pending, calculatorController.calculateLandedCostAsync(request));
+
+        verify(asyncCalculatorService).calculateLandedCost(argThat(payload ->
+            payload.get("goods_value").equals(1000.0) &&
+            payload.get("effectiveDate").equals("2025-10-28")
+        ));
+        verifyNoInteractions(calculatorService);
+    }
+
+    // replay defaults to the rates at the time of the quote
+    @Test
+    void replayQuote_ShouldCallReplayService() {
+        UUID quoteId = UUID.randomUUID();
+        Map<String, Object> replay = Map.of("matches", true);
+        when(calculationReplayService.replay(quoteId, false)).thenReturn(replay);
+
+        assertSame(replay, calculatorController.replayQuote(quoteId, false));
+        verifyNoInteractions(calculatorService);
+    }
+
 }
@@ -70,4 +70,15 @@ class TariffAdminControllerIT {
         var response = controller.delete(testId);
         assertEquals(204, response.getStatusCode().value());
     }
+
+    @Test
+    @Order(6)
+    void testHistoryOutlivesDelete() {
+        var response = controller.history(testId);
+        assertEquals(200, response.getStatusCode().value());
+        var versions = response.getBody();
+        assertFalse(versions.isEmpty());
+        assertEquals(10.0, ((Number) versions.get(versions.size() - 1).get("rate_percent")).doubleValue(), 0.001);
+        assertTrue(versions.stream().allMatch(version -> version.get("system_to") != null));
+    }
 }
@@ -3,7 +3,11 @@ package com.ratewise.restcontrollers;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -27,7 +31,7 @@ class TariffControllerIT {
     
     @Test
     void testListTariffsNoFilters() {
-        List<Map<String, Object>> results = controller.listTariffs(null, null, null);
+        List<Map<String, Object>> results = controller.listTariffs(null, null, null, null);
         
         assertNotNull(results);
         assertTrue(results.size() > 0);
@@ -35,7 +39,7 @@ class TariffControllerIT {
     
     @Test
     void testListTariffsWithImporter() {
-        List<Map<String, Object>> results = controller.listTariffs("US", null, null);
+        List<Map<String, Object>> results = controller.listTariffs("US", null, null, null);
         
         assertNotNull(results);
         assertTrue(results.size() > 0);
@@ -46,6 +50,19 @@ class TariffControllerIT {
         }
     }
     
+    @Test
+    void testStreamTariffsMatchesList() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.streamTariffs("US", null, null, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(controller.listTariffs("US", null, null, null).size(), lines.length);
+        for (String line : lines) {
+            assertTrue(line.contains("\"importer_code\":\"US\""));
+        }
+    }
+
     @Test
     void testListTariffsTable() {
         List<Map<String, Object>> results = controller.listTariffsTable();
@@ -53,4 +70,21 @@ class TariffControllerIT {
         assertNotNull(results);
         assertTrue(results.size() > 0);
     }
+
+    @Test
+    void testAnalyticsByImporter() {
+        List<Map<String, Object>> results = controller.analytics("importer", null, null, "MFN", null, null);
+
+        assertNotNull(results);
+        assertTrue(results.size() > 0);
+        for (Map<String, Object> group : results) {
+            assertTrue(((Number) group.get("lane_count")).longValue() > 0);
+        }
+    }
+
+    @Test
+    void testAnalyticsRejectsUnknownGroupBy() {
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.analytics("rate_percent", null, null, null, null, null));
+    }
 }
@@ -0,0 +1,58 @@
+package com.ratewise.security.apikey;
+
+import com.ratewise.security.util.SecurityUtils;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyAuthenticationFilterTest {
+
+    @Mock
+    private ApiKeyCache apiKeyCache;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void authenticatedKeyIsNamedByKeyIdNotByKeyHash() throws Exception {
+        ApiKeyPrincipal key = new ApiKeyPrincipal("k1", "u1", ApiKeyHasher.hash("rw_key"),
+                Set.of(ApiKeyScope.CALCULATOR, ApiKeyScope.TARIFFS_READ, ApiKeyScope.ADMIN_IMPORT), null);
+        when(apiKeyCache.lookup("rw_key")).thenReturn(Optional.of(key));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/calculator/landed-cost");
+        request.addHeader(ApiKeyAuthenticationFilter.API_KEY_HEADER, "rw_key");
+        AtomicReference<Authentication> seen = new AtomicReference<>();
+        AtomicReference<String> email = new AtomicReference<>();
+
+        new ApiKeyAuthenticationFilter(apiKeyCache).doFilter(request, new MockHttpServletResponse(),
+                new MockFilterChain() {
+                    @Override
+                    public void doFilter(ServletRequest req, ServletResponse res) {
+                        seen.set(SecurityContextHolder.getContext().getAuthentication());
+                        email.set(SecurityUtils.getCurrentUserEmail());
+                    }
+                });
+
+        assertEquals("apikey:k1", seen.get().getName());
+        assertFalse(seen.get().toString().contains(key.keyHash()));
+        assertNull(email.get());
+    }
+}
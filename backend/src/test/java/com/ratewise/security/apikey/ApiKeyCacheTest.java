@@ -0,0 +1,101 @@
+package com.ratewise.security.apikey;
+
+import com.ratewise.security.repositories.ApiKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyCacheTest {
+
+    @Mock
+    private ApiKeyRepository apiKeyRepository;
+
+    private ApiKeyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ApiKeyCache(apiKeyRepository);
+    }
+
+    private static ApiKeyPrincipal key(String rawKey, String userId) {
+        return new ApiKeyPrincipal(rawKey, userId, ApiKeyHasher.hash(rawKey), Set.of(ApiKeyScope.CALCULATOR), null);
+    }
+
+    @Test
+    void keyRevokedDuringRefreshStaysRevoked() {
+        ApiKeyPrincipal revoked = key("revoked", "u1");
+        cache.put(revoked);
+        // the refresh read the row before the revoke committed
+        when(apiKeyRepository.findAllActive()).thenAnswer(invocation -> {
+            cache.remove(revoked.keyHash());
+            return List.of(revoked);
+        });
+
+        cache.refresh();
+
+        assertTrue(cache.lookup("revoked").isEmpty());
+    }
+
+    @Test
+    void keyIssuedDuringRefreshIsKept() {
+        ApiKeyPrincipal issued = key("issued", "u1");
+        when(apiKeyRepository.findAllActive()).thenAnswer(invocation -> {
+            cache.put(issued);
+            return List.of();
+        });
+
+        cache.refresh();
+
+        assertTrue(cache.lookup("issued").isPresent());
+    }
+
+    @Test
+    void reloadUsersKeepsStillValidKeysAndDropsTheRest() {
+        ApiKeyPrincipal kept = key("kept", "u1");
+        cache.put(kept);
+        cache.put(key("dropped", "u1"));
+        cache.put(key("other", "u2"));
+        when(apiKeyRepository.findActiveByUserIds(Set.of("u1"))).thenReturn(List.of(kept));
+
+        cache.reloadUsers(List.of("u1"));
+
+        assertTrue(cache.lookup("kept").isPresent());
+        assertTrue(cache.lookup("dropped").isEmpty());
+        assertTrue(cache.lookup("other").isPresent());
+    }
+
+    @Test
+    void keyRevokedDuringReloadUsersStaysRevoked() {
+        ApiKeyPrincipal revoked = key("revoked", "u1");
+        cache.put(revoked);
+        when(apiKeyRepository.findActiveByUserIds(anyCollection())).thenAnswer(invocation -> {
+            cache.remove(revoked.keyHash());
+            return List.of(revoked);
+        });
+
+        cache.reloadUsers(List.of("u1"));
+
+        assertTrue(cache.lookup("revoked").isEmpty());
+    }
+
+    @Test
+    void failedReloadStopsRecordingChanges() {
+        when(apiKeyRepository.findAllActive()).thenThrow(new IllegalStateException("db down"));
+        when(apiKeyRepository.findActiveByUserIds(anyCollection())).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> cache.refresh());
+        assertFalse(cache.isRecordingChanges());
+        assertThrows(IllegalStateException.class, () -> cache.reloadUsers(List.of("u1")));
+        assertFalse(cache.isRecordingChanges());
+    }
+}
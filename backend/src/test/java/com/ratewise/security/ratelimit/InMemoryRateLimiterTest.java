@@ -0,0 +1,136 @@
+package com.ratewise.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    private InMemoryRateLimiter limiter(int capacity, double refillPerSecond) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setCapacity(capacity);
+        properties.setRefillPerSecond(refillPerSecond);
+        return new InMemoryRateLimiter(properties, clock::get);
+    }
+
+    @Test
+    void allowsBurstUpToCapacityThenRejects() {
+        InMemoryRateLimiter limiter = limiter(5, 1.0);
+
+        for (int i = 0; i < 5; i++) {
+            RateLimitDecision decision = limiter.tryAcquire("user:a", 1);
+            assertTrue(decision.allowed());
+            assertEquals(4 - i, decision.remaining());
+        }
+
+        RateLimitDecision rejected = limiter.tryAcquire("user:a", 1);
+        assertFalse(rejected.allowed());
+        assertEquals(1000, rejected.retryAfterMillis());
+        assertEquals(1, rejected.retryAfterSeconds());
+        assertEquals(5, limiter.getAllowedCount());
+        assertEquals(1, limiter.getRejectedCount());
+    }
+
+    @Test
+    void refillsOverTime() {
+        InMemoryRateLimiter limiter = limiter(2, 2.0);
+        assertTrue(limiter.tryAcquire("user:a", 2).allowed());
+        assertFalse(limiter.tryAcquire("user:a", 1).allowed());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(limiter.tryAcquire("user:a", 1).allowed());
+        assertFalse(limiter.tryAcquire("user:a", 1).allowed());
+    }
+
+    @Test
+    void costWeightsAndRejectedCallsTakeNothing() {
+        InMemoryRateLimiter limiter = limiter(10, 1.0);
+        assertTrue(limiter.tryAcquire("user:a", 8).allowed());
+
+        RateLimitDecision rejected = limiter.tryAcquire("user:a", 5);
+        assertFalse(rejected.allowed());
+        assertEquals(3000, rejected.retryAfterMillis());
+
+        // the rejected call did not consume the 2 tokens that are left
+        assertTrue(limiter.tryAcquire("user:a", 2).allowed());
+    }
+
+    @Test
+    void clientsHaveSeparateBuckets() {
+        InMemoryRateLimiter limiter = limiter(1, 1.0);
+        assertTrue(limiter.tryAcquire("user:a", 1).allowed());
+        assertFalse(limiter.tryAcquire("user:a", 1).allowed());
+        assertTrue(limiter.tryAcquire("ip:10.0.0.1", 1).allowed());
+        assertEquals(2, limiter.getTrackedClients());
+    }
+
+    @Test
+    void costAboveCapacityIsRejectedAsInvalid() {
+        InMemoryRateLimiter limiter = limiter(3, 1.0);
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire("user:a", 4));
+    }
+
+    @Test
+    void concurrentCallersNeverExceedCapacity() throws Exception {
+        InMemoryRateLimiter limiter = limiter(100, 1.0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger allowed = new AtomicInteger();
+
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquire("user:shared", 1).allowed()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, allowed.get());
+        assertEquals(700, limiter.getRejectedCount());
+    }
+
+    @Test
+    void newClientsPastTheLimitSweepAtMostOncePerSecond() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setCapacity(1);
+        properties.setRefillPerSecond(10.0);
+        properties.setMaxTrackedClients(2);
+        InMemoryRateLimiter limiter = new InMemoryRateLimiter(properties, clock::get);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("ip:" + i, 1);
+        }
+        assertEquals(5, limiter.getTrackedClients()); // no sweep within the first second
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.tryAcquire("ip:new", 1);
+        assertEquals(1, limiter.getTrackedClients()); // the five refilled, only the new one is left
+    }
+
+    @Test
+    void scheduledSweepDropsRefilledBuckets() {
+        InMemoryRateLimiter limiter = limiter(1, 10.0);
+        limiter.tryAcquire("ip:a", 1);
+        limiter.sweep();
+        assertEquals(1, limiter.getTrackedClients());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        limiter.sweep();
+        assertEquals(0, limiter.getTrackedClients());
+    }
+}
@@ -0,0 +1,38 @@
+package com.ratewise.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withBean(RateLimitProperties.class);
+
+    @Test
+    void registersTheInMemoryLimiterByDefault() {
+        contextRunner.withUserConfiguration(RateLimitConfig.class)
+                .run(context -> assertInstanceOf(InMemoryRateLimiter.class, context.getBean(RateLimiter.class)));
+    }
+
+    @Test
+    void backsOffWhenAnotherLimiterIsDefined() {
+        contextRunner.withUserConfiguration(SharedLimiterConfig.class, RateLimitConfig.class)
+                .run(context -> {
+                    assertEquals(1, context.getBeansOfType(RateLimiter.class).size());
+                    assertTrue(context.getBeansOfType(InMemoryRateLimiter.class).isEmpty());
+                });
+    }
+
+    @Configuration
+    static class SharedLimiterConfig {
+
+        @Bean
+        RateLimiter sharedRateLimiter() {
+            return (clientKey, cost) -> RateLimitDecision.allow(1);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.ratewise.security.ratelimit;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ratewise.security.apikey.ApiKeyAuthenticationFilter;
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.apikey.ApiKeyPrincipal;
+import com.ratewise.security.util.JWTUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RateLimitFilterTest {
+
+    @Mock
+    private RateLimiter rateLimiter;
+
+    @Mock
+    private JWTUtil jwtUtil;
+
+    @Mock
+    private ApiKeyCache apiKeyCache;
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getCosts().put("/api/v1/calculator/**", 5);
+        filter = new RateLimitFilter(rateLimiter, properties, jwtUtil, apiKeyCache, new ObjectMapper().registerModule(new JavaTimeModule()));
+    }
+
+    @Test
+    void allowedRequestPassesThroughKeyedByJwtSubject() throws Exception {
+        DecodedJWT decoded = mock(DecodedJWT.class);
+        when(decoded.getSubject()).thenReturn("u1");
+        when(jwtUtil.validateToken("tok")).thenReturn(decoded);
+        when(rateLimiter.tryAcquire("user:u1", 5)).thenReturn(RateLimitDecision.allow(7));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/calculator/landed-cost");
+        request.addHeader("Authorization", "Bearer tok");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals("7", response.getHeader(RateLimitFilter.REMAINING_HEADER));
+    }
+
+    @Test
+    void rejectedRequestGets429WithRetryAfter() throws Exception {
+        when(rateLimiter.tryAcquire("ip:10.1.1.1", 1)).thenReturn(RateLimitDecision.reject(2500));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/tariffs");
+        request.setRemoteAddr("10.1.1.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest()); // never reached the JWT filter / controllers
+        assertEquals(429, response.getStatus());
+        assertEquals("3", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("Too Many Requests"));
+    }
+
+    @Test
+    void invalidTokenFallsBackToApiKeyWithoutStoringRawKey() throws Exception {
+        when(jwtUtil.validateToken("bad")).thenThrow(new RuntimeException("bad token"));
+        when(apiKeyCache.peek("secret-key")).thenReturn(Optional.of(
+                new ApiKeyPrincipal("k1", "u1", "5f2b9c", Set.of(), null)));
+        when(rateLimiter.tryAcquire("key:5f2b9c", 1)).thenReturn(RateLimitDecision.allow(0));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/tariffs");
+        request.addHeader("Authorization", "Bearer bad");
+        request.addHeader(ApiKeyAuthenticationFilter.API_KEY_HEADER, "secret-key");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(rateLimiter).tryAcquire(argThat(key -> !key.contains("secret-key")), eq(1));
+    }
+
+    @Test
+    void unknownApiKeyIsLimitedByAddress() throws Exception {
+        when(apiKeyCache.peek("made-up-key")).thenReturn(Optional.empty());
+        when(rateLimiter.tryAcquire("ip:10.1.1.1", 1)).thenReturn(RateLimitDecision.allow(0));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/tariffs");
+        request.setRemoteAddr("10.1.1.1");
+        request.addHeader(ApiKeyAuthenticationFilter.API_KEY_HEADER, "made-up-key");
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        verify(rateLimiter).tryAcquire("ip:10.1.1.1", 1);
+    }
+
+    @Test
+    void nonApiPathsAreNotLimited() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/assets/app.js");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(rateLimiter);
+    }
+
+    @Test
+    void defaultCostAboveCapacityFailsAtStartup() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setCapacity(5);
+        properties.setDefaultCost(6);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertThrows(IllegalStateException.class,
+                () -> new RateLimitFilter(rateLimiter, properties, jwtUtil, apiKeyCache, objectMapper));
+    }
+}
@@ -0,0 +1,39 @@
+package com.ratewise.security.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The test client connects from loopback, which Tomcat trusts as a proxy by default; trust nothing here
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.remoteip.internal-proxies=",
+        "security.rate-limit.capacity=5",
+        "security.rate-limit.refill-per-second=0.01"
+})
+class RateLimitIT {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void rotatingXForwardedForDoesNotBuyAFreshBucket() {
+        for (int i = 0; i < 5; i++) {
+            assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, countriesFrom("203.0.113." + i));
+        }
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, countriesFrom("203.0.113.99"));
+    }
+
+    private HttpStatus countriesFrom(String forwardedFor) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Forwarded-For", forwardedFor);
+        return HttpStatus.valueOf(restTemplate.exchange("/api/v1/countries", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class).getStatusCode().value());
+    }
+}
@@ -1,12 +1,16 @@
 package com.ratewise.security.repositories;
 
 import com.ratewise.security.entities.Role;
+import com.ratewise.security.entities.User;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,6 +20,9 @@ class RoleRepositoryIT {
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private UserRepository userRepository;
+
     @Test
     void testFindAll() {
         List<Role> roles = roleRepository.findAll();
@@ -36,4 +43,27 @@ class RoleRepositoryIT {
         Optional<Role> role = roleRepository.findById(1L);
         assertTrue(role.isPresent());
     }
+
+    @Test
+    @Transactional // rolled back after the test
+    void testAssignRoleToUsersReplacesExistingRoles() {
+        Role admin = roleRepository.findByRoleName("ADMIN").orElseThrow();
+        Role user = roleRepository.findByRoleName("USER").orElseThrow();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            User created = new User();
+            created.setUsername("bulk-role-it-" + i);
+            created.setEmail("bulk-role-it-" + i + "@example.com");
+            created.setEnabled(true);
+            String id = userRepository.save(created).getId();
+            roleRepository.assignRoleToUser(id, admin.getId());
+            ids.add(id);
+        }
+
+        int inserted = roleRepository.assignRoleToUsers(ids, user.getId());
+
+        assertEquals(ids.size(), inserted);
+        assertEquals(Set.copyOf(ids), userRepository.findExistingIds(ids));
+        ids.forEach(id -> assertEquals("USER", userRepository.findByIdWithRole(id).orElseThrow().getRole().getRoleName()));
+    }
 }
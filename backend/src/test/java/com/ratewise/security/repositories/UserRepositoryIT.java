@@ -4,6 +4,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import com.ratewise.security.dto.UserPageCursor;
+import com.ratewise.security.dto.UserSummaryResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -29,4 +35,47 @@ class UserRepositoryIT {
     void testExistsByUsernameDoesntCrash() {
         userRepository.existsByUsername("testuser");
     }
+
+    @Test
+    void testUserSummaryPagesMatchFullListing() {
+        List<UserSummaryResponse> all = userRepository.findUserSummaries(null, null, null);
+
+        List<UserSummaryResponse> paged = new ArrayList<>();
+        UserPageCursor cursor = null;
+        while (true) {
+            List<UserSummaryResponse> page = userRepository.findUserSummaries(null, cursor, 2);
+            paged.addAll(page);
+            if (page.size() < 2) break;
+            cursor = UserPageCursor.after(page.get(page.size() - 1));
+        }
+
+        assertEquals(all.stream().map(UserSummaryResponse::getUserId).toList(),
+                paged.stream().map(UserSummaryResponse::getUserId).toList());
+    }
+
+    @Test
+    void testUserSummaryPrefixSearch() {
+        List<UserSummaryResponse> all = userRepository.findUserSummaries(null, null, null);
+        if (all.isEmpty()) return;
+
+        String prefix = all.get(0).getUsername().substring(0, 2).toUpperCase();
+        List<UserSummaryResponse> matches = userRepository.findUserSummaries(prefix, null, null);
+
+        assertFalse(matches.isEmpty());
+        matches.forEach(u -> assertTrue(
+                u.getUsername().toUpperCase().startsWith(prefix)
+                        || (u.getEmail() != null && u.getEmail().toUpperCase().startsWith(prefix))));
+        // LIKE wildcards are matched literally
+        assertTrue(userRepository.findUserSummaries("%", null, null).isEmpty());
+    }
+
+    @Test
+    void testStreamUserSummariesVisitsEveryUser() {
+        List<UserSummaryResponse> all = userRepository.findUserSummaries(null, null, null);
+        List<String> streamed = new ArrayList<>();
+
+        userRepository.streamUserSummaries(null, u -> streamed.add(u.getUserId()));
+
+        assertEquals(all.size(), streamed.size());
+    }
 }
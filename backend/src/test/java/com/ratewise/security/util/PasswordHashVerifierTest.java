@@ -0,0 +1,98 @@
+package com.ratewise.security.util;
+
+import com.ratewise.security.exception.AuthThrottledException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashVerifierTest {
+
+    private PasswordHashVerifier verifier;
+
+    @AfterEach
+    void tearDown() {
+        if (verifier != null) {
+            verifier.shutdown();
+        }
+    }
+
+    @Test
+    void testMatchesDelegatesToEncoder() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        verifier = new PasswordHashVerifier(encoder, 1, 4, 5000);
+
+        String hash = encoder.encode("Password123");
+
+        assertTrue(verifier.matches("Password123", hash));
+        assertFalse(verifier.matches("wrong", hash));
+    }
+
+    @Test
+    void testNeedsUpgradeWhenStoredCostIsLower() {
+        String weakHash = new BCryptPasswordEncoder(4).encode("Password123");
+        verifier = new PasswordHashVerifier(new BCryptPasswordEncoder(5), 1, 4, 5000);
+
+        assertTrue(verifier.needsUpgrade(weakHash));
+        assertFalse(verifier.needsUpgrade(verifier.encode("Password123")));
+        assertFalse(verifier.needsUpgrade(null));
+    }
+
+    @Test
+    void testRejectsWhenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        verifier = new PasswordHashVerifier(blockingEncoder(started, release), 1, 1, 5000);
+
+        // one running, one queued
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> verifier.matches("a", "a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> verifier.matches("b", "b"));
+        while (verifier.getQueueSize() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(AuthThrottledException.class, () -> verifier.matches("c", "c"));
+        assertEquals(1, verifier.getRejectedCount());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testTimesOutSlowVerification() {
+        CountDownLatch release = new CountDownLatch(1);
+        verifier = new PasswordHashVerifier(blockingEncoder(new CountDownLatch(1), release), 1, 1, 50);
+
+        assertThrows(AuthThrottledException.class, () -> verifier.matches("a", "a"));
+        assertEquals(1, verifier.getTimedOutCount());
+        release.countDown();
+    }
+
+    private static PasswordEncoder blockingEncoder(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.ratewise.services;
+
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.apikey.ApiKeyHasher;
+import com.ratewise.security.apikey.ApiKeyPrincipal;
+import com.ratewise.security.apikey.ApiKeyScope;
+import com.ratewise.security.dto.ApiKeyCreatedResponse;
+import com.ratewise.security.dto.ApiKeyRequest;
+import com.ratewise.security.exception.ApiKeyNotFoundException;
+import com.ratewise.security.repositories.ApiKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ApiKeyServiceTest {
+
+    @Mock
+    private ApiKeyRepository apiKeyRepository;
+
+    @Mock
+    private ApiKeyCache apiKeyCache;
+
+    private ApiKeyService apiKeyService;
+
+    @BeforeEach
+    void setUp() {
+        apiKeyService = new ApiKeyService(apiKeyRepository, apiKeyCache, 2);
+    }
+
+    @Test
+    void issue_StoresOnlyHashAndCachesKey() {
+        ApiKeyRequest request = ApiKeyRequest.builder().name("erp").scopes(List.of("tariffs:read", "calculator")).build();
+
+        ApiKeyCreatedResponse response = apiKeyService.issue("u1", "USER", request);
+
+        String rawKey = response.getApiKey();
+        String expectedHash = ApiKeyHasher.hash(rawKey);
+        verify(apiKeyRepository).insert(eq(response.getKeyId()), eq("u1"), eq("erp"), eq(ApiKeyHasher.displayPrefix(rawKey)),
+                eq(expectedHash), eq(Set.of(ApiKeyScope.TARIFFS_READ, ApiKeyScope.CALCULATOR)), any(), isNull());
+
+        ArgumentCaptor<ApiKeyPrincipal> cached = ArgumentCaptor.forClass(ApiKeyPrincipal.class);
+        verify(apiKeyCache).put(cached.capture());
+        assertEquals(expectedHash, cached.getValue().keyHash());
+        assertEquals("u1", cached.getValue().userId());
+        assertNull(response.getExpiresAt());
+    }
+
+    @Test
+    void issue_AdminImportRequiresAdmin() {
+        ApiKeyRequest request = ApiKeyRequest.builder().name("import").scopes(List.of("admin:import")).build();
+
+        assertThrows(AccessDeniedException.class, () -> apiKeyService.issue("u1", "USER", request));
+        verify(apiKeyRepository, never()).insert(any(), any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void issue_UnknownScope() {
+        ApiKeyRequest request = ApiKeyRequest.builder().name("erp").scopes(List.of("everything")).build();
+
+        assertThrows(IllegalArgumentException.class, () -> apiKeyService.issue("u1", "ADMIN", request));
+    }
+
+    @Test
+    void issue_LimitPerUser() {
+        when(apiKeyRepository.countActiveByUserId("u1")).thenReturn(2);
+        ApiKeyRequest request = ApiKeyRequest.builder().name("erp").scopes(List.of("calculator")).build();
+
+        assertThrows(IllegalArgumentException.class, () -> apiKeyService.issue("u1", "USER", request));
+    }
+
+    @Test
+    void revoke_RemovesFromCache() {
+        when(apiKeyRepository.revoke("k1", "u1")).thenReturn(Optional.of("hash"));
+
+        apiKeyService.revoke("u1", "k1");
+
+        verify(apiKeyCache).remove("hash");
+    }
+
+    @Test
+    void revoke_NotFound() {
+        when(apiKeyRepository.revoke("k1", "u1")).thenReturn(Optional.empty());
+
+        assertThrows(ApiKeyNotFoundException.class, () -> apiKeyService.revoke("u1", "k1"));
+        verifyNoInteractions(apiKeyCache);
+    }
+}
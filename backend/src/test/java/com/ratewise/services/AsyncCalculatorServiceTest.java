@@ -0,0 +1,127 @@
+package com.ratewise.services;
+
+import com.ratewise.security.exception.CalculatorBusyException;
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffSnapshotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncCalculatorServiceTest {
+
+    @Mock
+    private CalculatorService calculatorService;
+
+    @Mock
+    private TariffSnapshotService tariffSnapshots;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AsyncCalculatorService async;
+
+    private AsyncCalculatorService async(int threads, int queueCapacity, long timeoutMillis) {
+        async = new AsyncCalculatorService(calculatorService, tariffSnapshots, threads, 10, queueCapacity, timeoutMillis);
+        return async;
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (async != null) async.shutdown();
+    }
+
+    private void blockCalculations() {
+        when(calculatorService.calculateLandedCost(any())).thenAnswer(invocation -> {
+            release.await();
+            return Map.of("ok", true);
+        });
+    }
+
+    @Test
+    void databaseCalculationRunsOnThePool() throws Exception {
+        when(calculatorService.calculateLandedCost(any())).thenAnswer(invocation ->
+                Map.of("thread", Thread.currentThread().getName()));
+
+        Map<String, Object> result = async(2, 4, 5_000).calculateLandedCost(Map.of()).get(5, TimeUnit.SECONDS);
+
+        assertTrue(((String) result.get("thread")).startsWith("calculator-"));
+        assertEquals(0, async.getInlineCount());
+    }
+
+    @Test
+    void snapshotCalculationIsAnsweredOnTheCallingThread() {
+        when(tariffSnapshots.current()).thenReturn(mock(TariffDataset.class));
+        when(calculatorService.calculateLandedCost(any())).thenAnswer(invocation ->
+                Map.of("thread", Thread.currentThread().getName()));
+
+        CompletableFuture<Map<String, Object>> result = async(2, 4, 5_000).calculateLandedCost(Map.of());
+
+        assertTrue(result.isDone());
+        assertEquals(Thread.currentThread().getName(), result.join().get("thread"));
+        assertEquals(1, async.getInlineCount());
+    }
+
+    @Test
+    void asOfCalculationRunsOnThePoolEvenWithASnapshot() throws Exception {
+        when(tariffSnapshots.current()).thenReturn(mock(TariffDataset.class));
+        when(calculatorService.calculateLandedCost(any())).thenAnswer(invocation ->
+                Map.of("thread", Thread.currentThread().getName()));
+
+        Map<String, Object> result = async(2, 4, 5_000)
+                .calculateLandedCost(Map.of("asOf", "2025-10-01T08:00:00Z")).get(5, TimeUnit.SECONDS);
+
+        assertTrue(((String) result.get("thread")).startsWith("calculator-"));
+        assertEquals(0, async.getInlineCount());
+    }
+
+    @Test
+    void calculationErrorsCompleteTheFuture() {
+        when(calculatorService.calculateLandedCost(any())).thenThrow(new IllegalArgumentException("bad date"));
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> async(1, 1, 5_000).calculateLandedCost(Map.of()).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+    }
+
+    @Test
+    void fullPoolIsRejectedAsBusy() {
+        blockCalculations();
+        AsyncCalculatorService service = async(1, 1, 5_000);
+        List<CompletableFuture<Map<String, Object>>> accepted = List.of(
+                service.calculateLandedCost(Map.of()), service.calculateLandedCost(Map.of()));
+
+        CompletableFuture<Map<String, Object>> rejected = service.calculateLandedCost(Map.of());
+
+        ExecutionException failure = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(CalculatorBusyException.class, failure.getCause());
+        assertEquals(1, service.getRejectedCount());
+
+        release.countDown();
+        accepted.forEach(future -> assertEquals(true, future.join().get("ok")));
+    }
+
+    @Test
+    void slowCalculationTimesOutAsBusy() {
+        blockCalculations();
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> async(1, 1, 50).calculateLandedCost(Map.of()).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(CalculatorBusyException.class, failure.getCause());
+        assertEquals(1, async.getTimedOutCount());
+    }
+}
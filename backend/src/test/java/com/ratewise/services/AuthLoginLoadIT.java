@@ -0,0 +1,132 @@
+package com.ratewise.services;
+
+import com.ratewise.security.dto.LoginRequest;
+import com.ratewise.security.dto.RegisterRequest;
+import com.ratewise.security.exception.AuthThrottledException;
+import com.ratewise.security.util.PasswordHashVerifier;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Login burst benchmark: how many concurrent logins can we absorb while the
+ * calculator keeps its p99? Prints one line per concurrency level.
+ * Needs the real database like the other ITs.
+ */
+@SpringBootTest
+class AuthLoginLoadIT {
+
+    private static final int[] LOGIN_CONCURRENCY = {0, 8, 32, 128};
+    private static final int CALCULATOR_CALLS = 300;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private CalculatorService calculatorService;
+
+    @Autowired
+    private PasswordHashVerifier passwordHashVerifier;
+
+    @Test
+    void loginBurstDoesNotStallCalculator() throws Exception {
+        String username = "loadtest_" + System.currentTimeMillis();
+        authService.register(RegisterRequest.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("Password123")
+                .build());
+        LoginRequest login = LoginRequest.builder().username(username).password("Password123").build();
+
+        // warm up
+        for (int i = 0; i < 20; i++) {
+            calculatorService.calculateLandedCost(calculatorRequest());
+        }
+
+        System.out.printf("%-12s %-12s %-12s %-12s %-12s%n",
+                "logins", "calc p50 ms", "calc p99 ms", "logins ok", "throttled");
+
+        for (int concurrency : LOGIN_CONCURRENCY) {
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong ok = new AtomicLong();
+            AtomicLong throttled = new AtomicLong();
+            ExecutorService loginThreads = Executors.newFixedThreadPool(Math.max(1, concurrency));
+            for (int i = 0; i < concurrency; i++) {
+                loginThreads.submit(() -> {
+                    while (running.get()) {
+                        try {
+                            authService.login(login);
+                            ok.incrementAndGet();
+                        } catch (AuthThrottledException e) {
+                            throttled.incrementAndGet();
+                            backOff();
+                        }
+                    }
+                });
+            }
+
+            List<Long> latencies = new ArrayList<>();
+            for (int i = 0; i < CALCULATOR_CALLS; i++) {
+                long start = System.nanoTime();
+                Map<String, Object> result = calculatorService.calculateLandedCost(calculatorRequest());
+                latencies.add(System.nanoTime() - start);
+                assertTrue((Boolean) result.get("ok"));
+            }
+
+            running.set(false);
+            loginThreads.shutdown();
+            assertTrue(loginThreads.awaitTermination(30, TimeUnit.SECONDS));
+
+            Collections.sort(latencies);
+            System.out.printf("%-12d %-12.2f %-12.2f %-12d %-12d%n",
+                    concurrency,
+                    percentile(latencies, 0.50),
+                    percentile(latencies, 0.99),
+                    ok.get(),
+                    throttled.get());
+        }
+
+        System.out.printf("auth pool: size=%d queueCapacity=%d rejected=%d%n",
+                passwordHashVerifier.getPoolSize(),
+                passwordHashVerifier.getQueueCapacity(),
+                passwordHashVerifier.getRejectedCount());
+    }
+
+    // clients are told to Retry-After, don't spin on the rejection
+    private static void backOff() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double percentile(List<Long> sortedNanos, double p) {
+        int index = (int) Math.ceil(p * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, index)) / 1_000_000.0;
+    }
+
+    private static Map<String, Object> calculatorRequest() {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", "Singapore");
+        request.put("importer", "United States");
+        request.put("hsCode", "010121");
+        request.put("agreement", "MFN");
+        request.put("goods_value", 1000.0);
+        request.put("effectiveDate", "2025-10-28");
+        return request;
+    }
+}
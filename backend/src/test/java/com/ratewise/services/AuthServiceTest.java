@@ -9,6 +9,7 @@ import com.ratewise.security.exception.*;
 import com.ratewise.security.repositories.RoleRepository;
 import com.ratewise.security.repositories.UserRepository;
 import com.ratewise.security.util.JWTUtil;
+import com.ratewise.security.util.PasswordHashVerifier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -39,6 +40,9 @@ class AuthServiceTest {
     @Mock
     private RoleRepository roleRepository;
 
+    @Mock
+    private PasswordHashVerifier passwordHashVerifier;
+
     @InjectMocks
     private AuthService authService;
 
@@ -89,43 +93,46 @@ class AuthServiceTest {
 
     @Test
     void testLoginSuccess() {
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches("Password123", "hashedPassword123")).thenReturn(true);
-        when(userRepository.findByIdWithRole("user-123")).thenReturn(Optional.of(testUserWithRole));
+        when(userRepository.findByUsernameWithRole("testuser")).thenReturn(Optional.of(testUserWithRole));
+        when(passwordHashVerifier.matches("Password123", "hashedPassword123")).thenReturn(true);
         when(jwtUtil.generateToken(testUserWithRole)).thenReturn("jwt.token.here");
 
         LoginResponse response = authService.login(loginRequest);
 
         assertNotNull(response);
         assertEquals("jwt.token.here", response.getAccessToken());
-        verify(userRepository).findByUsername("testuser");
-        verify(passwordEncoder).matches("Password123", "hashedPassword123");
+        assertEquals("USER", response.getRole());
+        verify(userRepository).findByUsernameWithRole("testuser");
+        verify(passwordHashVerifier).matches("Password123", "hashedPassword123");
         verify(jwtUtil).generateToken(testUserWithRole);
+        // single user+role query, no follow-up lookups
+        verify(userRepository, never()).findByUsername(anyString());
+        verify(userRepository, never()).findByIdWithRole(anyString());
     }
 
     @Test
     void testLoginInvalidUsername() {
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.empty());
+        when(userRepository.findByUsernameWithRole("testuser")).thenReturn(Optional.empty());
 
         assertThrows(InvalidCredentialsException.class, () -> {
             authService.login(loginRequest);
         });
 
-        verify(userRepository).findByUsername("testuser");
-        verify(passwordEncoder, never()).matches(anyString(), anyString());
+        verify(userRepository).findByUsernameWithRole("testuser");
+        verify(passwordHashVerifier, never()).matches(anyString(), anyString());
     }
 
     @Test
     void testLoginInvalidPassword() {
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches("Password123", "hashedPassword123")).thenReturn(false);
+        when(userRepository.findByUsernameWithRole("testuser")).thenReturn(Optional.of(testUserWithRole));
+        when(passwordHashVerifier.matches("Password123", "hashedPassword123")).thenReturn(false);
 
         assertThrows(InvalidCredentialsException.class, () -> {
             authService.login(loginRequest);
         });
 
-        verify(userRepository).findByUsername("testuser");
-        verify(passwordEncoder).matches("Password123", "hashedPassword123");
+        verify(userRepository).findByUsernameWithRole("testuser");
+        verify(passwordHashVerifier).matches("Password123", "hashedPassword123");
         verify(jwtUtil, never()).generateToken(any());
     }
 
@@ -140,27 +147,51 @@ class AuthServiceTest {
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(disabledUser));
+        when(userRepository.findByUsernameWithRole("testuser")).thenReturn(Optional.of(disabledUser));
 
         assertThrows(AccountDisabledException.class, () -> {
             authService.login(loginRequest);
         });
 
-        verify(userRepository).findByUsername("testuser");
-        verify(passwordEncoder, never()).matches(anyString(), anyString());
+        verify(userRepository).findByUsernameWithRole("testuser");
+        verify(passwordHashVerifier, never()).matches(anyString(), anyString());
     }
 
     @Test
-    void testLoginUserNotFoundAfterPasswordCheck() {
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        when(passwordEncoder.matches("Password123", "hashedPassword123")).thenReturn(true);
-        when(userRepository.findByIdWithRole("user-123")).thenReturn(Optional.empty());
+    void testLoginUpgradesWeakHash() {
+        when(userRepository.findByUsernameWithRole("testuser")).thenReturn(Optional.of(testUserWithRole));
+        when(passwordHashVerifier.matches("Password123", "hashedPassword123")).thenReturn(true);
+        when(passwordHashVerifier.needsUpgrade("hashedPassword123")).thenReturn(true);
+        when(passwordHashVerifier.encode("Password123")).thenReturn("strongerHash");
 
-        assertThrows(UserNotFoundException.class, () -> {
+        authService.login(loginRequest);
+
+        verify(userRepository).updatePasswordHash("user-123", "strongerHash");
+    }
+
+    @Test
+    void testLoginKeepsCurrentHash() {
+        when(userRepository.findByUsernameWithRole("testuser")).thenReturn(Optional.of(testUserWithRole));
+        when(passwordHashVerifier.matches("Password123", "hashedPassword123")).thenReturn(true);
+        when(passwordHashVerifier.needsUpgrade("hashedPassword123")).thenReturn(false);
+
+        authService.login(loginRequest);
+
+        verify(passwordHashVerifier, never()).encode(anyString());
+        verify(userRepository, never()).updatePasswordHash(anyString(), anyString());
+    }
+
+    @Test
+    void testLoginThrottledWhenHashPoolIsFull() {
+        when(userRepository.findByUsernameWithRole("testuser")).thenReturn(Optional.of(testUserWithRole));
+        when(passwordHashVerifier.matches("Password123", "hashedPassword123"))
+                .thenThrow(new AuthThrottledException("Too many concurrent logins, please retry shortly"));
+
+        assertThrows(AuthThrottledException.class, () -> {
             authService.login(loginRequest);
         });
 
-        verify(userRepository).findByIdWithRole("user-123");
+        verify(jwtUtil, never()).generateToken(any());
     }
 
     // Register Tests 
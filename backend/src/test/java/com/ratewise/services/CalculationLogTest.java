@@ -0,0 +1,177 @@
+package com.ratewise.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratewise.security.apikey.ApiKeyAuthenticationFilter;
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.apikey.ApiKeyHasher;
+import com.ratewise.security.apikey.ApiKeyPrincipal;
+import com.ratewise.security.apikey.ApiKeyScope;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CalculationLogTest {
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    // no writer thread: entries stay queued until flush()
+    private CalculationLog calculationLog(int queueCapacity, int batchSize) {
+        CalculationLogProperties properties = new CalculationLogProperties();
+        properties.setQueueCapacity(queueCapacity);
+        properties.setBatchSize(batchSize);
+        return new CalculationLog(properties, jdbc, new ObjectMapper(), false);
+    }
+
+    private static Map<String, Object> response() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("ok", true);
+        response.put("tariff_id", 6);
+        response.put("tax_rule_id", 2);
+        response.put("data_version", 41L);
+        return response;
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void recordQueuesWithoutWritingAndAddsAQuoteId() {
+        CalculationLog calculationLog = calculationLog(10, 200);
+        Map<String, Object> response = response();
+
+        calculationLog.record(Map.of("exporter", "SG"), response);
+
+        assertNotNull(response.get("quote_id"));
+        assertEquals(1, calculationLog.getPendingCount());
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushInsertsInBatches() {
+        CalculationLog calculationLog = calculationLog(10, 2);
+        for (int i = 0; i < 3; i++) {
+            calculationLog.record(Map.of("exporter", "SG"), response());
+        }
+
+        calculationLog.flush();
+
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbc, times(2)).batchUpdate(anyString(), batches.capture());
+        assertEquals(2, batches.getAllValues().get(0).size());
+        assertEquals(1, batches.getAllValues().get(1).size());
+        Object[] row = batches.getAllValues().get(0).get(0);
+        assertEquals(List.of(6, 2, 41L), List.of(row[5], row[6], row[7]));
+        assertEquals(3, calculationLog.getWrittenCount());
+        assertEquals(0, calculationLog.getPendingCount());
+    }
+
+    @Test
+    void fullQueueDropsTheCalculationInsteadOfWaiting() {
+        CalculationLog calculationLog = calculationLog(1, 200);
+        calculationLog.record(Map.of("exporter", "SG"), response());
+        Map<String, Object> dropped = response();
+
+        calculationLog.record(Map.of("exporter", "SG"), dropped);
+
+        assertNull(dropped.get("quote_id"));
+        assertEquals(1, calculationLog.getDroppedCount());
+        assertEquals(1, calculationLog.getPendingCount());
+    }
+
+    @Test
+    void failedInsertIsCountedNotRethrown() {
+        CalculationLog calculationLog = calculationLog(10, 200);
+        calculationLog.record(Map.of("exporter", "SG"), response());
+        when(jdbc.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        calculationLog.flush();
+
+        assertEquals(1, calculationLog.getFailedCount());
+        assertEquals(0, calculationLog.getWrittenCount());
+    }
+
+    @Test
+    void badRowInABatchOnlyLosesThatRow() {
+        CalculationLog calculationLog = calculationLog(10, 200);
+        for (int i = 0; i < 3; i++) {
+            calculationLog.record(Map.of("exporter", "SG"), response());
+        }
+        when(jdbc.batchUpdate(anyString(), anyList())).thenThrow(new DataIntegrityViolationException("value too long"));
+        when(jdbc.update(anyString(), any(Object[].class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("value too long"))
+                .thenReturn(1);
+
+        calculationLog.flush();
+
+        verify(jdbc, times(3)).update(anyString(), any(Object[].class));
+        assertEquals(2, calculationLog.getWrittenCount());
+        assertEquals(1, calculationLog.getFailedCount());
+    }
+
+    @Test
+    void disabledLogRecordsNothing() {
+        CalculationLogProperties properties = new CalculationLogProperties();
+        properties.setEnabled(false);
+        CalculationLog calculationLog = new CalculationLog(properties, jdbc, new ObjectMapper(), false);
+        Map<String, Object> response = response();
+
+        calculationLog.record(Map.of("exporter", "SG"), response);
+
+        assertNull(response.get("quote_id"));
+        assertEquals(0, calculationLog.getPendingCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void apiKeyCallerIsLoggedByKeyIdNotByKeyHash() throws Exception {
+        CalculationLog calculationLog = calculationLog(10, 200);
+        ApiKeyPrincipal key = new ApiKeyPrincipal("k1", "u1", ApiKeyHasher.hash("rw_key"),
+                Set.of(ApiKeyScope.CALCULATOR, ApiKeyScope.TARIFFS_READ, ApiKeyScope.ADMIN_IMPORT), null);
+        ApiKeyCache apiKeyCache = mock(ApiKeyCache.class);
+        when(apiKeyCache.lookup("rw_key")).thenReturn(Optional.of(key));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/calculator/landed-cost");
+        request.addHeader(ApiKeyAuthenticationFilter.API_KEY_HEADER, "rw_key");
+
+        new ApiKeyAuthenticationFilter(apiKeyCache).doFilter(request, new MockHttpServletResponse(),
+                new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                        calculationLog.record(Map.of("exporter", "SG"), response());
+                    }
+                }));
+        calculationLog.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbc).batchUpdate(anyString(), batch.capture());
+        assertEquals("apikey:k1", batch.getValue().get(0)[2]);
+    }
+}
@@ -0,0 +1,108 @@
+package com.ratewise.services;
+
+import com.ratewise.dto.TariffAdminRequest;
+import com.ratewise.security.exception.QuoteNotFoundException;
+import com.ratewise.snapshot.TariffSnapshotService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class CalculationReplayIT {
+
+    @Autowired
+    private CalculatorService calculatorService;
+
+    @Autowired
+    private CalculationReplayService calculationReplayService;
+
+    @Autowired
+    private TariffAdminService tariffAdminService;
+
+    @Autowired
+    private TariffSnapshotService tariffSnapshots;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replayReproducesTheQuoteAfterTheRateChanged() throws InterruptedException {
+        // SG->CN 090111 MFN has no rate in 2031 until one is added
+        int id = ((Number) tariffAdminService.createTariff(new TariffAdminRequest(
+                "SG", "CN", "090111", "MFN", new BigDecimal("3.0"), "2031-01-01", null)).get("id")).intValue();
+        try {
+            tariffSnapshots.refresh();
+            Map<String, Object> quote = calculatorService.calculateLandedCost(request());
+            UUID quoteId = UUID.fromString((String) quote.get("quote_id"));
+            assertEquals(id, quote.get("tariff_id"));
+            awaitLogged(quoteId);
+
+            assertEquals(id, jdbc.queryForObject(
+                    "SELECT tariff_id FROM calculation_log WHERE quote_id = ?", Integer.class, quoteId));
+            assertEquals(true, calculationReplayService.replay(quoteId, false).get("matches"));
+
+            tariffAdminService.updateTariff(id, new TariffAdminRequest(
+                    "SG", "CN", "090111", "MFN", new BigDecimal("3.5"), "2031-01-01", null));
+            tariffSnapshots.refresh();
+
+            Map<String, Object> then = calculationReplayService.replay(quoteId, false);
+            assertEquals(true, then.get("matches"), () -> String.valueOf(then.get("differences")));
+            Map<String, Object> now = calculationReplayService.replay(quoteId, true);
+            assertEquals(false, now.get("matches"));
+            Map<String, Object> differences = (Map<String, Object>) now.get("differences");
+            Map<String, Object> rate = (Map<String, Object>) differences.get("rate_percent");
+            assertEquals(3.0, ((Number) rate.get("original")).doubleValue(), 0.001);
+            assertEquals(3.5, ((Number) rate.get("replayed")).doubleValue(), 0.001);
+        } finally {
+            tariffAdminService.deleteTariff(id);
+            tariffSnapshots.refresh();
+        }
+    }
+
+    @Test
+    void loggedCalculationsCannotBeChanged() {
+        UUID quoteId = UUID.randomUUID();
+        jdbc.update("INSERT INTO calculation_log (quote_id, created_at, request, response) "
+                + "VALUES (?, now(), '{}'::jsonb, '{}'::jsonb)", quoteId);
+
+        assertThrows(DataAccessException.class,
+                () -> jdbc.update("UPDATE calculation_log SET response = '{\"ok\": false}'::jsonb WHERE quote_id = ?", quoteId));
+        assertThrows(DataAccessException.class,
+                () -> jdbc.update("DELETE FROM calculation_log WHERE quote_id = ?", quoteId));
+    }
+
+    @Test
+    void unknownQuoteIsNotFound() {
+        assertThrows(QuoteNotFoundException.class, () -> calculationReplayService.replay(UUID.randomUUID(), false));
+    }
+
+    private void awaitLogged(UUID quoteId) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            Integer rows = jdbc.queryForObject("SELECT count(*) FROM calculation_log WHERE quote_id = ?", Integer.class, quoteId);
+            if (rows != null && rows > 0) return;
+            Thread.sleep(100);
+        }
+        fail("quote " + quoteId + " was not logged");
+    }
+
+    private static Map<String, Object> request() {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", "SG");
+        request.put("importer", "CN");
+        request.put("hsCode", "090111");
+        request.put("agreement", "MFN");
+        request.put("goods_value", 1000.0);
+        request.put("effectiveDate", "2031-06-01");
+        return request;
+    }
+}
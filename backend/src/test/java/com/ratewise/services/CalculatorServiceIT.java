@@ -6,6 +6,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.ratewise.dto.TariffAdminRequest;
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffSnapshotService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
 
 import java.util.*;
 
@@ -16,6 +24,21 @@ class CalculatorServiceIT {
     
     @Autowired
     private CalculatorService calculatorService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TariffSnapshotService tariffSnapshots;
+
+    @Autowired
+    private LandedCostCache landedCostCache;
+
+    @Autowired
+    private TariffAdminService tariffAdminService;
     
     @Test
     void calculateLandedCost_ShouldReturnCorrectRate_WithRealData() {
@@ -188,6 +211,27 @@ class CalculatorServiceIT {
         assertTrue(exception.getMessage().contains("HS"));
     }
 
+    @Test
+    void calculateLandedCost_ShouldResolveHsCode_FromProductDescription() {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", "Singapore");
+        request.put("importer", "US");
+        request.put("agreement", "MFN");
+        request.put("goods_value", 1000.0);
+        request.put("effectiveDate", "2025-10-28");
+
+        request.put("productDescription", "pure-bred breeding horses"); // exact, case-insensitive
+        assertEquals("010121", calculatorService.calculateLandedCost(request).get("hs_code"));
+
+        request.put("productDescription", "breeding horses"); // substring fallback
+        assertEquals("010121", calculatorService.calculateLandedCost(request).get("hs_code"));
+
+        request.put("productDescription", "no such product anywhere");
+        Map<String, Object> result = calculatorService.calculateLandedCost(request);
+        assertFalse((Boolean) result.get("ok"));
+        assertTrue(((String) result.get("error")).contains("no match found"));
+    }
+
     @Test
     void calculateLandedCost_ShouldReturnError_WhenAgreementMissing() {
         Map<String, Object> request = new LinkedHashMap<>();
@@ -220,6 +264,202 @@ class CalculatorServiceIT {
         assertTrue((Boolean) result.get("ok"));
         assertEquals(1000.0, ((Number) result.get("customs_value")).doubleValue(), 0.01);
     }
-}
 
+    @Test
+    void calculateLandedCost_ShouldRecordStageTimersAndHsPath() {
+        long okBefore = timerCount("ratewise.calculator.landed_cost", "outcome", "ok");
+        long lookupBefore = timerCount("ratewise.calculator.stage", "stage", "lookup");
+        double explicitBefore = meterRegistry.get("ratewise.calculator.hs_resolution").tag("path", "explicit").counter().count();
+
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", "SG");
+        request.put("importer", "US");
+        request.put("hsCode", "010121");
+        request.put("agreement", "MFN");
+        request.put("goods_value", 4321.0); // not quoted by other tests, so not answered from the result cache
+        request.put("effectiveDate", "2025-10-28");
+
+        assertTrue((Boolean) calculatorService.calculateLandedCost(request).get("ok"));
+
+        assertEquals(okBefore + 1, timerCount("ratewise.calculator.landed_cost", "outcome", "ok"));
+        assertEquals(lookupBefore + 1, timerCount("ratewise.calculator.stage", "stage", "lookup"));
+        assertEquals(explicitBefore + 1, meterRegistry.get("ratewise.calculator.hs_resolution").tag("path", "explicit").counter().count());
+        assertTrue(timerCount("ratewise.calculator.stage", "stage", "compute") > 0);
+    }
+
+    @Test
+    void snapshotLookupMatchesDatabaseLookup() {
+        tariffSnapshots.refresh();
+        TariffDataset dataset = tariffSnapshots.current();
+        assertNotNull(dataset);
+
+        Object[][] inputs = {
+                {"SG", "US", "010121", null, "MFN", LocalDate.of(2025, 10, 28)},
+                {"Singapore", "united states", "010121", null, "mfn", LocalDate.of(2025, 10, 28)},
+                {"SG", "US", null, "horses", "MFN", LocalDate.of(2025, 10, 28)},
+                {"SG", "US", "999999", null, "MFN", LocalDate.of(2025, 10, 28)},
+                {"SG", "ZZ", "010121", null, "MFN", LocalDate.of(2025, 10, 28)},
+                {"SG", "US", "010121", null, "MFN", LocalDate.of(1990, 1, 1)},
+                {"SG", "US", "0101210010", null, "MFN", LocalDate.of(2025, 10, 28)},
+                {"SG", "US", "01012100", null, "MFN", LocalDate.of(2025, 10, 28)},
+                {"SG", "US", "0101", null, "MFN", LocalDate.of(2025, 10, 28)},
+        };
+        for (Object[] in : inputs) {
+            Map<String, Object> row = jdbc.queryForMap(CalculatorSql.LANDED_COST_LOOKUP,
+                    in[0], in[1], in[2], in[3], in[4], java.sql.Date.valueOf((LocalDate) in[5]));
+            TariffDataset.Lookup fromSnapshot = dataset.lookup(
+                    (String) in[0], (String) in[1], (String) in[2], (String) in[3], (String) in[4], (LocalDate) in[5]);
+
+            String label = Arrays.toString(in);
+            assertEquals(row.get("exporter_code"), fromSnapshot.exporterCode(), label);
+            assertEquals(row.get("importer_code"), fromSnapshot.importerCode(), label);
+            assertEquals(row.get("customs_basis"), fromSnapshot.customsBasis(), label);
+            assertEquals(row.get("hs_code"), fromSnapshot.hsCode(), label);
+            assertEquals(row.get("hs_path"), fromSnapshot.hsPath(), label);
+            assertEquals(row.get("rate_percent"), fromSnapshot.ratePercent(), label);
+            assertEquals(row.get("tariff_hs_code"), fromSnapshot.tariffHsCode(), label);
+            assertEquals(row.get("tax_type"), fromSnapshot.taxType(), label);
+            assertEquals(row.get("tax_rate_percent"), fromSnapshot.taxRatePercent(), label);
+            assertEquals(row.get("tariff_id"), fromSnapshot.tariffId(), label);
+            assertEquals(row.get("tax_rule_id"), fromSnapshot.taxRuleId(), label);
+        }
+    }
 
+    @Test
+    void calculateLandedCost_NationalLineFallsBackToSubheadingRate() {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", "SG");
+        request.put("importer", "US");
+        request.put("hsCode", "0101 2100 10");
+        request.put("agreement", "MFN");
+        request.put("goods_value", 1000.0);
+        request.put("effectiveDate", "2025-10-28");
+
+        Map<String, Object> result = calculatorService.calculateLandedCost(request);
+
+        assertTrue((Boolean) result.get("ok"));
+        assertEquals("0101210010", result.get("hs_code"));
+        assertEquals("010121", result.get("tariff_hs_code"));
+        assertEquals(17.76, ((Number) result.get("rate_percent")).doubleValue(), 0.01);
+    }
+
+    @Test
+    void lookupReportsTheIntervalItsAnswerHoldsFor() {
+        // SG->US 010121 MFN: 18.20 until 2025-01-13, 17.76 to 2025-12-31, 17.03 open-ended
+        Map<String, Object> row = jdbc.queryForMap(CalculatorSql.LANDED_COST_LOOKUP,
+                "SG", "US", "010121", null, "MFN", java.sql.Date.valueOf("2025-10-28"));
+        assertEquals(java.sql.Date.valueOf("2025-01-14"), row.get("valid_from"));
+        assertEquals(java.sql.Date.valueOf("2025-12-31"), row.get("valid_to"));
+
+        row = jdbc.queryForMap(CalculatorSql.LANDED_COST_LOOKUP,
+                "SG", "US", "010121", null, "MFN", java.sql.Date.valueOf("2030-01-01"));
+        assertEquals(java.sql.Date.valueOf("2026-01-01"), row.get("valid_from"));
+        assertNull(row.get("valid_to"));
+        assertNotNull(row.get("data_version"));
+    }
+
+    @Test
+    void repeatedQuoteIsCachedUntilItsLaneChanges() {
+        tariffSnapshots.refresh();
+        Map<String, Object> changed = quote("SG", "US", "010129", "MFN", 2468.0);
+        Map<String, Object> untouched = quote("SG", "JP", "010121", "CPTPP", 2468.0);
+        assertEquals(5.0, ((Number) calculatorService.calculateLandedCost(changed).get("rate_percent")).doubleValue(), 0.001);
+        calculatorService.calculateLandedCost(untouched);
+
+        // same quote with the exporter by name: one key, answered from the cache with this caller's input echoed
+        long hits = landedCostCache.getHitCount();
+        Map<String, Object> byName = quote("Singapore", "US", "010129", "MFN", 2468.0);
+        Map<String, Object> cached = calculatorService.calculateLandedCost(byName);
+        assertEquals(hits + 1, landedCostCache.getHitCount());
+        assertEquals("Singapore", cached.get("exporter_input"));
+        assertEquals("SG", cached.get("exporter_code"));
+
+        jdbc.update("UPDATE tariff_rates SET rate_percent = 7.5 WHERE id = 6");
+        try {
+            tariffSnapshots.refresh();
+            long invalidated = landedCostCache.getInvalidationCount();
+
+            Map<String, Object> requoted = calculatorService.calculateLandedCost(changed);
+            assertEquals(7.5, ((Number) requoted.get("rate_percent")).doubleValue(), 0.001);
+            assertTrue(landedCostCache.getInvalidationCount() > invalidated);
+
+            hits = landedCostCache.getHitCount();
+            calculatorService.calculateLandedCost(untouched);
+            assertEquals(hits + 1, landedCostCache.getHitCount()); // other lanes survive the reload
+        } finally {
+            jdbc.update("UPDATE tariff_rates SET rate_percent = 5.0 WHERE id = 6");
+            tariffSnapshots.refresh();
+        }
+    }
+
+    @Test
+    void asOfCalculationUsesTheRatesKnownAtThatTime() {
+        // SG->CN 090111 MFN has no rate in 2031 until one is added
+        OffsetDateTime beforeCreate = databaseNow();
+        int id = ((Number) tariffAdminService.createTariff(new TariffAdminRequest(
+                "SG", "CN", "090111", "MFN", new BigDecimal("3.0"), "2031-01-01", null)).get("id")).intValue();
+        OffsetDateTime afterCreate = databaseNow();
+        try {
+            tariffAdminService.updateTariff(id, new TariffAdminRequest(
+                    "SG", "CN", "090111", "MFN", new BigDecimal("3.5"), "2031-01-01", null));
+            OffsetDateTime afterUpdate = databaseNow();
+            tariffAdminService.deleteTariff(id);
+
+            assertEquals(3.0, asOfRate(afterCreate), 0.001);
+            assertEquals(3.5, asOfRate(afterUpdate), 0.001);
+            assertThrows(IllegalStateException.class, () -> asOfRate(beforeCreate));
+            assertThrows(IllegalStateException.class, () -> asOfRate(databaseNow()));
+
+            List<Map<String, Object>> history = tariffAdminService.history(id);
+            assertEquals(2, history.size());
+            assertNotNull(history.get(0).get("system_to"));
+            assertNotNull(history.get(1).get("system_to")); // deleted, so no version is current
+        } finally {
+            jdbc.update("DELETE FROM tariff_rates WHERE id = ?", id);
+        }
+    }
+
+    @Test
+    void asOfLookupWithoutHistoryChangesMatchesTheCurrentLookup() {
+        Map<String, Object> current = jdbc.queryForMap(CalculatorSql.LANDED_COST_LOOKUP,
+                "SG", "US", "010121", null, "MFN", java.sql.Date.valueOf("2025-10-28"));
+        Map<String, Object> asOf = jdbc.queryForMap(CalculatorSql.LANDED_COST_LOOKUP_AS_OF,
+                "SG", "US", "010121", null, "MFN", java.sql.Date.valueOf("2025-10-28"), databaseNow());
+        // as-of reports no data_version, it would be the current one rather than the answer's
+        assertNull(asOf.remove("data_version"));
+        current.remove("data_version");
+        assertEquals(current, asOf);
+    }
+
+    private double asOfRate(OffsetDateTime asOf) {
+        Map<String, Object> request = quote("SG", "CN", "090111", "MFN", 1000.0);
+        request.put("effectiveDate", "2031-06-01");
+        request.put("asOf", asOf.toString());
+        Map<String, Object> result = calculatorService.calculateLandedCost(request);
+        assertEquals(asOf.toString(), result.get("as_of"));
+        return ((Number) result.get("rate_percent")).doubleValue();
+    }
+
+    private OffsetDateTime databaseNow() {
+        return jdbc.queryForObject("SELECT clock_timestamp()", OffsetDateTime.class);
+    }
+
+    private static Map<String, Object> quote(String exporter, String importer, String hsCode, String agreement,
+                                             double goodsValue) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", exporter);
+        request.put("importer", importer);
+        request.put("hsCode", hsCode);
+        request.put("agreement", agreement);
+        request.put("goods_value", goodsValue);
+        request.put("effectiveDate", "2025-10-28");
+        return request;
+    }
+
+    // Observation timers are only registered on first use, and split by lookup source
+    private long timerCount(String name, String tagKey, String tagValue) {
+        return meterRegistry.find(name).tag(tagKey, tagValue).timers().stream()
+                .mapToLong(timer -> timer.count())
+                .sum();
+    }
+}
@@ -0,0 +1,315 @@
+package com.ratewise.services;
+
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffRateColumns;
+import com.ratewise.snapshot.TariffSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistryAssert;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CalculatorServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    @Mock
+    private TariffSnapshotService tariffSnapshots; // no snapshot loaded unless stubbed
+
+    @Mock
+    private CalculationLog calculationLog;
+
+    private TestObservationRegistry observationRegistry;
+    private LandedCostCache resultCache;
+    private RateComponentCache rateComponents; // holds nothing until checkDataVersion() has run
+    private CalculatorService calculatorService;
+
+    @BeforeEach
+    void setUp() {
+        observationRegistry = TestObservationRegistry.create();
+        resultCache = new LandedCostCache(new LandedCostCacheProperties(), tariffSnapshots);
+        rateComponents = new RateComponentCache(new RateComponentCacheProperties(), jdbc);
+        calculatorService = new CalculatorService(jdbc, new SimpleMeterRegistry(), observationRegistry, tariffSnapshots,
+                resultCache, rateComponents, calculationLog);
+    }
+
+    private static Map<String, Object> request() {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", "SG");
+        request.put("importer", "US");
+        request.put("hsCode", "010121");
+        request.put("agreement", "MFN");
+        request.put("goods_value", 1000.0);
+        request.put("effectiveDate", "2025-10-28");
+        return request;
+    }
+
+    // Stubs the single lookup query with one row of these columns (missing ones are NULL)
+    @SuppressWarnings("unchecked")
+    private void stubLookup(Map<String, Object> columns) {
+        stubLookup(CalculatorSql.LANDED_COST_LOOKUP, columns);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubLookup(String sql, Map<String, Object> columns) {
+        when(jdbc.queryForObject(eq(sql), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(inv -> {
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getString(anyString())).thenAnswer(col -> (String) columns.get(col.<String>getArgument(0)));
+                    when(rs.getObject(anyString())).thenAnswer(col -> columns.get(col.<String>getArgument(0)));
+                    when(rs.getObject(anyString(), eq(LocalDate.class))).thenAnswer(col -> columns.get(col.<String>getArgument(0)));
+                    when(rs.getLong(anyString())).thenAnswer(col -> columns.getOrDefault(col.<String>getArgument(0), 0L));
+                    return ((RowMapper<?>) inv.getArgument(1)).mapRow(rs, 0);
+                });
+    }
+
+    private static Map<String, Object> lookupRow() {
+        Map<String, Object> row = new HashMap<>();
+        row.put("exporter_code", "SG");
+        row.put("importer_code", "US");
+        row.put("customs_basis", "FOB");
+        row.put("hs_code", "010121");
+        row.put("hs_path", "explicit");
+        row.put("rate_percent", new BigDecimal("5.0"));
+        row.put("tax_type", "SALES");
+        row.put("tax_rate_percent", BigDecimal.ZERO);
+        return row;
+    }
+
+    @Test
+    void calculateLandedCost_ObservesLookupAndComputeUnderOneCalculation() {
+        stubLookup(lookupRow());
+
+        Map<String, Object> response = calculatorService.calculateLandedCost(request());
+
+        assertEquals(Boolean.TRUE, response.get("ok"));
+        assertEquals(1050.0, (Double) response.get("total_landed_cost"), 0.001);
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("ratewise.calculator.landed_cost")
+                .that()
+                .hasLowCardinalityKeyValue("outcome", "ok")
+                .hasBeenStopped();
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("ratewise.calculator.stage")
+                .that()
+                .hasLowCardinalityKeyValue("stage", "lookup")
+                .hasParentObservationContextMatching(parent -> "ratewise.calculator.landed_cost".equals(parent.getName()));
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasAnObservationWithAKeyValue("stage", "compute")
+                .hasNumberOfObservationsWithNameEqualTo("ratewise.calculator.stage", 2);
+        // one round trip for the whole calculation
+        verify(jdbc).queryForObject(eq(CalculatorSql.LANDED_COST_LOOKUP), any(RowMapper.class),
+                eq("SG"), eq("US"), eq("010121"), isNull(), eq("MFN"), eq(java.sql.Date.valueOf("2025-10-28")));
+        verifyNoMoreInteractions(jdbc);
+    }
+
+    private static TariffDataset snapshot() {
+        return new TariffDataset(7, Instant.now(),
+                List.of(new TariffDataset.Country(1, "SG", "Singapore", "CIF"),
+                        new TariffDataset.Country(2, "US", "United States", "FOB")),
+                List.of(new TariffDataset.HsCode(10, "010121", "Live horses")),
+                List.of(new TariffDataset.Agreement(20, "MFN", "Most Favoured Nation")),
+                TariffRateColumns.of(List.of(
+                        new TariffDataset.TariffRate(100, 1, 2, 10, 20, new BigDecimal("5.0"), LocalDate.of(2020, 1, 1), null))),
+                List.of(new TariffDataset.TaxRule(200, 2, "SALES", BigDecimal.ZERO, LocalDate.of(2020, 1, 1), null)));
+    }
+
+    @Test
+    void calculateLandedCost_LoadedSnapshotAnswersWithoutDatabase() {
+        TariffDataset dataset = snapshot();
+        when(tariffSnapshots.current()).thenReturn(dataset);
+
+        Map<String, Object> response = calculatorService.calculateLandedCost(request());
+
+        assertEquals(Boolean.TRUE, response.get("ok"));
+        assertEquals(1050.0, (Double) response.get("total_landed_cost"), 0.001);
+        assertEquals("FOB", response.get("customs_basis"));
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("ratewise.calculator.stage")
+                .that()
+                .hasLowCardinalityKeyValue("stage", "lookup")
+                .hasLowCardinalityKeyValue("source", "snapshot");
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void calculateLandedCost_RepeatedQuoteIsAnsweredFromResultCache() {
+        when(tariffSnapshots.current()).thenReturn(snapshot());
+        Map<String, Object> first = calculatorService.calculateLandedCost(request());
+
+        Map<String, Object> again = request();
+        again.put("exporter", " singapore ");
+        again.put("agreement", "mfn");
+        again.put("goods_value", 1000); // same amount as 1000.0
+        Map<String, Object> second = calculatorService.calculateLandedCost(again);
+
+        assertEquals(1, resultCache.getHitCount());
+        assertEquals(" singapore ", second.get("exporter_input"));
+        assertEquals(first.get("total_landed_cost"), second.get("total_landed_cost"));
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasNumberOfObservationsWithNameEqualTo("ratewise.calculator.stage", 2); // lookup + compute, once
+
+        Map<String, Object> otherValue = request();
+        otherValue.put("goods_value", 1000.01);
+        calculatorService.calculateLandedCost(otherValue);
+        assertEquals(1, resultCache.getHitCount());
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void calculateLandedCost_OtherDatesInTheValidityIntervalSkipTheDatabase() {
+        when(jdbc.queryForObject(startsWith("SELECT version FROM data_version"), eq(Long.class))).thenReturn(4L);
+        rateComponents.checkDataVersion();
+        Map<String, Object> row = lookupRow();
+        row.put("valid_from", LocalDate.of(2025, 1, 14));
+        row.put("valid_to", LocalDate.of(2025, 12, 31));
+        row.put("data_version", 4L);
+        stubLookup(row);
+
+        calculatorService.calculateLandedCost(request());
+        Map<String, Object> sameInterval = request();
+        sameInterval.put("effectiveDate", "2025-03-01");
+        sameInterval.put("goods_value", 500.0);
+        Map<String, Object> response = calculatorService.calculateLandedCost(sameInterval);
+
+        assertEquals(525.0, (Double) response.get("total_landed_cost"), 0.001);
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasAnObservationWithAKeyValue("source", "cache");
+        verify(jdbc, times(1)).queryForObject(eq(CalculatorSql.LANDED_COST_LOOKUP), any(RowMapper.class), any(Object[].class));
+
+        Map<String, Object> nextInterval = request();
+        nextInterval.put("effectiveDate", "2026-01-05");
+        calculatorService.calculateLandedCost(nextInterval);
+        verify(jdbc, times(2)).queryForObject(eq(CalculatorSql.LANDED_COST_LOOKUP), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void calculateLandedCost_LookupReadAtAnotherDataVersionIsNotKept() {
+        when(jdbc.queryForObject(startsWith("SELECT version FROM data_version"), eq(Long.class))).thenReturn(5L);
+        rateComponents.checkDataVersion();
+        Map<String, Object> row = lookupRow();
+        row.put("data_version", 4L); // e.g. a replica that has not caught up yet
+        stubLookup(row);
+
+        calculatorService.calculateLandedCost(request());
+        calculatorService.calculateLandedCost(request());
+
+        verify(jdbc, times(2)).queryForObject(eq(CalculatorSql.LANDED_COST_LOOKUP), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void calculateLandedCost_AsOfReadsHistoryAndBypassesSnapshotAndCaches() {
+        stubLookup(CalculatorSql.LANDED_COST_LOOKUP_AS_OF, lookupRow());
+        Map<String, Object> request = request();
+        request.put("asOf", "2025-10-01T08:00:00Z");
+
+        Map<String, Object> response = calculatorService.calculateLandedCost(request);
+
+        assertEquals(Boolean.TRUE, response.get("ok"));
+        assertEquals("2025-10-01T08:00Z", response.get("as_of"));
+        assertTrue(response.containsKey("data_version"));
+        assertNull(response.get("data_version"));
+        assertFalse(CalculatorSql.LANDED_COST_LOOKUP_AS_OF.contains("FROM data_version"));
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasAnObservationWithAKeyValue("source", "history");
+        verifyNoInteractions(tariffSnapshots);
+        verify(jdbc, never()).queryForObject(eq(CalculatorSql.LANDED_COST_LOOKUP), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void calculateLandedCost_AsOfMustBeATimestampWithOffset() {
+        Map<String, Object> request = request();
+        request.put("asOf", "2025-10-01");
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> calculatorService.calculateLandedCost(request));
+        assertTrue(ex.getMessage().contains("asOf"));
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void calculateLandedCost_HsCodeMustBeAnHsLevel() {
+        Map<String, Object> request = request();
+        request.put("hsCode", "01012");
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> calculatorService.calculateLandedCost(request));
+        assertTrue(ex.getMessage().contains("2, 4, 6, 8 or 10"));
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void calculateLandedCost_NullColumnsPickTheError() {
+        Map<String, Object> unknownImporter = lookupRow();
+        unknownImporter.put("importer_code", null);
+        stubLookup(unknownImporter);
+        assertEquals("Invalid country input.", calculatorService.calculateLandedCost(request()).get("error"));
+
+        Map<String, Object> noHsMatch = lookupRow();
+        noHsMatch.put("hs_code", null);
+        noHsMatch.put("hs_path", null);
+        stubLookup(noHsMatch);
+        Map<String, Object> byDescription = request();
+        byDescription.remove("hsCode");
+        byDescription.put("productDescription", "unicorns");
+        assertTrue(((String) calculatorService.calculateLandedCost(byDescription).get("error")).contains("no match found"));
+
+        Map<String, Object> noTax = lookupRow();
+        noTax.put("tax_rate_percent", null);
+        stubLookup(noTax);
+        assertThrows(IllegalStateException.class, () -> calculatorService.calculateLandedCost(request()));
+    }
+
+    @Test
+    void calculateLandedCost_MarksMissingTariffAsError() {
+        Map<String, Object> noTariff = lookupRow();
+        noTariff.put("rate_percent", null);
+        stubLookup(noTariff);
+
+        assertThrows(IllegalStateException.class, () -> calculatorService.calculateLandedCost(request()));
+
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("ratewise.calculator.landed_cost")
+                .that()
+                .hasLowCardinalityKeyValue("outcome", "error")
+                .hasError()
+                .hasBeenStopped();
+    }
+
+    @Test
+    void calculateLandedCost_InvalidInputSkipsDatabaseStages() {
+        Map<String, Object> request = request();
+        request.remove("agreement");
+
+        assertEquals(Boolean.FALSE, calculatorService.calculateLandedCost(request).get("ok"));
+
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo("ratewise.calculator.landed_cost")
+                .that()
+                .hasLowCardinalityKeyValue("outcome", "invalid");
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasNumberOfObservationsWithNameEqualTo("ratewise.calculator.stage", 0);
+        verifyNoInteractions(jdbc);
+    }
+}
@@ -0,0 +1,105 @@
+package com.ratewise.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratewise.snapshot.TariffSnapshotProperties;
+import com.ratewise.snapshot.TariffSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parse/plan savings per calculation: the same calculator on one connection with server-side
+ * prepared statements off (prepareThreshold=0) and on the first execution (prepareThreshold=1).
+ * Prints one line per setting. Needs the real database like the other ITs.
+ */
+@SpringBootTest
+class CalculatorSqlBenchmarkIT {
+
+    private static final int WARMUP = 50;
+    private static final int CALCULATIONS = 1000;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @Test
+    void serverPreparedStatementsAreReusedAcrossCalculations() {
+        System.out.printf("%-18s %-16s %-20s%n", "prepareThreshold", "us/calculation", "server prepared");
+
+        run(1); // throwaway round so JIT warm-up does not favour whichever setting runs second
+        Result unprepared = run(0);
+        Result prepared = run(1);
+
+        // the calculator's statement stays prepared on the connection
+        assertEquals(0, unprepared.serverPrepared());
+        assertEquals(1, prepared.serverPrepared()); // the single lookup query
+    }
+
+    private Result run(int prepareThreshold) {
+        String separator = url.contains("?") ? "&" : "?";
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                url + separator + "prepareThreshold=" + prepareThreshold, username, password, true);
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            // snapshot, rate component cache and calculation log off: this measures the SQL path
+            TariffSnapshotProperties snapshotsOff = new TariffSnapshotProperties();
+            snapshotsOff.setEnabled(false);
+            RateComponentCacheProperties rateComponentsOff = new RateComponentCacheProperties();
+            rateComponentsOff.setEnabled(false);
+            CalculationLogProperties calculationLogOff = new CalculationLogProperties();
+            calculationLogOff.setEnabled(false);
+            TariffSnapshotService tariffSnapshots =
+                    new TariffSnapshotService(snapshotsOff, jdbc, new DataSourceTransactionManager(dataSource));
+            CalculatorService calculator = new CalculatorService(jdbc, new SimpleMeterRegistry(), ObservationRegistry.NOOP,
+                    tariffSnapshots, new LandedCostCache(new LandedCostCacheProperties(), tariffSnapshots),
+                    new RateComponentCache(rateComponentsOff, jdbc),
+                    new CalculationLog(calculationLogOff, jdbc, new ObjectMapper()));
+
+            for (int i = 0; i < WARMUP; i++) {
+                assertTrue((Boolean) calculator.calculateLandedCost(request()).get("ok"));
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < CALCULATIONS; i++) {
+                calculator.calculateLandedCost(request());
+            }
+            double microsPerCalculation = (System.nanoTime() - start) / 1_000.0 / CALCULATIONS;
+
+            Integer serverPrepared = jdbc.queryForObject(
+                    "SELECT count(*) FROM pg_prepared_statements WHERE statement NOT LIKE '%pg_prepared_statements%'",
+                    Integer.class);
+
+            System.out.printf("%-18d %-16.1f %-20d%n", prepareThreshold, microsPerCalculation, serverPrepared);
+            return new Result(microsPerCalculation, serverPrepared);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    private static Map<String, Object> request() {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("exporter", "SG");
+        request.put("importer", "US");
+        request.put("hsCode", "010121");
+        request.put("agreement", "MFN");
+        request.put("goods_value", 1000.0);
+        request.put("effectiveDate", "2025-10-28");
+        return request;
+    }
+
+    private record Result(double microsPerCalculation, int serverPrepared) {}
+}
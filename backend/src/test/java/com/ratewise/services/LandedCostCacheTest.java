@@ -0,0 +1,168 @@
+package com.ratewise.services;
+
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffRateColumns;
+import com.ratewise.snapshot.TariffSnapshotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LandedCostCacheTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    private static final LocalDate ON = LocalDate.of(2025, 10, 28);
+
+    @Mock
+    private TariffSnapshotService tariffSnapshots;
+
+    private LandedCostCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new LandedCostCache(new LandedCostCacheProperties(), tariffSnapshots);
+    }
+
+    private static List<TariffDataset.TariffRate> rates() {
+        List<TariffDataset.TariffRate> rates = new ArrayList<>();
+        rates.add(new TariffDataset.TariffRate(1, 1, 2, 10, 20, new BigDecimal("5.0"), FROM, null));
+        rates.add(new TariffDataset.TariffRate(2, 1, 3, 10, 20, new BigDecimal("6.0"), FROM, null));
+        rates.add(new TariffDataset.TariffRate(3, 1, 2, 12, 20, new BigDecimal("9.0"), FROM, null));
+        return rates;
+    }
+
+    private static List<TariffDataset.TaxRule> taxRules() {
+        List<TariffDataset.TaxRule> taxRules = new ArrayList<>();
+        taxRules.add(new TariffDataset.TaxRule(1, 2, "SALES", BigDecimal.ZERO, FROM, null));
+        taxRules.add(new TariffDataset.TaxRule(2, 3, "GST", new BigDecimal("10"), FROM, null));
+        return taxRules;
+    }
+
+    private static TariffDataset dataset(long version, List<TariffDataset.HsCode> hsCodes,
+                                         List<TariffDataset.TariffRate> rates, List<TariffDataset.TaxRule> taxRules) {
+        return new TariffDataset(version, Instant.now(),
+                List.of(new TariffDataset.Country(1, "SG", "Singapore", "CIF"),
+                        new TariffDataset.Country(2, "US", "United States", "FOB"),
+                        new TariffDataset.Country(3, "AU", "Australia", "FOB")),
+                hsCodes,
+                List.of(new TariffDataset.Agreement(20, "MFN", "Most Favoured Nation")),
+                TariffRateColumns.of(rates), taxRules);
+    }
+
+    private static List<TariffDataset.HsCode> hsCodes() {
+        return List.of(new TariffDataset.HsCode(10, "010121", "Live horses"),
+                new TariffDataset.HsCode(11, "0101", "Horses"),
+                new TariffDataset.HsCode(12, "020110", "Beef"));
+    }
+
+    private LandedCostCache.Key key(TariffDataset dataset, String importer, String hsCode) {
+        return cache.key(dataset, "SG", importer, hsCode, null, "MFN", ON, 1000.0, 0.0, 0.0, 1);
+    }
+
+    // Serve from `dataset` and cache one result for each of SG->US 010121, SG->AU 010121, SG->US 020110
+    private void fill(TariffDataset dataset) {
+        when(tariffSnapshots.current()).thenReturn(dataset);
+        for (String[] quote : new String[][]{{"US", "010121"}, {"AU", "010121"}, {"US", "020110"}}) {
+            LandedCostCache.Key key = key(dataset, quote[0], quote[1]);
+            assertNull(cache.get(key, dataset));
+            cache.put(key, dataset, Map.of("ok", true, "hs_code", quote[1]));
+        }
+    }
+
+    private boolean cached(TariffDataset dataset, String importer, String hsCode) {
+        return cache.get(key(dataset, importer, hsCode), dataset) != null;
+    }
+
+    @Test
+    void keyIsCanonical() {
+        TariffDataset dataset = dataset(1, hsCodes(), rates(), taxRules());
+
+        assertEquals(cache.key(dataset, "sg", "United States", "010121", null, "MFN", ON, 1000.0, 0.0, 0.0, 1),
+                cache.key(dataset, "Singapore", "US", "010121", null, "MFN", ON, 1000.0, 0.0, 0.0, 1));
+        assertNotEquals(cache.key(dataset, "SG", "US", "010121", null, "MFN", ON, 1000.0, 0.0, 0.0, 1),
+                cache.key(dataset, "SG", "US", "010121", null, "MFN", ON, 1000.0, 0.0, 0.0, 2));
+        assertNull(cache.key(dataset, "SG", "Atlantis", "010121", null, "MFN", ON, 1000.0, 0.0, 0.0, 1));
+        assertNull(cache.key(null, "SG", "US", "010121", null, "MFN", ON, 1000.0, 0.0, 0.0, 1));
+    }
+
+    @Test
+    void rateChangeDropsOnlyThatLane() {
+        fill(dataset(1, hsCodes(), rates(), taxRules()));
+
+        List<TariffDataset.TariffRate> changed = rates();
+        changed.set(0, new TariffDataset.TariffRate(1, 1, 2, 10, 20, new BigDecimal("7.5"), FROM, null));
+        TariffDataset reloaded = dataset(2, hsCodes(), changed, taxRules());
+        when(tariffSnapshots.current()).thenReturn(reloaded);
+
+        assertFalse(cached(reloaded, "US", "010121"));
+        assertTrue(cached(reloaded, "AU", "010121"));
+        assertTrue(cached(reloaded, "US", "020110"));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    void headingRateDropsTheCodesUnderIt() {
+        fill(dataset(1, hsCodes(), rates(), taxRules()));
+
+        List<TariffDataset.TariffRate> withHeading = rates();
+        withHeading.add(new TariffDataset.TariffRate(4, 1, 2, 11, 20, new BigDecimal("1.0"), FROM, null));
+        TariffDataset reloaded = dataset(2, hsCodes(), withHeading, taxRules());
+        when(tariffSnapshots.current()).thenReturn(reloaded);
+
+        assertFalse(cached(reloaded, "US", "010121"));
+        assertTrue(cached(reloaded, "US", "020110"));
+        assertTrue(cached(reloaded, "AU", "010121"));
+    }
+
+    @Test
+    void taxChangeDropsTheImporter() {
+        fill(dataset(1, hsCodes(), rates(), taxRules()));
+
+        List<TariffDataset.TaxRule> changed = taxRules();
+        changed.set(1, new TariffDataset.TaxRule(2, 3, "GST", new BigDecimal("12"), FROM, null));
+        TariffDataset reloaded = dataset(2, hsCodes(), rates(), changed);
+        when(tariffSnapshots.current()).thenReturn(reloaded);
+
+        assertFalse(cached(reloaded, "AU", "010121"));
+        assertTrue(cached(reloaded, "US", "010121"));
+    }
+
+    @Test
+    void referenceDataChangeDropsEverything() {
+        fill(dataset(1, hsCodes(), rates(), taxRules()));
+
+        List<TariffDataset.HsCode> renamed = new ArrayList<>(hsCodes());
+        renamed.set(2, new TariffDataset.HsCode(12, "020110", "Beef, fresh"));
+        TariffDataset reloaded = dataset(2, renamed, rates(), taxRules());
+        when(tariffSnapshots.current()).thenReturn(reloaded);
+
+        assertFalse(cached(reloaded, "AU", "010121"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void resultFromThePreviousDatasetIsNotStoredAfterAReload() {
+        TariffDataset first = dataset(1, hsCodes(), rates(), taxRules());
+        fill(first);
+        TariffDataset reloaded = dataset(2, hsCodes(), rates(), taxRules());
+        when(tariffSnapshots.current()).thenReturn(reloaded);
+        assertTrue(cached(reloaded, "US", "010121")); // nothing changed, entries carried over
+
+        LandedCostCache.Key late = cache.key(first, "SG", "US", "010121", null, "MFN", ON, 5.0, 0.0, 0.0, 1);
+        cache.put(late, first, Map.of("ok", true, "hs_code", "010121"));
+
+        assertNull(cache.get(late, reloaded));
+    }
+}
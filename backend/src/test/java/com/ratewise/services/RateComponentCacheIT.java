@@ -0,0 +1,84 @@
+package com.ratewise.services;
+
+import com.ratewise.dto.TariffAdminRequest;
+import com.ratewise.events.TariffOutbox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RateComponentCacheIT {
+
+    private static final LocalDate DAY = LocalDate.of(2030, 6, 1);
+
+    @Autowired
+    private TariffAdminService tariffAdminService;
+
+    @Autowired
+    private TariffOutbox outbox;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private Integer tariffId;
+
+    @AfterEach
+    void cleanup() {
+        if (tariffId != null) {
+            jdbc.update("DELETE FROM tariff_rates WHERE id = ?", tariffId);
+        }
+    }
+
+    @Test
+    void adminTariffChangeDropsOnlyItsLane() {
+        RateComponentCache cache = new RateComponentCache(new RateComponentCacheProperties(), jdbc, outbox);
+        cache.checkDataVersion();
+        RateComponentCache.Key singaporeUs = cache.key("sg", "us", "010121", null, "MFN");
+        RateComponentCache.Key singaporeJapan = cache.key("sg", "jp", "010121", null, "MFN");
+        RateComponentCache.Key singaporeJapanCptpp = cache.key("sg", "jp", "010121", null, "CPTPP");
+        cache.put(singaporeUs, lookup("SG", "US"));
+        cache.put(singaporeJapan, lookup("SG", "JP"));
+        cache.put(singaporeJapanCptpp, lookup("SG", "JP"));
+
+        Map<String, Object> created = tariffAdminService.createTariff(
+                new TariffAdminRequest("SG", "JP", "010121", "MFN", new BigDecimal("2.5"), "2031-01-01", null));
+        tariffId = ((Number) created.get("id")).intValue();
+        cache.checkDataVersion();
+
+        assertNull(cache.get(singaporeJapan, DAY));
+        assertNotNull(cache.get(singaporeUs, DAY));
+        assertNotNull(cache.get(singaporeJapanCptpp, DAY));
+        assertEquals(1, cache.getLaneInvalidationCount());
+        assertEquals(1, cache.getFullInvalidationCount()); // the first check
+    }
+
+    @Test
+    void changeOutsideTheOutboxDropsEverything() {
+        RateComponentCache cache = new RateComponentCache(new RateComponentCacheProperties(), jdbc, outbox);
+        cache.checkDataVersion();
+        RateComponentCache.Key singaporeUs = cache.key("sg", "us", "010121", null, "MFN");
+        cache.put(singaporeUs, lookup("SG", "US"));
+
+        // fires the statement-level data_version trigger without changing anything
+        jdbc.update("UPDATE tax_rules SET id = id WHERE false");
+        cache.checkDataVersion();
+
+        assertNull(cache.get(singaporeUs, DAY));
+        assertEquals(0, cache.getLaneInvalidationCount());
+        assertEquals(2, cache.getFullInvalidationCount());
+    }
+
+    private CalculatorService.LandedCostLookup lookup(String exporter, String importer) {
+        long version = jdbc.queryForObject("SELECT version FROM data_version WHERE id = 1", Long.class);
+        return new CalculatorService.LandedCostLookup(exporter, importer, "FOB", "010121", "explicit",
+                new BigDecimal("5"), "010121", "GST", new BigDecimal("9"), null, null, null, null, version);
+    }
+}
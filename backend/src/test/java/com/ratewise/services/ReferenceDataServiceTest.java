@@ -0,0 +1,127 @@
+package com.ratewise.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReferenceDataServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final List<Runnable> background = new ArrayList<>();
+    private ReferenceDataService service;
+
+    private static final List<Map<String, Object>> SG = List.of(
+            Map.of("country_code", "SG", "country_name", "Singapore", "customs_basis", "CIF"));
+    private static final List<Map<String, Object>> SG_US = List.of(
+            Map.of("country_code", "SG", "country_name", "Singapore", "customs_basis", "CIF"),
+            Map.of("country_code", "US", "country_name", "United States", "customs_basis", "FOB"));
+
+    @BeforeEach
+    void setUp() {
+        ReferenceDataProperties properties = new ReferenceDataProperties();
+        properties.setRefreshAfterMs(30_000);
+        properties.setExpireAfterMs(600_000);
+        service = new ReferenceDataService(properties, jdbc, transactionManager, background::add, clock::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void freshListIsServedFromMemory() {
+        when(jdbc.queryForList(startsWith("SELECT country_code"))).thenReturn(SG);
+
+        assertEquals(SG, service.countries());
+        advanceSeconds(10);
+        assertEquals(SG, service.countries());
+
+        verify(jdbc, times(1)).queryForList(startsWith("SELECT country_code"));
+        assertEquals(1, service.getLoadCount());
+        assertEquals(1, service.getFreshCount());
+    }
+
+    @Test
+    void staleListIsServedWhileOneBackgroundRefreshRuns() {
+        when(jdbc.queryForList(startsWith("SELECT country_code"))).thenReturn(SG, SG_US);
+        service.countries();
+
+        advanceSeconds(60);
+        assertEquals(SG, service.countries());
+        assertEquals(SG, service.countries());
+        assertEquals(1, background.size(), "one refresh for both stale requests");
+
+        background.remove(0).run();
+        assertEquals(SG_US, service.countries());
+        assertEquals(2, service.getStaleCount());
+        assertEquals(1, service.getFreshCount());
+    }
+
+    @Test
+    void failedRefreshKeepsTheStaleCopy() {
+        when(jdbc.queryForList(startsWith("SELECT country_code")))
+                .thenReturn(SG)
+                .thenThrow(new IllegalStateException("db down"));
+        service.countries();
+
+        advanceSeconds(60);
+        service.countries();
+        background.remove(0).run();
+
+        assertEquals(SG, service.countries());
+        assertEquals(1, service.getRefreshFailures());
+        assertEquals(1, background.size(), "the next stale request retries");
+    }
+
+    @Test
+    void expiredListIsReloadedBeforeAnswering() {
+        when(jdbc.queryForList(startsWith("SELECT country_code"))).thenReturn(SG, SG_US);
+        service.countries();
+
+        advanceSeconds(601);
+        assertEquals(SG_US, service.countries());
+        assertTrue(background.isEmpty());
+    }
+
+    @Test
+    void countryIsLookedUpInTheCachedList() {
+        when(jdbc.queryForList(startsWith("SELECT country_code"))).thenReturn(SG_US);
+
+        assertEquals("United States", service.country("US").get("country_name"));
+        assertThrows(EmptyResultDataAccessException.class, () -> service.country("ZZ"));
+        verify(jdbc, times(1)).queryForList(startsWith("SELECT country_code"));
+    }
+
+    @Test
+    void listsAreCachedSeparately() {
+        when(jdbc.queryForList(startsWith("SELECT country_code"))).thenReturn(SG);
+        when(jdbc.queryForList(startsWith("SELECT hs_code"))).thenReturn(List.of(Map.of("hs_code", "010121")));
+
+        assertEquals(SG, service.countries());
+        assertEquals("010121", service.hsCodes().get(0).get("hs_code"));
+        assertEquals(SG, service.countries());
+        assertEquals(2, service.getLoadCount());
+    }
+}
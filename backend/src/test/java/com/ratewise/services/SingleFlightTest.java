@@ -0,0 +1,119 @@
+package com.ratewise.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, Integer> flights = new SingleFlight<>();
+
+    @Test
+    void concurrentLoadsOfOneKeyRunTheLoaderOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<Integer> leader = pool.submit(() -> flights.load("k", () -> {
+                runs.incrementAndGet();
+                await(release);
+                return 42;
+            }));
+            while (runs.get() == 0) Thread.onSpinWait();
+
+            Future<?>[] waiters = new Future<?>[7];
+            for (int i = 0; i < waiters.length; i++) {
+                waiters[i] = pool.submit(() -> flights.load("k", () -> {
+                    runs.incrementAndGet();
+                    return -1;
+                }));
+            }
+            // let the waiters reach the running load before it finishes
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals(42, leader.get(5, TimeUnit.SECONDS));
+            for (Future<?> waiter : waiters) {
+                assertEquals(42, waiter.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+        assertEquals(1, flights.getLoadCount());
+        assertEquals(7, flights.getCoalescedCount());
+    }
+
+    @Test
+    void waitersGetTheLoadersException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = pool.submit(() -> flights.load("k", () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("db down");
+            }));
+            started.await();
+            Future<Integer> waiter = pool.submit(() -> flights.load("k", () -> 1));
+            Thread.sleep(100);
+            release.countDown();
+
+            Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception waiterFailure = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, leaderFailure.getCause());
+            assertInstanceOf(IllegalStateException.class, waiterFailure.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void waiterLoadsItselfWhenTheSharedResultIsNotUsable() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = pool.submit(() -> flights.load("k", () -> {
+                started.countDown();
+                await(release);
+                return 1;
+            }));
+            started.await();
+            Future<Integer> waiter = pool.submit(() -> flights.load("k", () -> 2, shared -> shared == 2));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+            assertEquals(2, waiter.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(2, flights.getLoadCount());
+        assertEquals(0, flights.getCoalescedCount());
+    }
+
+    @Test
+    void nothingIsKeptOnceALoadFinishes() {
+        assertEquals(1, flights.load("k", () -> 1));
+        assertEquals(2, flights.load("k", () -> 2));
+        assertEquals(2, flights.getLoadCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
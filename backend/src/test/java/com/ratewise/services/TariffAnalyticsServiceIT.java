@@ -0,0 +1,86 @@
+package com.ratewise.services;
+
+import com.ratewise.services.TariffAnalyticsService.Filter;
+import com.ratewise.services.TariffAnalyticsService.GroupBy;
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffSnapshotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the snapshot scan and the SQL push-down must give the same answers on the seeded data
+@SpringBootTest
+class TariffAnalyticsServiceIT {
+
+    private static final List<Filter> FILTERS = List.of(
+            new Filter(null, null, null, null),
+            new Filter("SG", null, null, null),
+            new Filter(null, "US", "MFN", null),
+            new Filter(null, null, null, "01"),
+            new Filter(null, null, null, "0101*"),
+            new Filter(null, "JP", null, "0201"),
+            new Filter("ZZ", null, null, null));
+
+    private static final List<LocalDate> DATES = List.of(
+            LocalDate.of(2023, 6, 1), LocalDate.of(2024, 6, 1), LocalDate.of(2025, 10, 28), LocalDate.of(2026, 7, 1));
+
+    @Autowired
+    private TariffAnalyticsService analytics;
+
+    @Autowired
+    private TariffSnapshotService tariffSnapshots;
+
+    private TariffDataset dataset;
+
+    @BeforeEach
+    void setUp() {
+        tariffSnapshots.refresh();
+        dataset = tariffSnapshots.current();
+        assertNotNull(dataset);
+    }
+
+    @Test
+    void aggregateMatchesDatabase() {
+        for (GroupBy groupBy : GroupBy.values()) {
+            for (Filter filter : FILTERS) {
+                for (LocalDate date : DATES) {
+                    assertEquals(analytics.aggregateInDatabase(groupBy, filter, date),
+                            analytics.aggregateInMemory(dataset, groupBy, filter, date),
+                            groupBy + " " + filter + " " + date);
+                }
+            }
+        }
+    }
+
+    @Test
+    void rateChangesMatchDatabase() {
+        for (Filter filter : FILTERS) {
+            for (BigDecimal minChange : List.of(BigDecimal.ZERO, new BigDecimal("0.5"))) {
+                for (int i = 0; i + 1 < DATES.size(); i++) {
+                    assertEquals(analytics.rateChangesInDatabase(filter, DATES.get(i), DATES.get(i + 1), minChange, 50),
+                            analytics.rateChangesInMemory(dataset, filter, DATES.get(i), DATES.get(i + 1), minChange, 50),
+                            filter + " " + minChange + " " + DATES.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void aggregateByAgreement() {
+        List<Map<String, Object>> rows = analytics.aggregate(GroupBy.AGREEMENT,
+                new Filter(null, null, null, null), LocalDate.of(2025, 10, 28));
+
+        Map<String, Object> mfn = rows.stream().filter(r -> "MFN".equals(r.get("group_key"))).findFirst().orElseThrow();
+        assertEquals(5L, mfn.get("lane_count"));
+        assertEquals(new BigDecimal("2.5000"), mfn.get("min_rate"));
+        assertEquals(new BigDecimal("17.7600"), mfn.get("max_rate"));
+    }
+}
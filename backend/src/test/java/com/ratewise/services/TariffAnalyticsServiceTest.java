@@ -0,0 +1,167 @@
+package com.ratewise.services;
+
+import com.ratewise.services.TariffAnalyticsService.Filter;
+import com.ratewise.services.TariffAnalyticsService.GroupBy;
+import com.ratewise.snapshot.TariffDataset;
+import com.ratewise.snapshot.TariffRateColumns;
+import com.ratewise.snapshot.TariffSnapshotService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TariffAnalyticsServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 1);
+
+    @Mock
+    private JdbcTemplate jdbc;
+
+    @Mock
+    private TariffSnapshotService tariffSnapshots;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TariffAnalyticsService analytics;
+
+    @BeforeEach
+    void setUp() {
+        analytics = new TariffAnalyticsService(jdbc, tariffSnapshots, transactionManager);
+    }
+
+    private static TariffDataset dataset() {
+        return new TariffDataset(1, Instant.now(),
+                List.of(new TariffDataset.Country(1, "SG", "Singapore", "CIF"),
+                        new TariffDataset.Country(2, "US", "United States", "FOB"),
+                        new TariffDataset.Country(3, "JP", "Japan", "CIF")),
+                List.of(new TariffDataset.HsCode(10, "010121", "Live horses, pure-bred"),
+                        new TariffDataset.HsCode(11, "010129", "Live horses"),
+                        new TariffDataset.HsCode(12, "090111", "Coffee")),
+                List.of(new TariffDataset.Agreement(20, "MFN", "Most Favoured Nation"),
+                        new TariffDataset.Agreement(21, "CPTPP", "CPTPP")),
+                TariffRateColumns.of(List.of(
+                        rate(100, 1, 2, 10, 20, "18.2", "2024-01-01", "2025-01-13"),
+                        rate(101, 1, 2, 10, 20, "17.76", "2025-01-14", null),
+                        rate(102, 1, 2, 11, 20, "5", "2024-01-01", null),
+                        rate(103, 1, 3, 10, 21, "4", "2024-01-01", null),
+                        rate(104, 1, 3, 10, 20, "6.5", "2024-01-01", null),
+                        rate(105, 3, 2, 12, 20, "2.5", "2026-01-01", null))), // not valid yet
+                List.of());
+    }
+
+    private static TariffDataset.TariffRate rate(int id, int exporter, int importer, int hs, int agreement,
+                                                 String percent, String from, String to) {
+        return new TariffDataset.TariffRate(id, exporter, importer, hs, agreement, new BigDecimal(percent),
+                LocalDate.parse(from), to == null ? null : LocalDate.parse(to));
+    }
+
+    @Test
+    void aggregate_GroupsLanesValidOnTheDay() {
+        when(tariffSnapshots.current()).thenReturn(dataset());
+
+        List<Map<String, Object>> rows = analytics.aggregate(GroupBy.IMPORTER, new Filter(null, null, null, null), DAY);
+
+        assertEquals(List.of("JP", "US"), rows.stream().map(r -> r.get("group_key")).toList());
+        Map<String, Object> us = rows.get(1);
+        assertEquals(2L, us.get("lane_count"));
+        assertEquals(new BigDecimal("5.0000"), us.get("min_rate"));
+        assertEquals(new BigDecimal("17.7600"), us.get("max_rate"));
+        assertEquals(new BigDecimal("11.3800"), us.get("avg_rate"));
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void aggregate_AppliesFiltersAndChapters() {
+        when(tariffSnapshots.current()).thenReturn(dataset());
+
+        List<Map<String, Object>> mfn = analytics.aggregate(GroupBy.HS_CHAPTER, new Filter(null, null, "MFN", " "), DAY);
+        assertEquals(1, mfn.size());
+        assertEquals("01", mfn.get(0).get("group_key"));
+        assertEquals(3L, mfn.get(0).get("lane_count"));
+
+        assertTrue(analytics.aggregate(GroupBy.AGREEMENT, new Filter("XX", null, null, null), DAY).isEmpty());
+        assertTrue(analytics.aggregate(GroupBy.AGREEMENT, new Filter(null, null, null, "99"), DAY).isEmpty());
+        assertEquals(1, analytics.aggregate(GroupBy.EXPORTER, new Filter(null, "JP", null, null), DAY).size());
+    }
+
+    @Test
+    void aggregate_GroupsAndFiltersByAnyHsPrefix() {
+        when(tariffSnapshots.current()).thenReturn(dataset());
+
+        List<Map<String, Object>> headings = analytics.aggregate(GroupBy.HS_HEADING, new Filter(null, null, null, "0101*"), DAY);
+        assertEquals(1, headings.size());
+        assertEquals("0101", headings.get(0).get("group_key"));
+        assertEquals(4L, headings.get(0).get("lane_count"));
+
+        List<Map<String, Object>> subheadings = analytics.aggregate(GroupBy.HS_SUBHEADING, new Filter(null, null, null, "01012"), DAY);
+        assertEquals(List.of("010121", "010129"), subheadings.stream().map(r -> r.get("group_key")).toList());
+
+        assertThrows(IllegalArgumentException.class, () -> new Filter(null, null, null, "01%"));
+    }
+
+    @Test
+    void rateChanges_ReportsLanesThatMovedBiggestFirst() {
+        when(tariffSnapshots.current()).thenReturn(dataset());
+        Filter all = new Filter(null, null, null, null);
+
+        List<Map<String, Object>> rows = analytics.rateChanges(all, LocalDate.of(2024, 6, 1), DAY, BigDecimal.ZERO, 10);
+        assertEquals(1, rows.size());
+        assertEquals("010121", rows.get(0).get("hs_code"));
+        assertEquals(new BigDecimal("-0.4400"), rows.get(0).get("rate_change"));
+
+        assertTrue(analytics.rateChanges(all, LocalDate.of(2024, 6, 1), DAY, new BigDecimal("0.44"), 10).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> analytics.rateChanges(all, LocalDate.of(2024, 6, 1), DAY, BigDecimal.ZERO, 0));
+    }
+
+    @Test
+    void withoutSnapshot_PushesDownToSql() {
+        when(jdbc.queryForList(anyString(), any(Object[].class))).thenReturn(List.of());
+
+        analytics.aggregate(GroupBy.HS_CHAPTER, new Filter(null, "US", "MFN", null), DAY);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> params = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbc).queryForList(sql.capture(), params.capture());
+        assertTrue(sql.getValue().contains("SELECT LEFT(hs_code, 2) AS group_key"));
+        assertTrue(sql.getValue().contains("AND importer_code = ?"));
+        assertArrayEquals(new Object[] {DAY, DAY, "US", "MFN"}, params.getValue());
+        verify(transactionManager).getTransaction(argThat(definition -> definition.isReadOnly()));
+    }
+
+    @Test
+    void withoutSnapshot_HsPrefixIsARangeCondition() {
+        when(jdbc.queryForList(anyString(), any(Object[].class))).thenReturn(List.of());
+
+        analytics.rateChanges(new Filter(null, null, null, "0101*"), DAY, DAY, BigDecimal.ONE, 5);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> params = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbc).queryForList(sql.capture(), params.capture());
+        assertTrue(sql.getValue().contains("hs_code COLLATE \"C\" >= ? AND hs_code COLLATE \"C\" < ?"));
+        assertArrayEquals(new Object[] {DAY, DAY, DAY, DAY, "0101", "0102", BigDecimal.ONE, 5}, params.getValue());
+    }
+
+    @Test
+    void groupBy_ParsesRequestValues() {
+        assertEquals(GroupBy.HS_CHAPTER, GroupBy.parse("hs-chapter"));
+        assertEquals(GroupBy.IMPORTER, GroupBy.parse(" importer "));
+        assertThrows(IllegalArgumentException.class, () -> GroupBy.parse("hs_code; DROP TABLE"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.ratewise.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * /tariffs/list against /tariffs/list/stream on a large listing: the materialised list is
+ * serialised only once every row is read, the streamed one from the first cursor fetch.
+ * Prints time to first byte, total time and rows for each. The synthetic rows are rolled back.
+ */
+@SpringBootTest
+@Transactional
+class TariffListingBenchmarkIT {
+
+    private static final int DAYS_PER_LANE = 1000;
+
+    @Autowired
+    private TariffService tariffService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void streamedListingStartsBeforeTheWholeListIsRead() {
+        jdbc.update("""
+                INSERT INTO tariff_rates (exporter_id, importer_id, hs_code_id, agreement_id, rate_percent, valid_from, valid_to)
+                SELECT exporter_id, importer_id, hs_code_id, agreement_id, g % 50, DATE '2030-01-01' + g, DATE '2030-01-01' + g
+                FROM (SELECT DISTINCT exporter_id, importer_id, hs_code_id, agreement_id FROM tariff_rates) lanes,
+                     generate_series(1, ?) g
+                """, DAYS_PER_LANE);
+
+        System.out.printf("%-8s %-14s %-12s %-8s%n", "mode", "first byte ms", "total ms", "rows");
+        list();    // warm-up, neither mode gets a cold JIT or buffer cache
+        stream();
+        Result listed = list();
+        Result streamed = stream();
+
+        assertEquals(listed.rows(), streamed.rows());
+        assertTrue(streamed.rows() > DAYS_PER_LANE);
+        assertEquals(listed.bytes(), streamed.bytes());
+    }
+
+    private Result list() {
+        CountingSink sink = new CountingSink();
+        long start = System.nanoTime();
+        List<Map<String, Object>> rows = tariffService.listTariffs(null, null, null, null);
+        rows.forEach(row -> write(sink, row));
+        return print("list", start, sink, rows.size());
+    }
+
+    private Result stream() {
+        CountingSink sink = new CountingSink();
+        AtomicLong rows = new AtomicLong();
+        long start = System.nanoTime();
+        tariffService.streamTariffs(null, null, null, null, row -> {
+            write(sink, row);
+            rows.incrementAndGet();
+        });
+        return print("stream", start, sink, rows.get());
+    }
+
+    private void write(CountingSink sink, Map<String, Object> row) {
+        try {
+            sink.write(objectMapper.writeValueAsBytes(row));
+            sink.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Result print(String mode, long start, CountingSink sink, long rows) {
+        double firstByteMillis = (sink.firstByteNanos - start) / 1_000_000.0;
+        double totalMillis = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.printf("%-8s %-14.1f %-12.1f %-8d%n", mode, firstByteMillis, totalMillis, rows);
+        return new Result(rows, sink.bytes);
+    }
+
+    private record Result(long rows, long bytes) {}
+
+    // Stands in for the response body: counts bytes and notes when the first one arrives
+    private static final class CountingSink extends OutputStream {
+        long bytes;
+        long firstByteNanos;
+
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (bytes == 0) firstByteNanos = System.nanoTime();
+            bytes += len;
+        }
+    }
+}
@@ -4,7 +4,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +20,9 @@ class TariffServiceIT {
     @Autowired
     private TariffService tariffService;
 
+    @Autowired
+    private JdbcTemplate jdbc;
+
     private static final String VALID_COUNTRY_NAME = "Singapore";
     private static final String VALID_COUNTRY_CODE = "SG";
     private static final String VALID_IMPORTER = "US";
@@ -284,5 +290,85 @@ class TariffServiceIT {
         assertNotNull(results);
     }
 
+    // -------- tariff_view maintenance --------
+
+    @Test
+    void testTariffViewHasOneRowPerTariff() {
+        Integer tariffs = jdbc.queryForObject("SELECT COUNT(*) FROM tariff_rates", Integer.class);
+        Integer viewRows = jdbc.queryForObject("""
+                SELECT COUNT(*) FROM tariff_view v
+                JOIN tariff_rates tr ON tr.id = v.tariff_id
+                 AND tr.rate_percent = v.rate_percent AND tr.valid_from = v.valid_from
+                """, Integer.class);
+        assertEquals(tariffs, viewRows);
+    }
+
+    @Test
+    @Transactional // rolled back; the triggers run in the same transaction
+    void testTariffViewFollowsCountryAndTaxChanges() {
+        jdbc.update("UPDATE countries SET country_name = 'United States (renamed)' WHERE country_code = ?", VALID_IMPORTER);
+        jdbc.update("DELETE FROM tax_rules WHERE country_id = (SELECT id FROM countries WHERE country_code = ?)", VALID_IMPORTER);
+        jdbc.update("""
+                INSERT INTO tax_rules (country_id, tax_type, rate_percent, valid_from)
+                SELECT id, 'SALES', 7, DATE '1900-01-01' FROM countries WHERE country_code = ?
+                """, VALID_IMPORTER);
+
+        List<Map<String, Object>> rows = tariffService.listTariffsTable().stream()
+                .filter(row -> VALID_IMPORTER.equals(row.get("importer_code")))
+                .toList();
+
+        assertFalse(rows.isEmpty());
+        for (Map<String, Object> row : rows) {
+            assertEquals("United States (renamed)", row.get("importer_name"));
+            assertEquals("SALES", row.get("importer_tax"));
+        }
+    }
+
+    @Test
+    @Transactional
+    void testTariffViewFollowsRateChanges() {
+        jdbc.update("""
+                UPDATE tariff_rates SET rate_percent = 42.5
+                WHERE hs_code_id = (SELECT id FROM hs_codes WHERE hs_code = ?)
+                  AND importer_id = (SELECT id FROM countries WHERE country_code = ?)
+                """, VALID_HS_CODE, VALID_IMPORTER);
+
+        List<Map<String, Object>> rows = tariffService.listTariffs(VALID_IMPORTER, null, null).stream()
+                .filter(row -> VALID_HS_CODE.equals(row.get("hs_code")))
+                .toList();
+
+        assertFalse(rows.isEmpty());
+        rows.forEach(row -> assertEquals(0, new BigDecimal("42.5").compareTo((BigDecimal) row.get("rate_percent"))));
+    }
+
+    @Test
+    void testListTariffsByHsPrefix() {
+        List<Map<String, Object>> results = tariffService.listTariffs(null, null, null, "0101*");
+
+        assertFalse(results.isEmpty());
+        results.forEach(row -> assertTrue(((String) row.get("hs_code")).startsWith("0101")));
+        assertEquals(results.size(), tariffService.listTariffs(null, null, null, "0101").size());
+        assertThrows(IllegalArgumentException.class, () -> tariffService.listTariffs(null, null, null, "01_1%"));
+    }
 
+    @Test
+    @Transactional
+    void testGetTariffInfoFallsBackToMostSpecificHsLevel() {
+        // a national 10-digit line under 010121 has no rate of its own
+        Map<String, Object> result = tariffService.getTariffInfo(VALID_COUNTRY_CODE, VALID_IMPORTER, "0101210010", VALID_AGREEMENT);
+        assertEquals(VALID_HS_CODE, result.get("hs_code"));
+
+        // a heading-level rate only applies when nothing more specific exists
+        jdbc.update("INSERT INTO hs_codes (hs_code, description) VALUES ('0102', 'Live bovine animals')");
+        jdbc.update("""
+                INSERT INTO tariff_rates (exporter_id, importer_id, hs_code_id, agreement_id, rate_percent, valid_from)
+                SELECT e.id, i.id, h.id, a.id, 3.3, DATE '2020-01-01'
+                FROM countries e, countries i, hs_codes h, agreements a
+                WHERE e.country_code = ? AND i.country_code = ? AND h.hs_code = '0102' AND a.agreement_code = ?
+                """, VALID_COUNTRY_CODE, VALID_IMPORTER, VALID_AGREEMENT);
+
+        Map<String, Object> heading = tariffService.getTariffInfo(VALID_COUNTRY_CODE, VALID_IMPORTER, "01022910", VALID_AGREEMENT);
+        assertEquals("0102", heading.get("hs_code"));
+        assertEquals(0, new BigDecimal("3.3").compareTo((BigDecimal) heading.get("rate_percent")));
+    }
 }
@@ -0,0 +1,134 @@
+package com.ratewise.services;
+
+import com.ratewise.security.apikey.ApiKeyCache;
+import com.ratewise.security.dto.BulkUpdateResponse;
+import com.ratewise.security.entities.Role;
+import com.ratewise.security.exception.RoleNotFoundException;
+import com.ratewise.security.exception.UserNotFoundException;
+import com.ratewise.security.repositories.RoleRepository;
+import com.ratewise.security.repositories.UserRepository;
+import com.ratewise.security.util.JWTUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserAdminServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private JWTUtil jwtUtil;
+
+    @Mock
+    private ApiKeyCache apiKeyCache;
+
+    @InjectMocks
+    private UserAdminService userAdminService;
+
+    @Test
+    void updateRoles_AssignsOnceAndInvalidatesAllTokens() {
+        Role admin = new Role(1L, "ADMIN", new ArrayList<>());
+        when(roleRepository.findById(1L)).thenReturn(Optional.of(admin));
+        when(userRepository.findExistingIds(Set.of("u1", "u2"))).thenReturn(Set.of("u1", "u2"));
+
+        BulkUpdateResponse response = userAdminService.updateRoles(List.of("u1", "u2", "u1"), 1L);
+
+        assertEquals(2, response.getUpdatedCount());
+        assertEquals("ADMIN", response.getNewRole());
+        verify(roleRepository).assignRoleToUsers(Set.of("u1", "u2"), 1L);
+        verify(roleRepository, never()).assignRoleToUser(anyString(), anyLong());
+        verify(jwtUtil).invalidateUserTokens(Set.of("u1", "u2"));
+        verify(jwtUtil, never()).invalidateUserToken(anyString());
+        verify(apiKeyCache).reloadUsers(Set.of("u1", "u2"));
+    }
+
+    @Test
+    void updateStatus_InvalidatesAndReloadsOnlyAfterCommit() {
+        when(userRepository.findExistingIds(Set.of("u1"))).thenReturn(Set.of("u1"));
+        when(userRepository.updateEnabled(Set.of("u1"), false)).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userAdminService.updateStatus(List.of("u1"), false);
+
+            verifyNoInteractions(jwtUtil, apiKeyCache);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(jwtUtil).invalidateUserTokens(Set.of("u1"));
+        verify(apiKeyCache).reloadUsers(Set.of("u1"));
+    }
+
+    @Test
+    void updateRoles_RoleNotFound() {
+        when(roleRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertThrows(RoleNotFoundException.class, () -> userAdminService.updateRoles(List.of("u1"), 99L));
+        verify(roleRepository, never()).assignRoleToUsers(any(), anyLong());
+        verifyNoInteractions(jwtUtil);
+    }
+
+    @Test
+    void updateRoles_UnknownUserRejectsWholeBatch() {
+        Role admin = new Role(1L, "ADMIN", new ArrayList<>());
+        when(roleRepository.findById(1L)).thenReturn(Optional.of(admin));
+        when(userRepository.findExistingIds(Set.of("u1", "missing"))).thenReturn(Set.of("u1"));
+
+        UserNotFoundException ex = assertThrows(UserNotFoundException.class,
+                () -> userAdminService.updateRoles(List.of("u1", "missing"), 1L));
+
+        assertTrue(ex.getMessage().contains("missing"));
+        verify(roleRepository, never()).assignRoleToUsers(any(), anyLong());
+        verifyNoInteractions(jwtUtil);
+    }
+
+    @Test
+    void updateStatus_DisableInvalidatesTokens() {
+        when(userRepository.findExistingIds(Set.of("u1", "u2"))).thenReturn(Set.of("u1", "u2"));
+        when(userRepository.updateEnabled(Set.of("u1", "u2"), false)).thenReturn(2);
+
+        BulkUpdateResponse response = userAdminService.updateStatus(List.of("u1", "u2"), false);
+
+        assertEquals(2, response.getUpdatedCount());
+        assertFalse(response.getIsActive());
+        verify(jwtUtil).invalidateUserTokens(Set.of("u1", "u2"));
+        verify(apiKeyCache).reloadUsers(Set.of("u1", "u2"));
+    }
+
+    @Test
+    void updateStatus_EnableKeepsTokens() {
+        when(userRepository.findExistingIds(Set.of("u1"))).thenReturn(Set.of("u1"));
+        when(userRepository.updateEnabled(Set.of("u1"), true)).thenReturn(1);
+
+        userAdminService.updateStatus(List.of("u1"), true);
+
+        verifyNoInteractions(jwtUtil);
+    }
+
+    @Test
+    void updateStatus_BlankIdRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> userAdminService.updateStatus(List.of("u1", " "), true));
+        verifyNoInteractions(userRepository, jwtUtil);
+    }
+}
@@ -0,0 +1,95 @@
+package com.ratewise.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WTinyLfuCacheTest {
+
+    private static WTinyLfuCache<Integer, String> cache(long maximumWeight) {
+        return new WTinyLfuCache<>(maximumWeight, (int) maximumWeight, (key, value) -> value.length());
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        WTinyLfuCache<Integer, String> cache = cache(1_000);
+        assertNull(cache.get(1));
+        cache.put(1, "a");
+
+        assertEquals("a", cache.get(1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void staysWithinMaximumWeight() {
+        WTinyLfuCache<Integer, String> cache = cache(1_000);
+        for (int i = 0; i < 10_000; i++) {
+            cache.get(i);
+            cache.put(i, "x".repeat(1 + i % 20));
+            assertTrue(cache.weight() <= 1_000);
+        }
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    void frequentEntriesSurviveAScanOfOneOffKeys() {
+        WTinyLfuCache<Integer, String> cache = cache(60);
+        for (int round = 0; round < 5; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                if (cache.get(hot) == null) cache.put(hot, "h");
+            }
+        }
+        // each hot key comes back every 100 requests, with 50 one-off keys in between
+        for (int cold = 1_000; cold < 11_000; cold++) {
+            if (cache.get(cold) == null) cache.put(cold, "c");
+            int hot = cold % 50;
+            if (cache.get(hot) == null) cache.put(hot, "h");
+        }
+
+        int hotLeft = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (cache.get(hot) != null) hotLeft++;
+        }
+        // an LRU of 60 would have none left
+        assertTrue(hotLeft >= 45, "hot entries left: " + hotLeft);
+    }
+
+    @Test
+    void removeIfDropsOnlyMatchingEntries() {
+        WTinyLfuCache<Integer, String> cache = cache(1_000);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "v" + i);
+        }
+
+        assertEquals(5, cache.removeIf((key, value) -> key % 2 == 0));
+        assertEquals(5, cache.size());
+        assertNull(cache.get(2));
+        assertEquals("v3", cache.get(3));
+        assertEquals(10, cache.weight());
+    }
+
+    @Test
+    void doesNotKeepAnEntryHeavierThanTheCache() {
+        WTinyLfuCache<Integer, String> cache = cache(10);
+        cache.put(1, "x".repeat(11));
+
+        assertNull(cache.get(1));
+        assertEquals(0, cache.weight());
+        assertEquals(1, cache.getRejectionCount());
+    }
+
+    @Test
+    void sketchCountsAreHalvedPeriodically() {
+        WTinyLfuCache.FrequencySketch sketch = new WTinyLfuCache.FrequencySketch(16);
+        for (int i = 0; i < 12; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(12, sketch.frequency(42));
+
+        for (int i = 0; i < 1_000; i++) {
+            sketch.increment(i + 100);
+        }
+        assertTrue(sketch.frequency(42) < 12);
+    }
+}
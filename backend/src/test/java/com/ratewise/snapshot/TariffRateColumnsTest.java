@@ -0,0 +1,93 @@
+package com.ratewise.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TariffRateColumnsTest {
+
+    private static final int JAN_2024 = (int) LocalDate.of(2024, 1, 15).toEpochDay();
+    private static final int JAN_2026 = (int) LocalDate.of(2026, 1, 15).toEpochDay();
+
+    // ids deliberately sparse and out of order, to exercise the dictionaries and the sort
+    private final TariffRateColumns columns = TariffRateColumns.builder()
+            .add(7, 900, 12, 5000, 3, new BigDecimal("5.25"), LocalDate.of(2020, 1, 1), null)
+            .add(3, 12, 900, 5000, 3, new BigDecimal("10"), LocalDate.of(2020, 1, 1), null)
+            .add(9, 900, 12, 5000, 3, new BigDecimal("2.5"), LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31))
+            .add(4, 900, 12, 41, 3, new BigDecimal("0.1234"), LocalDate.of(2020, 1, 1), null)
+            .add(5, 900, 12, 41, 8, new BigDecimal("1"), LocalDate.of(2020, 1, 1), LocalDate.of(2021, 1, 1))
+            .build();
+
+    @Test
+    void encodesIntoLanes() {
+        assertEquals(5, columns.size());
+        assertEquals(4, columns.laneCount());
+        assertTrue(columns.offHeapBytes() > 0);
+    }
+
+    @Test
+    void minRateIsLowestValidOnTheDay() {
+        assertEquals(25_000, columns.minRate(900, 12, 5000, 3, JAN_2024));
+        assertEquals(52_500, columns.minRate(900, 12, 5000, 3, JAN_2026));
+        assertEquals(new BigDecimal("5.2500"), TariffRateColumns.rate(columns.minRate(900, 12, 5000, 3, JAN_2026)));
+        assertEquals(1_234, columns.minRate(900, 12, 41, 3, JAN_2026));
+        assertEquals(100_000, columns.minRate(12, 900, 5000, 3, JAN_2026));
+    }
+
+    @Test
+    void missingLanesAndExpiredRatesHaveNoRate() {
+        assertEquals(TariffRateColumns.NO_RATE, columns.minRate(900, 12, 41, 8, JAN_2026)); // expired
+        assertEquals(TariffRateColumns.NO_RATE, columns.minRate(12, 900, 41, 3, JAN_2026)); // no such lane
+        assertEquals(TariffRateColumns.NO_RATE, columns.minRate(1, 12, 5000, 3, JAN_2026)); // unknown country
+        assertEquals(TariffRateColumns.NO_RATE, columns.minRate(900, 12, 5000, 3,
+                (int) LocalDate.of(2019, 6, 1).toEpochDay())); // not yet valid
+    }
+
+    @Test
+    void forEachFiltersByIdsAndExpiry() {
+        List<Integer> ids = new ArrayList<>();
+        columns.forEach(900, TariffRateColumns.ANY, TariffRateColumns.ANY, JAN_2026,
+                (id, exporterId, importerId, hsCodeId, agreementId, rate, from, to) -> ids.add(id));
+        assertEquals(List.of(4, 7), ids);
+
+        ids.clear();
+        columns.forEach(TariffRateColumns.ANY, TariffRateColumns.ANY, 3, JAN_2024,
+                (id, exporterId, importerId, hsCodeId, agreementId, rate, from, to) -> ids.add(id));
+        assertEquals(List.of(3, 4, 7, 9), ids);
+
+        ids.clear();
+        columns.forEach(TariffRateColumns.ANY, 1, TariffRateColumns.ANY, JAN_2024,
+                (id, exporterId, importerId, hsCodeId, agreementId, rate, from, to) -> ids.add(id));
+        assertTrue(ids.isEmpty());
+    }
+
+    @Test
+    void toListRoundTripsRows() {
+        TariffDataset.TariffRate expired = new TariffDataset.TariffRate(5, 900, 12, 41, 8,
+                new BigDecimal("1.0000"), LocalDate.of(2020, 1, 1), LocalDate.of(2021, 1, 1));
+        List<TariffDataset.TariffRate> rows = columns.toList();
+        assertEquals(5, rows.size());
+        assertTrue(rows.contains(expired));
+        assertEquals(rows, TariffRateColumns.of(rows).toList());
+    }
+
+    @Test
+    void rejectsRatesFinerThanTheScale() {
+        TariffRateColumns.Builder builder = TariffRateColumns.builder();
+        assertThrows(ArithmeticException.class, () ->
+                builder.add(1, 1, 2, 3, 4, new BigDecimal("1.23456"), LocalDate.of(2020, 1, 1), null));
+    }
+
+    @Test
+    void emptyColumns() {
+        TariffRateColumns empty = TariffRateColumns.builder().build();
+        assertEquals(0, empty.size());
+        assertEquals(TariffRateColumns.NO_RATE, empty.minRate(1, 2, 3, 4, JAN_2026));
+        assertTrue(empty.toList().isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+package com.ratewise.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TariffSnapshotCodecTest {
+
+    @TempDir
+    Path dir;
+
+    static TariffDataset dataset() {
+        return new TariffDataset(42, Instant.ofEpochMilli(1_700_000_000_000L),
+                List.of(new TariffDataset.Country(1, "SG", "Singapore", "CIF"),
+                        new TariffDataset.Country(2, "US", "United States", "FOB"),
+                        new TariffDataset.Country(3, "CI", "Côte d'Ivoire", "CIF")),
+                List.of(new TariffDataset.HsCode(10, "010121", "Live horses, pure-bred breeding animals"),
+                        new TariffDataset.HsCode(11, "010129", "Live horses")),
+                List.of(new TariffDataset.Agreement(20, "MFN", "Most Favoured Nation")),
+                TariffRateColumns.of(List.of(new TariffDataset.TariffRate(100, 1, 2, 10, 20, new BigDecimal("5.2500"), LocalDate.of(2020, 1, 1), null),
+                        new TariffDataset.TariffRate(101, 1, 2, 10, 20, new BigDecimal("3.0000"), LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)))),
+                List.of(new TariffDataset.TaxRule(200, 2, "SALES", new BigDecimal("7.5"), LocalDate.of(2019, 1, 1), null)));
+    }
+
+    @Test
+    void roundTripsThroughFile() throws IOException {
+        Path file = dir.resolve("tariffs-v42.snap");
+        TariffSnapshotCodec.write(dataset(), file);
+
+        TariffDataset read = TariffSnapshotCodec.read(file);
+
+        TariffDataset original = dataset();
+        assertEquals(42, read.getDataVersion());
+        assertEquals(original.getCreatedAt(), read.getCreatedAt());
+        assertEquals(original.getCountries(), read.getCountries());
+        assertEquals(original.getHsCodes(), read.getHsCodes());
+        assertEquals(original.getAgreements(), read.getAgreements());
+        assertEquals(original.getTariffRates().toList(), read.getTariffRates().toList());
+        assertEquals(original.getTaxRules(), read.getTaxRules());
+        // no temp files left behind
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    void rejectsCorruptedBody() throws IOException {
+        Path file = dir.resolve("tariffs-v42.snap");
+        TariffSnapshotCodec.write(dataset(), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 3] ^= 0x5A;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> TariffSnapshotCodec.read(file));
+        assertTrue(e.getMessage().contains("checksum"));
+    }
+
+    @Test
+    void rejectsTruncatedOrForeignFiles() throws IOException {
+        Path file = dir.resolve("tariffs-v42.snap");
+        TariffSnapshotCodec.write(dataset(), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> TariffSnapshotCodec.read(file));
+
+        Files.writeString(file, "not a snapshot at all, but long enough to have a header");
+        assertThrows(IOException.class, () -> TariffSnapshotCodec.read(file));
+    }
+
+    @Test
+    void datasetLookupMatchesCalculatorRules() {
+        TariffDataset data = dataset();
+
+        // lowest rate valid on the date; open-ended rate and the dated one overlap in 2024
+        assertEquals(new BigDecimal("3.0000"),
+                data.lookup("sg", "United States", "010121", null, "mfn", LocalDate.of(2024, 6, 1)).ratePercent());
+        assertEquals(new BigDecimal("5.2500"),
+                data.lookup("SG", "US", "010121", null, "MFN", LocalDate.of(2025, 6, 1)).ratePercent());
+        assertNull(data.lookup("SG", "US", "010121", null, "MFN", LocalDate.of(2019, 6, 1)).ratePercent());
+
+        // exact description wins over the shorter containing one; otherwise the shortest match
+        TariffDataset.Lookup exact = data.lookup("SG", "US", null, "LIVE HORSES, PURE-BRED BREEDING ANIMALS", "MFN", LocalDate.of(2025, 6, 1));
+        assertEquals("010121", exact.hsCode());
+        assertEquals("exact_description", exact.hsPath());
+        TariffDataset.Lookup like = data.lookup("SG", "US", null, "horses", "MFN", LocalDate.of(2025, 6, 1));
+        assertEquals("010129", like.hsCode());
+        assertEquals("like_fallback", like.hsPath());
+
+        // two letters are a code, anything else a name
+        TariffDataset.Lookup unknown = data.lookup("Singapore", "ZZ", "010121", null, "MFN", LocalDate.of(2025, 6, 1));
+        assertEquals("SG", unknown.exporterCode());
+        assertNull(unknown.importerCode());
+        assertNull(unknown.ratePercent());
+        assertNull(unknown.taxType());
+
+        // a national line without its own rate falls back to the subheading; a heading has none
+        TariffDataset.Lookup national = data.lookup("SG", "US", "0101210010", null, "MFN", LocalDate.of(2025, 6, 1));
+        assertEquals(new BigDecimal("5.2500"), national.ratePercent());
+        assertEquals("010121", national.tariffHsCode());
+        assertNull(data.lookup("SG", "US", "0101", null, "MFN", LocalDate.of(2025, 6, 1)).ratePercent());
+
+        TariffDataset.Lookup tax = data.lookup("SG", "US", "010121", null, "MFN", LocalDate.of(2025, 6, 1));
+        assertEquals("SALES", tax.taxType());
+        assertEquals("FOB", tax.customsBasis());
+    }
+}
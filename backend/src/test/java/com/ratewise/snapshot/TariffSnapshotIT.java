@@ -0,0 +1,68 @@
+package com.ratewise.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TariffSnapshotIT {
+
+    @TempDir
+    static Path snapshotDir;
+
+    @DynamicPropertySource
+    static void snapshotDirectory(DynamicPropertyRegistry registry) {
+        registry.add("tariff-snapshot.directory", () -> snapshotDir.toString());
+        // checks are driven by the test
+        registry.add("tariff-snapshot.check-ms", () -> "3600000");
+    }
+
+    @Autowired
+    private TariffSnapshotService tariffSnapshots;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void refreshWritesSnapshotThatReadsBackIdentical() throws IOException {
+        tariffSnapshots.refresh();
+        TariffDataset current = tariffSnapshots.current();
+        assertNotNull(current);
+        assertTrue(current.getTariffRates().size() > 0);
+
+        Path file = snapshotDir.resolve("tariffs-v" + current.getDataVersion() + ".snap");
+        assertTrue(Files.exists(file));
+
+        TariffDataset fromFile = TariffSnapshotCodec.read(file);
+        assertEquals(current.getDataVersion(), fromFile.getDataVersion());
+        assertEquals(current.getCountries(), fromFile.getCountries());
+        assertEquals(current.getTariffRates().toList(), fromFile.getTariffRates().toList());
+        assertEquals(current.getTaxRules(), fromFile.getTaxRules());
+
+        // nothing changed since: no reload
+        assertFalse(tariffSnapshots.refresh());
+    }
+
+    @Test
+    void dataChangeBumpsVersionAndReloads() {
+        tariffSnapshots.refresh();
+        long before = tariffSnapshots.current().getDataVersion();
+
+        // a no-op update still fires the statement trigger
+        jdbc.update("UPDATE agreements SET agreement_name = agreement_name WHERE agreement_code = 'MFN'");
+
+        assertTrue(tariffSnapshots.refresh());
+        assertTrue(tariffSnapshots.current().getDataVersion() > before);
+        assertTrue(Files.exists(snapshotDir.resolve("tariffs-v" + tariffSnapshots.current().getDataVersion() + ".snap")));
+    }
+}